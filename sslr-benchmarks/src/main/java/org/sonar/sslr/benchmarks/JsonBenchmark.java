@@ -0,0 +1,79 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.benchmarks;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.impl.ast.AstWalker;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.sonar.sslr.examples.grammars.JsonGrammar;
+import org.sonar.sslr.parser.LexerlessGrammar;
+import org.sonar.sslr.parser.ParseRunner;
+import org.sonar.sslr.parser.ParserAdapter;
+import org.sonar.sslr.parser.ParsingResult;
+
+import java.nio.charset.Charset;
+
+/**
+ * End-to-end benchmark of lexerless pipeline for {@link JsonGrammar}: parsing, construction of AST and walking over it.
+ * Size of input is controlled by system property "size", see {@link Inputs#size()}.
+ */
+@State
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+public class JsonBenchmark {
+
+  private String input;
+  private char[] chars;
+  private ParseRunner parseRunner;
+  private ParserAdapter<LexerlessGrammar> parser;
+  private NodeCountingVisitor visitor;
+  private AstWalker walker;
+
+  @Setup
+  public void setup() {
+    input = Inputs.json(Inputs.size());
+    chars = input.toCharArray();
+    LexerlessGrammar grammar = (LexerlessGrammar) JsonGrammar.create();
+    parseRunner = new ParseRunner(grammar.getRootRule());
+    parser = new ParserAdapter<LexerlessGrammar>(Charset.forName("UTF-8"), grammar);
+    visitor = new NodeCountingVisitor(JsonGrammar.values());
+    walker = new AstWalker(visitor);
+  }
+
+  @GenerateMicroBenchmark
+  public ParsingResult parse() {
+    return parseRunner.parse(chars);
+  }
+
+  @GenerateMicroBenchmark
+  public AstNode parseAndCreateAst() {
+    return parser.parse(input);
+  }
+
+  @GenerateMicroBenchmark
+  public int parseAndWalk() {
+    walker.walkAndVisit(parser.parse(input));
+    return visitor.getCount();
+  }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.sonar.sslr.api.Grammar;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.sonar.sslr.grammar.GrammarRuleKey;
+import org.sonar.sslr.grammar.LexerlessGrammarBuilder;
+import org.sonar.sslr.internal.grammar.MutableParsingRule;
+import org.sonar.sslr.internal.matchers.Matcher;
+import org.sonar.sslr.internal.matchers.ParseNode;
+import org.sonar.sslr.parser.ParseRunner;
+import org.sonar.sslr.parser.ParsingResult;
+
+import java.util.List;
+
+/**
+ * Compares native support of left recursion with grammar, where left recursion was eliminated by use of zeroOrMore.
+ * Later produces flat lists of operands, so benchmark "eliminatedAndNested" includes cost of transformation into left associative tree,
+ * which is directly produced by left recursive grammar.
+ * Size of input is controlled by system property "size", see {@link Inputs#size()}.
+ */
+@State
+@BenchmarkMode(Mode.Throughput)
+public class LeftRecursionBenchmark {
+
+  static enum MyGrammar implements GrammarRuleKey {
+    ROOT, EXPRESSION, ADDITIVE_OPERATOR, TERM, MULTIPLICATIVE_OPERATOR, FACTOR, WHITESPACE;
+
+    public static Grammar leftRecursive() {
+      LexerlessGrammarBuilder b = common();
+      b.rule(EXPRESSION).is(b.firstOf(b.sequence(EXPRESSION, ADDITIVE_OPERATOR, TERM), TERM));
+      b.rule(TERM).is(b.firstOf(b.sequence(TERM, MULTIPLICATIVE_OPERATOR, FACTOR), FACTOR));
+      return b.build();
+    }
+
+    public static Grammar eliminated() {
+      LexerlessGrammarBuilder b = common();
+      b.rule(EXPRESSION).is(TERM, b.zeroOrMore(ADDITIVE_OPERATOR, TERM));
+      b.rule(TERM).is(FACTOR, b.zeroOrMore(MULTIPLICATIVE_OPERATOR, FACTOR));
+      return b.build();
+    }
+
+    private static LexerlessGrammarBuilder common() {
+      LexerlessGrammarBuilder b = LexerlessGrammarBuilder.create();
+      b.setRootRule(ROOT);
+      b.rule(ROOT).is(WHITESPACE, EXPRESSION, b.endOfInput());
+      b.rule(ADDITIVE_OPERATOR).is(b.firstOf("+", "-"), WHITESPACE);
+      b.rule(MULTIPLICATIVE_OPERATOR).is(b.firstOf("*", "/"), WHITESPACE);
+      b.rule(FACTOR).is(b.firstOf(
+          b.sequence(word(b, "("), EXPRESSION, word(b, ")")),
+          b.sequence(b.regexp("[a-z][a-z0-9]*+|[0-9]++"), WHITESPACE)));
+      b.rule(WHITESPACE).is(b.regexp("\\s*+"));
+      return b;
+    }
+
+    private static Object word(LexerlessGrammarBuilder b, String value) {
+      return b.sequence(value, WHITESPACE);
+    }
+  }
+
+  private char[] input;
+  private ParseRunner leftRecursive, eliminated;
+
+  @Setup
+  public void setup() {
+    input = Inputs.expression(Inputs.size()).toCharArray();
+    leftRecursive = new ParseRunner(MyGrammar.leftRecursive().getRootRule());
+    eliminated = new ParseRunner(MyGrammar.eliminated().getRootRule());
+  }
+
+  @GenerateMicroBenchmark
+  public ParsingResult leftRecursive() {
+    return leftRecursive.parse(input);
+  }
+
+  @GenerateMicroBenchmark
+  public ParsingResult eliminated() {
+    return eliminated.parse(input);
+  }
+
+  @GenerateMicroBenchmark
+  public ParseNode eliminatedAndNested() {
+    return nest(eliminated.parse(input).getParseTreeRoot());
+  }
+
+  /**
+   * Transforms flat lists of operands and operators into left associative tree.
+   */
+  static ParseNode nest(ParseNode node) {
+    List<ParseNode> children = Lists.newArrayListWithCapacity(node.getChildren().size());
+    for (ParseNode child : node.getChildren()) {
+      children.add(nest(child));
+    }
+    Matcher matcher = node.getMatcher();
+    if (isBinaryExpression(matcher) && children.size() > 1) {
+      ParseNode first = children.get(0);
+      ParseNode result = new ParseNode(first.getStartIndex(), first.getEndIndex(), ImmutableList.of(first), matcher);
+      for (int i = 1; i < children.size(); i += 2) {
+        ParseNode operand = children.get(i + 1);
+        result = new ParseNode(result.getStartIndex(), operand.getEndIndex(), ImmutableList.of(result, children.get(i), operand), matcher);
+      }
+      return result;
+    }
+    return new ParseNode(node.getStartIndex(), node.getEndIndex(), children, matcher);
+  }
+
+  private static boolean isBinaryExpression(Matcher matcher) {
+    if (matcher instanceof MutableParsingRule) {
+      GrammarRuleKey ruleKey = ((MutableParsingRule) matcher).getRuleKey();
+      return ruleKey == MyGrammar.EXPRESSION || ruleKey == MyGrammar.TERM;
+    }
+    return false;
+  }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.benchmarks;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Lexer;
+import com.sonar.sslr.impl.LexerProfiler;
+import com.sonar.sslr.impl.Parser;
+import com.sonar.sslr.impl.ast.AstWalker;
+import com.sonar.sslr.test.minic.MiniCGrammar;
+import com.sonar.sslr.test.minic.MiniCLexer;
+import com.sonar.sslr.test.minic.MiniCParser;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * End-to-end benchmark of lexerful pipeline: lexing, parsing, construction of AST and walking over it.
+ * Size of input is controlled by system property "size", see {@link Inputs#size()}.
+ */
+@State
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+public class MiniCBenchmark {
+
+  private String input;
+  private Lexer lexer;
+  private Lexer reorderedLexer;
+  private Parser<Grammar> parser;
+  private NodeCountingVisitor visitor;
+  private AstWalker walker;
+
+  @Setup
+  public void setup() {
+    input = Inputs.miniC(Inputs.size());
+    lexer = MiniCLexer.create();
+    LexerProfiler profiler = new LexerProfiler();
+    MiniCLexer.builder().withProfiler(profiler).build().lex(input);
+    reorderedLexer = MiniCLexer.builder().withChannelOrderFrom(profiler).build();
+    parser = MiniCParser.create();
+    visitor = new NodeCountingVisitor(MiniCGrammar.values());
+    walker = new AstWalker(visitor);
+  }
+
+  @GenerateMicroBenchmark
+  public List<Token> lex() {
+    return lexer.lex(input);
+  }
+
+  /**
+   * Same as {@link #lex()}, but channels tried in order of frequency of their matches.
+   */
+  @GenerateMicroBenchmark
+  public List<Token> lexWithReorderedChannels() {
+    return reorderedLexer.lex(input);
+  }
+
+  @GenerateMicroBenchmark
+  public AstNode parse() {
+    return parser.parse(input);
+  }
+
+  @GenerateMicroBenchmark
+  public int parseAndWalk() {
+    walker.walkAndVisit(parser.parse(input));
+    return visitor.getCount();
+  }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.benchmarks;
+
+import org.junit.Test;
+import org.sonar.sslr.internal.matchers.ParseNode;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class LeftRecursionBenchmarkTest {
+
+  @Test
+  public void test() {
+    LeftRecursionBenchmark benchmark = new LeftRecursionBenchmark();
+    benchmark.setup();
+
+    assertThat(benchmark.leftRecursive().isMatched()).isTrue();
+    assertThat(benchmark.eliminated().isMatched()).isTrue();
+    assertThat(benchmark.eliminatedAndNested()).isNotNull();
+  }
+
+  @Test
+  public void should_produce_same_trees() {
+    LeftRecursionBenchmark benchmark = new LeftRecursionBenchmark();
+    benchmark.setup();
+
+    assertThat(dump(benchmark.eliminatedAndNested())).isEqualTo(dump(benchmark.leftRecursive().getParseTreeRoot()));
+  }
+
+  private static String dump(ParseNode node) {
+    StringBuilder sb = new StringBuilder();
+    dump(node, sb);
+    return sb.toString();
+  }
+
+  private static void dump(ParseNode node, StringBuilder sb) {
+    sb.append(node.getMatcher()).append('[').append(node.getStartIndex()).append(',').append(node.getEndIndex());
+    for (ParseNode child : node.getChildren()) {
+      sb.append(' ');
+      dump(child, sb);
+    }
+    sb.append(']');
+  }
+
+}
@@ -21,6 +21,7 @@ package com.sonar.sslr.api;
 
 import com.google.common.annotations.Beta;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.sonar.sslr.impl.matcher.RuleDefinition;
 import org.sonar.sslr.ast.AstSelect;
 import org.sonar.sslr.internal.ast.select.AstSelectFactory;
@@ -28,8 +29,10 @@ import org.sonar.sslr.internal.grammar.MutableParsingRule;
 
 import javax.annotation.Nullable;
 
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * the parser is in charge to construct an abstract syntax tree (AST) which is a tree representation of the abstract syntactic structure of
@@ -49,6 +52,12 @@ public class AstNode {
   private int fromIndex;
   private int toIndex;
 
+  /**
+   * Ids of types of this node and of all its descendants, see {@link #indexTypes()}, or null if unknown.
+   */
+  private BitSet subtreeTypes;
+  private TypesIndex typesIndex;
+
   public AstNode(Token token) {
     this(token.getType(), token.getType().getName(), token);
   }
@@ -80,6 +89,7 @@ public class AstNode {
       } else {
         addChildToList(child);
       }
+      invalidateTypesIndex();
     }
   }
 
@@ -297,8 +307,10 @@ public class AstNode {
     // unwrap AstNodeType to get a real one, i.e. detach node from tree of matchers:
     if (type instanceof MutableParsingRule) {
       type = ((MutableParsingRule) type).getRealAstNodeType();
+      invalidateTypesIndex();
     } else if (type instanceof RuleDefinition) {
       type = ((RuleDefinition) type).getRealAstNodeType();
+      invalidateTypesIndex();
     }
     return result;
   }
@@ -379,12 +391,16 @@ public class AstNode {
    * @since 1.17
    */
   public AstNode getFirstDescendant(AstNodeType... nodeTypes) {
+    return getFirstDescendant(new TypesFilter(nodeTypes), nodeTypes);
+  }
+
+  private AstNode getFirstDescendant(TypesFilter filter, AstNodeType... nodeTypes) {
     for (AstNode child : children) {
-      for (AstNodeType nodeType : nodeTypes) {
-        if (child.type == nodeType) {
+      if (filter.mightBeIn(child)) {
+        if (child.is(nodeTypes)) {
           return child;
         }
-        AstNode node = child.getFirstDescendant(nodeTypes);
+        AstNode node = child.getFirstDescendant(filter, nodeTypes);
         if (node != null) {
           return node;
         }
@@ -443,7 +459,7 @@ public class AstNode {
   @Deprecated
   public List<AstNode> findChildren(AstNodeType... nodeTypes) {
     List<AstNode> result = Lists.newArrayList();
-    getDescendants(result, nodeTypes);
+    getDescendants(result, new TypesFilter(nodeTypes), nodeTypes);
     return result;
   }
 
@@ -466,24 +482,130 @@ public class AstNode {
    */
   public List<AstNode> getDescendants(AstNodeType... nodeTypes) {
     List<AstNode> result = Lists.newArrayList();
-    if (hasChildren()) {
-      for (AstNode child : children) {
-        child.getDescendants(result, nodeTypes);
+    TypesFilter filter = new TypesFilter(nodeTypes);
+    for (AstNode child : children) {
+      if (filter.mightBeIn(child)) {
+        child.getDescendants(result, filter, nodeTypes);
       }
     }
     return result;
   }
 
-  private void getDescendants(List<AstNode> result, AstNodeType... nodeTypes) {
+  private void getDescendants(List<AstNode> result, TypesFilter filter, AstNodeType... nodeTypes) {
     for (AstNodeType nodeType : nodeTypes) {
       if (is(nodeType)) {
         result.add(this);
       }
     }
-    if (hasChildren()) {
+    for (AstNode child : children) {
+      if (filter.mightBeIn(child)) {
+        child.getDescendants(result, filter, nodeTypes);
+      }
+    }
+  }
+
+  /**
+   * Computes for each node of this tree a summary of types, which can be found in its subtree,
+   * so that {@link #getDescendants(AstNodeType...)}, {@link #getFirstDescendant(AstNodeType...)}, {@link #hasDescendant(AstNodeType...)}
+   * and {@link AstSelect#descendants(AstNodeType...)} can skip subtrees without nodes of requested types.
+   * <p>
+   * Worth to be invoked once the tree is completely constructed and before executing many queries on it.
+   * Summary is discarded for the part of the tree, which is modified afterwards.
+   * </p>
+   *
+   * @since 1.20
+   */
+  @Beta
+  public void indexTypes() {
+    indexTypes(new TypesIndex());
+  }
+
+  private BitSet indexTypes(TypesIndex index) {
+    BitSet result;
+    if (children.isEmpty()) {
+      result = index.singleton(type);
+    } else {
+      result = new BitSet();
+      result.set(index.id(type));
       for (AstNode child : children) {
-        child.getDescendants(result, nodeTypes);
+        result.or(child.indexTypes(index));
+      }
+    }
+    subtreeTypes = result;
+    typesIndex = index;
+    return result;
+  }
+
+  private void invalidateTypesIndex() {
+    AstNode node = this;
+    while (node != null && node.subtreeTypes != null) {
+      node.subtreeTypes = null;
+      node.typesIndex = null;
+      node = node.parent;
+    }
+  }
+
+  /**
+   * Dense ids of types, which are shared by all nodes indexed by one invocation of {@link #indexTypes()}.
+   * Types are compared by identity, as in {@link #is(AstNodeType...)}.
+   */
+  private static final class TypesIndex {
+    private final Map<AstNodeType, Integer> ids = Maps.newIdentityHashMap();
+    private final Map<AstNodeType, BitSet> singletons = Maps.newIdentityHashMap();
+
+    int id(@Nullable AstNodeType type) {
+      Integer id = ids.get(type);
+      if (id == null) {
+        id = ids.size();
+        ids.put(type, id);
+      }
+      return id;
+    }
+
+    /**
+     * @return set, which contains only id of given type and is shared between leaves of the same type
+     */
+    BitSet singleton(@Nullable AstNodeType type) {
+      BitSet result = singletons.get(type);
+      if (result == null) {
+        result = new BitSet();
+        result.set(id(type));
+        singletons.put(type, result);
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Requested types, which are translated into ids of each encountered {@link TypesIndex}.
+   */
+  private static final class TypesFilter {
+    private final AstNodeType[] types;
+    private TypesIndex index;
+    private final BitSet ids = new BitSet();
+
+    TypesFilter(AstNodeType[] types) {
+      this.types = types;
+    }
+
+    /**
+     * @return false, if subtree of given node certainly doesn't contain nodes of requested types
+     */
+    boolean mightBeIn(AstNode node) {
+      if (node.subtreeTypes == null) {
+        return true;
+      }
+      if (node.typesIndex != index) {
+        index = node.typesIndex;
+        ids.clear();
+        for (AstNodeType type : types) {
+          Integer id = index.ids.get(type);
+          if (id != null) {
+            ids.set(id);
+          }
+        }
       }
+      return node.subtreeTypes.intersects(ids);
     }
   }
 
@@ -43,6 +43,7 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -237,7 +238,11 @@ public class Lexer {
     private final List<Preprocessor> preprocessors = new ArrayList<Preprocessor>();
     private final CodeReaderConfiguration configuration = new CodeReaderConfiguration();
     private final List<Channel<Lexer>> channels = new ArrayList<Channel<Lexer>>();
+    private final List<Integer> channelGroups = new ArrayList<Integer>();
+    private int numberOfChannelGroups = 0;
     private boolean failIfNoChannelToConsumeOneCharacter = false;
+    private LexerProfiler profiler;
+    private LexerProfiler channelOrder;
 
     private Builder() {
       configuration.setBufferCapacity(DEFAULT_CODE_BUFFER_CAPACITY);
@@ -259,6 +264,45 @@ public class Lexer {
 
     public Builder withChannel(Channel<Lexer> channel) {
       channels.add(channel);
+      channelGroups.add(-1);
+      return this;
+    }
+
+    /**
+     * Adds group of channels, which never consume the same input, so that their relative order does not matter
+     * and can be changed by {@link #withChannelOrderFrom(LexerProfiler)}.
+     *
+     * @since 1.20
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Builder withUnorderedChannels(Channel... channels) {
+      for (Channel channel : channels) {
+        this.channels.add(channel);
+        channelGroups.add(numberOfChannelGroups);
+      }
+      numberOfChannelGroups++;
+      return this;
+    }
+
+    /**
+     * Records attempts of each channel into given profiler.
+     *
+     * @since 1.20
+     */
+    public Builder withProfiler(LexerProfiler profiler) {
+      this.profiler = checkNotNull(profiler, "profiler cannot be null");
+      return this;
+    }
+
+    /**
+     * Reorders channels within each group added by {@link #withUnorderedChannels(Channel[])},
+     * so that channels with greater number of hits in given profile are tried first.
+     * Profile is expected to be collected from lexer with the same configuration.
+     *
+     * @since 1.20
+     */
+    public Builder withChannelOrderFrom(LexerProfiler profile) {
+      this.channelOrder = checkNotNull(profile, "profile cannot be null");
       return this;
     }
 
@@ -268,8 +312,16 @@ public class Lexer {
     }
 
     private ChannelDispatcher<Lexer> getChannelDispatcher() {
+      List<Integer> order = getChannelOrder();
+      Channel[] orderedChannels = new Channel[order.size()];
+      for (int i = 0; i < orderedChannels.length; i++) {
+        int index = order.get(i);
+        Channel<Lexer> channel = channels.get(index);
+        orderedChannels[i] = profiler == null ? channel : new ProfilingChannel(channel, profiler.getOrCreateProfile(index, channel));
+      }
+
       ChannelDispatcher.Builder builder = ChannelDispatcher.builder()
-          .addChannels(channels.toArray(new Channel[channels.size()]));
+          .addChannels(orderedChannels);
 
       if (failIfNoChannelToConsumeOneCharacter) {
         builder.failIfNoChannelToConsumeOneCharacter();
@@ -278,6 +330,35 @@ public class Lexer {
       return builder.build();
     }
 
+    /**
+     * @return indexes of channels in order, in which they should be tried
+     */
+    private List<Integer> getChannelOrder() {
+      List<Integer> order = new ArrayList<Integer>();
+      for (int i = 0; i < channels.size(); i++) {
+        order.add(i);
+      }
+      if (channelOrder == null) {
+        return order;
+      }
+      int start = 0;
+      while (start < order.size()) {
+        int group = channelGroups.get(start);
+        int end = start + 1;
+        while (end < order.size() && group != -1 && channelGroups.get(end) == group) {
+          end++;
+        }
+        // sort is stable, so channels without hits keep their relative order
+        Collections.sort(order.subList(start, end), new Comparator<Integer>() {
+          public int compare(Integer index1, Integer index2) {
+            return Long.valueOf(channelOrder.getHits(index2)).compareTo(channelOrder.getHits(index1));
+          }
+        });
+        start = end;
+      }
+      return order;
+    }
+
   }
 
 }
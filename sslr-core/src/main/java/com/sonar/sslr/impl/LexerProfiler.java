@@ -0,0 +1,163 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl;
+
+import com.google.common.collect.Lists;
+import org.sonar.channel.Channel;
+
+import java.util.Collections;
+import java.util.Formatter;
+import java.util.List;
+
+/**
+ * Collects statistics per channel of {@link Lexer}, e.g. to find channels, which often fail to consume input
+ * and so slow down lexing. Channels identified by their position in {@link Lexer.Builder},
+ * so single profiler can be used by several lexers with the same configuration.
+ * Statistics accumulated across all lexers built with this profiler.
+ *
+ * <p>Profiling has significant overhead, so should not be enabled in production.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @see Lexer.Builder#withProfiler(LexerProfiler)
+ * @see Lexer.Builder#withChannelOrderFrom(LexerProfiler)
+ * @since 1.20
+ */
+public class LexerProfiler {
+
+  private final List<ChannelProfile> profiles = Lists.newArrayList();
+
+  ChannelProfile getOrCreateProfile(int index, Channel<Lexer> channel) {
+    while (profiles.size() <= index) {
+      profiles.add(null);
+    }
+    ChannelProfile profile = profiles.get(index);
+    if (profile == null) {
+      profile = new ChannelProfile(index, channel.getClass().getSimpleName());
+      profiles.set(index, profile);
+    }
+    return profile;
+  }
+
+  /**
+   * @return number of successful attempts of channel with given position or zero, if unknown
+   */
+  long getHits(int index) {
+    ChannelProfile profile = index < profiles.size() ? profiles.get(index) : null;
+    return profile == null ? 0 : profile.hits;
+  }
+
+  /**
+   * @return profiles of channels in order of their registration in {@link Lexer.Builder}
+   */
+  public List<ChannelProfile> getChannelProfiles() {
+    List<ChannelProfile> result = Lists.newArrayList(profiles);
+    result.removeAll(Collections.singleton(null));
+    return result;
+  }
+
+  /**
+   * @return table with one line per channel in order of their registration
+   */
+  public String formatTable() {
+    List<ChannelProfile> channelProfiles = getChannelProfiles();
+    int width = "Channel".length();
+    for (ChannelProfile profile : channelProfiles) {
+      width = Math.max(width, profile.channelName.length());
+    }
+    String format = "%5s %-" + width + "s %12s %12s %12s %12s%n";
+    Formatter formatter = new Formatter();
+    formatter.format(format, "#", "Channel", "Attempts", "Hits", "Hit ratio", "Time ms");
+    for (ChannelProfile profile : channelProfiles) {
+      formatter.format(format,
+          profile.index,
+          profile.channelName,
+          profile.attempts,
+          profile.hits,
+          String.format("%.3f", profile.attempts == 0 ? 0 : (double) profile.hits / profile.attempts),
+          String.format("%.3f", profile.time / 1e6));
+    }
+    return formatter.toString();
+  }
+
+  @Override
+  public String toString() {
+    return formatTable();
+  }
+
+  /**
+   * Statistics of a single channel.
+   */
+  public static final class ChannelProfile {
+
+    private final int index;
+    private final String channelName;
+    private long attempts;
+    private long hits;
+    private long time;
+
+    private ChannelProfile(int index, String channelName) {
+      this.index = index;
+      this.channelName = channelName;
+    }
+
+    void record(boolean hit, long time) {
+      attempts++;
+      if (hit) {
+        hits++;
+      }
+      this.time += time;
+    }
+
+    /**
+     * @return position of channel in {@link Lexer.Builder}
+     */
+    public int getIndex() {
+      return index;
+    }
+
+    /**
+     * @return simple name of class of channel
+     */
+    public String getChannelName() {
+      return channelName;
+    }
+
+    public long getAttempts() {
+      return attempts;
+    }
+
+    /**
+     * @return number of attempts, during which channel consumed input
+     */
+    public long getHits() {
+      return hits;
+    }
+
+    /**
+     * @return time in nanoseconds spent in this channel
+     */
+    public long getTime() {
+      return time;
+    }
+
+  }
+
+}
@@ -33,7 +33,12 @@ import org.sonar.sslr.internal.vm.CompilableGrammarRule;
 import org.sonar.sslr.internal.vm.CompiledGrammar;
 import org.sonar.sslr.internal.vm.Machine;
 import org.sonar.sslr.internal.vm.MutableGrammarCompiler;
+import org.sonar.sslr.parser.ParseProfiler;
 import org.sonar.sslr.parser.ParserAdapter;
+import org.sonar.sslr.parser.ParsingLimits;
+import org.sonar.sslr.parser.ParsingStatisticsListener;
+
+import javax.annotation.Nullable;
 
 import java.io.File;
 import java.util.List;
@@ -48,6 +53,9 @@ public class Parser<G extends Grammar> {
   private RuleDefinition rootRule;
   private final Lexer lexer;
   private final G grammar;
+  private ParseProfiler profiler;
+  private ParsingStatisticsListener statisticsListener;
+  private ParsingLimits limits;
 
   /**
    * @since 1.16
@@ -84,7 +92,7 @@ public class Parser<G extends Grammar> {
   public AstNode parse(List<Token> tokens) {
     // TODO can be compiled only once
     CompiledGrammar g = MutableGrammarCompiler.compile((CompilableGrammarRule) rootRule);
-    AstNode astNode = LexerfulAstCreator.create(Machine.parse(tokens, g), tokens);
+    AstNode astNode = LexerfulAstCreator.create(Machine.parse(tokens, g, profiler, statisticsListener, limits), tokens);
     // Unwrap AstNodeType for root node:
     astNode.hasToBeSkippedFromAst();
 
@@ -103,6 +111,58 @@ public class Parser<G extends Grammar> {
     this.rootRule = (RuleDefinition) rootRule;
   }
 
+  /**
+   * @since 1.20
+   */
+  @Nullable
+  public ParseProfiler getProfiler() {
+    return profiler;
+  }
+
+  /**
+   * Enables collection of statistics per rule during subsequent parses, or disables it, if profiler is null.
+   *
+   * @since 1.20
+   */
+  public void setProfiler(@Nullable ParseProfiler profiler) {
+    this.profiler = profiler;
+  }
+
+  /**
+   * @since 1.20
+   */
+  @Nullable
+  public ParsingStatisticsListener getStatisticsListener() {
+    return statisticsListener;
+  }
+
+  /**
+   * Sets listener, which will be notified about statistics of each subsequent parse, or removes it, if listener is null.
+   *
+   * @since 1.20
+   */
+  public void setStatisticsListener(@Nullable ParsingStatisticsListener statisticsListener) {
+    this.statisticsListener = statisticsListener;
+  }
+
+  /**
+   * @since 1.20
+   */
+  @Nullable
+  public ParsingLimits getLimits() {
+    return limits;
+  }
+
+  /**
+   * Sets limits for each subsequent parse, so that parse would fail with {@link org.sonar.sslr.parser.ParsingAbortedException}
+   * when any of them is reached, or removes them, if limits is null.
+   *
+   * @since 1.20
+   */
+  public void setLimits(@Nullable ParsingLimits limits) {
+    this.limits = limits;
+  }
+
   public static <G extends Grammar> Builder<G> builder(G grammar) {
     return new Builder<G>(grammar);
   }
@@ -0,0 +1,46 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl;
+
+import org.sonar.channel.Channel;
+import org.sonar.channel.CodeReader;
+
+/**
+ * Decorator, which records attempts of a channel into {@link LexerProfiler}.
+ */
+class ProfilingChannel extends Channel<Lexer> {
+
+  private final Channel<Lexer> channel;
+  private final LexerProfiler.ChannelProfile profile;
+
+  public ProfilingChannel(Channel<Lexer> channel, LexerProfiler.ChannelProfile profile) {
+    this.channel = channel;
+    this.profile = profile;
+  }
+
+  @Override
+  public boolean consume(CodeReader code, Lexer output) {
+    long startTime = System.nanoTime();
+    boolean result = channel.consume(code, output);
+    profile.record(result, System.nanoTime() - startTime);
+    return result;
+  }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl.ast;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstVisitor;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Walks the same AST concurrently for several groups of visitors.
+ * <p>
+ * Visitors of a group are visited by a dedicated {@link AstWalker}, so within a group the order of events is exactly the same
+ * as for sequential walk. Groups must be independent from each other: they should not share any mutable state.
+ * AST must not be modified by visitors.
+ * </p>
+ *
+ * @since 1.20
+ */
+public final class ParallelAstWalker {
+
+  private final ExecutorService executor;
+  private final List<List<AstVisitor>> groups = Lists.newArrayList();
+
+  public ParallelAstWalker(ExecutorService executor) {
+    this.executor = Preconditions.checkNotNull(executor, "executor");
+  }
+
+  public void addVisitorGroup(AstVisitor... visitors) {
+    addVisitorGroup(Arrays.asList(visitors));
+  }
+
+  public void addVisitorGroup(List<? extends AstVisitor> visitors) {
+    groups.add(Lists.<AstVisitor>newArrayList(visitors));
+  }
+
+  /**
+   * Visits given AST by all groups and waits for their completion.
+   * First exception thrown by a visitor is propagated to the caller.
+   */
+  public void walkAndVisit(final AstNode ast) {
+    List<Future<Void>> futures = Lists.newArrayListWithCapacity(groups.size());
+    for (List<AstVisitor> group : groups) {
+      final AstWalker walker = new AstWalker(group);
+      futures.add(executor.submit(new Callable<Void>() {
+        public Void call() {
+          walker.walkAndVisit(ast);
+          return null;
+        }
+      }));
+    }
+    try {
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      cancel(futures);
+      throw new IllegalStateException("Interrupted while visiting AST", e);
+    } catch (ExecutionException e) {
+      cancel(futures);
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  private static void cancel(List<Future<Void>> futures) {
+    for (Future<Void> future : futures) {
+      future.cancel(true);
+    }
+  }
+
+}
@@ -77,6 +77,13 @@ public class RuleDefinition implements Rule, AstNodeSkippingPolicy, GrammarRuleK
     setExpression((ParsingExpression) Standard.firstOf(getName(), getName().toUpperCase()));
   }
 
+  /**
+   * @since 1.20
+   */
+  public AstNodeSkippingPolicy getAstNodeSkippingPolicy() {
+    return (AstNodeSkippingPolicy) astNodeSkippingPolicy;
+  }
+
   public void skip() {
     astNodeSkippingPolicy = AlwaysSkipFromAst.INSTANCE;
   }
@@ -147,4 +154,8 @@ public class RuleDefinition implements Rule, AstNodeSkippingPolicy, GrammarRuleK
     memoize = true;
   }
 
+  public void disableMemoization() {
+    memoize = false;
+  }
+
 }
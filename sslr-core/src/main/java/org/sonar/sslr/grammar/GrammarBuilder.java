@@ -21,6 +21,7 @@ package org.sonar.sslr.grammar;
 
 import com.google.common.collect.Lists;
 import org.sonar.sslr.internal.vm.CompilableGrammarRule;
+import org.sonar.sslr.internal.vm.CutExpression;
 import org.sonar.sslr.internal.vm.FirstOfExpression;
 import org.sonar.sslr.internal.vm.NextExpression;
 import org.sonar.sslr.internal.vm.NextNotExpression;
@@ -256,6 +257,20 @@ abstract class GrammarBuilder {
     return NothingExpression.INSTANCE;
   }
 
+  /**
+   * Creates parsing expression - "cut".
+   * This expression always succeeds without consuming input and tells parser, that backtracking past this point is not possible:
+   * all pending alternatives are discarded, so that subsequent failure is not recovered by them,
+   * and results of parsing before this point are released, so that memory consumption doesn't grow with length of input.
+   * For example, can be placed after recognition of a top-level declaration.
+   * Has no effect inside of predicates "next" and "next not", and inside of left recursive rules.
+   *
+   * @since 1.20
+   */
+  public final Object cut() {
+    return CutExpression.INSTANCE;
+  }
+
   protected abstract ParsingExpression convertToExpression(Object e);
 
   protected final ParsingExpression[] convertToExpressions(List<Object> expressions) {
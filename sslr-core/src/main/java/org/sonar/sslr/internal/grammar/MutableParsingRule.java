@@ -48,6 +48,7 @@ public class MutableParsingRule implements CompilableGrammarRule, Matcher, Rule,
   private final String name;
   private ParsingExpression expression;
   private AstNodeSkippingPolicy astNodeSkippingPolicy = NeverSkipFromAst.INSTANCE;
+  private boolean memoize = true;
 
   public MutableParsingRule(String name) {
     this.ruleKey = this;
@@ -100,6 +101,10 @@ public class MutableParsingRule implements CompilableGrammarRule, Matcher, Rule,
     this.expression = expression;
   }
 
+  public AstNodeSkippingPolicy getAstNodeSkippingPolicy() {
+    return astNodeSkippingPolicy;
+  }
+
   public void skip() {
     astNodeSkippingPolicy = AlwaysSkipFromAst.INSTANCE;
   }
@@ -130,7 +135,15 @@ public class MutableParsingRule implements CompilableGrammarRule, Matcher, Rule,
   }
 
   public boolean shouldMemoize() {
-    return true;
+    return memoize;
+  }
+
+  public void enableMemoization() {
+    memoize = true;
+  }
+
+  public void disableMemoization() {
+    memoize = false;
   }
 
 }
@@ -0,0 +1,417 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.matchers;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeType;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
+import com.sonar.sslr.api.Trivia;
+import org.sonar.sslr.grammar.GrammarRuleKey;
+import org.sonar.sslr.internal.vm.CompilableGrammarRule;
+import org.sonar.sslr.internal.vm.CompiledGrammar;
+
+import javax.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary serialization of AST, which was produced by {@link AstCreator} or {@link LexerfulAstCreator}.
+ *
+ * <p>Types of nodes and tokens are not serialized by themselves, but referenced by name:
+ * rules - by name of rule in {@link CompiledGrammar}, enums - by name of class and name of constant.
+ * Tokens shared between nodes are serialized only once, so that identity of tokens is preserved after deserialization.
+ * Strings are interned in a similar way.</p>
+ *
+ * <p>URI of input might be replaced during deserialization, so that AST can be reused for the same content at another location.</p>
+ */
+public final class AstSerializer {
+
+  private static final int MAGIC = 0x53534c52;
+  private static final int VERSION = 2;
+
+  private static final int NULL_REFERENCE = -1;
+
+  private static final byte TRIVIA_COMMENT = 0;
+  private static final byte TRIVIA_SKIPPED_TEXT = 1;
+  private static final byte TRIVIA_PREPROCESSOR = 2;
+
+  private static final String RULE_PREFIX = "R:";
+  private static final String ENUM_PREFIX = "E:";
+  private static final String UNDEFINED_TOKEN_TYPE_NAME = "U";
+
+  private AstSerializer() {
+  }
+
+  /**
+   * @return serialized AST or null, if AST contains something, which can't be serialized,
+   * e.g. types which are neither rules of given grammar nor enums, or preprocessing directives
+   */
+  @Nullable
+  public static byte[] serialize(AstNode ast, CompiledGrammar grammar) {
+    return serialize(ast, grammar, null);
+  }
+
+  /**
+   * @param inputUri URI of input, which is stored by reference, so that can be replaced during deserialization
+   * @return serialized AST or null, if AST contains something, which can't be serialized,
+   * e.g. types which are neither rules of given grammar nor enums, or preprocessing directives
+   */
+  @Nullable
+  public static byte[] serialize(AstNode ast, CompiledGrammar grammar, @Nullable URI inputUri) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try {
+      new Writer(new DataOutputStream(bytes), grammar, inputUri).write(ast);
+    } catch (NotSerializableException e) {
+      return null;
+    } catch (IOException e) {
+      // Can't happen for ByteArrayOutputStream
+      throw new IllegalStateException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * @param classLoader used to load enums, which were used as types
+   * @throws IOException if data is corrupted or doesn't match given grammar
+   */
+  public static AstNode deserialize(byte[] data, CompiledGrammar grammar, ClassLoader classLoader) throws IOException {
+    return deserialize(data, grammar, classLoader, null);
+  }
+
+  /**
+   * @param classLoader used to load enums, which were used as types
+   * @param inputUri URI of input, which replaces URI of input given during serialization
+   * @throws IOException if data is corrupted or doesn't match given grammar
+   */
+  public static AstNode deserialize(byte[] data, CompiledGrammar grammar, ClassLoader classLoader, @Nullable URI inputUri) throws IOException {
+    try {
+      AstNode ast = new Reader(new DataInputStream(new ByteArrayInputStream(data)), grammar, classLoader, inputUri).read();
+      // Unwrap AstNodeType for root node:
+      ast.hasToBeSkippedFromAst();
+      return ast;
+    } catch (RuntimeException e) {
+      throw new IOException("Unable to deserialize AST", e);
+    }
+  }
+
+  private static final class Writer {
+
+    private final DataOutputStream out;
+    private final Map<Object, String> ruleNames = new IdentityHashMap<Object, String>();
+    private final Map<String, Integer> strings = Maps.newHashMap();
+    private final Map<Token, Integer> tokens = new IdentityHashMap<Token, Integer>();
+    private final URI inputUri;
+
+    public Writer(DataOutputStream out, CompiledGrammar grammar, @Nullable URI inputUri) {
+      this.out = out;
+      this.inputUri = inputUri;
+      for (Map.Entry<GrammarRuleKey, CompilableGrammarRule> entry : grammar.getRules().entrySet()) {
+        ruleNames.put(entry.getKey(), entry.getValue().getName());
+        ruleNames.put(entry.getValue(), entry.getValue().getName());
+      }
+    }
+
+    public void write(AstNode ast) throws IOException {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      writeNode(ast);
+      out.flush();
+    }
+
+    private void writeNode(AstNode node) throws IOException {
+      writeType(node.getType());
+      writeString(node.getName());
+      writeToken(node.getToken());
+      out.writeInt(node.getFromIndex());
+      out.writeInt(node.getToIndex());
+      out.writeInt(node.getNumberOfChildren());
+      for (AstNode child : node.getChildren()) {
+        writeNode(child);
+      }
+    }
+
+    private void writeType(Object type) throws IOException {
+      String ruleName = ruleNames.get(type);
+      if (ruleName != null) {
+        writeString(RULE_PREFIX + ruleName);
+      } else if (type instanceof Enum) {
+        Enum<?> constant = (Enum<?>) type;
+        writeString(ENUM_PREFIX + constant.getDeclaringClass().getName() + "#" + constant.name());
+      } else if (type == AstCreator.UNDEFINED_TOKEN_TYPE) {
+        writeString(UNDEFINED_TOKEN_TYPE_NAME);
+      } else {
+        throw new NotSerializableException(String.valueOf(type));
+      }
+    }
+
+    private void writeToken(@Nullable Token token) throws IOException {
+      if (token == null) {
+        out.writeInt(NULL_REFERENCE);
+        return;
+      }
+      Integer id = tokens.get(token);
+      if (id != null) {
+        out.writeInt(id);
+        return;
+      }
+      id = tokens.size();
+      tokens.put(token, id);
+      out.writeInt(id);
+
+      writeType(token.getType());
+      writeString(token.getValue());
+      writeString(token.getOriginalValue());
+      boolean input = token.getURI().equals(inputUri);
+      out.writeBoolean(input);
+      if (!input) {
+        writeString(token.getURI().toString());
+      }
+      out.writeInt(token.getLine());
+      out.writeInt(token.getColumn());
+      out.writeBoolean(token.isGeneratedCode());
+      out.writeBoolean(token.isCopyBook());
+      if (token.isCopyBook()) {
+        writeString(token.getCopyBookOriginalFileName());
+        out.writeInt(token.getCopyBookOriginalLine());
+      }
+      out.writeInt(token.getTrivia().size());
+      for (Trivia trivia : token.getTrivia()) {
+        writeTrivia(trivia);
+      }
+    }
+
+    private void writeTrivia(Trivia trivia) throws IOException {
+      if (trivia.hasPreprocessingDirective()) {
+        throw new NotSerializableException("Preprocessing directive");
+      }
+      if (trivia.isComment()) {
+        out.writeByte(TRIVIA_COMMENT);
+      } else if (trivia.isSkippedText()) {
+        out.writeByte(TRIVIA_SKIPPED_TEXT);
+      } else {
+        out.writeByte(TRIVIA_PREPROCESSOR);
+      }
+      out.writeInt(trivia.getTokens().size());
+      for (Token token : trivia.getTokens()) {
+        writeToken(token);
+      }
+    }
+
+    private void writeString(String s) throws IOException {
+      Integer id = strings.get(s);
+      if (id != null) {
+        out.writeInt(id);
+        return;
+      }
+      id = strings.size();
+      strings.put(s, id);
+      out.writeInt(id);
+      byte[] bytes = s.getBytes(Charsets.UTF_8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+
+  }
+
+  private static final class Reader {
+
+    private final DataInputStream in;
+    private final ClassLoader classLoader;
+    private final Map<String, CompilableGrammarRule> rules = Maps.newHashMap();
+    private final Map<String, Object> types = Maps.newHashMap();
+    private final List<String> strings = Lists.newArrayList();
+    private final List<Token> tokens = Lists.newArrayList();
+    private final URI inputUri;
+
+    public Reader(DataInputStream in, CompiledGrammar grammar, ClassLoader classLoader, @Nullable URI inputUri) {
+      this.in = in;
+      this.classLoader = classLoader;
+      this.inputUri = inputUri;
+      for (CompilableGrammarRule rule : grammar.getRules().values()) {
+        rules.put(rule.getName(), rule);
+      }
+    }
+
+    public AstNode read() throws IOException {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException("Unsupported format");
+      }
+      return readNode();
+    }
+
+    private AstNode readNode() throws IOException {
+      Object type = readType();
+      if (!(type instanceof AstNodeType)) {
+        throw new IOException("Not an AstNodeType: " + type);
+      }
+      String name = readString();
+      Token token = readToken();
+      AstNode node = new AstNode((AstNodeType) type, name, token);
+      node.setFromIndex(in.readInt());
+      node.setToIndex(in.readInt());
+      int numberOfChildren = in.readInt();
+      for (int i = 0; i < numberOfChildren; i++) {
+        node.addChild(readNode());
+      }
+      return node;
+    }
+
+    private Object readType() throws IOException {
+      String name = readString();
+      Object type = types.get(name);
+      if (type == null) {
+        type = resolveType(name);
+        types.put(name, type);
+      }
+      return type;
+    }
+
+    private Object resolveType(String name) throws IOException {
+      if (name.startsWith(RULE_PREFIX)) {
+        CompilableGrammarRule rule = rules.get(name.substring(RULE_PREFIX.length()));
+        if (rule == null) {
+          throw new IOException("Unknown rule: " + name);
+        }
+        return rule;
+      } else if (name.startsWith(ENUM_PREFIX)) {
+        int separator = name.indexOf('#');
+        if (separator == -1) {
+          throw new IOException("Malformed enum: " + name);
+        }
+        return resolveEnum(name.substring(ENUM_PREFIX.length(), separator), name.substring(separator + 1));
+      } else if (UNDEFINED_TOKEN_TYPE_NAME.equals(name)) {
+        return AstCreator.UNDEFINED_TOKEN_TYPE;
+      }
+      throw new IOException("Unknown type: " + name);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Object resolveEnum(String className, String constantName) throws IOException {
+      Class enumClass;
+      try {
+        enumClass = Class.forName(className, false, classLoader);
+      } catch (ClassNotFoundException e) {
+        throw new IOException("Unknown enum: " + className, e);
+      }
+      return Enum.valueOf(enumClass, constantName);
+    }
+
+    private Token readToken() throws IOException {
+      int id = in.readInt();
+      if (id == NULL_REFERENCE) {
+        return null;
+      } else if (id < tokens.size()) {
+        return tokens.get(id);
+      } else if (id != tokens.size()) {
+        throw new IOException("Unexpected token reference: " + id);
+      }
+      // reserve place for a token, because nested tokens from trivia will be read before its construction
+      tokens.add(null);
+
+      Object type = readType();
+      if (!(type instanceof TokenType)) {
+        throw new IOException("Not a TokenType: " + type);
+      }
+      Token.Builder builder = Token.builder()
+          .setType((TokenType) type)
+          .setValueAndOriginalValue(readString(), readString())
+          .setURI(readURI())
+          .setLine(in.readInt())
+          .setColumn(in.readInt())
+          .setGeneratedCode(in.readBoolean());
+      if (in.readBoolean()) {
+        builder.setCopyBook(readString(), in.readInt());
+      } else {
+        builder.notCopyBook();
+      }
+      int numberOfTrivia = in.readInt();
+      for (int i = 0; i < numberOfTrivia; i++) {
+        builder.addTrivia(readTrivia());
+      }
+      Token token = builder.build();
+      tokens.set(id, token);
+      return token;
+    }
+
+    private URI readURI() throws IOException {
+      if (in.readBoolean()) {
+        if (inputUri == null) {
+          throw new IOException("URI of input is required");
+        }
+        return inputUri;
+      }
+      try {
+        return new URI(readString());
+      } catch (URISyntaxException e) {
+        throw new IOException(e);
+      }
+    }
+
+    private Trivia readTrivia() throws IOException {
+      byte kind = in.readByte();
+      int numberOfTokens = in.readInt();
+      List<Token> triviaTokens = Lists.newArrayListWithCapacity(numberOfTokens);
+      for (int i = 0; i < numberOfTokens; i++) {
+        triviaTokens.add(readToken());
+      }
+      switch (kind) {
+        case TRIVIA_COMMENT:
+          return Trivia.createComment(triviaTokens.get(0));
+        case TRIVIA_SKIPPED_TEXT:
+          return Trivia.createSkippedText(triviaTokens);
+        case TRIVIA_PREPROCESSOR:
+          return Trivia.createPreprocessingToken(triviaTokens.get(0));
+        default:
+          throw new IOException("Unknown kind of trivia: " + kind);
+      }
+    }
+
+    private String readString() throws IOException {
+      int id = in.readInt();
+      if (id < strings.size()) {
+        return strings.get(id);
+      } else if (id != strings.size()) {
+        throw new IOException("Unexpected string reference: " + id);
+      }
+      int length = in.readInt();
+      byte[] bytes = new byte[length];
+      in.readFully(bytes);
+      String s = new String(bytes, Charsets.UTF_8);
+      strings.add(s);
+      return s;
+    }
+
+  }
+
+}
@@ -19,37 +19,16 @@
  */
 package org.sonar.sslr.internal.matchers;
 
-import com.google.common.collect.Lists;
-
-import java.util.Arrays;
-import java.util.List;
+import org.sonar.sslr.internal.text.LineIndex;
 
 public class ImmutableInputBuffer implements InputBuffer {
 
   private final char[] buffer;
-
-  /**
-   * Indices of lines in buffer.
-   */
-  private final int[] lines;
+  private final LineIndex lineIndex;
 
   public ImmutableInputBuffer(char[] buffer) {
     this.buffer = buffer;
-
-    List<Integer> newlines = Lists.newArrayList();
-    int i = 0;
-    newlines.add(0);
-    while (i < buffer.length) {
-      if (isEndOfLine(buffer, i)) {
-        newlines.add(i + 1);
-      }
-      i++;
-    }
-    newlines.add(i);
-    this.lines = new int[newlines.size()];
-    for (i = 0; i < newlines.size(); i++) {
-      this.lines[i] = newlines.get(i);
-    }
+    this.lineIndex = LineIndex.of(buffer);
   }
 
   public int length() {
@@ -60,34 +39,19 @@ public class ImmutableInputBuffer implements InputBuffer {
     return buffer[i];
   }
 
-  /**
-   * A line is considered to be terminated by any one of
-   * a line feed ({@code '\n'}), a carriage return ({@code '\r'}),
-   * or a carriage return followed immediately by a line feed ({@code "\r\n"}).
-   */
-  private static boolean isEndOfLine(char[] buffer, int i) {
-    return buffer[i] == TextUtils.LF ||
-        (buffer[i] == TextUtils.CR && (((i + 1 < buffer.length) && buffer[i + 1] != TextUtils.LF) || i + 1 == buffer.length));
-  }
-
   public String extractLine(int lineNumber) {
-    int start = lines[lineNumber - 1];
-    int end = lines[lineNumber];
+    int start = lineIndex.getLineStart(lineNumber);
+    int end = lineIndex.getLineEnd(lineNumber);
     return new String(buffer, start, end - start);
   }
 
   public int getLineCount() {
-    return lines.length - 1;
-  }
-
-  private int getLineNumber(int index) {
-    int i = Arrays.binarySearch(lines, index);
-    return Math.min(i >= 0 ? i + 1 : -(i + 1), getLineCount());
+    return lineIndex.getLineCount();
   }
 
   public Position getPosition(int index) {
-    int line = getLineNumber(index);
-    int column = index - lines[line - 1] + 1;
+    int line = lineIndex.getLineNumber(index);
+    int column = index - lineIndex.getLineStart(line) + 1;
     return new Position(line, column);
   }
 
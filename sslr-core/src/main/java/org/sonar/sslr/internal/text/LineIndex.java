@@ -0,0 +1,117 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.text;
+
+import org.sonar.sslr.text.Texts;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+/**
+ * Index of starts of lines, which is computed in a single pass over characters and allows to convert
+ * line number to offset in constant time and offset to line number in logarithmic time.
+ *
+ * <p>A line is considered to be terminated by any one of
+ * a line feed ({@code '\n'}), a carriage return ({@code '\r'}),
+ * or a carriage return followed immediately by a line feed ({@code "\r\n"}).
+ * Text ending with line terminator has an empty last line.</p>
+ */
+public final class LineIndex {
+
+  private static final int[] FIRST_LINE_ONLY = new int[] {0};
+
+  /**
+   * Offsets of first characters of lines.
+   */
+  private final int[] lineStarts;
+  private final int length;
+
+  private LineIndex(int[] lineStarts, int length) {
+    this.lineStarts = lineStarts;
+    this.length = length;
+  }
+
+  public static LineIndex of(char[] chars) {
+    return of(CharBuffer.wrap(chars));
+  }
+
+  public static LineIndex of(CharSequence chars) {
+    int length = chars.length();
+    int[] lineStarts = FIRST_LINE_ONLY;
+    int lineCount = 1;
+    for (int i = 0; i < length; i++) {
+      char c = chars.charAt(i);
+      if (c == Texts.LF || c == Texts.CR && (i + 1 == length || chars.charAt(i + 1) != Texts.LF)) {
+        if (lineCount == lineStarts.length) {
+          lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+        }
+        lineStarts[lineCount] = i + 1;
+        lineCount++;
+      }
+    }
+    if (lineCount != lineStarts.length) {
+      lineStarts = Arrays.copyOf(lineStarts, lineCount);
+    }
+    return new LineIndex(lineStarts, length);
+  }
+
+  /**
+   * @return length of indexed text
+   */
+  public int length() {
+    return length;
+  }
+
+  public int getLineCount() {
+    return lineStarts.length;
+  }
+
+  /**
+   * @param line line number starting from 1
+   * @return offset of first character of given line
+   */
+  public int getLineStart(int line) {
+    checkElementIndex(line - 1, lineStarts.length, "line");
+    return lineStarts[line - 1];
+  }
+
+  /**
+   * @param line line number starting from 1
+   * @return offset of first character of next line or length of text for last line, i.e. line terminator is included
+   */
+  public int getLineEnd(int line) {
+    checkElementIndex(line - 1, lineStarts.length, "line");
+    return line == lineStarts.length ? length : lineStarts[line];
+  }
+
+  /**
+   * @param offset non-negative offset, offsets after end of text considered as belonging to last line
+   * @return number of line starting from 1, which contains given offset
+   */
+  public int getLineNumber(int offset) {
+    checkArgument(offset >= 0, "offset must not be negative");
+    int i = Arrays.binarySearch(lineStarts, offset);
+    return i >= 0 ? i + 1 : -(i + 1);
+  }
+
+}
@@ -26,40 +26,26 @@ import javax.annotation.Nullable;
 
 import java.io.File;
 import java.net.URI;
-import java.util.Arrays;
 
 public class LocatedText extends PlainText {
 
   private final File file;
   private final URI uri;
 
-  /**
-   * Indices of lines.
-   * Number of elements equal to number of line terminators.
-   */
-  private final int[] lines;
+  private final LineIndex lineIndex;
 
   public LocatedText(@Nullable File file, char[] chars) {
     super(chars);
     this.file = file;
     this.uri = file == null ? null : file.toURI();
-    this.lines = TextUtils.computeLines(chars);
+    this.lineIndex = LineIndex.of(chars);
   }
 
   public TextLocation getLocation(int index) {
     Preconditions.checkPositionIndex(index, length());
-    int line = getLineNumber(index);
-    int column = index - getLineStart(line) + 1;
+    int line = lineIndex.getLineNumber(index);
+    int column = index - lineIndex.getLineStart(line) + 1;
     return new TextLocation(file, uri, line, column);
   }
 
-  private int getLineNumber(int index) {
-    int i = Arrays.binarySearch(lines, index);
-    return i >= 0 ? i + 2 : -i;
-  }
-
-  private int getLineStart(int line) {
-    return line == 1 ? 0 : lines[line - 2];
-  }
-
 }
@@ -0,0 +1,84 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import java.util.BitSet;
+
+/**
+ * Immutable set of characters, which is used to take decisions by one character of lookahead.
+ */
+public final class CharacterSet {
+
+  private static final int ASCII = 128;
+
+  private final boolean[] ascii = new boolean[ASCII];
+  private final BitSet characters;
+
+  CharacterSet(BitSet characters) {
+    this.characters = (BitSet) characters.clone();
+    for (int c = 0; c < ASCII; c++) {
+      ascii[c] = characters.get(c);
+    }
+  }
+
+  public boolean contains(char c) {
+    return c < ASCII ? ascii[c] : characters.get(c);
+  }
+
+  /**
+   * @return set as a regular expression character class, e.g. {@code [0-9a-z_]}
+   */
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("[");
+    int from = characters.nextSetBit(0);
+    while (from >= 0) {
+      int to = characters.nextClearBit(from) - 1;
+      append(sb, from);
+      if (to > from) {
+        if (to > from + 1) {
+          sb.append('-');
+        }
+        append(sb, to);
+      }
+      from = characters.nextSetBit(to + 1);
+    }
+    return sb.append(']').toString();
+  }
+
+  private static void append(StringBuilder sb, int c) {
+    if (c > ' ' && c < ASCII && c != '\\' && c != ']' && c != '-' && c != '[' && c != '^') {
+      sb.append((char) c);
+    } else {
+      sb.append(String.format("\\u%04X", c));
+    }
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return (obj instanceof CharacterSet) && characters.equals(((CharacterSet) obj).characters);
+  }
+
+  @Override
+  public int hashCode() {
+    return characters.hashCode();
+  }
+
+}
@@ -30,6 +30,8 @@ public interface CompilableGrammarRule extends Matcher, Rule, ParsingExpression
 
   GrammarRuleKey getRuleKey();
 
+  String getName();
+
   void setExpression(ParsingExpression expression);
 
   ParsingExpression getExpression();
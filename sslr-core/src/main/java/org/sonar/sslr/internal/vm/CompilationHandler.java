@@ -19,10 +19,33 @@
  */
 package org.sonar.sslr.internal.vm;
 
+import javax.annotation.Nullable;
+
+import java.util.List;
+
 public class CompilationHandler {
 
   public Instruction[] compile(ParsingExpression expression) {
     return expression.compile(this);
   }
 
+  /**
+   * @return sets of first characters of given alternatives, if choice between them can be taken by one character of lookahead
+   * without backtracking, null otherwise
+   */
+  @Nullable
+  public CharacterSet[] choiceLookahead(List<ParsingExpression> alternatives) {
+    return null;
+  }
+
+  /**
+   * @param expression optional or repetition
+   * @return set of first characters of its subexpression, if decision whether to match subexpression can be taken
+   * by one character of lookahead without backtracking, null otherwise
+   */
+  @Nullable
+  public CharacterSet successLookahead(ParsingExpression expression) {
+    return null;
+  }
+
 }
@@ -46,6 +46,10 @@ public class CompiledGrammar {
     return rules.get(ruleKey);
   }
 
+  public Map<GrammarRuleKey, CompilableGrammarRule> getRules() {
+    return rules;
+  }
+
   public GrammarRuleKey getRootRuleKey() {
     return rootRuleKey;
   }
@@ -54,4 +58,11 @@ public class CompiledGrammar {
     return rootRuleOffset;
   }
 
+  /**
+   * @return grammar, which should be used to locate and report errors, when parse with this grammar fails
+   */
+  public CompiledGrammar getErrorReportingGrammar() {
+    return this;
+  }
+
 }
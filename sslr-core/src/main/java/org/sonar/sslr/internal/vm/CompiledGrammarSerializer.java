@@ -0,0 +1,513 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.sonar.sslr.api.AstNodeSkippingPolicy;
+import com.sonar.sslr.api.TokenType;
+import com.sonar.sslr.api.Trivia.TriviaKind;
+import com.sonar.sslr.impl.ast.AlwaysSkipFromAst;
+import com.sonar.sslr.impl.ast.NeverSkipFromAst;
+import com.sonar.sslr.impl.ast.SkipFromAstIfOnlyOneChild;
+import org.sonar.sslr.grammar.GrammarRuleKey;
+import org.sonar.sslr.internal.grammar.MutableParsingRule;
+import org.sonar.sslr.internal.matchers.Matcher;
+import org.sonar.sslr.internal.vm.Instruction.BackCommitInstruction;
+import org.sonar.sslr.internal.vm.Instruction.BacktrackInstruction;
+import org.sonar.sslr.internal.vm.Instruction.CallInstruction;
+import org.sonar.sslr.internal.vm.Instruction.ChoiceInstruction;
+import org.sonar.sslr.internal.vm.Instruction.CommitInstruction;
+import org.sonar.sslr.internal.vm.Instruction.CommitVerifyInstruction;
+import org.sonar.sslr.internal.vm.Instruction.EndInstruction;
+import org.sonar.sslr.internal.vm.Instruction.FailTwiceInstruction;
+import org.sonar.sslr.internal.vm.Instruction.IgnoreErrorsInstruction;
+import org.sonar.sslr.internal.vm.Instruction.JumpInstruction;
+import org.sonar.sslr.internal.vm.Instruction.PredicateChoiceInstruction;
+import org.sonar.sslr.internal.vm.Instruction.RetInstruction;
+
+import javax.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary serialization of {@link CompiledGrammar} of lexerless grammar,
+ * which allows to skip construction and compilation of grammar at startup.
+ *
+ * <p>Rule keys, token types and kinds of trivia are referenced by name:
+ * enums - by name of class and name of constant, rules, which are keys for themselves - by name of rule.
+ * Instructions are serialized as is, so that after deserialization grammar has exactly the same instructions,
+ * however rules don't have expressions, so can't be compiled again.</p>
+ */
+public final class CompiledGrammarSerializer {
+
+  private static final int MAGIC = 0x53534c47;
+  private static final int VERSION = 1;
+
+  private static final String RULE_PREFIX = "R:";
+  private static final String ENUM_PREFIX = "E:";
+
+  private static final byte NEVER_SKIP = 0;
+  private static final byte ALWAYS_SKIP = 1;
+  private static final byte SKIP_IF_ONLY_ONE_CHILD = 2;
+
+  private static final byte MATCHER_RULE = 0;
+  private static final byte MATCHER_TOKEN = 1;
+  private static final byte MATCHER_TRIVIA = 2;
+
+  private static final byte JUMP = 0;
+  private static final byte CALL = 1;
+  private static final byte RET = 2;
+  private static final byte BACKTRACK = 3;
+  private static final byte END = 4;
+  private static final byte CHOICE = 5;
+  private static final byte PREDICATE_CHOICE = 6;
+  private static final byte COMMIT = 7;
+  private static final byte COMMIT_VERIFY = 8;
+  private static final byte FAIL_TWICE = 9;
+  private static final byte BACK_COMMIT = 10;
+  private static final byte IGNORE_ERRORS = 11;
+  private static final byte STRING = 12;
+  private static final byte STRING_TRIE = 13;
+  private static final byte PATTERN = 14;
+  private static final byte END_OF_INPUT = 15;
+  private static final byte NOTHING = 16;
+  private static final byte CUT = 17;
+
+  private CompiledGrammarSerializer() {
+  }
+
+  /**
+   * @return serialized grammar or null, if grammar contains something, which can't be serialized,
+   * e.g. lexerful expressions, rule keys or token types which are not enums, or custom {@link AstNodeSkippingPolicy}
+   */
+  @Nullable
+  public static byte[] serialize(CompiledGrammar grammar) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try {
+      new Writer(new DataOutputStream(bytes)).write(grammar);
+    } catch (NotSerializableException e) {
+      return null;
+    } catch (IOException e) {
+      // Can't happen for ByteArrayOutputStream
+      throw new IllegalStateException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * @param classLoader used to load enums, which were used as rule keys, token types and kinds of trivia
+   * @throws IOException if data is corrupted
+   */
+  public static CompiledGrammar deserialize(byte[] data, ClassLoader classLoader) throws IOException {
+    try {
+      return new Reader(new DataInputStream(new ByteArrayInputStream(data)), classLoader).read();
+    } catch (RuntimeException e) {
+      throw new IOException("Unable to deserialize grammar", e);
+    }
+  }
+
+  private static final class Writer {
+
+    private final DataOutputStream out;
+    private final Map<Object, Integer> rules = new IdentityHashMap<Object, Integer>();
+    private final Map<Object, Integer> matchers = new IdentityHashMap<Object, Integer>();
+    private final Map<String, Integer> strings = Maps.newHashMap();
+
+    public Writer(DataOutputStream out) {
+      this.out = out;
+    }
+
+    public void write(CompiledGrammar grammar) throws IOException {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+
+      out.writeInt(grammar.getRules().size());
+      for (Map.Entry<GrammarRuleKey, CompilableGrammarRule> entry : grammar.getRules().entrySet()) {
+        writeRule(entry.getKey(), entry.getValue());
+      }
+      out.writeInt(rules.get(grammar.getRules().get(grammar.getRootRuleKey())));
+      out.writeInt(grammar.getRootRuleOffset());
+
+      Instruction[] instructions = grammar.getInstructions();
+      out.writeInt(instructions.length);
+      for (Instruction instruction : instructions) {
+        writeInstruction(instruction);
+      }
+      out.flush();
+    }
+
+    private void writeRule(GrammarRuleKey ruleKey, CompilableGrammarRule rule) throws IOException {
+      if (!(rule instanceof MutableParsingRule)) {
+        throw new NotSerializableException(rule.getName());
+      }
+      MutableParsingRule mutableParsingRule = (MutableParsingRule) rule;
+      if (ruleKey == rule) {
+        writeString(RULE_PREFIX + rule.getName());
+      } else if (ruleKey instanceof Enum) {
+        writeEnum((Enum<?>) ruleKey);
+      } else {
+        throw new NotSerializableException(rule.getName());
+      }
+      out.writeBoolean(mutableParsingRule.shouldMemoize());
+      AstNodeSkippingPolicy skippingPolicy = mutableParsingRule.getAstNodeSkippingPolicy();
+      if (skippingPolicy == NeverSkipFromAst.INSTANCE) {
+        out.writeByte(NEVER_SKIP);
+      } else if (skippingPolicy == AlwaysSkipFromAst.INSTANCE) {
+        out.writeByte(ALWAYS_SKIP);
+      } else if (skippingPolicy == SkipFromAstIfOnlyOneChild.INSTANCE) {
+        out.writeByte(SKIP_IF_ONLY_ONE_CHILD);
+      } else {
+        throw new NotSerializableException(String.valueOf(skippingPolicy));
+      }
+      rules.put(rule, rules.size());
+    }
+
+    private void writeEnum(Object object) throws IOException {
+      if (!(object instanceof Enum)) {
+        throw new NotSerializableException(String.valueOf(object));
+      }
+      Enum<?> constant = (Enum<?>) object;
+      writeString(ENUM_PREFIX + constant.getDeclaringClass().getName() + "#" + constant.name());
+    }
+
+    private void writeInstruction(Instruction instruction) throws IOException {
+      if (instruction instanceof JumpInstruction) {
+        writeOffset(JUMP, ((JumpInstruction) instruction).getOffset());
+      } else if (instruction instanceof CallInstruction) {
+        CallInstruction call = (CallInstruction) instruction;
+        writeOffset(CALL, call.getOffset());
+        writeMatcher(call.getMatcher());
+      } else if (instruction instanceof RetInstruction) {
+        out.writeByte(RET);
+      } else if (instruction instanceof BacktrackInstruction) {
+        out.writeByte(BACKTRACK);
+      } else if (instruction instanceof EndInstruction) {
+        out.writeByte(END);
+      } else if (instruction instanceof ChoiceInstruction) {
+        writeOffset(CHOICE, ((ChoiceInstruction) instruction).getOffset());
+      } else if (instruction instanceof PredicateChoiceInstruction) {
+        writeOffset(PREDICATE_CHOICE, ((PredicateChoiceInstruction) instruction).getOffset());
+      } else if (instruction instanceof CommitInstruction) {
+        writeOffset(COMMIT, ((CommitInstruction) instruction).getOffset());
+      } else if (instruction instanceof CommitVerifyInstruction) {
+        writeOffset(COMMIT_VERIFY, ((CommitVerifyInstruction) instruction).getOffset());
+      } else if (instruction instanceof FailTwiceInstruction) {
+        out.writeByte(FAIL_TWICE);
+      } else if (instruction instanceof BackCommitInstruction) {
+        writeOffset(BACK_COMMIT, ((BackCommitInstruction) instruction).getOffset());
+      } else if (instruction instanceof IgnoreErrorsInstruction) {
+        out.writeByte(IGNORE_ERRORS);
+      } else {
+        writeNativeExpression(instruction);
+      }
+    }
+
+    private void writeNativeExpression(Instruction instruction) throws IOException {
+      if (instruction instanceof StringExpression) {
+        out.writeByte(STRING);
+        writeString(((StringExpression) instruction).getString());
+      } else if (instruction instanceof StringTrieExpression) {
+        out.writeByte(STRING_TRIE);
+        List<StringExpression> subExpressions = ((StringTrieExpression) instruction).getSubExpressions();
+        out.writeInt(subExpressions.size());
+        for (StringExpression subExpression : subExpressions) {
+          writeString(subExpression.getString());
+        }
+      } else if (instruction instanceof PatternExpression) {
+        out.writeByte(PATTERN);
+        writeString(((PatternExpression) instruction).getRegex());
+      } else if (instruction == EndOfInputExpression.INSTANCE) {
+        out.writeByte(END_OF_INPUT);
+      } else if (instruction == NothingExpression.INSTANCE) {
+        out.writeByte(NOTHING);
+      } else if (instruction == CutExpression.INSTANCE) {
+        out.writeByte(CUT);
+      } else {
+        throw new NotSerializableException(instruction.toString());
+      }
+    }
+
+    private void writeOffset(byte opcode, int offset) throws IOException {
+      out.writeByte(opcode);
+      out.writeInt(offset);
+    }
+
+    private void writeMatcher(Matcher matcher) throws IOException {
+      Integer id = matchers.get(matcher);
+      if (id != null) {
+        out.writeInt(id);
+        return;
+      }
+      id = matchers.size();
+      matchers.put(matcher, id);
+      out.writeInt(id);
+
+      Integer ruleId = rules.get(matcher);
+      if (ruleId != null) {
+        out.writeByte(MATCHER_RULE);
+        out.writeInt(ruleId);
+      } else if (matcher instanceof TokenExpression) {
+        TokenExpression tokenExpression = (TokenExpression) matcher;
+        out.writeByte(MATCHER_TOKEN);
+        writeEnum(tokenExpression.getTokenType());
+        writeString(String.valueOf(tokenExpression.getSubExpression()));
+      } else if (matcher instanceof TriviaExpression) {
+        TriviaExpression triviaExpression = (TriviaExpression) matcher;
+        out.writeByte(MATCHER_TRIVIA);
+        writeEnum(triviaExpression.getTriviaKind());
+        writeString(String.valueOf(triviaExpression.getSubExpression()));
+      } else {
+        throw new NotSerializableException(String.valueOf(matcher));
+      }
+    }
+
+    private void writeString(String s) throws IOException {
+      Integer id = strings.get(s);
+      if (id != null) {
+        out.writeInt(id);
+        return;
+      }
+      id = strings.size();
+      strings.put(s, id);
+      out.writeInt(id);
+      byte[] bytes = s.getBytes(Charsets.UTF_8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+
+  }
+
+  private static final class Reader {
+
+    private final DataInputStream in;
+    private final ClassLoader classLoader;
+    private final List<MutableParsingRule> rules = Lists.newArrayList();
+    private final List<Matcher> matchers = Lists.newArrayList();
+    private final List<String> strings = Lists.newArrayList();
+
+    public Reader(DataInputStream in, ClassLoader classLoader) {
+      this.in = in;
+      this.classLoader = classLoader;
+    }
+
+    public CompiledGrammar read() throws IOException {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException("Unsupported format");
+      }
+
+      Map<GrammarRuleKey, CompilableGrammarRule> rulesByKey = Maps.newHashMap();
+      int numberOfRules = in.readInt();
+      for (int i = 0; i < numberOfRules; i++) {
+        MutableParsingRule rule = readRule();
+        rules.add(rule);
+        rulesByKey.put(rule.getRuleKey(), rule);
+      }
+      GrammarRuleKey rootRuleKey = rules.get(in.readInt()).getRuleKey();
+      int rootRuleOffset = in.readInt();
+
+      Instruction[] instructions = new Instruction[in.readInt()];
+      for (int i = 0; i < instructions.length; i++) {
+        instructions[i] = readInstruction();
+      }
+      return new CompiledGrammar(instructions, rulesByKey, rootRuleKey, rootRuleOffset);
+    }
+
+    private MutableParsingRule readRule() throws IOException {
+      String key = readString();
+      MutableParsingRule rule;
+      if (key.startsWith(RULE_PREFIX)) {
+        rule = new MutableParsingRule(key.substring(RULE_PREFIX.length()));
+      } else {
+        Object ruleKey = readEnum(key);
+        if (!(ruleKey instanceof GrammarRuleKey)) {
+          throw new IOException("Not a GrammarRuleKey: " + key);
+        }
+        rule = new MutableParsingRule((GrammarRuleKey) ruleKey);
+      }
+      if (!in.readBoolean()) {
+        rule.disableMemoization();
+      }
+      byte skippingPolicy = in.readByte();
+      switch (skippingPolicy) {
+        case NEVER_SKIP:
+          break;
+        case ALWAYS_SKIP:
+          rule.skip();
+          break;
+        case SKIP_IF_ONLY_ONE_CHILD:
+          rule.skipIfOneChild();
+          break;
+        default:
+          throw new IOException("Unknown skipping policy: " + skippingPolicy);
+      }
+      return rule;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Object readEnum(String name) throws IOException {
+      int separator = name.indexOf('#');
+      if (!name.startsWith(ENUM_PREFIX) || separator == -1) {
+        throw new IOException("Malformed enum: " + name);
+      }
+      String className = name.substring(ENUM_PREFIX.length(), separator);
+      Class enumClass;
+      try {
+        enumClass = Class.forName(className, false, classLoader);
+      } catch (ClassNotFoundException e) {
+        throw new IOException("Unknown enum: " + className, e);
+      }
+      return Enum.valueOf(enumClass, name.substring(separator + 1));
+    }
+
+    private Instruction readInstruction() throws IOException {
+      byte opcode = in.readByte();
+      switch (opcode) {
+        case JUMP:
+          return Instruction.jump(in.readInt());
+        case CALL:
+          int offset = in.readInt();
+          return Instruction.call(offset, readMatcher());
+        case RET:
+          return Instruction.ret();
+        case BACKTRACK:
+          return Instruction.backtrack();
+        case END:
+          return Instruction.end();
+        case CHOICE:
+          return Instruction.choice(in.readInt());
+        case PREDICATE_CHOICE:
+          return Instruction.predicateChoice(in.readInt());
+        case COMMIT:
+          return Instruction.commit(in.readInt());
+        case COMMIT_VERIFY:
+          return Instruction.commitVerify(in.readInt());
+        case FAIL_TWICE:
+          return Instruction.failTwice();
+        case BACK_COMMIT:
+          return Instruction.backCommit(in.readInt());
+        case IGNORE_ERRORS:
+          return Instruction.ignoreErrors();
+        case STRING:
+          return new StringExpression(readString());
+        case STRING_TRIE:
+          List<StringExpression> subExpressions = Lists.newArrayList();
+          int numberOfSubExpressions = in.readInt();
+          for (int i = 0; i < numberOfSubExpressions; i++) {
+            subExpressions.add(new StringExpression(readString()));
+          }
+          return new StringTrieExpression(subExpressions);
+        case PATTERN:
+          return new PatternExpression(readString());
+        case END_OF_INPUT:
+          return EndOfInputExpression.INSTANCE;
+        case NOTHING:
+          return NothingExpression.INSTANCE;
+        case CUT:
+          return CutExpression.INSTANCE;
+        default:
+          throw new IOException("Unknown instruction: " + opcode);
+      }
+    }
+
+    private Matcher readMatcher() throws IOException {
+      int id = in.readInt();
+      if (id < matchers.size()) {
+        return matchers.get(id);
+      } else if (id != matchers.size()) {
+        throw new IOException("Unexpected matcher reference: " + id);
+      }
+      Matcher matcher;
+      byte kind = in.readByte();
+      switch (kind) {
+        case MATCHER_RULE:
+          matcher = rules.get(in.readInt());
+          break;
+        case MATCHER_TOKEN:
+          Object tokenType = readEnum(readString());
+          if (!(tokenType instanceof TokenType)) {
+            throw new IOException("Not a TokenType: " + tokenType);
+          }
+          matcher = new TokenExpression((TokenType) tokenType, new CompiledExpression(readString()));
+          break;
+        case MATCHER_TRIVIA:
+          Object triviaKind = readEnum(readString());
+          if (!(triviaKind instanceof TriviaKind)) {
+            throw new IOException("Not a TriviaKind: " + triviaKind);
+          }
+          matcher = new TriviaExpression((TriviaKind) triviaKind, new CompiledExpression(readString()));
+          break;
+        default:
+          throw new IOException("Unknown kind of matcher: " + kind);
+      }
+      matchers.add(matcher);
+      return matcher;
+    }
+
+    private String readString() throws IOException {
+      int id = in.readInt();
+      if (id < strings.size()) {
+        return strings.get(id);
+      } else if (id != strings.size()) {
+        throw new IOException("Unexpected string reference: " + id);
+      }
+      int length = in.readInt();
+      byte[] bytes = new byte[length];
+      in.readFully(bytes);
+      String s = new String(bytes, Charsets.UTF_8);
+      strings.add(s);
+      return s;
+    }
+
+  }
+
+  /**
+   * Stands for sub-expression of deserialized {@link TokenExpression} or {@link TriviaExpression},
+   * which was already compiled, so only its description is preserved.
+   */
+  private static final class CompiledExpression implements ParsingExpression {
+
+    private final String description;
+
+    public CompiledExpression(String description) {
+      this.description = description;
+    }
+
+    public Instruction[] compile(CompilationHandler compiler) {
+      throw new UnsupportedOperationException("Expression was already compiled: " + description);
+    }
+
+    @Override
+    public String toString() {
+      return description;
+    }
+
+  }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+/**
+ * Grammar, whose choices and repetitions, which can be decided by one character of lookahead, are compiled without backtracking.
+ * Such choices fail without trying of all alternatives, so errors are located and reported with help of grammar,
+ * which was compiled without this optimization.
+ */
+public class DeterministicCompiledGrammar extends CompiledGrammar {
+
+  private final CompiledGrammar errorReportingGrammar;
+  private final int choices;
+  private final int deterministicChoices;
+
+  DeterministicCompiledGrammar(CompiledGrammar grammar, CompiledGrammar errorReportingGrammar, int choices, int deterministicChoices) {
+    super(grammar.getInstructions(), grammar.getRules(), grammar.getRootRuleKey(), grammar.getRootRuleOffset());
+    this.errorReportingGrammar = errorReportingGrammar;
+    this.choices = choices;
+    this.deterministicChoices = deterministicChoices;
+  }
+
+  @Override
+  public CompiledGrammar getErrorReportingGrammar() {
+    return errorReportingGrammar;
+  }
+
+  /**
+   * @return number of compiled choices and repetitions, i.e. FirstOf, Optional, ZeroOrMore and OneOrMore
+   */
+  public int getChoices() {
+    return choices;
+  }
+
+  /**
+   * @return number of choices and repetitions, which were compiled without backtracking
+   */
+  public int getDeterministicChoices() {
+    return deterministicChoices;
+  }
+
+}
@@ -23,6 +23,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.sonar.sslr.impl.matcher.RuleDefinition;
 import org.sonar.sslr.internal.grammar.MutableParsingRule;
+import org.sonar.sslr.internal.matchers.Matcher;
 import org.sonar.sslr.internal.matchers.MatcherPathElement;
 
 import java.util.List;
@@ -53,12 +54,12 @@ public class ErrorReportingHandler implements MachineHandler {
     List<MatcherPathElement> list = Lists.newArrayList();
     int endIndex = machine.getIndex();
     MachineStack stack = machine.peek();
-    while (!stack.isEmpty()) {
-      if (stack.matcher() instanceof MutableParsingRule || stack.matcher() instanceof RuleDefinition) {
-        list.add(new MatcherPathElement(stack.matcher(), stack.index(), endIndex));
-        endIndex = stack.index();
+    for (int depth = stack.depth(); depth > 0; depth--) {
+      Matcher matcher = stack.matcher(depth);
+      if (matcher instanceof MutableParsingRule || matcher instanceof RuleDefinition) {
+        list.add(new MatcherPathElement(matcher, stack.index(depth), endIndex));
+        endIndex = stack.index(depth);
       }
-      stack = stack.parent();
     }
     return ImmutableList.copyOf(Lists.reverse(list));
   }
@@ -19,7 +19,10 @@
  */
 package org.sonar.sslr.internal.vm;
 
+import com.google.common.collect.Lists;
+
 import java.util.Arrays;
+import java.util.List;
 
 public class FirstOfExpression implements ParsingExpression {
 
@@ -29,6 +32,10 @@ public class FirstOfExpression implements ParsingExpression {
     this.subExpressions = subExpressions;
   }
 
+  public ParsingExpression[] getSubExpressions() {
+    return subExpressions;
+  }
+
   /**
    * Compiles this expression into a sequence of instructions:
    * <pre>
@@ -44,18 +51,41 @@ public class FirstOfExpression implements ParsingExpression {
    * L3: subExpression[3]
    * E: ...
    * </pre>
+   * Nested FirstOf are flattened, and consecutive {@link StringExpression}s are replaced by a single {@link StringTrieExpression}.
+   * When alternatives can be distinguished by one character of lookahead, then compiled without backtracking:
+   * <pre>
+   * Switch L1 L2 L3
+   * L1: subExpression[0]
+   * Jump E
+   * L2: subExpression[1]
+   * Jump E
+   * L3: subExpression[2]
+   * E: ...
+   * </pre>
    */
   public Instruction[] compile(CompilationHandler compiler) {
+    List<ParsingExpression> alternatives = Lists.newArrayList();
+    List<StringExpression> strings = Lists.newArrayList();
+    flatten(alternatives, strings);
+    addStrings(alternatives, strings);
+    if (alternatives.size() == 1) {
+      return compiler.compile(alternatives.get(0));
+    }
+
     int index = 0;
-    Instruction[][] sub = new Instruction[subExpressions.length][];
-    for (int i = 0; i < subExpressions.length; i++) {
-      sub[i] = compiler.compile(subExpressions[i]);
+    Instruction[][] sub = new Instruction[alternatives.size()][];
+    for (int i = 0; i < sub.length; i++) {
+      sub[i] = compiler.compile(alternatives.get(i));
       index += sub[i].length;
     }
-    Instruction[] result = new Instruction[index + (subExpressions.length - 1) * 2];
+    CharacterSet[] lookahead = compiler.choiceLookahead(alternatives);
+    if (lookahead != null) {
+      return compileSwitch(sub, index, lookahead);
+    }
+    Instruction[] result = new Instruction[index + (sub.length - 1) * 2];
 
     index = 0;
-    for (int i = 0; i < subExpressions.length - 1; i++) {
+    for (int i = 0; i < sub.length - 1; i++) {
       result[index] = Instruction.choice(sub[i].length + 2);
       System.arraycopy(sub[i], 0, result, index + 1, sub[i].length);
       index += sub[i].length + 1;
@@ -67,6 +97,45 @@ public class FirstOfExpression implements ParsingExpression {
     return result;
   }
 
+  private static Instruction[] compileSwitch(Instruction[][] sub, int length, CharacterSet[] lookahead) {
+    Instruction[] result = new Instruction[length + sub.length];
+    int[] offsets = new int[sub.length];
+    int index = 1;
+    for (int i = 0; i < sub.length; i++) {
+      offsets[i] = index;
+      System.arraycopy(sub[i], 0, result, index, sub[i].length);
+      index += sub[i].length;
+      if (i < sub.length - 1) {
+        result[index] = Instruction.jump(result.length - index);
+        index++;
+      }
+    }
+    result[0] = Instruction.switchOf(lookahead, offsets);
+    return result;
+  }
+
+  private void flatten(List<ParsingExpression> alternatives, List<StringExpression> strings) {
+    for (ParsingExpression subExpression : subExpressions) {
+      if (subExpression instanceof FirstOfExpression) {
+        ((FirstOfExpression) subExpression).flatten(alternatives, strings);
+      } else if (subExpression instanceof StringExpression) {
+        strings.add((StringExpression) subExpression);
+      } else {
+        addStrings(alternatives, strings);
+        alternatives.add(subExpression);
+      }
+    }
+  }
+
+  private static void addStrings(List<ParsingExpression> alternatives, List<StringExpression> strings) {
+    if (strings.size() == 1) {
+      alternatives.add(strings.get(0));
+    } else if (strings.size() > 1) {
+      alternatives.add(new StringTrieExpression(strings));
+    }
+    strings.clear();
+  }
+
   @Override
   public String toString() {
     return "FirstOf" + Arrays.toString(subExpressions);
@@ -0,0 +1,119 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import com.sonar.sslr.api.AstNodeSkippingPolicy;
+import com.sonar.sslr.impl.ast.AlwaysSkipFromAst;
+import com.sonar.sslr.impl.ast.NeverSkipFromAst;
+import com.sonar.sslr.impl.ast.SkipFromAstIfOnlyOneChild;
+import com.sonar.sslr.impl.matcher.RuleDefinition;
+import org.sonar.sslr.grammar.GrammarRuleKey;
+import org.sonar.sslr.internal.grammar.MutableParsingRule;
+import org.sonar.sslr.internal.vm.Instruction.CallInstruction;
+
+import javax.annotation.Nullable;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+
+/**
+ * Computes digest of {@link CompiledGrammar}, which changes whenever instructions or rules of grammar change,
+ * including policies of skipping of rules from AST, so can be used to invalidate data derived from results of parsing.
+ */
+public final class GrammarFingerprint {
+
+  /**
+   * Should be incremented on any change in a way how fingerprint is computed.
+   */
+  private static final String FORMAT_VERSION = "2";
+
+  private GrammarFingerprint() {
+  }
+
+  /**
+   * @return digest, or null if grammar contains rule with custom {@link AstNodeSkippingPolicy},
+   * whose effect on AST can't be captured by digest
+   */
+  @Nullable
+  public static byte[] compute(CompiledGrammar grammar) {
+    MessageDigest digest = newDigest();
+    update(digest, FORMAT_VERSION);
+    for (Instruction instruction : grammar.getInstructions()) {
+      update(digest, instruction.toString());
+      if (instruction instanceof CallInstruction) {
+        update(digest, ((CallInstruction) instruction).getMatcher().toString());
+      }
+    }
+    Map<String, String> skippingPolicies = Maps.newTreeMap();
+    for (CompilableGrammarRule rule : grammar.getRules().values()) {
+      String skippingPolicy = skippingPolicyName(rule);
+      if (skippingPolicy == null) {
+        return null;
+      }
+      skippingPolicies.put(rule.getName(), skippingPolicy);
+    }
+    for (Map.Entry<String, String> entry : skippingPolicies.entrySet()) {
+      update(digest, entry.getKey());
+      update(digest, entry.getValue());
+    }
+    GrammarRuleKey rootRuleKey = grammar.getRootRuleKey();
+    update(digest, grammar.getRules().get(rootRuleKey).getName());
+    return digest.digest();
+  }
+
+  @Nullable
+  private static String skippingPolicyName(CompilableGrammarRule rule) {
+    AstNodeSkippingPolicy skippingPolicy;
+    if (rule instanceof MutableParsingRule) {
+      skippingPolicy = ((MutableParsingRule) rule).getAstNodeSkippingPolicy();
+    } else if (rule instanceof RuleDefinition) {
+      skippingPolicy = ((RuleDefinition) rule).getAstNodeSkippingPolicy();
+    } else {
+      return null;
+    }
+    if (skippingPolicy == NeverSkipFromAst.INSTANCE) {
+      return "never";
+    } else if (skippingPolicy == AlwaysSkipFromAst.INSTANCE) {
+      return "always";
+    } else if (skippingPolicy == SkipFromAstIfOnlyOneChild.INSTANCE) {
+      return "ifOnlyOneChild";
+    }
+    return null;
+  }
+
+  private static void update(MessageDigest digest, String s) {
+    digest.update(s.getBytes(Charsets.UTF_8));
+    // separator, so that concatenation of different strings can't produce same digest
+    digest.update((byte) 0);
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      // Can't happen - every implementation of the Java platform is required to support SHA-1
+      throw new IllegalStateException(e);
+    }
+  }
+
+}
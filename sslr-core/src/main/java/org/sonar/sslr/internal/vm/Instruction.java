@@ -23,6 +23,7 @@ import com.google.common.base.Objects;
 import org.sonar.sslr.grammar.GrammarException;
 import org.sonar.sslr.internal.matchers.Matcher;
 
+import java.util.Arrays;
 import java.util.List;
 
 public abstract class Instruction {
@@ -87,6 +88,14 @@ public abstract class Instruction {
     return IGNORE_ERRORS;
   }
 
+  public static Instruction switchOf(CharacterSet[] sets, int[] offsets) {
+    return new SwitchInstruction(sets, offsets);
+  }
+
+  public static Instruction test(CharacterSet set, int offset) {
+    return new TestInstruction(set, offset);
+  }
+
   /**
    * Executes this instruction.
    */
@@ -99,6 +108,10 @@ public abstract class Instruction {
       this.offset = offset;
     }
 
+    public int getOffset() {
+      return offset;
+    }
+
     @Override
     public void execute(Machine machine) {
       machine.jump(offset);
@@ -129,11 +142,19 @@ public abstract class Instruction {
       this.matcher = matcher;
     }
 
+    public int getOffset() {
+      return offset;
+    }
+
     @Override
     public void execute(Machine machine) {
       machine.pushReturn(1, matcher, offset);
     }
 
+    public Matcher getMatcher() {
+      return matcher;
+    }
+
     @Override
     public String toString() {
       return "Call " + offset;
@@ -162,6 +183,10 @@ public abstract class Instruction {
       this.offset = offset;
     }
 
+    public int getOffset() {
+      return offset;
+    }
+
     @Override
     public void execute(Machine machine) {
       machine.pushBacktrack(offset);
@@ -208,6 +233,10 @@ public abstract class Instruction {
       this.offset = offset;
     }
 
+    public int getOffset() {
+      return offset;
+    }
+
     @Override
     public void execute(Machine machine) {
       machine.setIgnoreErrors(true);
@@ -238,12 +267,14 @@ public abstract class Instruction {
       this.offset = offset;
     }
 
+    public int getOffset() {
+      return offset;
+    }
+
     @Override
     public void execute(Machine machine) {
-      // add all nodes to parent
-      machine.peek().parent().subNodes().addAll(machine.peek().subNodes());
-
-      machine.pop();
+      // nodes are kept and become nodes of parent
+      machine.commit();
       machine.jump(offset);
     }
 
@@ -270,16 +301,18 @@ public abstract class Instruction {
       this.offset = offset;
     }
 
+    public int getOffset() {
+      return offset;
+    }
+
     @Override
     public void execute(Machine machine) {
       if (machine.getIndex() == machine.peek().index()) {
         // TODO better message, e.g. dump stack
         throw new GrammarException("The inner part of ZeroOrMore and OneOrMore must not allow empty matches");
       }
-      // add all nodes to parent
-      machine.peek().parent().subNodes().addAll(machine.peek().subNodes());
-
-      machine.pop();
+      // nodes are kept and become nodes of parent
+      machine.commit();
       machine.jump(offset);
     }
 
@@ -302,7 +335,10 @@ public abstract class Instruction {
   public static final class RetInstruction extends Instruction {
     @Override
     public void execute(Machine machine) {
-      machine.createNode();
+      if (!machine.createNode()) {
+        // left recursive rule will be evaluated again
+        return;
+      }
       MachineStack stack = machine.peek();
       machine.setIgnoreErrors(stack.isIgnoreErrors());
       machine.setAddress(stack.address());
@@ -364,6 +400,10 @@ public abstract class Instruction {
       this.offset = offset;
     }
 
+    public int getOffset() {
+      return offset;
+    }
+
     @Override
     public void execute(Machine machine) {
       MachineStack stack = machine.peek();
@@ -389,4 +429,96 @@ public abstract class Instruction {
     }
   }
 
+  /**
+   * Jumps to the first alternative, whose set contains next character, or backtracks, if there is no such alternative.
+   * Used instead of {@link ChoiceInstruction}s, when sets of alternatives are disjoint, so that no backtrack point is required.
+   */
+  public static final class SwitchInstruction extends Instruction {
+    private final CharacterSet[] sets;
+    private final int[] offsets;
+
+    public SwitchInstruction(CharacterSet[] sets, int[] offsets) {
+      this.sets = sets;
+      this.offsets = offsets;
+    }
+
+    @Override
+    public void execute(Machine machine) {
+      if (machine.length() > 0) {
+        char c = machine.charAt(0);
+        for (int i = 0; i < sets.length; i++) {
+          if (sets[i].contains(c)) {
+            machine.jump(offsets[i]);
+            return;
+          }
+        }
+      }
+      machine.backtrack();
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder("Switch");
+      for (int i = 0; i < sets.length; i++) {
+        sb.append(' ').append(sets[i]).append(' ').append(offsets[i]);
+      }
+      return sb.toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return (obj instanceof SwitchInstruction)
+        && Arrays.equals(this.sets, ((SwitchInstruction) obj).sets)
+        && Arrays.equals(this.offsets, ((SwitchInstruction) obj).offsets);
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(offsets);
+    }
+  }
+
+  /**
+   * Proceeds to the next instruction, if next character belongs to set, otherwise jumps by given offset.
+   */
+  public static final class TestInstruction extends Instruction {
+    private final CharacterSet set;
+    private final int offset;
+
+    public TestInstruction(CharacterSet set, int offset) {
+      this.set = set;
+      this.offset = offset;
+    }
+
+    public int getOffset() {
+      return offset;
+    }
+
+    @Override
+    public void execute(Machine machine) {
+      if (machine.length() > 0 && set.contains(machine.charAt(0))) {
+        machine.jump(1);
+      } else {
+        machine.jump(offset);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "Test " + set + " " + offset;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return (obj instanceof TestInstruction)
+        && this.set.equals(((TestInstruction) obj).set)
+        && this.offset == ((TestInstruction) obj).offset;
+    }
+
+    @Override
+    public int hashCode() {
+      return offset;
+    }
+  }
+
 }
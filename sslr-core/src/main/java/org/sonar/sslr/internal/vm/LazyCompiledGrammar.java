@@ -0,0 +1,164 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.sonar.sslr.grammar.GrammarRuleKey;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Grammar, whose rules are compiled on demand: initially only root rule is compiled,
+ * and call of any other rule is compiled into {@link LazyCallInstruction}, which compiles and links this rule,
+ * when executed for the first time. So that time of first parse and memory footprint reflect rules, which actually were used.
+ *
+ * <p>Instructions of new rule are appended to a copy of instructions, which is published only after linking,
+ * so that {@link Machine} sees either old or new consistent version, and addresses of already compiled instructions never change.
+ * Compilation is serialized, so instance can be shared between threads.</p>
+ *
+ * <p>{@link #getRules()} contains only rules, which were already compiled.</p>
+ */
+public class LazyCompiledGrammar extends CompiledGrammar {
+
+  private final Compiler compiler = new Compiler();
+
+  // Guarded by this
+  private final Map<GrammarRuleKey, CompilableGrammarRule> referencedRules = Maps.newHashMap();
+  private final Map<GrammarRuleKey, Integer> offsets = Maps.newHashMap();
+
+  private volatile Instruction[] instructions = new Instruction[0];
+
+  public static LazyCompiledGrammar compile(CompilableGrammarRule rule) {
+    return new LazyCompiledGrammar(rule);
+  }
+
+  private LazyCompiledGrammar(CompilableGrammarRule rootRule) {
+    super(new Instruction[0], Maps.<GrammarRuleKey, CompilableGrammarRule> newConcurrentMap(), rootRule.getRuleKey(), 0);
+    synchronized (this) {
+      referencedRules.put(rootRule.getRuleKey(), rootRule);
+      compileRule(rootRule);
+    }
+  }
+
+  @Override
+  public Instruction[] getInstructions() {
+    return instructions;
+  }
+
+  /**
+   * Compiles given rule, if it was not compiled yet, and replaces {@link LazyCallInstruction} at given address by call of this rule.
+   *
+   * @return current version of instructions, which contains call of rule at given address
+   */
+  synchronized Instruction[] link(int address, CompilableGrammarRule rule) {
+    Integer offset = offsets.get(rule.getRuleKey());
+    if (offset == null) {
+      offset = compileRule(rule);
+    }
+    Instruction[] result = instructions;
+    if (result[address] instanceof LazyCallInstruction) {
+      result[address] = Instruction.call(offset - address, rule);
+    }
+    return result;
+  }
+
+  private int compileRule(CompilableGrammarRule rule) {
+    List<Instruction> compiled = Lists.newArrayList();
+    Instruction.addAll(compiled, compiler.compile(rule.getExpression()));
+    compiled.add(Instruction.ret());
+
+    Instruction[] current = instructions;
+    int offset = current.length;
+    offsets.put(rule.getRuleKey(), offset);
+
+    Instruction[] result = Arrays.copyOf(current, offset + compiled.size());
+    for (int i = 0; i < compiled.size(); i++) {
+      Instruction instruction = compiled.get(i);
+      int address = offset + i;
+      if (instruction instanceof RuleRefExpression) {
+        GrammarRuleKey ruleKey = ((RuleRefExpression) instruction).getRuleKey();
+        CompilableGrammarRule calledRule = referencedRules.get(ruleKey);
+        Integer calledOffset = offsets.get(ruleKey);
+        result[address] = calledOffset == null
+            ? new LazyCallInstruction(this, calledRule)
+            : Instruction.call(calledOffset - address, calledRule);
+      } else {
+        result[address] = instruction;
+      }
+    }
+
+    instructions = result;
+    getRules().put(rule.getRuleKey(), rule);
+    return offset;
+  }
+
+  private final class Compiler extends CompilationHandler {
+
+    @Override
+    public Instruction[] compile(ParsingExpression expression) {
+      if (expression instanceof CompilableGrammarRule) {
+        CompilableGrammarRule rule = (CompilableGrammarRule) expression;
+        if (!referencedRules.containsKey(rule.getRuleKey())) {
+          referencedRules.put(rule.getRuleKey(), rule);
+        }
+        return rule.compile(this);
+      } else {
+        return expression.compile(this);
+      }
+    }
+
+  }
+
+  /**
+   * Call of a rule, which was not compiled at the time of compilation of caller.
+   */
+  public static final class LazyCallInstruction extends Instruction {
+
+    private final LazyCompiledGrammar grammar;
+    private final CompilableGrammarRule rule;
+
+    public LazyCallInstruction(LazyCompiledGrammar grammar, CompilableGrammarRule rule) {
+      this.grammar = grammar;
+      this.rule = rule;
+    }
+
+    public CompilableGrammarRule getRule() {
+      return rule;
+    }
+
+    @Override
+    public void execute(Machine machine) {
+      int address = machine.getAddress();
+      Instruction[] instructions = grammar.link(address, rule);
+      machine.setInstructions(instructions);
+      instructions[address].execute(machine);
+    }
+
+    @Override
+    public String toString() {
+      return "LazyCall " + rule.getName();
+    }
+
+  }
+
+}
@@ -0,0 +1,342 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import javax.annotation.Nullable;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * LL(1) analysis of lexerless grammar, which computes for each expression set of characters, with which its match might start,
+ * so that choices between alternatives with disjoint sets, and optionals and repetitions, whose subexpression succeeds
+ * if and only if first character belongs to its set, can be compiled into test of one character of lookahead instead of backtracking.
+ *
+ * <p>Properties are computed as a least fixpoint. Left recursive rules, cuts and expressions, which can't be analysed
+ * (e.g. lexerful or user-defined), are treated conservatively - as the ones, which might match anything, including empty string.</p>
+ */
+public final class LookaheadAnalysis {
+
+  private static final Info BOTTOM = new Info(false, false, new BitSet(), false, false);
+  private static final Info UNKNOWN = new Info(true, true, new BitSet(), false, false);
+  private static final Info EMPTY = new Info(true, false, new BitSet(), false, true);
+
+  private final Map<CompilableGrammarRule, Info> rules = Maps.newIdentityHashMap();
+  private final Set<CompilableGrammarRule> leftRecursive = Collections.newSetFromMap(Maps.<CompilableGrammarRule, Boolean> newIdentityHashMap());
+
+  public LookaheadAnalysis(CompilableGrammarRule rootRule) {
+    collect(rootRule);
+    computeFixpoint();
+    while (findLeftRecursion()) {
+      computeFixpoint();
+    }
+  }
+
+  /**
+   * @return sets of first characters of given alternatives, if at most one of them can succeed on any input,
+   * and each of them consumes at least one character, null otherwise
+   */
+  @Nullable
+  public CharacterSet[] choiceLookahead(List<ParsingExpression> alternatives) {
+    CharacterSet[] result = new CharacterSet[alternatives.size()];
+    BitSet union = new BitSet();
+    for (int i = 0; i < result.length; i++) {
+      Info info = info(alternatives.get(i));
+      if (info.nullable || info.any || info.first.intersects(union)) {
+        return null;
+      }
+      union.or(info.first);
+      result[i] = new CharacterSet(info.first);
+    }
+    return result;
+  }
+
+  /**
+   * @param expression optional or repetition
+   * @return set of first characters of subexpression of given expression, if decision whether to match subexpression
+   * can be taken by one character of lookahead without backtracking, null otherwise
+   */
+  @Nullable
+  public CharacterSet successLookahead(ParsingExpression expression) {
+    // subexpression, which might fail after consumption of first character, requires backtracking
+    Info info = info(subExpressions(expression).get(0));
+    return info.exact ? new CharacterSet(info.first) : null;
+  }
+
+  private void collect(ParsingExpression expression) {
+    if (expression instanceof CompilableGrammarRule) {
+      CompilableGrammarRule rule = (CompilableGrammarRule) expression;
+      if (rules.containsKey(rule)) {
+        return;
+      }
+      rules.put(rule, BOTTOM);
+      expression = rule.getExpression();
+    }
+    for (ParsingExpression subExpression : subExpressions(expression)) {
+      collect(subExpression);
+    }
+  }
+
+  private static List<ParsingExpression> subExpressions(@Nullable ParsingExpression expression) {
+    if (expression instanceof SequenceExpression) {
+      return Lists.newArrayList(((SequenceExpression) expression).getSubExpressions());
+    } else if (expression instanceof FirstOfExpression) {
+      return Lists.newArrayList(((FirstOfExpression) expression).getSubExpressions());
+    } else if (expression instanceof OptionalExpression) {
+      return Collections.singletonList(((OptionalExpression) expression).getSubExpression());
+    } else if (expression instanceof ZeroOrMoreExpression) {
+      return Collections.singletonList(((ZeroOrMoreExpression) expression).getSubExpression());
+    } else if (expression instanceof OneOrMoreExpression) {
+      return Collections.singletonList(((OneOrMoreExpression) expression).getSubExpression());
+    } else if (expression instanceof NextExpression) {
+      return Collections.singletonList(((NextExpression) expression).getSubExpression());
+    } else if (expression instanceof NextNotExpression) {
+      return Collections.singletonList(((NextNotExpression) expression).getSubExpression());
+    } else if (expression instanceof TokenExpression) {
+      return Collections.singletonList(((TokenExpression) expression).getSubExpression());
+    } else if (expression instanceof TriviaExpression) {
+      return Collections.singletonList(((TriviaExpression) expression).getSubExpression());
+    }
+    return Collections.emptyList();
+  }
+
+  private void computeFixpoint() {
+    for (Map.Entry<CompilableGrammarRule, Info> entry : rules.entrySet()) {
+      entry.setValue(BOTTOM);
+    }
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (Map.Entry<CompilableGrammarRule, Info> entry : rules.entrySet()) {
+        CompilableGrammarRule rule = entry.getKey();
+        Info info = leftRecursive.contains(rule) ? UNKNOWN : analyse(rule.getExpression());
+        if (!info.equals(entry.getValue())) {
+          entry.setValue(info);
+          changed = true;
+        }
+      }
+    }
+  }
+
+  /**
+   * @return true, if new left recursive rules were found
+   */
+  private boolean findLeftRecursion() {
+    boolean found = false;
+    for (CompilableGrammarRule rule : rules.keySet()) {
+      if (!leftRecursive.contains(rule)) {
+        Set<CompilableGrammarRule> visited = Collections.newSetFromMap(Maps.<CompilableGrammarRule, Boolean> newIdentityHashMap());
+        if (callsAtSameIndex(rule.getExpression(), rule, visited)) {
+          leftRecursive.add(rule);
+          found = true;
+        }
+      }
+    }
+    return found;
+  }
+
+  /**
+   * @return true, if given expression might invoke given rule without consuming input
+   */
+  private boolean callsAtSameIndex(@Nullable ParsingExpression expression, CompilableGrammarRule rule, Set<CompilableGrammarRule> visited) {
+    if (expression instanceof CompilableGrammarRule) {
+      if (expression == rule) {
+        return true;
+      }
+      CompilableGrammarRule subRule = (CompilableGrammarRule) expression;
+      return visited.add(subRule) && callsAtSameIndex(subRule.getExpression(), rule, visited);
+    }
+    for (ParsingExpression subExpression : subExpressions(expression)) {
+      if (callsAtSameIndex(subExpression, rule, visited)) {
+        return true;
+      }
+      if (expression instanceof SequenceExpression && !info(subExpression).nullable) {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  private Info info(ParsingExpression expression) {
+    if (expression instanceof CompilableGrammarRule) {
+      Info info = rules.get(expression);
+      return info == null ? UNKNOWN : info;
+    }
+    return analyse(expression);
+  }
+
+  private Info analyse(@Nullable ParsingExpression expression) {
+    if (expression instanceof StringExpression) {
+      String string = ((StringExpression) expression).getString();
+      if (string.isEmpty()) {
+        return EMPTY;
+      }
+      return new Info(false, false, of(string.charAt(0)), string.length() == 1, false);
+    } else if (expression instanceof StringTrieExpression) {
+      return analyseStrings(((StringTrieExpression) expression).getSubExpressions());
+    } else if (expression instanceof PatternExpression) {
+      return analysePattern(((PatternExpression) expression).getNativePattern());
+    } else if (expression instanceof SequenceExpression) {
+      return analyseSequence(((SequenceExpression) expression).getSubExpressions());
+    } else if (expression instanceof FirstOfExpression) {
+      return analyseChoice(((FirstOfExpression) expression).getSubExpressions());
+    } else if (expression instanceof OptionalExpression) {
+      return optional(info(((OptionalExpression) expression).getSubExpression()));
+    } else if (expression instanceof ZeroOrMoreExpression) {
+      return optional(info(((ZeroOrMoreExpression) expression).getSubExpression()));
+    } else if (expression instanceof OneOrMoreExpression) {
+      return info(((OneOrMoreExpression) expression).getSubExpression());
+    } else if (expression instanceof TokenExpression) {
+      return info(((TokenExpression) expression).getSubExpression());
+    } else if (expression instanceof TriviaExpression) {
+      return info(((TriviaExpression) expression).getSubExpression());
+    } else if (expression instanceof NextExpression || expression instanceof NextNotExpression) {
+      return new Info(true, false, new BitSet(), false, false);
+    } else if (expression instanceof EndOfInputExpression) {
+      // can't succeed, when followed by any character
+      return new Info(true, false, new BitSet(), false, false);
+    } else if (expression instanceof NothingExpression) {
+      return BOTTOM;
+    } else if (expression instanceof CutExpression) {
+      // affects backtracking of the rest of input
+      return new Info(true, true, new BitSet(), false, true);
+    }
+    return UNKNOWN;
+  }
+
+  private static Info analyseStrings(List<StringExpression> strings) {
+    BitSet first = new BitSet();
+    boolean nullable = false;
+    boolean exact = true;
+    for (StringExpression string : strings) {
+      String s = string.getString();
+      if (s.isEmpty()) {
+        nullable = true;
+      } else {
+        first.set(s.charAt(0));
+        exact &= s.length() == 1;
+      }
+    }
+    return new Info(nullable, false, first, exact && !nullable, nullable);
+  }
+
+  private static Info analysePattern(@Nullable NativePattern pattern) {
+    if (pattern == null) {
+      return UNKNOWN;
+    }
+    BitSet first = new BitSet();
+    boolean nullable = pattern.addFirstCharacters(first);
+    // alternative, which consists only of optional items, always matches
+    return new Info(nullable, false, first, !nullable && pattern.isDecidedByFirstCharacter(), nullable);
+  }
+
+  private Info analyseSequence(ParsingExpression[] subExpressions) {
+    boolean nullable = true;
+    boolean any = false;
+    BitSet first = new BitSet();
+    boolean exact = false;
+    boolean alwaysSucceeds = true;
+    for (int i = 0; i < subExpressions.length; i++) {
+      Info info = info(subExpressions[i]);
+      if (nullable) {
+        any |= info.any;
+        first.or(info.first);
+        nullable = info.nullable;
+        exact = i == 0 && info.exact;
+      }
+      alwaysSucceeds &= info.alwaysSucceeds;
+      if (i > 0) {
+        exact &= info.alwaysSucceeds;
+      }
+    }
+    return new Info(nullable, any, first, exact, alwaysSucceeds);
+  }
+
+  private Info analyseChoice(ParsingExpression[] subExpressions) {
+    boolean nullable = false;
+    boolean any = false;
+    BitSet first = new BitSet();
+    boolean exact = true;
+    boolean alwaysSucceeds = false;
+    for (ParsingExpression subExpression : subExpressions) {
+      Info info = info(subExpression);
+      nullable |= info.nullable;
+      any |= info.any;
+      first.or(info.first);
+      exact &= info.exact;
+      alwaysSucceeds |= info.alwaysSucceeds;
+    }
+    return new Info(nullable, any, first, exact, alwaysSucceeds);
+  }
+
+  private static Info optional(Info info) {
+    return new Info(true, info.any, info.first, false, true);
+  }
+
+  private static BitSet of(char c) {
+    BitSet result = new BitSet();
+    result.set(c);
+    return result;
+  }
+
+  private static final class Info {
+    final boolean nullable;
+    /**
+     * Whether match might start with any character, in which case {@link #first} is incomplete.
+     */
+    final boolean any;
+    final BitSet first;
+    /**
+     * Whether expression succeeds if and only if first character of input belongs to {@link #first}.
+     */
+    final boolean exact;
+    final boolean alwaysSucceeds;
+
+    Info(boolean nullable, boolean any, BitSet first, boolean exact, boolean alwaysSucceeds) {
+      this.nullable = nullable;
+      this.any = any;
+      this.first = first;
+      this.exact = exact;
+      this.alwaysSucceeds = alwaysSucceeds;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Info)) {
+        return false;
+      }
+      Info other = (Info) obj;
+      return nullable == other.nullable && any == other.any && exact == other.exact
+        && alwaysSucceeds == other.alwaysSucceeds && first.equals(other.first);
+    }
+
+    @Override
+    public int hashCode() {
+      return first.hashCode();
+    }
+  }
+
+}
@@ -22,9 +22,9 @@ package org.sonar.sslr.internal.vm;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.sonar.sslr.api.RecognitionException;
 import com.sonar.sslr.api.Token;
-import org.sonar.sslr.grammar.GrammarException;
 import org.sonar.sslr.internal.grammar.MutableParsingRule;
 import org.sonar.sslr.internal.matchers.ImmutableInputBuffer;
 import org.sonar.sslr.internal.matchers.InputBuffer;
@@ -32,8 +32,16 @@ import org.sonar.sslr.internal.matchers.Matcher;
 import org.sonar.sslr.internal.matchers.MatcherPathElement;
 import org.sonar.sslr.internal.matchers.ParseNode;
 import org.sonar.sslr.internal.vm.lexerful.LexerfulParseErrorFormatter;
+import org.sonar.sslr.internal.vm.lexerful.TokenDictionary;
+import org.sonar.sslr.parser.CancellationToken;
 import org.sonar.sslr.parser.ParseError;
+import org.sonar.sslr.parser.ParsingAbortedException;
+import org.sonar.sslr.parser.ParsingLimits;
 import org.sonar.sslr.parser.ParsingResult;
+import org.sonar.sslr.parser.ParsingStatistics;
+import org.sonar.sslr.parser.ParsingStatisticsListener;
+
+import javax.annotation.Nullable;
 
 import java.util.Arrays;
 import java.util.List;
@@ -42,40 +50,113 @@ public class Machine implements CharSequence {
 
   private final char[] input;
   private final Token[] tokens;
+
+  /**
+   * Identifiers of types and values of tokens, which are looked up on first access, zero if not yet looked up.
+   */
+  private final int[] tokenTypeIds;
+  private final int[] tokenValueIds;
+  private final TokenDictionary tokenDictionary;
   private final int inputLength;
 
-  private MachineStack stack;
+  private final MachineStack stack = new MachineStack();
   private int index;
   private int address;
   private boolean matched = true;
 
   private final ParseNode[] memos;
 
+  /**
+   * Results of rule, which were obtained by {@link #speculate(char[], CompiledGrammar, int, int, ParseNode[], ParseNode[])}, indexed by start index.
+   * Used as memo entries, which are never overwritten.
+   */
+  private ParseNode[] speculated;
+
+  /**
+   * Instructions of grammar. Replaced by {@link #setInstructions(Instruction[])}, when lazily compiled grammar grows.
+   */
+  private Instruction[] instructions;
+
   // Number of instructions in grammar for Java is about 2000.
-  private final int[] calls;
+  private int[] calls;
 
   private final MachineHandler handler;
+  private final MachineProfiler profiler;
 
   private boolean ignoreErrors = false;
 
+  /**
+   * Memo entries before this index were released by {@link #cut()}.
+   */
+  private int releasedMemos;
+
+  /**
+   * Left recursive invocations, which are currently in progress. Usually contains at most few elements.
+   */
+  private final List<LeftRecursion> leftRecursions = Lists.newArrayList();
+
+  /**
+   * Number of left recursive invocations, which were answered by seed or by failure.
+   * Result of a rule depends on seed, if this number changed during its evaluation.
+   */
+  private int seedUses;
+
+  // Statistics
+  private long executedInstructions;
+  private int stackDepth;
+  private int maxStackDepth;
+  private long backtracks;
+  private long memoHits;
+  private long nodes;
+
+  // Limits
+  private static final int LIMITS_CHECK_INTERVAL = 4096;
+  private long nextLimitsCheck = Long.MAX_VALUE;
+  private long maxInstructions = Long.MAX_VALUE;
+  private long previouslyExecutedInstructions;
+  private boolean hasDeadline;
+  private long deadline;
+  private CancellationToken cancellationToken;
+
   public static ParseNode parse(List<Token> tokens, CompiledGrammar grammar) {
+    return parse(tokens, grammar, null, null, null);
+  }
+
+  /**
+   * @param profiler notified only during first run, i.e. not during collection of information for error report
+   * @param statisticsListener notified before return or throw of exception
+   * @throws ParsingAbortedException if limits were reached, in this case listener is not notified
+   */
+  public static ParseNode parse(List<Token> tokens, CompiledGrammar grammar, @Nullable MachineProfiler profiler,
+      @Nullable ParsingStatisticsListener statisticsListener, @Nullable ParsingLimits limits) {
+    long startTime = System.nanoTime();
     Token[] inputTokens = tokens.toArray(new Token[tokens.size()]);
 
     ErrorLocatingHandler errorLocatingHandler = new ErrorLocatingHandler();
-    Machine machine = new Machine(null, inputTokens, grammar.getInstructions(), errorLocatingHandler);
-    machine.execute(grammar.getMatcher(grammar.getRootRuleKey()), grammar.getRootRuleOffset(), grammar.getInstructions());
+    Machine machine = new Machine(null, inputTokens, grammar.getInstructions(), errorLocatingHandler, profiler);
+    machine.setLimits(limits, startTime, 0);
+    machine.execute(grammar.getMatcher(grammar.getRootRuleKey()), grammar.getRootRuleOffset());
 
     if (machine.matched) {
+      if (statisticsListener != null) {
+        statisticsListener.onParsed(machine.getStatistics());
+      }
       return machine.stack.subNodes().get(0);
     } else {
+      ParsingStatistics statistics = machine.getStatistics();
       // Perform second run in order to collect information for error report
       ErrorReportingHandler errorReportingHandler = new ErrorReportingHandler(errorLocatingHandler.getErrorIndex());
-      machine = new Machine(null, inputTokens, grammar.getInstructions(), errorReportingHandler);
-      machine.execute(grammar.getMatcher(grammar.getRootRuleKey()), grammar.getRootRuleOffset(), grammar.getInstructions());
+      machine = new Machine(null, inputTokens, grammar.getInstructions(), errorReportingHandler, null);
+      machine.setLimits(limits, startTime, statistics.getInstructions());
+      machine.execute(grammar.getMatcher(grammar.getRootRuleKey()), grammar.getRootRuleOffset());
 
       // failure should be permanent, otherwise something generally wrong
       Preconditions.checkState(!machine.matched);
 
+      if (statisticsListener != null) {
+        statisticsListener.onParsed(statistics.add(machine.getStatistics()));
+      }
+
       if (tokens.isEmpty()) {
         // Godin: weird situation - I expect that list of tokens contains at least EOF, but this is not the case in C Parser
         throw new RecognitionException(1, "No tokens");
@@ -89,11 +170,21 @@ public class Machine implements CharSequence {
   }
 
   public static ParsingResult parse(char[] input, CompiledGrammar grammar) {
+    return parse(input, grammar, null, null);
+  }
+
+  /**
+   * @param profiler notified only during first run, i.e. not during collection of information for error report
+   * @throws ParsingAbortedException if limits were reached
+   */
+  public static ParsingResult parse(char[] input, CompiledGrammar grammar, @Nullable MachineProfiler profiler, @Nullable ParsingLimits limits) {
+    long startTime = System.nanoTime();
     Instruction[] instructions = grammar.getInstructions();
 
     ErrorLocatingHandler errorLocatingHandler = new ErrorLocatingHandler();
-    Machine machine = new Machine(input, null, instructions, errorLocatingHandler);
-    machine.execute(grammar.getMatcher(grammar.getRootRuleKey()), grammar.getRootRuleOffset(), instructions);
+    Machine machine = new Machine(input, null, instructions, errorLocatingHandler, profiler);
+    machine.setLimits(limits, startTime, 0);
+    machine.execute(grammar.getMatcher(grammar.getRootRuleKey()), grammar.getRootRuleOffset());
 
     if (machine.matched) {
       return new ParsingResult(
@@ -101,12 +192,29 @@ public class Machine implements CharSequence {
           machine.matched,
           // TODO what if there is no nodes, or more than one?
           machine.stack.subNodes().get(0),
-          null);
+          null,
+          machine.getStatistics());
     } else {
+      ParsingStatistics statistics = machine.getStatistics();
+      CompiledGrammar errorGrammar = grammar.getErrorReportingGrammar();
+      if (errorGrammar != grammar) {
+        // optimized grammar might fail without trying of all alternatives, so error is located by the grammar, which tries them
+        instructions = errorGrammar.getInstructions();
+        errorLocatingHandler = new ErrorLocatingHandler();
+        machine = new Machine(input, null, instructions, errorLocatingHandler, null);
+        machine.setLimits(limits, startTime, statistics.getInstructions());
+        machine.execute(errorGrammar.getMatcher(errorGrammar.getRootRuleKey()), errorGrammar.getRootRuleOffset());
+
+        // failure should be permanent, otherwise optimization is wrong
+        Preconditions.checkState(!machine.matched);
+        statistics = statistics.add(machine.getStatistics());
+      }
+
       // Perform second run in order to collect information for error report
       ErrorReportingHandler errorReportingHandler = new ErrorReportingHandler(errorLocatingHandler.getErrorIndex());
-      machine = new Machine(input, null, instructions, errorReportingHandler);
-      machine.execute(grammar.getMatcher(grammar.getRootRuleKey()), grammar.getRootRuleOffset(), instructions);
+      machine = new Machine(input, null, instructions, errorReportingHandler, null);
+      machine.setLimits(limits, startTime, statistics.getInstructions());
+      machine.execute(errorGrammar.getMatcher(errorGrammar.getRootRuleKey()), errorGrammar.getRootRuleOffset());
 
       // failure should be permanent, otherwise something generally wrong
       Preconditions.checkState(!machine.matched);
@@ -126,17 +234,82 @@ public class Machine implements CharSequence {
           errorLocatingHandler.getErrorIndex(),
           sb.toString(),
           errorReportingHandler.getFailedPaths());
-      return new ParsingResult(inputBuffer, machine.matched, null, parseError);
+      return new ParsingResult(inputBuffer, machine.matched, null, parseError, statistics.add(machine.getStatistics()));
+    }
+  }
+
+  /**
+   * Parses input as {@link #parse(char[], CompiledGrammar)}, but uses results of speculative parsing,
+   * each of which is taken only if rule is invoked exactly at its start index during this parse.
+   * Falls back to parsing without speculative results in case of failure, so that error report doesn't depend on speculation.
+   *
+   * @param memos memo entries, which were filled by speculative parsing
+   * @param speculated results of speculative parsing indexed by start index
+   */
+  public static ParsingResult parseWithSpeculation(char[] input, CompiledGrammar grammar, ParseNode[] memos, ParseNode[] speculated) {
+    Machine machine = new Machine(input, null, grammar.getInstructions(), NOP_HANDLER, null, memos);
+    machine.speculated = speculated;
+    machine.execute(grammar.getMatcher(grammar.getRootRuleKey()), grammar.getRootRuleOffset());
+    if (!machine.matched) {
+      return parse(input, grammar);
+    }
+    return new ParsingResult(
+        new ImmutableInputBuffer(machine.input),
+        machine.matched,
+        machine.stack.subNodes().get(0),
+        null,
+        machine.getStatistics());
+  }
+
+  /**
+   * Speculatively parses a sequence of root rule of given grammar, starting from given index and until given end index is reached
+   * or rule fails, so that it can be executed in parallel for different parts of input.
+   * Each result is stored into given array by its start index.
+   *
+   * @param memos memo entries, which are shared between machines, which parse same input with same rules
+   * @return index, where parsing stopped
+   */
+  public static int speculate(char[] input, CompiledGrammar grammar, int start, int end, ParseNode[] memos, ParseNode[] results) {
+    Machine machine = new Machine(input, null, grammar.getInstructions(), NOP_HANDLER, null, memos);
+    // memo entries before start belong to other machines
+    machine.releasedMemos = start;
+    int index = start;
+    while (index < end) {
+      machine.index = index;
+      machine.address = 0;
+      machine.matched = true;
+      machine.ignoreErrors = false;
+      machine.leftRecursions.clear();
+      machine.execute(grammar.getMatcher(grammar.getRootRuleKey()), grammar.getRootRuleOffset());
+      if (!machine.matched) {
+        break;
+      }
+      ParseNode node = machine.stack.subNodes().get(0);
+      machine.stack.clearSubNodes();
+      results[index] = node;
+      if (node.getEndIndex() == index) {
+        break;
+      }
+      index = node.getEndIndex();
     }
+    return index;
   }
 
-  private void execute(Matcher matcher, int offset, Instruction[] instructions) {
+  private void execute(Matcher matcher, int offset) {
     // Place first rule on top of stack
     push(-1);
     stack.setMatcher(matcher);
     jump(offset);
+    stack.setCalledAddress(address);
+    stack.setLeftRecursion(calls[address]);
+    stack.setSeedUses(seedUses);
+    calls[address] = index;
+    if (profiler != null) {
+      profiler.onParseStart();
+      profiler.onCall(matcher, index);
+    }
 
-    execute(instructions);
+    execute();
   }
 
   @VisibleForTesting
@@ -150,7 +323,7 @@ public class Machine implements CharSequence {
 
   @VisibleForTesting
   public static boolean execute(Instruction[] instructions, Token... input) {
-    Machine machine = new Machine(null, input, instructions, NOP_HANDLER);
+    Machine machine = new Machine(null, input, instructions, NOP_HANDLER, null);
     while (machine.address != -1 && machine.address < instructions.length) {
       instructions[machine.address].execute(machine);
     }
@@ -158,23 +331,36 @@ public class Machine implements CharSequence {
   }
 
   public Machine(String input, Instruction[] instructions, MachineHandler handler) {
-    this(input.toCharArray(), null, instructions, handler);
+    this(input.toCharArray(), null, instructions, handler, null);
+  }
+
+  private Machine(char[] input, Token[] tokens, Instruction[] instructions, MachineHandler handler, @Nullable MachineProfiler profiler) {
+    this(input, tokens, instructions, handler, profiler, null);
   }
 
-  private Machine(char[] input, Token[] tokens, Instruction[] instructions, MachineHandler handler) {
+  /**
+   * @param memos memo entries, which can be shared between machines, which parse same input with same grammar
+   */
+  private Machine(char[] input, Token[] tokens, Instruction[] instructions, MachineHandler handler, @Nullable MachineProfiler profiler,
+      @Nullable ParseNode[] memos) {
     this.input = input;
     this.tokens = tokens;
     if (input != null) {
       this.inputLength = input.length;
+      this.tokenTypeIds = null;
+      this.tokenValueIds = null;
+      this.tokenDictionary = null;
     } else {
       this.inputLength = tokens.length;
+      this.tokenTypeIds = new int[tokens.length];
+      this.tokenValueIds = new int[tokens.length];
+      this.tokenDictionary = new TokenDictionary();
     }
 
     this.handler = handler;
-    this.memos = new ParseNode[inputLength + 1];
-    this.stack = new MachineStack();
-    stack = stack.getOrCreateChild();
-    stack.setIndex(-1);
+    this.profiler = profiler;
+    this.memos = memos == null ? new ParseNode[inputLength + 1] : memos;
+    this.instructions = instructions;
     calls = new int[instructions.length];
     Arrays.fill(calls, -1);
   }
@@ -190,9 +376,68 @@ public class Machine implements CharSequence {
     this(input, instructions, NOP_HANDLER);
   }
 
-  private void execute(Instruction[] instructions) {
+  private void execute() {
     while (address != -1) {
       instructions[address].execute(this);
+      executedInstructions++;
+      if (executedInstructions >= nextLimitsCheck) {
+        checkLimits();
+      }
+    }
+  }
+
+  /**
+   * @param startTime value of {@link System#nanoTime()} at the beginning of parse
+   * @param previouslyExecutedInstructions number of instructions executed by previous runs of this parse
+   */
+  private void setLimits(@Nullable ParsingLimits limits, long startTime, long previouslyExecutedInstructions) {
+    if (limits == null) {
+      return;
+    }
+    this.previouslyExecutedInstructions = previouslyExecutedInstructions;
+    maxInstructions = limits.getMaxInstructions() == Long.MAX_VALUE ? Long.MAX_VALUE : limits.getMaxInstructions() - previouslyExecutedInstructions;
+    hasDeadline = limits.getTimeoutNanos() != Long.MAX_VALUE;
+    deadline = startTime + limits.getTimeoutNanos();
+    cancellationToken = limits.getCancellationToken();
+    checkLimits();
+  }
+
+  private void checkLimits() {
+    if (executedInstructions >= maxInstructions) {
+      abort(ParsingAbortedException.Reason.INSTRUCTIONS_LIMIT_EXCEEDED);
+    }
+    if (cancellationToken != null && cancellationToken.isCancelled()) {
+      abort(ParsingAbortedException.Reason.CANCELLED);
+    }
+    // comparison of difference in order to handle overflow of System.nanoTime()
+    if (hasDeadline && System.nanoTime() - deadline >= 0) {
+      abort(ParsingAbortedException.Reason.TIMEOUT);
+    }
+    if (hasDeadline || cancellationToken != null) {
+      nextLimitsCheck = Math.min(maxInstructions, executedInstructions + LIMITS_CHECK_INTERVAL);
+    } else {
+      nextLimitsCheck = maxInstructions;
+    }
+  }
+
+  private void abort(ParsingAbortedException.Reason reason) {
+    throw new ParsingAbortedException(reason, previouslyExecutedInstructions + executedInstructions);
+  }
+
+  private ParsingStatistics getStatistics() {
+    return new ParsingStatistics(executedInstructions, maxStackDepth, backtracks, memoHits, nodes);
+  }
+
+  /**
+   * Switches execution to a new version of instructions, which was produced by {@link LazyCompiledGrammar}
+   * and contains current instructions as a prefix.
+   */
+  void setInstructions(Instruction[] instructions) {
+    this.instructions = instructions;
+    if (calls.length < instructions.length) {
+      int length = calls.length;
+      calls = Arrays.copyOf(calls, instructions.length);
+      Arrays.fill(calls, length, calls.length, -1);
     }
   }
 
@@ -209,36 +454,98 @@ public class Machine implements CharSequence {
   }
 
   private void push(int address) {
-    stack = stack.getOrCreateChild();
-    stack.subNodes().clear();
-    stack.setAddress(address);
-    stack.setIndex(index);
-    stack.setIgnoreErrors(ignoreErrors);
+    stackDepth++;
+    if (stackDepth > maxStackDepth) {
+      maxStackDepth = stackDepth;
+    }
+    stack.push(address, index, ignoreErrors);
   }
 
   public void popReturn() {
     calls[stack.calledAddress()] = stack.leftRecursion();
-    stack = stack.parent();
+    stack.popKeepingNodes();
+    stackDepth--;
   }
 
   public void pushReturn(int returnOffset, Matcher matcher, int callOffset) {
     ParseNode memo = memos[index];
+    if ((memo == null || memo.getMatcher() != matcher) && speculated != null) {
+      memo = speculated[index];
+    }
     if (memo != null && memo.getMatcher() == matcher) {
-      stack.subNodes().add(memo);
+      stack.addNode(memo);
+      memoHits++;
+      if (profiler != null) {
+        profiler.onMemoHit(matcher, index, memo.getEndIndex());
+      }
       index = memo.getEndIndex();
       address += returnOffset;
+    } else if (calls[address + callOffset] == index) {
+      onLeftRecursion(returnOffset, matcher, address + callOffset);
     } else {
       push(address + returnOffset);
       stack.setMatcher(matcher);
       address += callOffset;
 
-      if (calls[address] == index) {
-        // TODO better message, e.g. dump stack
-        throw new GrammarException("Left recursion has been detected, involved rule: " + matcher.toString());
-      }
       stack.setCalledAddress(address);
       stack.setLeftRecursion(calls[address]);
+      stack.setSeedUses(seedUses);
       calls[address] = index;
+      if (profiler != null) {
+        profiler.onCall(matcher, index);
+      }
+    }
+  }
+
+  /**
+   * Handles invocation of a rule, which is already in progress at the same index of input, i.e. left recursion,
+   * by the seed growing technique described in
+   * <a href="http://www.tinlizzie.org/~awarth/papers/pepm08.pdf">Packrat Parsers Can Support Left Recursion, Warth et al.</a>:
+   * first recursive invocation fails, so that outer invocation has a chance to produce a seed by a non left recursive alternative,
+   * then outer invocation is evaluated again and again, and each recursive invocation returns the seed produced by the previous evaluation,
+   * until the seed stops to grow.
+   *
+   * @see #createNode()
+   */
+  private void onLeftRecursion(int returnOffset, Matcher matcher, int calledAddress) {
+    seedUses++;
+    LeftRecursion leftRecursion = getLeftRecursion(calledAddress, index);
+    if (leftRecursion == null) {
+      leftRecursions.add(new LeftRecursion(calledAddress, index));
+      backtrack();
+    } else if (leftRecursion.seed == null) {
+      backtrack();
+    } else {
+      ParseNode seed = leftRecursion.seed;
+      stack.addNode(seed);
+      memoHits++;
+      if (profiler != null) {
+        profiler.onMemoHit(matcher, index, seed.getEndIndex());
+      }
+      index = seed.getEndIndex();
+      address += returnOffset;
+    }
+  }
+
+  @Nullable
+  private LeftRecursion getLeftRecursion(int calledAddress, int index) {
+    for (int i = leftRecursions.size() - 1; i >= 0; i--) {
+      LeftRecursion leftRecursion = leftRecursions.get(i);
+      if (leftRecursion.calledAddress == calledAddress && leftRecursion.index == index) {
+        return leftRecursion;
+      }
+    }
+    return null;
+  }
+
+  private static final class LeftRecursion {
+    private final int calledAddress;
+    private final int index;
+    private ParseNode seed;
+
+    public LeftRecursion(int calledAddress, int index) {
+      this.calledAddress = calledAddress;
+      this.index = index;
     }
   }
 
@@ -247,8 +554,54 @@ public class Machine implements CharSequence {
     stack.setMatcher(null);
   }
 
+  /**
+   * Removes top of the stack together with nodes created since its push.
+   */
   public void pop() {
-    stack = stack.parent();
+    stack.pop();
+    stackDepth--;
+  }
+
+  /**
+   * Removes top of the stack, nodes created since its push are kept.
+   */
+  public void commit() {
+    stack.popKeepingNodes();
+    stackDepth--;
+  }
+
+  /**
+   * Discards alternatives of all pending choices, so that failure after this point can't be recovered by backtracking,
+   * and releases memo entries before current position of input, because they are not reachable anymore.
+   * Choices of enclosing predicates and everything below them are preserved, as well as everything during evaluation of left recursive rules,
+   * because both return to a previous position of input without backtracking.
+   */
+  public void cut() {
+    if (!leftRecursions.isEmpty()) {
+      return;
+    }
+    for (int depth = stack.depth(); depth > 0; depth--) {
+      if (stack.isReturn(depth) || stack.isCut(depth)) {
+        continue;
+      }
+      if (isPredicate(depth)) {
+        return;
+      }
+      stack.cut(depth);
+    }
+    if (releasedMemos < index) {
+      Arrays.fill(memos, releasedMemos, index, null);
+      releasedMemos = index;
+    }
+  }
+
+  /**
+   * Choice of {@link NextNotExpression} is executed with disabled error reports,
+   * alternative of choice of {@link NextExpression} is {@link Instruction.BacktrackInstruction}.
+   * Note that this also holds for choices inside of {@link TokenExpression}, which are not affected by cut only for simplicity.
+   */
+  private boolean isPredicate(int depth) {
+    return stack.isIgnoreErrors(depth) || instructions[stack.address(depth)] instanceof Instruction.BacktrackInstruction;
   }
 
   public MachineStack peek() {
@@ -260,14 +613,25 @@ public class Machine implements CharSequence {
   }
 
   public void backtrack() {
-    // pop any return addresses from the top of the stack
-    while (stack.isReturn()) {
+    backtracks++;
+    // pop any return addresses and choices discarded by cut from the top of the stack
+    while (stack.isReturn() || stack.isCut()) {
+      if (stack.isCut()) {
+        pop();
+        continue;
+      }
 
       // TODO we must have this inside of loop, otherwise report won't be generated in case of input "foo" and rule "nextNot(foo)"
       ignoreErrors = stack.isIgnoreErrors();
       if (!ignoreErrors) {
         handler.onBacktrack(this);
       }
+      if (!leftRecursions.isEmpty() && completeLeftRecursionOnMismatch()) {
+        return;
+      }
+      if (profiler != null) {
+        profiler.onMismatch(stack.matcher(), stack.index());
+      }
 
       popReturn();
     }
@@ -281,24 +645,91 @@ public class Machine implements CharSequence {
       index = stack.index();
       address = stack.address();
       ignoreErrors = stack.isIgnoreErrors();
-      stack = stack.parent();
+      pop();
     }
   }
 
-  public void createNode() {
+  /**
+   * @return false, if node was not created, because evaluation of left recursive rule should be repeated in order to grow its seed
+   */
+  public boolean createNode() {
+    if (!leftRecursions.isEmpty()) {
+      LeftRecursion leftRecursion = getLeftRecursion(stack.calledAddress(), stack.index());
+      if (leftRecursion != null) {
+        return growSeed(leftRecursion);
+      }
+    }
     ParseNode node = new ParseNode(stack.index(), index, stack.subNodes(), stack.matcher());
-    stack.parent().subNodes().add(node);
-    if (stack.matcher() instanceof MemoParsingExpression && ((MemoParsingExpression) stack.matcher()).shouldMemoize()) {
+    nodes++;
+    complete(node);
+    return true;
+  }
+
+  private void complete(ParseNode node) {
+    stack.replaceNodes(node);
+    index = node.getEndIndex();
+    if (stack.matcher() instanceof MemoParsingExpression && ((MemoParsingExpression) stack.matcher()).shouldMemoize()
+      // result should not depend on seed, which is not final
+      && (leftRecursions.isEmpty() || stack.seedUses() == seedUses)) {
       memos[stack.index()] = node;
     }
+    if (profiler != null) {
+      profiler.onMatch(stack.matcher(), stack.index(), index);
+    }
+  }
+
+  private boolean growSeed(LeftRecursion leftRecursion) {
+    if (leftRecursion.seed == null || index > leftRecursion.seed.getEndIndex()) {
+      leftRecursion.seed = new ParseNode(stack.index(), index, stack.subNodes(), stack.matcher());
+      nodes++;
+      // evaluate again
+      stack.clearSubNodes();
+      index = stack.index();
+      address = stack.calledAddress();
+      ignoreErrors = stack.isIgnoreErrors();
+      return false;
+    }
+    // seed stopped to grow
+    leftRecursions.remove(leftRecursion);
+    complete(leftRecursion.seed);
+    return true;
+  }
+
+  /**
+   * Evaluation of left recursive rule, which is on top of the stack, failed,
+   * however seed produced by previous evaluation might be used as a result.
+   *
+   * @return true, if rule was completed with a seed
+   */
+  private boolean completeLeftRecursionOnMismatch() {
+    LeftRecursion leftRecursion = getLeftRecursion(stack.calledAddress(), stack.index());
+    if (leftRecursion == null) {
+      return false;
+    }
+    leftRecursions.remove(leftRecursion);
+    if (leftRecursion.seed == null) {
+      return false;
+    }
+    complete(leftRecursion.seed);
+    address = stack.address();
+    popReturn();
+    return true;
   }
 
   public void createLeafNode(Matcher matcher, int offset) {
     ParseNode node = new ParseNode(index, index + offset, matcher);
-    stack.subNodes().add(node);
+    nodes++;
+    stack.addNode(node);
     index += offset;
   }
 
+  /**
+   * Allows native expressions to work directly with input of lexerless parsing, which must not be modified.
+   */
+  public char[] getInput() {
+    return input;
+  }
+
   public int getIndex() {
     return index;
   }
@@ -332,4 +763,37 @@ public class Machine implements CharSequence {
     return tokens[index + offset];
   }
 
+  /**
+   * @return dictionary of identifiers of types and values of tokens, which is scoped to this machine
+   */
+  public TokenDictionary getTokenDictionary() {
+    return tokenDictionary;
+  }
+
+  /**
+   * @return identifier of type of token, which was assigned by {@link #getTokenDictionary()}
+   */
+  public int tokenTypeIdAt(int offset) {
+    int i = index + offset;
+    int id = tokenTypeIds[i];
+    if (id == 0) {
+      id = tokenDictionary.typeId(tokens[i].getType());
+      tokenTypeIds[i] = id;
+    }
+    return id;
+  }
+
+  /**
+   * @return identifier of value of token, which was assigned by {@link #getTokenDictionary()}
+   */
+  public int tokenValueIdAt(int offset) {
+    int i = index + offset;
+    int id = tokenValueIds[i];
+    if (id == 0) {
+      id = tokenDictionary.valueId(tokens[i].getValue());
+      tokenValueIds[i] = id;
+    }
+    return id;
+  }
+
 }
@@ -0,0 +1,48 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import org.sonar.sslr.internal.matchers.Matcher;
+
+/**
+ * Receives notifications about calls of matchers from {@link Machine}.
+ * Every {@link #onCall(Matcher, int)} is followed by exactly one {@link #onMatch(Matcher, int, int)}
+ * or {@link #onMismatch(Matcher, int)} for the same matcher, so that calls are properly nested,
+ * unless parse was interrupted by an exception.
+ */
+public interface MachineProfiler {
+
+  /**
+   * Called at the beginning of each parse, before invocation of root rule.
+   */
+  void onParseStart();
+
+  void onCall(Matcher matcher, int index);
+
+  /**
+   * Called instead of {@link #onCall(Matcher, int)}, when result of matcher was taken from memoization table.
+   */
+  void onMemoHit(Matcher matcher, int startIndex, int endIndex);
+
+  void onMatch(Matcher matcher, int startIndex, int endIndex);
+
+  void onMismatch(Matcher matcher, int startIndex);
+
+}
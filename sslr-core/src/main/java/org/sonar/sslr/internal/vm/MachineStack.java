@@ -19,112 +19,247 @@
  */
 package org.sonar.sslr.internal.vm;
 
-import com.google.common.collect.Lists;
 import org.sonar.sslr.internal.matchers.Matcher;
 import org.sonar.sslr.internal.matchers.ParseNode;
 
 import javax.annotation.Nullable;
 
-import java.util.Collections;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
 
+/**
+ * Stack of {@link Machine}, which stores frames in parallel arrays indexed by depth.
+ * Frame at depth zero denotes an empty stack.
+ * <p>
+ * Nodes of all frames are accumulated in a single shared array, and each frame records only position of its first node,
+ * so that nodes of frame are those, which were added after its push. Thus nodes of popped frame automatically become nodes of its parent.
+ * </p>
+ * Accessors without argument refer to the top of the stack.
+ */
 public class MachineStack {
 
-  private final MachineStack parent;
-  private MachineStack child;
+  private static final int INITIAL_CAPACITY = 64;
+
+  /**
+   * Address of choice, whose alternative was discarded by {@link Machine#cut()}.
+   */
+  private static final int CUT = -2;
+
+  private int top;
+
+  private int[] addresses = new int[INITIAL_CAPACITY];
+  private int[] indices = new int[INITIAL_CAPACITY];
+  private boolean[] ignoreErrors = new boolean[INITIAL_CAPACITY];
+  private Matcher[] matchers = new Matcher[INITIAL_CAPACITY];
+  private int[] leftRecursions = new int[INITIAL_CAPACITY];
+  private int[] calledAddresses = new int[INITIAL_CAPACITY];
+  private int[] seedUses = new int[INITIAL_CAPACITY];
+  private int[] nodesStart = new int[INITIAL_CAPACITY];
 
-  private final List<ParseNode> subNodes;
-  private int address;
-  private int index;
-  private boolean ignoreErrors;
-  private Matcher matcher;
+  private ParseNode[] nodes = new ParseNode[INITIAL_CAPACITY];
+  private int nodesSize;
 
-  private int leftRecursion;
-  private int calledAddress;
+  private final List<ParseNode> subNodes = new SubNodes();
 
   public MachineStack() {
-    this.parent = null;
-    this.subNodes = Collections.emptyList();
-    this.index = -1;
+    indices[0] = -1;
+  }
+
+  /**
+   * Pushes new frame without matcher.
+   */
+  public void push(int address, int index, boolean ignoreErrors) {
+    top++;
+    if (top == addresses.length) {
+      grow();
+    }
+    this.addresses[top] = address;
+    this.indices[top] = index;
+    this.ignoreErrors[top] = ignoreErrors;
+    this.matchers[top] = null;
+    this.nodesStart[top] = nodesSize;
   }
 
-  private MachineStack(MachineStack parent) {
-    this.parent = parent;
-    this.subNodes = Lists.newArrayList();
+  private void grow() {
+    int newCapacity = addresses.length * 2;
+    addresses = Arrays.copyOf(addresses, newCapacity);
+    indices = Arrays.copyOf(indices, newCapacity);
+    ignoreErrors = Arrays.copyOf(ignoreErrors, newCapacity);
+    matchers = Arrays.copyOf(matchers, newCapacity);
+    leftRecursions = Arrays.copyOf(leftRecursions, newCapacity);
+    calledAddresses = Arrays.copyOf(calledAddresses, newCapacity);
+    seedUses = Arrays.copyOf(seedUses, newCapacity);
+    nodesStart = Arrays.copyOf(nodesStart, newCapacity);
   }
 
-  public MachineStack parent() {
-    return parent;
+  /**
+   * Removes top frame together with its nodes.
+   */
+  public void pop() {
+    nodesSize = nodesStart[top];
+    top--;
   }
 
-  public MachineStack getOrCreateChild() {
-    if (child == null) {
-      child = new MachineStack(this);
-    }
-    return child;
+  /**
+   * Removes top frame, its nodes become nodes of parent frame.
+   */
+  public void popKeepingNodes() {
+    top--;
+  }
+
+  public int depth() {
+    return top;
   }
 
   public boolean isReturn() {
-    return matcher != null;
+    return matchers[top] != null;
+  }
+
+  public boolean isReturn(int depth) {
+    return matchers[depth] != null;
+  }
+
+  /**
+   * Discards alternative of choice at given depth, so that it will be skipped by backtracking.
+   */
+  public void cut(int depth) {
+    addresses[depth] = CUT;
+  }
+
+  /**
+   * @return true, if alternative of choice on top of the stack was discarded
+   */
+  public boolean isCut() {
+    return addresses[top] == CUT;
+  }
+
+  public boolean isCut(int depth) {
+    return addresses[depth] == CUT;
   }
 
   /**
    * @return true, if this object denotes an empty stack
    */
   public boolean isEmpty() {
-    return index == -1;
+    return top == 0;
   }
 
   public int address() {
-    return address;
+    return addresses[top];
   }
 
-  public void setAddress(int address) {
-    this.address = address;
+  public int index() {
+    return indices[top];
   }
 
-  public int index() {
-    return index;
+  public int address(int depth) {
+    return addresses[depth];
   }
 
-  public void setIndex(int index) {
-    this.index = index;
+  public int index(int depth) {
+    return indices[depth];
   }
 
   public boolean isIgnoreErrors() {
-    return ignoreErrors;
+    return ignoreErrors[top];
   }
 
-  public void setIgnoreErrors(boolean ignoreErrors) {
-    this.ignoreErrors = ignoreErrors;
+  public boolean isIgnoreErrors(int depth) {
+    return ignoreErrors[depth];
   }
 
   public Matcher matcher() {
-    return matcher;
+    return matchers[top];
+  }
+
+  public Matcher matcher(int depth) {
+    return matchers[depth];
   }
 
   public void setMatcher(@Nullable Matcher matcher) {
-    this.matcher = matcher;
+    matchers[top] = matcher;
   }
 
   public int leftRecursion() {
-    return leftRecursion;
+    return leftRecursions[top];
   }
 
   public void setLeftRecursion(int leftRecursion) {
-    this.leftRecursion = leftRecursion;
+    leftRecursions[top] = leftRecursion;
   }
 
   public int calledAddress() {
-    return calledAddress;
+    return calledAddresses[top];
   }
 
   public void setCalledAddress(int calledAddress) {
-    this.calledAddress = calledAddress;
+    calledAddresses[top] = calledAddress;
+  }
+
+  public int seedUses() {
+    return seedUses[top];
+  }
+
+  public void setSeedUses(int seedUses) {
+    this.seedUses[top] = seedUses;
+  }
+
+  public void addNode(ParseNode node) {
+    if (nodesSize == nodes.length) {
+      nodes = Arrays.copyOf(nodes, nodesSize * 2);
+    }
+    nodes[nodesSize] = node;
+    nodesSize++;
+  }
+
+  /**
+   * Replaces all nodes of top frame by given node.
+   */
+  public void replaceNodes(ParseNode node) {
+    clearSubNodes();
+    addNode(node);
   }
 
+  /**
+   * Removes all nodes of top frame.
+   */
+  public void clearSubNodes() {
+    nodesSize = nodesStart[top];
+  }
+
+  /**
+   * @return view of nodes of top frame, which reflects all subsequent modifications of this stack
+   */
   public List<ParseNode> subNodes() {
     return subNodes;
   }
 
+  /**
+   * Doesn't allocate anything except of the array returned by {@link #toArray()},
+   * because this view is copied into immutable list for each created {@link ParseNode}.
+   */
+  private final class SubNodes extends AbstractList<ParseNode> {
+
+    @Override
+    public ParseNode get(int index) {
+      int i = nodesStart[top] + index;
+      if (index < 0 || i >= nodesSize) {
+        throw new IndexOutOfBoundsException();
+      }
+      return nodes[i];
+    }
+
+    @Override
+    public int size() {
+      return nodesSize - nodesStart[top];
+    }
+
+    @Override
+    public Object[] toArray() {
+      return Arrays.copyOfRange(nodes, nodesStart[top], nodesSize, Object[].class);
+    }
+
+  }
+
 }
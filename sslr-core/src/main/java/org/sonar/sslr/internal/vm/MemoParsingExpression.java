@@ -25,4 +25,8 @@ public interface MemoParsingExpression extends ParsingExpression, Matcher {
 
   boolean shouldMemoize();
 
+  void enableMemoization();
+
+  void disableMemoization();
+
 }
@@ -23,6 +23,8 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.sonar.sslr.grammar.GrammarRuleKey;
 
+import javax.annotation.Nullable;
+
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
@@ -30,13 +32,31 @@ import java.util.Queue;
 public class MutableGrammarCompiler extends CompilationHandler {
 
   public static CompiledGrammar compile(CompilableGrammarRule rule) {
-    return new MutableGrammarCompiler().doCompile(rule);
+    return new MutableGrammarCompiler(null).doCompile(rule);
+  }
+
+  /**
+   * Compiles lexerless grammar, so that choices and repetitions, which can be decided by one character of lookahead,
+   * don't create backtrack points.
+   */
+  public static DeterministicCompiledGrammar compileDeterministic(CompilableGrammarRule rule) {
+    MutableGrammarCompiler compiler = new MutableGrammarCompiler(new LookaheadAnalysis(rule));
+    CompiledGrammar grammar = compiler.doCompile(rule);
+    return new DeterministicCompiledGrammar(grammar, compile(rule), compiler.choices, compiler.deterministicChoices);
   }
 
   private final Queue<CompilableGrammarRule> compilationQueue = Lists.newLinkedList();
   private final Map<GrammarRuleKey, CompilableGrammarRule> matchers = Maps.newHashMap();
   private final Map<GrammarRuleKey, Integer> offsets = Maps.newHashMap();
 
+  private final LookaheadAnalysis lookaheadAnalysis;
+  private int choices;
+  private int deterministicChoices;
+
+  private MutableGrammarCompiler(@Nullable LookaheadAnalysis lookaheadAnalysis) {
+    this.lookaheadAnalysis = lookaheadAnalysis;
+  }
+
   private CompiledGrammar doCompile(CompilableGrammarRule start) {
     List<Instruction> instructions = Lists.newArrayList();
 
@@ -84,4 +104,28 @@ public class MutableGrammarCompiler extends CompilationHandler {
     }
   }
 
+  @Override
+  public CharacterSet[] choiceLookahead(List<ParsingExpression> alternatives) {
+    if (lookaheadAnalysis == null) {
+      return null;
+    }
+    return count(lookaheadAnalysis.choiceLookahead(alternatives));
+  }
+
+  @Override
+  public CharacterSet successLookahead(ParsingExpression expression) {
+    if (lookaheadAnalysis == null) {
+      return null;
+    }
+    return count(lookaheadAnalysis.successLookahead(expression));
+  }
+
+  private <T> T count(@Nullable T lookahead) {
+    choices++;
+    if (lookahead != null) {
+      deterministicChoices++;
+    }
+    return lookahead;
+  }
+
 }
@@ -0,0 +1,494 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import com.google.common.collect.Lists;
+
+import javax.annotation.Nullable;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Scanner for a subset of regular expressions, which is commonly used in grammars for whitespaces, identifiers, numbers and comments,
+ * e.g. {@code \s*+}, {@code [a-zA-Z_][a-zA-Z_0-9]*+} or {@code //[^\n\r]*+}, and which can be matched without backtracking directly on array of chars.
+ * <p>
+ * Supported are alternations of sequences of literal characters, character classes without unions and intersections,
+ * predefined character classes {@code . \s \S \d \D \w \W \p{javaJavaIdentifierStart} \p{javaJavaIdentifierPart}},
+ * each one followed by a possessive quantifier or by a greedy quantifier, when it is the last in sequence.
+ * </p>
+ */
+final class NativePattern {
+
+  /**
+   * Result of {@link #scan(char[], int)}, when input contains characters, which can't be handled by this class,
+   * i.e. surrogates, which are treated by regular expressions as a single code point.
+   */
+  static final int UNSUPPORTED_INPUT = -2;
+
+  private final Item[][] alternatives;
+
+  private NativePattern(Item[][] alternatives) {
+    this.alternatives = alternatives;
+  }
+
+  /**
+   * @return null, if given regular expression is not supported
+   */
+  @Nullable
+  static NativePattern compile(String regex) {
+    return new Parser(regex).parse();
+  }
+
+  /**
+   * @return end of match, -1 if input doesn't match or {@link #UNSUPPORTED_INPUT}
+   */
+  int scan(char[] input, int start) {
+    for (Item[] alternative : alternatives) {
+      int end = scan(alternative, input, start);
+      if (end != -1) {
+        return end;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Adds to given set all characters, with which match might start.
+   *
+   * @return true, if pattern might match empty string
+   */
+  boolean addFirstCharacters(BitSet set) {
+    boolean nullable = false;
+    for (Item[] alternative : alternatives) {
+      boolean alternativeNullable = true;
+      for (Item item : alternative) {
+        item.charClass.addTo(set);
+        if (item.min > 0) {
+          alternativeNullable = false;
+          break;
+        }
+      }
+      nullable |= alternativeNullable;
+    }
+    return nullable;
+  }
+
+  /**
+   * @return true, if pattern matches if and only if first character of input belongs to set computed by {@link #addFirstCharacters(BitSet)},
+   * i.e. when each alternative consists of single mandatory character followed by optional ones
+   */
+  boolean isDecidedByFirstCharacter() {
+    for (Item[] alternative : alternatives) {
+      if (alternative.length == 0 || alternative[0].min != 1 || alternative[0].charClass.mayMatchSurrogates()) {
+        return false;
+      }
+      for (int i = 1; i < alternative.length; i++) {
+        if (alternative[i].min != 0) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private static int scan(Item[] items, char[] input, int start) {
+    int i = start;
+    for (Item item : items) {
+      int from = i;
+      int limit = input.length - i > item.max ? i + item.max : input.length;
+      while (i < limit) {
+        char c = input[i];
+        if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+          return UNSUPPORTED_INPUT;
+        }
+        if (!item.charClass.matches(c)) {
+          break;
+        }
+        i++;
+      }
+      if (i - from < item.min) {
+        return -1;
+      }
+    }
+    return i;
+  }
+
+  private static final class Item {
+    private final CharClass charClass;
+    private final int min;
+    private final int max;
+
+    public Item(CharClass charClass, int min, int max) {
+      this.charClass = charClass;
+      this.min = min;
+      this.max = max;
+    }
+  }
+
+  private static final class CharClass {
+    private static final int ASCII = 128;
+
+    /**
+     * Result of match for ASCII characters, which takes into account negation.
+     */
+    private final boolean[] ascii = new boolean[ASCII];
+    private final char[] nonAsciiRanges;
+    private final boolean javaIdentifierStart;
+    private final boolean javaIdentifierPart;
+    private final boolean negated;
+
+    public CharClass(CharClassBuilder builder, boolean negated) {
+      this.nonAsciiRanges = new char[builder.ranges.size()];
+      for (int i = 0; i < nonAsciiRanges.length; i++) {
+        nonAsciiRanges[i] = builder.ranges.get(i);
+      }
+      this.javaIdentifierStart = builder.javaIdentifierStart;
+      this.javaIdentifierPart = builder.javaIdentifierPart;
+      this.negated = negated;
+      for (char c = 0; c < ASCII; c++) {
+        ascii[c] = matchesSlow(c) != negated;
+      }
+    }
+
+    public boolean matches(char c) {
+      if (c < ASCII) {
+        return ascii[c];
+      }
+      return matchesSlow(c) != negated;
+    }
+
+    /**
+     * Regular expressions, which are used for input with surrogates, treat them as a single code point,
+     * so all surrogates are added, when class might match a code point, which is not in Basic Multilingual Plane.
+     */
+    public void addTo(BitSet set) {
+      for (int c = Character.MIN_VALUE; c <= Character.MAX_VALUE; c++) {
+        if (matches((char) c)) {
+          set.set(c);
+        }
+      }
+      if (mayMatchSurrogates()) {
+        set.set(Character.MIN_SURROGATE, Character.MAX_SURROGATE + 1);
+      }
+    }
+
+    public boolean mayMatchSurrogates() {
+      if (negated || javaIdentifierStart || javaIdentifierPart) {
+        return true;
+      }
+      for (int i = 0; i < nonAsciiRanges.length; i += 2) {
+        if (nonAsciiRanges[i] <= Character.MAX_SURROGATE && Character.MIN_SURROGATE <= nonAsciiRanges[i + 1]) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private boolean matchesSlow(char c) {
+      if (javaIdentifierStart && Character.isJavaIdentifierStart(c)) {
+        return true;
+      }
+      if (javaIdentifierPart && Character.isJavaIdentifierPart(c)) {
+        return true;
+      }
+      for (int i = 0; i < nonAsciiRanges.length; i += 2) {
+        if (nonAsciiRanges[i] <= c && c <= nonAsciiRanges[i + 1]) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private static final class CharClassBuilder {
+    private final List<Character> ranges = Lists.newArrayList();
+    private boolean javaIdentifierStart;
+    private boolean javaIdentifierPart;
+
+    public CharClassBuilder add(char c) {
+      return add(c, c);
+    }
+
+    public CharClassBuilder add(char from, char to) {
+      ranges.add(from);
+      ranges.add(to);
+      return this;
+    }
+
+    public CharClassBuilder add(String chars) {
+      for (int i = 0; i < chars.length(); i++) {
+        add(chars.charAt(i));
+      }
+      return this;
+    }
+
+    public CharClass build(boolean negated) {
+      return new CharClass(this, negated);
+    }
+  }
+
+  /**
+   * Recursive descent parser, which returns null as soon as encounters something unsupported.
+   */
+  private static final class Parser {
+    private static final String WHITESPACES = " \t\n\u000B\f\r";
+
+    private final String regex;
+    private int pos;
+
+    public Parser(String regex) {
+      this.regex = regex;
+    }
+
+    @Nullable
+    public NativePattern parse() {
+      List<Item[]> alternatives = Lists.newArrayList();
+      while (true) {
+        Item[] alternative = parseSequence();
+        if (alternative == null) {
+          return null;
+        }
+        alternatives.add(alternative);
+        if (pos == regex.length()) {
+          return new NativePattern(alternatives.toArray(new Item[alternatives.size()][]));
+        }
+        // parseSequence stops only at the end or on '|'
+        pos++;
+      }
+    }
+
+    @Nullable
+    private Item[] parseSequence() {
+      List<Item> items = Lists.newArrayList();
+      while (pos < regex.length() && regex.charAt(pos) != '|') {
+        CharClass charClass = parseAtom();
+        if (charClass == null) {
+          return null;
+        }
+        Item item = parseQuantifier(charClass);
+        if (item == null) {
+          return null;
+        }
+        items.add(item);
+      }
+      return items.toArray(new Item[items.size()]);
+    }
+
+    @Nullable
+    private CharClass parseAtom() {
+      char c = regex.charAt(pos);
+      pos++;
+      switch (c) {
+        case '.':
+          // any character except of line terminators
+          return new CharClassBuilder().add('\n').add('\r').add('\u0085').add('\u2028', '\u2029').build(true);
+        case '[':
+          return parseCharClass();
+        case '\\':
+          return parseEscape(false);
+        case '(':
+        case ')':
+        case '{':
+        case '}':
+        case ']':
+        case '*':
+        case '+':
+        case '?':
+        case '^':
+        case '$':
+          return null;
+        default:
+          return new CharClassBuilder().add(c).build(false);
+      }
+    }
+
+    /**
+     * @param inCharClass if true, then negated predefined character classes are not supported
+     */
+    @Nullable
+    private CharClass parseEscape(boolean inCharClass) {
+      if (pos == regex.length()) {
+        return null;
+      }
+      char c = regex.charAt(pos);
+      pos++;
+      CharClassBuilder builder = new CharClassBuilder();
+      switch (c) {
+        case 's':
+          return builder.add(WHITESPACES).build(false);
+        case 'd':
+          return builder.add('0', '9').build(false);
+        case 'w':
+          return builder.add('a', 'z').add('A', 'Z').add('_').add('0', '9').build(false);
+        case 'S':
+          return inCharClass ? null : builder.add(WHITESPACES).build(true);
+        case 'D':
+          return inCharClass ? null : builder.add('0', '9').build(true);
+        case 'W':
+          return inCharClass ? null : builder.add('a', 'z').add('A', 'Z').add('_').add('0', '9').build(true);
+        case 'p':
+          return parseProperty(builder);
+        default:
+          Character literal = escapedLiteral(c);
+          return literal == null ? null : builder.add(literal).build(false);
+      }
+    }
+
+    @Nullable
+    private CharClass parseProperty(CharClassBuilder builder) {
+      if (regex.startsWith("{javaJavaIdentifierStart}", pos)) {
+        builder.javaIdentifierStart = true;
+        pos += "{javaJavaIdentifierStart}".length();
+      } else if (regex.startsWith("{javaJavaIdentifierPart}", pos)) {
+        builder.javaIdentifierPart = true;
+        pos += "{javaJavaIdentifierPart}".length();
+      } else {
+        return null;
+      }
+      return builder.build(false);
+    }
+
+    @Nullable
+    private static Character escapedLiteral(char c) {
+      switch (c) {
+        case 't':
+          return '\t';
+        case 'n':
+          return '\n';
+        case 'r':
+          return '\r';
+        case 'f':
+          return '\f';
+        default:
+          // backslash before non-alphabetic character denotes this character
+          if (c < 128 && !Character.isLetterOrDigit(c)) {
+            return c;
+          }
+          return null;
+      }
+    }
+
+    @Nullable
+    private CharClass parseCharClass() {
+      CharClassBuilder builder = new CharClassBuilder();
+      boolean negated = false;
+      if (pos < regex.length() && regex.charAt(pos) == '^') {
+        negated = true;
+        pos++;
+      }
+      if (pos < regex.length() && regex.charAt(pos) == ']') {
+        return null;
+      }
+      while (pos < regex.length()) {
+        char c = regex.charAt(pos);
+        pos++;
+        if (c == ']') {
+          return builder.build(negated);
+        } else if (c == '[' || (c == '&' && pos < regex.length() && regex.charAt(pos) == '&')) {
+          return null;
+        } else if (c == '\\') {
+          if (!parseEscapeInCharClass(builder)) {
+            return null;
+          }
+        } else if (pos + 1 < regex.length() && regex.charAt(pos) == '-' && regex.charAt(pos + 1) != ']') {
+          pos++;
+          char to = regex.charAt(pos);
+          pos++;
+          if (to == '\\' || to == '[') {
+            return null;
+          }
+          builder.add(c, to);
+        } else {
+          builder.add(c);
+        }
+      }
+      return null;
+    }
+
+    private boolean parseEscapeInCharClass(CharClassBuilder builder) {
+      if (pos == regex.length()) {
+        return false;
+      }
+      char c = regex.charAt(pos);
+      Character literal = escapedLiteral(c);
+      if (literal != null) {
+        pos++;
+        if (pos + 1 < regex.length() && regex.charAt(pos) == '-' && regex.charAt(pos + 1) != ']') {
+          // ranges with escaped characters are not supported
+          return false;
+        }
+        builder.add(literal);
+        return true;
+      }
+      CharClass predefined = parseEscape(true);
+      if (predefined == null) {
+        return false;
+      }
+      for (char i = 0; i < CharClass.ASCII; i++) {
+        if (predefined.ascii[i]) {
+          builder.add(i);
+        }
+      }
+      builder.javaIdentifierStart |= predefined.javaIdentifierStart;
+      builder.javaIdentifierPart |= predefined.javaIdentifierPart;
+      return true;
+    }
+
+    @Nullable
+    private Item parseQuantifier(CharClass charClass) {
+      if (pos == regex.length()) {
+        return new Item(charClass, 1, 1);
+      }
+      int min;
+      int max;
+      char c = regex.charAt(pos);
+      if (c == '*') {
+        min = 0;
+        max = Integer.MAX_VALUE;
+        pos++;
+      } else if (c == '+') {
+        min = 1;
+        max = Integer.MAX_VALUE;
+        pos++;
+      } else if (c == '?') {
+        min = 0;
+        max = 1;
+        pos++;
+      } else if (c == '{') {
+        return null;
+      } else {
+        return new Item(charClass, 1, 1);
+      }
+      if (pos < regex.length() && regex.charAt(pos) == '+') {
+        // possessive
+        pos++;
+      } else if (pos < regex.length() && regex.charAt(pos) == '?') {
+        // reluctant
+        return null;
+      } else if (pos < regex.length() && regex.charAt(pos) != '|') {
+        // greedy quantifier is equivalent to possessive only at the end of sequence
+        return null;
+      }
+      return new Item(charClass, min, max);
+    }
+  }
+
+}
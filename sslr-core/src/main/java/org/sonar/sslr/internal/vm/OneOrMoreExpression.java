@@ -27,6 +27,10 @@ public class OneOrMoreExpression implements ParsingExpression {
     this.subExpression = subExpression;
   }
 
+  public ParsingExpression getSubExpression() {
+    return subExpression;
+  }
+
   /**
    * Compiles this expression into a sequence of instructions:
    * <pre>
@@ -47,9 +51,25 @@ public class OneOrMoreExpression implements ParsingExpression {
    * CommitVerify L1
    * L2: ...
    * </pre>
+   *
+   * When decision whether to match subExpression can be taken by one character of lookahead, then compiled without backtracking:
+   * <pre>
+   * L1: subExpression
+   * Test L2
+   * Jump L1
+   * L2: ...
+   * </pre>
    */
   public Instruction[] compile(CompilationHandler compiler) {
     Instruction[] sub = compiler.compile(subExpression);
+    CharacterSet lookahead = compiler.successLookahead(this);
+    if (lookahead != null) {
+      Instruction[] result = new Instruction[sub.length + 2];
+      System.arraycopy(sub, 0, result, 0, sub.length);
+      result[sub.length] = Instruction.test(lookahead, 2);
+      result[sub.length + 1] = Instruction.jump(-1 - sub.length);
+      return result;
+    }
     Instruction[] result = new Instruction[sub.length + 5];
     result[0] = Instruction.choice(sub.length + 4);
     System.arraycopy(sub, 0, result, 1, sub.length);
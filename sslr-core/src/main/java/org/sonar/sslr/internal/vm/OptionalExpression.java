@@ -27,6 +27,10 @@ public class OptionalExpression implements ParsingExpression {
     this.subExpression = subExpression;
   }
 
+  public ParsingExpression getSubExpression() {
+    return subExpression;
+  }
+
   /**
    * Compiles this expression into a sequence of instructions:
    * </pre>
@@ -35,10 +39,23 @@ public class OptionalExpression implements ParsingExpression {
    * Commit L1
    * L1: ...
    * </pre>
+   * When decision whether to match subExpression can be taken by one character of lookahead, then compiled without backtracking:
+   * <pre>
+   * Test L1
+   * subExpression
+   * L1: ...
+   * </pre>
    */
   public Instruction[] compile(CompilationHandler compiler) {
     // not described in paper
     Instruction[] instr = compiler.compile(subExpression);
+    CharacterSet lookahead = compiler.successLookahead(this);
+    if (lookahead != null) {
+      Instruction[] result = new Instruction[instr.length + 1];
+      result[0] = Instruction.test(lookahead, result.length);
+      System.arraycopy(instr, 0, result, 1, instr.length);
+      return result;
+    }
     Instruction[] result = new Instruction[instr.length + 2];
     result[0] = Instruction.choice(result.length);
     System.arraycopy(instr, 0, result, 1, instr.length);
@@ -21,6 +21,8 @@ package org.sonar.sslr.internal.vm;
 
 import org.sonar.sslr.grammar.GrammarException;
 
+import javax.annotation.Nullable;
+
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -28,11 +30,29 @@ public class PatternExpression extends NativeExpression implements org.sonar.ssl
 
   private final Matcher matcher;
 
+  /**
+   * Used instead of {@link #matcher}, when not null.
+   */
+  private final NativePattern nativePattern;
+
   /**
    * @throws java.util.regex.PatternSyntaxException if the expression's syntax is invalid
    */
   public PatternExpression(String regex) {
     matcher = Pattern.compile(regex).matcher("");
+    nativePattern = NativePattern.compile(regex);
+  }
+
+  public String getRegex() {
+    return matcher.pattern().pattern();
+  }
+
+  /**
+   * @return null, if regular expression is not supported by {@link NativePattern}
+   */
+  @Nullable
+  NativePattern getNativePattern() {
+    return nativePattern;
   }
 
   /**
@@ -40,6 +60,19 @@ public class PatternExpression extends NativeExpression implements org.sonar.ssl
    */
   @Override
   public void execute(Machine machine) {
+    if (nativePattern != null) {
+      int start = machine.getIndex();
+      int end = nativePattern.scan(machine.getInput(), start);
+      if (end != NativePattern.UNSUPPORTED_INPUT) {
+        if (end == -1) {
+          machine.backtrack();
+        } else {
+          machine.createLeafNode(this, end - start);
+          machine.jump(1);
+        }
+        return;
+      }
+    }
     matcher.reset(machine);
     boolean result;
     try {
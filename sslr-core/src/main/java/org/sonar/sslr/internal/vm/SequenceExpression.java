@@ -32,6 +32,10 @@ public class SequenceExpression implements ParsingExpression {
     this.subExpressions = subExpressions;
   }
 
+  public ParsingExpression[] getSubExpressions() {
+    return subExpressions;
+  }
+
   /**
    * Compiles this expression into a sequence of instructions:
    * <pre>
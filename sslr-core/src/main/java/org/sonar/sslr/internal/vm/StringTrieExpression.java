@@ -0,0 +1,146 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import com.google.common.collect.Maps;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Ordered choice between {@link StringExpression}s, which is matched by a single walk over a trie,
+ * instead of trying alternatives one after another.
+ * As in case of {@link FirstOfExpression}, first alternative in order, which matches input, wins,
+ * e.g. "a" wins in choice between "a" and "ab", even if "ab" is longer.
+ * Produced nodes are the same as in case of {@link FirstOfExpression}.
+ */
+public class StringTrieExpression extends NativeExpression {
+
+  private final StringExpression[] subExpressions;
+  private final Node root;
+
+  public StringTrieExpression(List<StringExpression> subExpressions) {
+    this.subExpressions = subExpressions.toArray(new StringExpression[subExpressions.size()]);
+    MutableNode mutableRoot = new MutableNode();
+    for (int i = 0; i < this.subExpressions.length; i++) {
+      mutableRoot.add(this.subExpressions[i].getString(), 0, i);
+    }
+    this.root = mutableRoot.toNode();
+  }
+
+  public List<StringExpression> getSubExpressions() {
+    return Arrays.asList(subExpressions);
+  }
+
+  @Override
+  public void execute(Machine machine) {
+    Node node = root;
+    int matched = node.alternative;
+    int length = machine.length();
+    for (int i = 0; i < length && node.minDescendantAlternative < matched; i++) {
+      int j = Arrays.binarySearch(node.chars, machine.charAt(i));
+      if (j < 0) {
+        break;
+      }
+      node = node.children[j];
+      if (node.alternative < matched) {
+        matched = node.alternative;
+      }
+    }
+    if (matched == Integer.MAX_VALUE) {
+      machine.backtrack();
+      return;
+    }
+    StringExpression subExpression = subExpressions[matched];
+    machine.createLeafNode(subExpression, subExpression.getString().length());
+    machine.jump(1);
+  }
+
+  /**
+   * Node of a trie. Alternatives are identified by their positions in choice,
+   * {@link Integer#MAX_VALUE} is used when there is no alternative.
+   */
+  private static final class Node {
+    /**
+     * Sorted in order to perform binary search.
+     */
+    private final char[] chars;
+    private final Node[] children;
+    /**
+     * Alternative, which ends in this node.
+     */
+    private final int alternative;
+    /**
+     * Minimal alternative, which ends in one of descendants of this node,
+     * so that there is no need to go deeper, if better alternative was already matched.
+     */
+    private final int minDescendantAlternative;
+
+    public Node(char[] chars, Node[] children, int alternative) {
+      this.chars = chars;
+      this.children = children;
+      this.alternative = alternative;
+      int min = Integer.MAX_VALUE;
+      for (Node child : children) {
+        min = Math.min(min, Math.min(child.alternative, child.minDescendantAlternative));
+      }
+      this.minDescendantAlternative = min;
+    }
+  }
+
+  private static final class MutableNode {
+    private final SortedMap<Character, MutableNode> children = Maps.newTreeMap();
+    private int alternative = Integer.MAX_VALUE;
+
+    public void add(String string, int offset, int alternative) {
+      if (offset == string.length()) {
+        // in case of duplicates first one wins
+        this.alternative = Math.min(this.alternative, alternative);
+        return;
+      }
+      MutableNode child = children.get(string.charAt(offset));
+      if (child == null) {
+        child = new MutableNode();
+        children.put(string.charAt(offset), child);
+      }
+      child.add(string, offset + 1, alternative);
+    }
+
+    public Node toNode() {
+      char[] chars = new char[children.size()];
+      Node[] nodes = new Node[children.size()];
+      int i = 0;
+      for (Map.Entry<Character, MutableNode> entry : children.entrySet()) {
+        chars[i] = entry.getKey();
+        nodes[i] = entry.getValue().toNode();
+        i++;
+      }
+      return new Node(chars, nodes, alternative);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "StringTrie" + Arrays.toString(subExpressions);
+  }
+
+}
@@ -36,6 +36,10 @@ public class TokenExpression implements Matcher, ParsingExpression {
     return tokenType;
   }
 
+  public ParsingExpression getSubExpression() {
+    return subExpression;
+  }
+
   /**
    * Compiles this expression into a sequence of instructions:
    * <pre>
@@ -36,6 +36,10 @@ public class TriviaExpression implements Matcher, ParsingExpression {
     return triviaKind;
   }
 
+  public ParsingExpression getSubExpression() {
+    return subExpression;
+  }
+
   /**
    * Compiles this expression into a sequence of instructions:
    * <pre>
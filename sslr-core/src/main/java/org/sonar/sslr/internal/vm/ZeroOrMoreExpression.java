@@ -27,6 +27,10 @@ public class ZeroOrMoreExpression implements ParsingExpression {
     this.subExpression = subExpression;
   }
 
+  public ParsingExpression getSubExpression() {
+    return subExpression;
+  }
+
   /**
    * Compiles this expression into a sequence of instructions:
    * <pre>
@@ -35,10 +39,25 @@ public class ZeroOrMoreExpression implements ParsingExpression {
    * CommitVerify L1
    * L2: ...
    * </pre>
+   * When decision whether to match subExpression can be taken by one character of lookahead, then compiled without backtracking:
+   * <pre>
+   * L1: Test L2
+   * subExpression
+   * Jump L1
+   * L2: ...
+   * </pre>
    */
   public Instruction[] compile(CompilationHandler compiler) {
     // TODO maybe can be optimized by introduction of new instruction PartialCommit
     Instruction[] sub = compiler.compile(subExpression);
+    CharacterSet lookahead = compiler.successLookahead(this);
+    if (lookahead != null) {
+      Instruction[] result = new Instruction[sub.length + 2];
+      result[0] = Instruction.test(lookahead, sub.length + 2);
+      System.arraycopy(sub, 0, result, 1, sub.length);
+      result[sub.length + 1] = Instruction.jump(-1 - sub.length);
+      return result;
+    }
     Instruction[] result = new Instruction[sub.length + 2];
     result[0] = Instruction.choice(sub.length + 2);
     System.arraycopy(sub, 0, result, 1, sub.length);
@@ -0,0 +1,63 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm.lexerful;
+
+import com.google.common.collect.Maps;
+import com.sonar.sslr.api.TokenType;
+
+import java.util.Map;
+
+/**
+ * Dense identifiers of token types and token values, so that lexerful expressions can compare tokens by means of int operations
+ * instead of hashing and comparison of strings. Dictionary is owned by a single {@link org.sonar.sslr.internal.vm.Machine},
+ * i.e. scoped to a single parse and not thread-safe, so that nothing is retained after parse and no synchronization is required.
+ * Identifiers are assigned on first lookup from both sides - from tokens and from expressions, so that they're independent from order of lookups.
+ * Types and values are compared by {@link Object#equals(Object)}.
+ */
+public final class TokenDictionary {
+
+  private final Map<TokenType, Integer> types = Maps.newHashMap();
+  private final Map<String, Integer> values = Maps.newHashMap();
+
+  /**
+   * @return identifier of given type, which is assigned if absent, always greater than zero
+   */
+  public int typeId(TokenType type) {
+    return id(types, type);
+  }
+
+  /**
+   * @return identifier of given value, which is assigned if absent, always greater than zero
+   */
+  public int valueId(String value) {
+    return id(values, value);
+  }
+
+  private static <K> int id(Map<K, Integer> map, K key) {
+    Integer id = map.get(key);
+    if (id == null) {
+      // identifiers start from 1, so that zero can be used as a marker of absence
+      id = map.size() + 1;
+      map.put(key, id);
+    }
+    return id;
+  }
+
+}
@@ -31,13 +31,19 @@ public class TokenTypesExpression extends NativeExpression implements Matcher {
 
   private final Set<TokenType> types;
 
+  /**
+   * Identifiers of types in dictionary of last machine, which executed this expression.
+   * Replaced as a whole, so that concurrent parses see consistent pair, in worst case they are looked up again.
+   */
+  private TypeIds typeIds;
+
   public TokenTypesExpression(TokenType... types) {
     this.types = ImmutableSet.copyOf(types);
   }
 
   @Override
   public void execute(Machine machine) {
-    if (machine.length() == 0 || !types.contains(machine.tokenAt(0).getType())) {
+    if (machine.length() == 0 || !typeIds(machine.getTokenDictionary()).contains(machine.tokenTypeIdAt(0))) {
       machine.backtrack();
       return;
     }
@@ -45,9 +51,49 @@ public class TokenTypesExpression extends NativeExpression implements Matcher {
     machine.jump(1);
   }
 
+  private TypeIds typeIds(TokenDictionary dictionary) {
+    TypeIds cached = typeIds;
+    if (cached == null || cached.dictionary != dictionary) {
+      cached = new TypeIds(dictionary, types);
+      typeIds = cached;
+    }
+    return cached;
+  }
+
   @Override
   public String toString() {
     return "TokenTypes " + types;
   }
 
+  private static final class TypeIds {
+
+    private final TokenDictionary dictionary;
+
+    /**
+     * Indexed by identifiers of types.
+     */
+    private final boolean[] ids;
+
+    public TypeIds(TokenDictionary dictionary, Set<TokenType> types) {
+      this.dictionary = dictionary;
+      int[] typeIds = new int[types.size()];
+      int maxId = 0;
+      int i = 0;
+      for (TokenType type : types) {
+        typeIds[i] = dictionary.typeId(type);
+        maxId = Math.max(maxId, typeIds[i]);
+        i++;
+      }
+      this.ids = new boolean[maxId + 1];
+      for (int id : typeIds) {
+        ids[id] = true;
+      }
+    }
+
+    public boolean contains(int typeId) {
+      return typeId < ids.length && ids[typeId];
+    }
+
+  }
+
 }
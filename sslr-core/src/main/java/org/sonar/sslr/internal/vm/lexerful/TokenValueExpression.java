@@ -19,7 +19,6 @@
  */
 package org.sonar.sslr.internal.vm.lexerful;
 
-import com.sonar.sslr.api.Token;
 import org.sonar.sslr.internal.matchers.Matcher;
 import org.sonar.sslr.internal.vm.Machine;
 import org.sonar.sslr.internal.vm.NativeExpression;
@@ -28,23 +27,33 @@ public class TokenValueExpression extends NativeExpression implements Matcher {
 
   private final String value;
 
+  /**
+   * Identifier of value in dictionary of last machine, which executed this expression.
+   * Replaced as a whole, so that concurrent parses see consistent pair, in worst case it is looked up again.
+   */
+  private ValueId valueId;
+
   public TokenValueExpression(String value) {
     this.value = value;
   }
 
   @Override
   public void execute(Machine machine) {
-    if (machine.length() == 0) {
+    if (machine.length() == 0 || machine.tokenValueIdAt(0) != valueId(machine.getTokenDictionary())) {
       machine.backtrack();
       return;
     }
-    Token token = machine.tokenAt(0);
-    if (value.hashCode() == token.getValue().hashCode() && value.equals(token.getValue())) {
-      machine.createLeafNode(this, 1);
-      machine.jump(1);
-    } else {
-      machine.backtrack();
+    machine.createLeafNode(this, 1);
+    machine.jump(1);
+  }
+
+  private int valueId(TokenDictionary dictionary) {
+    ValueId cached = valueId;
+    if (cached == null || cached.dictionary != dictionary) {
+      cached = new ValueId(dictionary, dictionary.valueId(value));
+      valueId = cached;
     }
+    return cached.id;
   }
 
   @Override
@@ -52,4 +61,16 @@ public class TokenValueExpression extends NativeExpression implements Matcher {
     return "TokenValue " + value;
   }
 
+  private static final class ValueId {
+
+    private final TokenDictionary dictionary;
+    private final int id;
+
+    public ValueId(TokenDictionary dictionary, int id) {
+      this.dictionary = dictionary;
+      this.id = id;
+    }
+
+  }
+
 }
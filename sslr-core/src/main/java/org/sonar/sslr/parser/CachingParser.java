@@ -0,0 +1,231 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.parser;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.io.Files;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Rule;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Parser;
+import com.sonar.sslr.impl.matcher.RuleDefinition;
+import org.sonar.sslr.internal.matchers.AstSerializer;
+import org.sonar.sslr.internal.vm.CompilableGrammarRule;
+import org.sonar.sslr.internal.vm.CompiledGrammar;
+import org.sonar.sslr.internal.vm.GrammarFingerprint;
+import org.sonar.sslr.internal.vm.MutableGrammarCompiler;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * {@link Parser}, which stores constructed ASTs in a {@link ParseCache} and reuses them for identical inputs.
+ *
+ * <p>Key of entry is computed from content of input and fingerprint of grammar,
+ * so any change in grammar invalidates previously stored entries.
+ * Location of file is not part of the key, so that entries can be shared between checkouts in different directories:
+ * URIs of tokens from parsed file are replaced by URI of file, for which entry is reused.
+ * Thus cache should not be used with parser, whose result depends on location of file in another way.
+ * Configuration of delegate, like lexer, charset or preprocessors, is not part of the key,
+ * so cache should not be shared between differently configured parsers.</p>
+ *
+ * <p>AST is not stored, when it can't be serialized - see {@link AstSerializer}.
+ * Nothing is cached for grammar, which contains rules with custom {@link com.sonar.sslr.api.AstNodeSkippingPolicy},
+ * because their changes can't be detected. Parsing of a list of tokens is not cached.</p>
+ *
+ * <p>This class is not intended to be subclassed by clients.</p>
+ *
+ * @since 1.20
+ */
+public class CachingParser<G extends Grammar> extends Parser<G> {
+
+  private static final byte FILE_INPUT = 0;
+  private static final byte STRING_INPUT = 1;
+
+  private final Parser<G> delegate;
+  private final ParseCache cache;
+
+  private Rule compiledRootRule;
+  private CompiledGrammar compiledGrammar;
+  private byte[] grammarFingerprint;
+
+  public CachingParser(Parser<G> delegate, ParseCache cache) {
+    super(Preconditions.checkNotNull(delegate, "delegate").getGrammar());
+    this.delegate = delegate;
+    this.cache = Preconditions.checkNotNull(cache, "cache");
+  }
+
+  @Override
+  public AstNode parse(File file) {
+    byte[] content;
+    try {
+      content = Files.toByteArray(file);
+    } catch (IOException e) {
+      // let delegate report problem
+      return delegate.parse(file);
+    }
+    String key = key(FILE_INPUT, content);
+    if (key == null) {
+      return delegate.parse(file);
+    }
+    URI uri = file.toURI();
+    AstNode ast = get(key, uri);
+    if (ast == null) {
+      ast = delegate.parse(file);
+      put(key, ast, uri);
+    }
+    return ast;
+  }
+
+  @Override
+  public AstNode parse(String source) {
+    String key = key(STRING_INPUT, source.getBytes(Charsets.UTF_8));
+    if (key == null) {
+      return delegate.parse(source);
+    }
+    AstNode ast = get(key, null);
+    if (ast == null) {
+      ast = delegate.parse(source);
+      put(key, ast, null);
+    }
+    return ast;
+  }
+
+  @Override
+  public AstNode parse(List<Token> tokens) {
+    return delegate.parse(tokens);
+  }
+
+  @Override
+  public RuleDefinition getRootRule() {
+    return delegate.getRootRule();
+  }
+
+  @Override
+  public void setRootRule(Rule rootRule) {
+    delegate.setRootRule(rootRule);
+  }
+
+  @Override
+  public ParseProfiler getProfiler() {
+    return delegate.getProfiler();
+  }
+
+  @Override
+  public void setProfiler(@Nullable ParseProfiler profiler) {
+    delegate.setProfiler(profiler);
+  }
+
+  @Override
+  public ParsingStatisticsListener getStatisticsListener() {
+    return delegate.getStatisticsListener();
+  }
+
+  /**
+   * Listener is not notified, when AST was taken from cache.
+   */
+  @Override
+  public void setStatisticsListener(@Nullable ParsingStatisticsListener statisticsListener) {
+    delegate.setStatisticsListener(statisticsListener);
+  }
+
+  @Override
+  public ParsingLimits getLimits() {
+    return delegate.getLimits();
+  }
+
+  @Override
+  public void setLimits(@Nullable ParsingLimits limits) {
+    delegate.setLimits(limits);
+  }
+
+  @Nullable
+  private AstNode get(String key, @Nullable URI uri) {
+    byte[] data = cache.get(key);
+    if (data == null) {
+      return null;
+    }
+    try {
+      return AstSerializer.deserialize(data, compiledGrammar, getGrammar().getClass().getClassLoader(), uri);
+    } catch (IOException e) {
+      // corrupted entry considered as absent
+      return null;
+    }
+  }
+
+  private void put(String key, AstNode ast, @Nullable URI uri) {
+    byte[] data = AstSerializer.serialize(ast, compiledGrammar, uri);
+    if (data != null) {
+      cache.put(key, data);
+    }
+  }
+
+  /**
+   * @return key or null, if grammar has no fingerprint
+   */
+  @Nullable
+  private String key(byte kind, byte[] content) {
+    updateCompiledGrammar();
+    if (grammarFingerprint == null) {
+      return null;
+    }
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      // Can't happen - every implementation of the Java platform is required to support SHA-1
+      throw new IllegalStateException(e);
+    }
+    digest.update(grammarFingerprint);
+    digest.update(kind);
+    digest.update(content);
+    return toHex(digest.digest());
+  }
+
+  /**
+   * Root rule of lexerful parser can be changed at any time, so grammar recompiled when this happens.
+   */
+  private void updateCompiledGrammar() {
+    Rule rootRule = delegate instanceof ParserAdapter ? getGrammar().getRootRule() : delegate.getRootRule();
+    if (rootRule != compiledRootRule) {
+      compiledGrammar = MutableGrammarCompiler.compile((CompilableGrammarRule) rootRule);
+      grammarFingerprint = GrammarFingerprint.compute(compiledGrammar);
+      compiledRootRule = rootRule;
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder result = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      result.append(Character.forDigit((b >> 4) & 0xF, 16));
+      result.append(Character.forDigit(b & 0xF, 16));
+    }
+    return result.toString();
+  }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.parser;
+
+import com.google.common.base.Preconditions;
+import com.sonar.sslr.api.Rule;
+import org.sonar.sslr.internal.vm.CompilableGrammarRule;
+import org.sonar.sslr.internal.vm.DeterministicCompiledGrammar;
+import org.sonar.sslr.internal.vm.MutableGrammarCompiler;
+
+import java.util.Locale;
+
+/**
+ * Number of choices and repetitions in rules reachable from a given one, which {@link ParseRunner#withDeterministicChoices(Rule)}
+ * compiles without backtracking.
+ *
+ * @since 1.20
+ */
+public final class DeterminismReport {
+
+  private final int choices;
+  private final int deterministicChoices;
+
+  private DeterminismReport(int choices, int deterministicChoices) {
+    this.choices = choices;
+    this.deterministicChoices = deterministicChoices;
+  }
+
+  public static DeterminismReport create(Rule rule) {
+    DeterministicCompiledGrammar grammar = MutableGrammarCompiler.compileDeterministic((CompilableGrammarRule) Preconditions.checkNotNull(rule, "rule"));
+    return new DeterminismReport(grammar.getChoices(), grammar.getDeterministicChoices());
+  }
+
+  /**
+   * @return number of {@code firstOf}, {@code optional}, {@code zeroOrMore} and {@code oneOrMore}
+   */
+  public int getChoices() {
+    return choices;
+  }
+
+  public int getDeterministicChoices() {
+    return deterministicChoices;
+  }
+
+  /**
+   * @return fraction of deterministic choices, 0 if there is no choices
+   */
+  public double getRatio() {
+    return choices == 0 ? 0 : (double) deterministicChoices / choices;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.ENGLISH, "%d of %d choices are deterministic (%.1f%%)", deterministicChoices, choices, getRatio() * 100);
+  }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.parser;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.Files;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.regex.Pattern;
+
+/**
+ * {@link ParseCache}, which stores each entry as a file in a local directory.
+ *
+ * <p>Total size of entries is bounded - when it exceeds the limit, least recently used entries are evicted.
+ * Recency is tracked via last modification time of files, so precision depends on file system.
+ * Failures of I/O are not propagated - entry just considered as absent.</p>
+ *
+ * <p>This class is not intended to be subclassed by clients.</p>
+ *
+ * @since 1.20
+ */
+public class DirectoryParseCache implements ParseCache {
+
+  private static final String SUFFIX = ".ast";
+  private static final Pattern KEY_PATTERN = Pattern.compile("[a-zA-Z0-9_\\-]++");
+
+  private static final FileFilter ENTRIES = new FileFilter() {
+    public boolean accept(File file) {
+      return file.isFile() && file.getName().endsWith(SUFFIX);
+    }
+  };
+
+  private static final Comparator<File> LEAST_RECENTLY_USED_FIRST = new Comparator<File>() {
+    public int compare(File f1, File f2) {
+      long t1 = f1.lastModified();
+      long t2 = f2.lastModified();
+      return t1 < t2 ? -1 : (t1 == t2 ? 0 : 1);
+    }
+  };
+
+  private final File directory;
+  private final long maxSizeInBytes;
+  private long sizeInBytes;
+
+  public DirectoryParseCache(File directory, long maxSizeInBytes) {
+    Preconditions.checkNotNull(directory, "directory");
+    Preconditions.checkArgument(maxSizeInBytes > 0, "maxSizeInBytes must be positive");
+    directory.mkdirs();
+    Preconditions.checkArgument(directory.isDirectory(), "Unable to create directory: " + directory);
+    this.directory = directory;
+    this.maxSizeInBytes = maxSizeInBytes;
+    for (File entry : listEntries()) {
+      sizeInBytes += entry.length();
+    }
+    evict();
+  }
+
+  @Nullable
+  public synchronized byte[] get(String key) {
+    File file = file(key);
+    if (!file.isFile()) {
+      return null;
+    }
+    try {
+      byte[] value = Files.toByteArray(file);
+      file.setLastModified(System.currentTimeMillis());
+      return value;
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  public synchronized void put(String key, byte[] value) {
+    File file = file(key);
+    if (value.length > maxSizeInBytes) {
+      return;
+    }
+    File tmpFile = null;
+    try {
+      tmpFile = File.createTempFile("entry", ".tmp", directory);
+      Files.write(value, tmpFile);
+      if (file.isFile()) {
+        long length = file.length();
+        if (file.delete()) {
+          sizeInBytes -= length;
+        }
+      }
+      if (tmpFile.renameTo(file)) {
+        sizeInBytes += value.length;
+      }
+    } catch (IOException e) {
+      // entry just won't be stored
+    } finally {
+      if (tmpFile != null && tmpFile.exists()) {
+        tmpFile.delete();
+      }
+    }
+    evict();
+  }
+
+  /**
+   * @return total size of entries
+   */
+  public synchronized long getSizeInBytes() {
+    return sizeInBytes;
+  }
+
+  private void evict() {
+    if (sizeInBytes <= maxSizeInBytes) {
+      return;
+    }
+    File[] entries = listEntries();
+    Arrays.sort(entries, LEAST_RECENTLY_USED_FIRST);
+    for (int i = 0; i < entries.length && sizeInBytes > maxSizeInBytes; i++) {
+      long length = entries[i].length();
+      if (entries[i].delete()) {
+        sizeInBytes -= length;
+      }
+    }
+  }
+
+  private File[] listEntries() {
+    File[] entries = directory.listFiles(ENTRIES);
+    return entries == null ? new File[0] : entries;
+  }
+
+  private File file(String key) {
+    Preconditions.checkArgument(KEY_PATTERN.matcher(key).matches(), "Invalid key: " + key);
+    return new File(directory, key + SUFFIX);
+  }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.parser;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSortedSet;
+import com.sonar.sslr.api.Rule;
+import org.sonar.sslr.internal.vm.CompilableGrammarRule;
+import org.sonar.sslr.internal.vm.MemoParsingExpression;
+import org.sonar.sslr.internal.vm.MutableGrammarCompiler;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Set of rules, for which matches should be memoized.
+ * Memoization of a rule pays off only when it is often re-attempted at the same position,
+ * otherwise it only pollutes memoization table, so plan can be computed from {@link ParseProfiler}
+ * after parsing of a sample corpus:
+ *
+ * <pre>
+ * ParseProfiler profiler = new ParseProfiler();
+ * for (char[] input : corpus) {
+ *   new ParseRunner(rootRule).parse(input, profiler);
+ * }
+ * MemoizationPlan plan = MemoizationPlan.create(profiler);
+ * plan.apply(rootRule);
+ * </pre>
+ *
+ * Result of {@link #toString()} can be stored and later restored using {@link #of(Collection)}.
+ *
+ * @since 1.20
+ */
+public final class MemoizationPlan {
+
+  public static final long DEFAULT_MIN_REPEATED_MATCHES = 1;
+  public static final double DEFAULT_MIN_RATIO = 0.1;
+
+  private final Set<String> memoizedRules;
+
+  private MemoizationPlan(Collection<String> memoizedRules) {
+    this.memoizedRules = ImmutableSortedSet.copyOf(memoizedRules);
+  }
+
+  public static MemoizationPlan of(Collection<String> ruleNames) {
+    return new MemoizationPlan(ruleNames);
+  }
+
+  /**
+   * Equivalent to {@code create(profiler, DEFAULT_MIN_REPEATED_MATCHES, DEFAULT_MIN_RATIO)}.
+   */
+  public static MemoizationPlan create(ParseProfiler profiler) {
+    return create(profiler, DEFAULT_MIN_REPEATED_MATCHES, DEFAULT_MIN_RATIO);
+  }
+
+  /**
+   * Selects rules, for which number of {@link ParseProfiler.RuleProfile#getRepeatedMatches() repeated matches}
+   * is at least {@code minRepeatedMatches} and at least {@code minRatio} of number of matches.
+   */
+  public static MemoizationPlan create(ParseProfiler profiler, long minRepeatedMatches, double minRatio) {
+    Preconditions.checkArgument(minRepeatedMatches > 0, "minRepeatedMatches must be greater than zero");
+    Preconditions.checkArgument(minRatio >= 0, "minRatio must not be negative");
+    ImmutableSortedSet.Builder<String> builder = ImmutableSortedSet.naturalOrder();
+    for (ParseProfiler.RuleProfile profile : profiler.getRuleProfiles()) {
+      long repeatedMatches = profile.getRepeatedMatches();
+      if (repeatedMatches >= minRepeatedMatches && repeatedMatches >= minRatio * profile.getMatches()) {
+        builder.add(profile.getRuleName());
+      }
+    }
+    return new MemoizationPlan(builder.build());
+  }
+
+  /**
+   * @return names of rules to memoize sorted in alphabetical order
+   */
+  public Set<String> getMemoizedRules() {
+    return memoizedRules;
+  }
+
+  /**
+   * Enables memoization for rules from this plan and disables for all others, which are reachable from given root rule.
+   * Note that this affects all parsers, which use those rules.
+   */
+  public void apply(Rule rootRule) {
+    for (CompilableGrammarRule rule : MutableGrammarCompiler.compile((CompilableGrammarRule) rootRule).getRules().values()) {
+      if (rule instanceof MemoParsingExpression) {
+        MemoParsingExpression expression = (MemoParsingExpression) rule;
+        if (memoizedRules.contains(rule.getName())) {
+          expression.enableMemoization();
+        } else {
+          expression.disableMemoization();
+        }
+      }
+    }
+  }
+
+  /**
+   * @return names of rules to memoize - one per line
+   */
+  @Override
+  public String toString() {
+    return Joiner.on('\n').join(memoizedRules);
+  }
+
+}
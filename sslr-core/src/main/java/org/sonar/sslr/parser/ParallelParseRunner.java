@@ -0,0 +1,157 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.parser;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.sonar.sslr.api.Rule;
+import org.sonar.sslr.internal.matchers.ParseNode;
+import org.sonar.sslr.internal.vm.CompilableGrammarRule;
+import org.sonar.sslr.internal.vm.CompiledGrammar;
+import org.sonar.sslr.internal.vm.Machine;
+import org.sonar.sslr.internal.vm.MutableGrammarCompiler;
+
+import java.nio.CharBuffer;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Performs parsing of a large input using several threads.
+ *
+ * <p>Input is split into chunks of a given size, and each chunk is parsed speculatively in parallel:
+ * starting from the first candidate synchronization point within chunk (e.g. start of line, which looks like a start of a top-level declaration),
+ * as a sequence of synchronization rule (e.g. top-level declaration), until the end of chunk is reached.
+ * If rule fails, then parsing of chunk is resumed from the next candidate.
+ * After that whole input is parsed sequentially, and results of speculative parsing are taken only when
+ * synchronization rule is invoked exactly at their start positions, which validates speculation and stitches results into a single tree.
+ * Parts of input, for which speculation failed or was not confirmed, are parsed sequentially as usual.</p>
+ *
+ * <p>Result is the same as the one of {@link ParseRunner} for the given rule,
+ * in particular in case of failure whole input is parsed again sequentially in order to produce error report.
+ * Speculation is correct for any choice of synchronization rule and candidate points, however improves performance only if they match
+ * structure of a typical input.</p>
+ *
+ * <p>This class is not intended to be subclassed by clients.</p>
+ *
+ * @since 1.20
+ */
+public class ParallelParseRunner {
+
+  private final CompiledGrammar grammar;
+  private final CompiledGrammar syncGrammar;
+  private final Pattern syncPoints;
+  private final int chunkSize;
+  private final ExecutorService executor;
+
+  /**
+   * @param rule rule to parse
+   * @param syncRule rule, which is used to parse chunks
+   * @param syncPoints each match of this pattern denotes candidate synchronization point at its end
+   * @param chunkSize minimal number of characters in chunk
+   * @param executor used to parse chunks, not shutdown by this class
+   */
+  public ParallelParseRunner(Rule rule, Rule syncRule, Pattern syncPoints, int chunkSize, ExecutorService executor) {
+    Preconditions.checkNotNull(rule, "rule");
+    Preconditions.checkNotNull(syncRule, "syncRule");
+    Preconditions.checkArgument(chunkSize > 0, "chunkSize must be positive");
+    this.grammar = MutableGrammarCompiler.compile((CompilableGrammarRule) rule);
+    this.syncGrammar = MutableGrammarCompiler.compile((CompilableGrammarRule) syncRule);
+    this.syncPoints = Preconditions.checkNotNull(syncPoints, "syncPoints");
+    this.chunkSize = chunkSize;
+    this.executor = Preconditions.checkNotNull(executor, "executor");
+  }
+
+  /**
+   * If current thread is interrupted while waiting for speculative parsing, then remaining speculations are cancelled,
+   * and input is parsed sequentially with interrupted status being set.
+   */
+  public ParsingResult parse(char[] input) {
+    if (input.length < 2 * chunkSize) {
+      return Machine.parse(input, grammar);
+    }
+
+    ParseNode[] memos = new ParseNode[input.length + 1];
+    ParseNode[] speculated = new ParseNode[input.length + 1];
+    List<Future<Void>> futures = Lists.newArrayList();
+    for (int start = 0; start < input.length; start += chunkSize) {
+      futures.add(executor.submit(new Speculation(input, start, Math.min(start + chunkSize, input.length), memos, speculated)));
+    }
+
+    for (Future<Void> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        for (Future<Void> f : futures) {
+          f.cancel(true);
+        }
+        return Machine.parse(input, grammar);
+      } catch (ExecutionException e) {
+        // speculation is optional
+      }
+    }
+
+    return Machine.parseWithSpeculation(input, grammar, memos, speculated);
+  }
+
+  private final class Speculation implements Callable<Void> {
+
+    private final char[] input;
+    private final int start;
+    private final int end;
+    private final ParseNode[] memos;
+    private final ParseNode[] results;
+
+    public Speculation(char[] input, int start, int end, ParseNode[] memos, ParseNode[] results) {
+      this.input = input;
+      this.start = start;
+      this.end = end;
+      this.memos = memos;
+      this.results = results;
+    }
+
+    public Void call() {
+      Matcher matcher = syncPoints.matcher(CharBuffer.wrap(input));
+      int candidate = nextCandidate(matcher, start);
+      while (candidate < end && !Thread.currentThread().isInterrupted()) {
+        int stop;
+        try {
+          stop = Machine.speculate(input, syncGrammar, candidate, end, memos, results);
+        } catch (RuntimeException e) {
+          // e.g. misplaced speculation might trigger GrammarException, which will not happen during real parsing
+          return null;
+        }
+        candidate = nextCandidate(matcher, Math.max(stop, candidate + 1));
+      }
+      return null;
+    }
+
+    private int nextCandidate(Matcher matcher, int from) {
+      return from <= input.length && matcher.find(from) ? matcher.end() : input.length;
+    }
+
+  }
+
+}
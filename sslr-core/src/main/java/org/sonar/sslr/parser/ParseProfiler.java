@@ -0,0 +1,282 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.parser;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.sonar.sslr.internal.matchers.Matcher;
+import org.sonar.sslr.internal.vm.CompilableGrammarRule;
+import org.sonar.sslr.internal.vm.MachineProfiler;
+import org.sonar.sslr.internal.vm.MemoParsingExpression;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Formatter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects statistics per grammar rule during parsing, e.g. to find rules, which dominate cost of parsing.
+ * Statistics accumulated across all parses performed with this profiler.
+ *
+ * <p>Profiling has significant overhead, so should not be enabled in production.</p>
+ *
+ * <p>This class is not thread-safe and is not intended to be subclassed by clients.
+ * Methods of {@link MachineProfiler} are not intended to be called by clients.</p>
+ *
+ * @see ParseRunner#parse(char[], ParseProfiler)
+ * @see com.sonar.sslr.impl.Parser#setProfiler(ParseProfiler)
+ * @since 1.20
+ */
+public class ParseProfiler implements MachineProfiler {
+
+  private final Map<Matcher, RuleProfile> profiles = Maps.newIdentityHashMap();
+  private final Deque<Frame> frames = new ArrayDeque<Frame>();
+
+  public void onParseStart() {
+    // frames might remain from previous parse, which was interrupted by an exception
+    for (Frame frame : frames) {
+      frame.profile.activations = 0;
+    }
+    frames.clear();
+    for (RuleProfile profile : profiles.values()) {
+      profile.matchedAt.clear();
+    }
+  }
+
+  public void onCall(Matcher matcher, int index) {
+    if (!(matcher instanceof CompilableGrammarRule)) {
+      return;
+    }
+    RuleProfile profile = getOrCreateProfile(matcher);
+    profile.invocations++;
+    if (profile.matchedAt.get(index)) {
+      profile.repeatedMatches++;
+    }
+    if (matcher instanceof MemoParsingExpression && ((MemoParsingExpression) matcher).shouldMemoize()) {
+      profile.memoMisses++;
+    }
+    profile.activations++;
+    frames.push(new Frame(profile, System.nanoTime()));
+  }
+
+  public void onMemoHit(Matcher matcher, int startIndex, int endIndex) {
+    if (!(matcher instanceof CompilableGrammarRule)) {
+      return;
+    }
+    RuleProfile profile = getOrCreateProfile(matcher);
+    profile.invocations++;
+    profile.memoHits++;
+    profile.repeatedMatches++;
+    profile.matches++;
+    profile.consumed += endIndex - startIndex;
+  }
+
+  public void onMatch(Matcher matcher, int startIndex, int endIndex) {
+    if (!(matcher instanceof CompilableGrammarRule)) {
+      return;
+    }
+    RuleProfile profile = leave();
+    profile.matchedAt.set(startIndex);
+    profile.matches++;
+    profile.consumed += endIndex - startIndex;
+  }
+
+  public void onMismatch(Matcher matcher, int startIndex) {
+    if (!(matcher instanceof CompilableGrammarRule)) {
+      return;
+    }
+    RuleProfile profile = leave();
+    profile.backtracks++;
+  }
+
+  private RuleProfile leave() {
+    Frame frame = frames.pop();
+    long time = System.nanoTime() - frame.startTime;
+    RuleProfile profile = frame.profile;
+    profile.selfTime += time - frame.childrenTime;
+    profile.activations--;
+    // time of recursive invocations is already included into time of outermost invocation
+    if (profile.activations == 0) {
+      profile.totalTime += time;
+    }
+    if (!frames.isEmpty()) {
+      frames.peek().childrenTime += time;
+    }
+    return profile;
+  }
+
+  private RuleProfile getOrCreateProfile(Matcher matcher) {
+    RuleProfile profile = profiles.get(matcher);
+    if (profile == null) {
+      profile = new RuleProfile(((CompilableGrammarRule) matcher).getName());
+      profiles.put(matcher, profile);
+    }
+    return profile;
+  }
+
+  /**
+   * @return profiles of rules sorted by self time in descending order
+   */
+  public List<RuleProfile> getRuleProfiles() {
+    List<RuleProfile> result = Lists.newArrayList(profiles.values());
+    Collections.sort(result, new Comparator<RuleProfile>() {
+      public int compare(RuleProfile p1, RuleProfile p2) {
+        return p1.selfTime > p2.selfTime ? -1 : (p1.selfTime == p2.selfTime ? p1.ruleName.compareTo(p2.ruleName) : 1);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * @return table with one line per rule sorted by self time in descending order
+   */
+  public String formatTable() {
+    List<RuleProfile> ruleProfiles = getRuleProfiles();
+    int width = "Rule".length();
+    for (RuleProfile profile : ruleProfiles) {
+      width = Math.max(width, profile.ruleName.length());
+    }
+    String format = "%-" + width + "s %12s %12s %12s %12s %12s %12s %12s %12s %12s%n";
+    Formatter formatter = new Formatter();
+    formatter.format(format, "Rule", "Invocations", "Matches", "Backtracks", "Memo hits", "Memo misses", "Repeated", "Consumed", "Self ms", "Total ms");
+    for (RuleProfile profile : ruleProfiles) {
+      formatter.format(format,
+          profile.ruleName,
+          profile.invocations,
+          profile.matches,
+          profile.backtracks,
+          profile.memoHits,
+          profile.memoMisses,
+          profile.repeatedMatches,
+          profile.consumed,
+          String.format("%.3f", profile.selfTime / 1e6),
+          String.format("%.3f", profile.totalTime / 1e6));
+    }
+    return formatter.toString();
+  }
+
+  @Override
+  public String toString() {
+    return formatTable();
+  }
+
+  private static final class Frame {
+    private final RuleProfile profile;
+    private final long startTime;
+    private long childrenTime;
+
+    public Frame(RuleProfile profile, long startTime) {
+      this.profile = profile;
+      this.startTime = startTime;
+    }
+  }
+
+  /**
+   * Statistics of a single rule.
+   */
+  public static final class RuleProfile {
+
+    private final String ruleName;
+    private long invocations;
+    private long matches;
+    private long backtracks;
+    private long memoHits;
+    private long memoMisses;
+    private long repeatedMatches;
+    private long consumed;
+    private long selfTime;
+    private long totalTime;
+    private int activations;
+    private final BitSet matchedAt = new BitSet();
+
+    private RuleProfile(String ruleName) {
+      this.ruleName = ruleName;
+    }
+
+    public String getRuleName() {
+      return ruleName;
+    }
+
+    /**
+     * @return number of invocations, including those for which result was taken from memoization table
+     */
+    public long getInvocations() {
+      return invocations;
+    }
+
+    public long getMatches() {
+      return matches;
+    }
+
+    /**
+     * @return number of invocations, which failed to match
+     */
+    public long getBacktracks() {
+      return backtracks;
+    }
+
+    public long getMemoHits() {
+      return memoHits;
+    }
+
+    /**
+     * @return number of invocations of memoizable rule, for which result was not found in memoization table
+     */
+    public long getMemoMisses() {
+      return memoMisses;
+    }
+
+    /**
+     * @return number of invocations at an index, where this rule has already matched during the same parse,
+     * i.e. number of invocations, which could be answered from memoization table
+     * @see MemoizationPlan
+     */
+    public long getRepeatedMatches() {
+      return repeatedMatches;
+    }
+
+    /**
+     * @return total number of characters (for lexerless parsing) or tokens (for lexerful parsing) consumed by matches
+     */
+    public long getConsumed() {
+      return consumed;
+    }
+
+    /**
+     * @return time in nanoseconds spent in this rule excluding time spent in other rules called from it
+     */
+    public long getSelfTime() {
+      return selfTime;
+    }
+
+    /**
+     * @return time in nanoseconds spent in this rule including time spent in other rules called from it
+     */
+    public long getTotalTime() {
+      return totalTime;
+    }
+
+  }
+
+}
@@ -23,9 +23,12 @@ import com.google.common.base.Preconditions;
 import com.sonar.sslr.api.Rule;
 import org.sonar.sslr.internal.vm.CompilableGrammarRule;
 import org.sonar.sslr.internal.vm.CompiledGrammar;
+import org.sonar.sslr.internal.vm.LazyCompiledGrammar;
 import org.sonar.sslr.internal.vm.Machine;
 import org.sonar.sslr.internal.vm.MutableGrammarCompiler;
 
+import javax.annotation.Nullable;
+
 /**
  * Performs parsing of a given grammar rule on a given input text.
  *
@@ -41,8 +44,60 @@ public class ParseRunner {
     compiledGrammar = MutableGrammarCompiler.compile((CompilableGrammarRule) Preconditions.checkNotNull(rule, "rule"));
   }
 
+  ParseRunner(CompiledGrammar compiledGrammar) {
+    this.compiledGrammar = compiledGrammar;
+  }
+
+  /**
+   * Creates runner, which compiles rules on demand - at first invocation of each rule,
+   * instead of compilation of all rules reachable from the given one in advance.
+   * Useful for huge grammars, when only a small subset of rules is used by a typical input.
+   * Returned runner can be shared between threads.
+   *
+   * @since 1.20
+   */
+  public static ParseRunner withLazyCompilation(Rule rule) {
+    return new ParseRunner(LazyCompiledGrammar.compile((CompilableGrammarRule) Preconditions.checkNotNull(rule, "rule")));
+  }
+
+  /**
+   * Creates runner, which doesn't create backtrack points for choices and repetitions, which can be decided by one character of lookahead,
+   * i.e. for {@code firstOf} with alternatives starting with distinct characters, and for {@code optional}, {@code zeroOrMore}
+   * and {@code oneOrMore}, whose subexpression succeeds if and only if first character matches.
+   * Result of parsing, including error report, is the same as for runner created by {@link #ParseRunner(Rule)}.
+   *
+   * @see DeterminismReport
+   * @since 1.20
+   */
+  public static ParseRunner withDeterministicChoices(Rule rule) {
+    return new ParseRunner(MutableGrammarCompiler.compileDeterministic((CompilableGrammarRule) Preconditions.checkNotNull(rule, "rule")));
+  }
+
   public ParsingResult parse(char[] input) {
     return Machine.parse(input, compiledGrammar);
   }
 
+  /**
+   * Same as {@link #parse(char[])}, but collects statistics per rule into given profiler.
+   *
+   * @since 1.20
+   */
+  public ParsingResult parse(char[] input, ParseProfiler profiler) {
+    return parse(input, Preconditions.checkNotNull(profiler, "profiler"), null);
+  }
+
+  /**
+   * Same as {@link #parse(char[])}, but stops parsing when any of given limits is reached.
+   *
+   * @throws ParsingAbortedException if limits were reached
+   * @since 1.20
+   */
+  public ParsingResult parse(char[] input, ParsingLimits limits) {
+    return parse(input, null, Preconditions.checkNotNull(limits, "limits"));
+  }
+
+  ParsingResult parse(char[] input, @Nullable ParseProfiler profiler, @Nullable ParsingLimits limits) {
+    return Machine.parse(input, compiledGrammar, profiler, limits);
+  }
+
 }
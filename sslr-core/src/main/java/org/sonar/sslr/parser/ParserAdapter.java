@@ -108,7 +108,10 @@ public class ParserAdapter<G extends LexerlessGrammar> extends Parser<G> {
     // This cast is safe, even if not checked - AbstractText is a base implementation of interface Text
     // TODO Godin: however would be better to get rid of it
     char[] chars = ((AbstractText) input).toChars();
-    ParsingResult result = parseRunner.parse(chars);
+    ParsingResult result = parseRunner.parse(chars, getProfiler(), getLimits());
+    if (getStatisticsListener() != null) {
+      getStatisticsListener().onParsed(result.getStatistics());
+    }
     if (result.isMatched()) {
       AstNode astNode = AstCreator.create(result, input);
       // Unwrap AstNodeType for root node:
@@ -0,0 +1,59 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.parser;
+
+/**
+ * Thrown when parsing was stopped because of {@link ParsingLimits}, i.e. neither result nor parse error is available.
+ *
+ * <p>This class is not intended to be instantiated or subclassed by clients.</p>
+ *
+ * @since 1.20
+ */
+public class ParsingAbortedException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  public enum Reason {
+    INSTRUCTIONS_LIMIT_EXCEEDED,
+    TIMEOUT,
+    CANCELLED
+  }
+
+  private final Reason reason;
+  private final long instructions;
+
+  public ParsingAbortedException(Reason reason, long instructions) {
+    super("Parsing aborted (" + reason + ") after execution of " + instructions + " instructions");
+    this.reason = reason;
+    this.instructions = instructions;
+  }
+
+  public Reason getReason() {
+    return reason;
+  }
+
+  /**
+   * @return number of instructions executed before abort
+   */
+  public long getInstructions() {
+    return instructions;
+  }
+
+}
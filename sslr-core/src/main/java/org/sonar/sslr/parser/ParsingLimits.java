@@ -0,0 +1,112 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.parser;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nullable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits for a single parse, which allow to bound time spent on malformed or pathological input.
+ * When any of limits is reached, then parsing stops with {@link ParsingAbortedException}.
+ *
+ * <p>Limits are checked periodically and not after each instruction, so might be slightly exceeded.</p>
+ *
+ * <p>To create a new instance of this class use <code>{@link ParsingLimits#builder()}</code>.</p>
+ *
+ * @since 1.20
+ */
+public final class ParsingLimits {
+
+  private final long maxInstructions;
+  private final long timeoutNanos;
+  private final CancellationToken cancellationToken;
+
+  private ParsingLimits(Builder builder) {
+    this.maxInstructions = builder.maxInstructions;
+    this.timeoutNanos = builder.timeoutNanos;
+    this.cancellationToken = builder.cancellationToken;
+  }
+
+  /**
+   * @return maximal number of instructions or {@link Long#MAX_VALUE}, if not limited
+   */
+  public long getMaxInstructions() {
+    return maxInstructions;
+  }
+
+  /**
+   * @return timeout in nanoseconds or {@link Long#MAX_VALUE}, if not limited
+   */
+  public long getTimeoutNanos() {
+    return timeoutNanos;
+  }
+
+  @Nullable
+  public CancellationToken getCancellationToken() {
+    return cancellationToken;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public static final class Builder {
+
+    private long maxInstructions = Long.MAX_VALUE;
+    private long timeoutNanos = Long.MAX_VALUE;
+    private CancellationToken cancellationToken;
+
+    private Builder() {
+    }
+
+    /**
+     * Limits number of instructions executed by parsing machine, which is proportional to work performed by parser,
+     * but unlike timeout does not depend on load of machine.
+     */
+    public Builder setMaxInstructions(long maxInstructions) {
+      Preconditions.checkArgument(maxInstructions > 0, "maxInstructions must be positive");
+      this.maxInstructions = maxInstructions;
+      return this;
+    }
+
+    /**
+     * Limits wall-clock time of a single parse.
+     */
+    public Builder setTimeout(long timeout, TimeUnit unit) {
+      Preconditions.checkArgument(timeout > 0, "timeout must be positive");
+      this.timeoutNanos = unit.toNanos(timeout);
+      return this;
+    }
+
+    public Builder setCancellationToken(@Nullable CancellationToken cancellationToken) {
+      this.cancellationToken = cancellationToken;
+      return this;
+    }
+
+    public ParsingLimits build() {
+      return new ParsingLimits(this);
+    }
+
+  }
+
+}
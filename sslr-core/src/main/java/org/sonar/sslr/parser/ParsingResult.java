@@ -39,12 +39,22 @@ public class ParsingResult {
   private final ParseNode parseTreeRoot;
   private final InputBuffer inputBuffer;
   private final ParseError parseError;
+  private final ParsingStatistics statistics;
 
   public ParsingResult(InputBuffer inputBuffer, boolean matched, @Nullable ParseNode parseTreeRoot, @Nullable ParseError parseError) {
+    this(inputBuffer, matched, parseTreeRoot, parseError, new ParsingStatistics(0, 0, 0, 0, 0));
+  }
+
+  /**
+   * @since 1.20
+   */
+  public ParsingResult(InputBuffer inputBuffer, boolean matched, @Nullable ParseNode parseTreeRoot, @Nullable ParseError parseError,
+      ParsingStatistics statistics) {
     this.inputBuffer = Preconditions.checkNotNull(inputBuffer, "inputBuffer");
     this.matched = matched;
     this.parseTreeRoot = parseTreeRoot;
     this.parseError = parseError;
+    this.statistics = Preconditions.checkNotNull(statistics, "statistics");
   }
 
   public InputBuffer getInputBuffer() {
@@ -59,6 +69,13 @@ public class ParsingResult {
     return parseError;
   }
 
+  /**
+   * @since 1.20
+   */
+  public ParsingStatistics getStatistics() {
+    return statistics;
+  }
+
   @VisibleForTesting
   public ParseNode getParseTreeRoot() {
     return parseTreeRoot;
@@ -0,0 +1,100 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.parser;
+
+/**
+ * Counters, which were collected during parsing and can be used to monitor cost of parsing.
+ *
+ * <p>When input does not match, then counters include second run, which performed in order to collect information for error report.</p>
+ *
+ * <p>This class is not intended to be instantiated or subclassed by clients.</p>
+ *
+ * @since 1.20
+ */
+public class ParsingStatistics {
+
+  private final long instructions;
+  private final int maxStackDepth;
+  private final long backtracks;
+  private final long memoHits;
+  private final long nodes;
+
+  public ParsingStatistics(long instructions, int maxStackDepth, long backtracks, long memoHits, long nodes) {
+    this.instructions = instructions;
+    this.maxStackDepth = maxStackDepth;
+    this.backtracks = backtracks;
+    this.memoHits = memoHits;
+    this.nodes = nodes;
+  }
+
+  /**
+   * @return number of executed instructions
+   */
+  public long getInstructions() {
+    return instructions;
+  }
+
+  /**
+   * @return maximal depth of stack of machine, which roughly corresponds to nesting of rules and expressions
+   */
+  public int getMaxStackDepth() {
+    return maxStackDepth;
+  }
+
+  public long getBacktracks() {
+    return backtracks;
+  }
+
+  /**
+   * @return number of times when result of rule was taken from memoization table
+   */
+  public long getMemoHits() {
+    return memoHits;
+  }
+
+  /**
+   * @return number of created nodes of parse tree
+   */
+  public long getNodes() {
+    return nodes;
+  }
+
+  /**
+   * @return statistics, which sum counters of this and given statistics, except depth of stack for which maximum is taken
+   */
+  public ParsingStatistics add(ParsingStatistics other) {
+    return new ParsingStatistics(
+        instructions + other.instructions,
+        Math.max(maxStackDepth, other.maxStackDepth),
+        backtracks + other.backtracks,
+        memoHits + other.memoHits,
+        nodes + other.nodes);
+  }
+
+  @Override
+  public String toString() {
+    return "instructions=" + instructions
+        + ", maxStackDepth=" + maxStackDepth
+        + ", backtracks=" + backtracks
+        + ", memoHits=" + memoHits
+        + ", nodes=" + nodes;
+  }
+
+}
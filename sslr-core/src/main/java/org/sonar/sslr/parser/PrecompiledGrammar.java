@@ -0,0 +1,103 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.parser;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.ByteStreams;
+import com.sonar.sslr.api.Rule;
+import org.sonar.sslr.grammar.GrammarRuleKey;
+import org.sonar.sslr.internal.vm.CompilableGrammarRule;
+import org.sonar.sslr.internal.vm.CompiledGrammar;
+import org.sonar.sslr.internal.vm.CompiledGrammarSerializer;
+import org.sonar.sslr.internal.vm.MutableGrammarCompiler;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Grammar, which was compiled ahead of time (e.g. during build) by {@link #compile(Rule)}
+ * and loaded at startup by {@link #load(InputStream, ClassLoader)} without construction and compilation of rules.
+ *
+ * <p>Only lexerless grammars are supported, whose rule keys, token types and kinds of trivia are enums
+ * or rules are created by name, and which use only predefined policies of skipping nodes.
+ * Rules of loaded grammar can be used only to parse and to navigate resulting tree -
+ * they can't be redefined or compiled again.</p>
+ *
+ * <p>This class is not intended to be subclassed by clients.</p>
+ *
+ * @since 1.20
+ */
+public class PrecompiledGrammar {
+
+  private final CompiledGrammar compiledGrammar;
+
+  private PrecompiledGrammar(CompiledGrammar compiledGrammar) {
+    this.compiledGrammar = compiledGrammar;
+  }
+
+  /**
+   * Compiles grammar of given rule into binary form, which can be stored as a resource.
+   *
+   * @throws IllegalArgumentException if grammar can't be stored
+   */
+  public static byte[] compile(Rule rule) {
+    CompiledGrammar compiledGrammar = MutableGrammarCompiler.compile((CompilableGrammarRule) Preconditions.checkNotNull(rule, "rule"));
+    byte[] data = CompiledGrammarSerializer.serialize(compiledGrammar);
+    Preconditions.checkArgument(data != null, "Grammar can't be precompiled: " + rule);
+    return data;
+  }
+
+  /**
+   * Loads grammar, which was produced by {@link #compile(Rule)}. Stream is not closed.
+   *
+   * @param classLoader used to load enums, which were used as rule keys, token types and kinds of trivia
+   * @throws IOException if unable to read stream or data is corrupted
+   */
+  public static PrecompiledGrammar load(InputStream input, ClassLoader classLoader) throws IOException {
+    return load(ByteStreams.toByteArray(Preconditions.checkNotNull(input, "input")), classLoader);
+  }
+
+  /**
+   * @see #load(InputStream, ClassLoader)
+   */
+  public static PrecompiledGrammar load(byte[] data, ClassLoader classLoader) throws IOException {
+    Preconditions.checkNotNull(data, "data");
+    Preconditions.checkNotNull(classLoader, "classLoader");
+    return new PrecompiledGrammar(CompiledGrammarSerializer.deserialize(data, classLoader));
+  }
+
+  public Rule getRootRule() {
+    return rule(compiledGrammar.getRootRuleKey());
+  }
+
+  /**
+   * @throws IllegalArgumentException if grammar doesn't contain given rule
+   */
+  public Rule rule(GrammarRuleKey ruleKey) {
+    Rule rule = compiledGrammar.getRules().get(ruleKey);
+    Preconditions.checkArgument(rule != null, "Rule not found: " + ruleKey);
+    return rule;
+  }
+
+  public ParseRunner createParseRunner() {
+    return new ParseRunner(compiledGrammar);
+  }
+
+}
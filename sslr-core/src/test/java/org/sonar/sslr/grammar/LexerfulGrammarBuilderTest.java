@@ -27,6 +27,7 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.sonar.sslr.internal.grammar.MutableGrammar;
 import org.sonar.sslr.internal.vm.CompilableGrammarRule;
+import org.sonar.sslr.internal.vm.CutExpression;
 import org.sonar.sslr.internal.vm.FirstOfExpression;
 import org.sonar.sslr.internal.vm.NextExpression;
 import org.sonar.sslr.internal.vm.NextNotExpression;
@@ -87,6 +88,7 @@ public class LexerfulGrammarBuilderTest {
     assertThat(b.nextNot(e1, e2)).isInstanceOf(NextNotExpression.class);
 
     assertThat(b.nothing()).as("singleton").isSameAs(NothingExpression.INSTANCE);
+    assertThat(b.cut()).as("singleton").isSameAs(CutExpression.INSTANCE);
 
     assertThat(b.isOneOfThem(mock(TokenType.class), mock(TokenType.class))).isInstanceOf(TokenTypesExpression.class);
     assertThat(b.bridge(mock(TokenType.class), mock(TokenType.class))).isInstanceOf(TokensBridgeExpression.class);
@@ -28,6 +28,7 @@ import org.sonar.sslr.internal.grammar.MutableGrammar;
 import org.sonar.sslr.internal.grammar.MutableParsingRule;
 import org.sonar.sslr.internal.vm.CompilableGrammarRule;
 import org.sonar.sslr.internal.vm.EndOfInputExpression;
+import org.sonar.sslr.internal.vm.CutExpression;
 import org.sonar.sslr.internal.vm.FirstOfExpression;
 import org.sonar.sslr.internal.vm.NextExpression;
 import org.sonar.sslr.internal.vm.NextNotExpression;
@@ -89,6 +90,7 @@ public class LexerlessGrammarBuilderTest {
     assertThat(b.nextNot(e1, e2)).isInstanceOf(NextNotExpression.class);
 
     assertThat(b.nothing()).as("singleton").isSameAs(NothingExpression.INSTANCE);
+    assertThat(b.cut()).as("singleton").isSameAs(CutExpression.INSTANCE);
 
     assertThat(b.regexp("")).isInstanceOf(PatternExpression.class);
 
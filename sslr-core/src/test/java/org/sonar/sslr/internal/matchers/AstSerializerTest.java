@@ -0,0 +1,164 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.matchers;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeType;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
+import com.sonar.sslr.impl.ast.AstXmlPrinter;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.sslr.internal.vm.CompilableGrammarRule;
+import org.sonar.sslr.internal.vm.CompiledGrammar;
+import org.sonar.sslr.internal.vm.MutableGrammarCompiler;
+import org.sonar.sslr.parser.ParserAdapter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class AstSerializerTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private ExpressionGrammar grammar;
+  private CompiledGrammar compiledGrammar;
+
+  @Before
+  public void setUp() {
+    grammar = new ExpressionGrammar();
+    compiledGrammar = MutableGrammarCompiler.compile((CompilableGrammarRule) grammar.getRootRule());
+  }
+
+  @Test
+  public void should_serialize_and_deserialize() throws Exception {
+    AstNode ast = new ParserAdapter<ExpressionGrammar>(Charset.forName("UTF-8"), grammar).parse("1 + (x * 3) ");
+
+    byte[] data = AstSerializer.serialize(ast, compiledGrammar);
+    AstNode result = AstSerializer.deserialize(data, compiledGrammar, getClass().getClassLoader());
+
+    assertThat(AstXmlPrinter.print(result)).isEqualTo(AstXmlPrinter.print(ast));
+    assertThat(result.getType()).isSameAs(ast.getType());
+    assertThat(result.getFirstChild().getType()).isSameAs(ast.getFirstChild().getType());
+    assertThat(result.getFromIndex()).isEqualTo(ast.getFromIndex());
+    assertThat(result.getToIndex()).isEqualTo(ast.getToIndex());
+
+    List<Token> expectedTokens = ast.getTokens();
+    List<Token> tokens = result.getTokens();
+    assertThat(tokens.size()).isEqualTo(expectedTokens.size());
+    for (int i = 0; i < tokens.size(); i++) {
+      if (expectedTokens.get(i) == null) {
+        // end of input
+        assertThat(tokens.get(i)).isNull();
+        continue;
+      }
+      assertThat(tokens.get(i).getType()).isSameAs(expectedTokens.get(i).getType());
+      assertThat(tokens.get(i).getURI()).isEqualTo(expectedTokens.get(i).getURI());
+      assertThat(tokens.get(i).getTrivia().toString()).isEqualTo(expectedTokens.get(i).getTrivia().toString());
+    }
+  }
+
+  @Test
+  public void should_preserve_identity_of_tokens() throws Exception {
+    AstNode ast = new ParserAdapter<ExpressionGrammar>(Charset.forName("UTF-8"), grammar).parse("1+2");
+
+    AstNode result = AstSerializer.deserialize(AstSerializer.serialize(ast, compiledGrammar), compiledGrammar, getClass().getClassLoader());
+
+    assertThat(result.getToken()).isSameAs(result.getFirstChild().getToken());
+  }
+
+  @Test
+  public void should_serialize_copy_book_and_trivia() throws Exception {
+    Token comment = token(GenericTokenType.COMMENT, "// comment").build();
+    Token token = token(GenericTokenType.IDENTIFIER, "x")
+        .setCopyBook("copybook", 42)
+        .setGeneratedCode(true)
+        .addTrivia(Trivia.createComment(comment))
+        .addTrivia(Trivia.createSkippedText(comment, comment))
+        .addTrivia(Trivia.createPreprocessingToken(comment))
+        .build();
+    AstNode ast = new AstNode(token);
+
+    AstNode result = AstSerializer.deserialize(AstSerializer.serialize(ast, compiledGrammar), compiledGrammar, getClass().getClassLoader());
+
+    Token resultToken = result.getToken();
+    assertThat(resultToken.getValue()).isEqualTo("x");
+    assertThat(resultToken.isCopyBook()).isTrue();
+    assertThat(resultToken.getCopyBookOriginalFileName()).isEqualTo("copybook");
+    assertThat(resultToken.getCopyBookOriginalLine()).isEqualTo(42);
+    assertThat(resultToken.isGeneratedCode()).isTrue();
+    assertThat(resultToken.getTrivia().size()).isEqualTo(3);
+    assertThat(resultToken.getTrivia().get(0).isComment()).isTrue();
+    assertThat(resultToken.getTrivia().get(1).isSkippedText()).isTrue();
+    assertThat(resultToken.getTrivia().get(1).getTokens().get(1)).isSameAs(resultToken.getTrivia().get(0).getToken());
+    assertThat(resultToken.getTrivia().get(2).isPreprocessor()).isTrue();
+  }
+
+  @Test
+  public void should_not_serialize_unknown_types() {
+    AstNode ast = new AstNode(mock(AstNodeType.class), "node", null);
+
+    assertThat(AstSerializer.serialize(ast, compiledGrammar)).isNull();
+  }
+
+  @Test
+  public void should_not_serialize_preprocessing_directives() throws Exception {
+    Token token = token(GenericTokenType.IDENTIFIER, "x")
+        .addTrivia(Trivia.createPreprocessingDirective(new AstNode(GenericTokenType.LITERAL, "directive", null), grammar))
+        .build();
+
+    assertThat(AstSerializer.serialize(new AstNode(token), compiledGrammar)).isNull();
+  }
+
+  @Test
+  public void should_fail_on_truncated_data() throws Exception {
+    byte[] data = AstSerializer.serialize(new ParserAdapter<ExpressionGrammar>(Charset.forName("UTF-8"), grammar).parse("1"), compiledGrammar);
+
+    thrown.expect(IOException.class);
+    AstSerializer.deserialize(Arrays.copyOf(data, data.length - 1), compiledGrammar, getClass().getClassLoader());
+  }
+
+  @Test
+  public void should_fail_on_unsupported_format() throws Exception {
+    thrown.expect(IOException.class);
+    thrown.expectMessage("Unsupported format");
+    AstSerializer.deserialize(new byte[8], compiledGrammar, getClass().getClassLoader());
+  }
+
+  private static Token.Builder token(GenericTokenType type, String value) throws Exception {
+    return Token.builder()
+        .setType(type)
+        .setValueAndOriginalValue(value)
+        .setURI(new URI("tests://unittest"))
+        .setLine(1)
+        .setColumn(0);
+  }
+
+}
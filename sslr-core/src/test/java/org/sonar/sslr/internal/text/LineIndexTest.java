@@ -0,0 +1,105 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.text;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class LineIndexTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void single_line() {
+    LineIndex lineIndex = LineIndex.of("foo".toCharArray());
+
+    assertThat(lineIndex.length()).isEqualTo(3);
+    assertThat(lineIndex.getLineCount()).isEqualTo(1);
+    assertThat(lineIndex.getLineStart(1)).isEqualTo(0);
+    assertThat(lineIndex.getLineEnd(1)).isEqualTo(3);
+    assertThat(lineIndex.getLineNumber(0)).isEqualTo(1);
+    assertThat(lineIndex.getLineNumber(3)).isEqualTo(1);
+  }
+
+  @Test
+  public void empty() {
+    LineIndex lineIndex = LineIndex.of("");
+
+    assertThat(lineIndex.getLineCount()).isEqualTo(1);
+    assertThat(lineIndex.getLineStart(1)).isEqualTo(0);
+    assertThat(lineIndex.getLineEnd(1)).isEqualTo(0);
+    assertThat(lineIndex.getLineNumber(0)).isEqualTo(1);
+  }
+
+  @Test
+  public void all_kinds_of_line_terminators() {
+    LineIndex lineIndex = LineIndex.of("foo\nbar\r\nbaz\rqux\r".toCharArray());
+
+    assertThat(lineIndex.getLineCount()).isEqualTo(5);
+    assertThat(lineIndex.getLineStart(1)).isEqualTo(0);
+    assertThat(lineIndex.getLineStart(2)).isEqualTo(4);
+    assertThat(lineIndex.getLineStart(3)).isEqualTo(9);
+    assertThat(lineIndex.getLineStart(4)).isEqualTo(13);
+    assertThat(lineIndex.getLineStart(5)).isEqualTo(17);
+    assertThat(lineIndex.getLineEnd(2)).isEqualTo(9);
+    assertThat(lineIndex.getLineEnd(5)).isEqualTo(17);
+
+    assertThat(lineIndex.getLineNumber(3)).isEqualTo(1);
+    assertThat(lineIndex.getLineNumber(4)).isEqualTo(2);
+    assertThat(lineIndex.getLineNumber(8)).isEqualTo(2);
+    assertThat(lineIndex.getLineNumber(9)).isEqualTo(3);
+    assertThat(lineIndex.getLineNumber(17)).isEqualTo(5);
+  }
+
+  @Test
+  public void many_lines() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      sb.append("line\n");
+    }
+    LineIndex lineIndex = LineIndex.of(sb);
+
+    assertThat(lineIndex.getLineCount()).isEqualTo(101);
+    assertThat(lineIndex.getLineStart(100)).isEqualTo(99 * 5);
+    assertThat(lineIndex.getLineNumber(99 * 5 + 2)).isEqualTo(100);
+  }
+
+  @Test
+  public void should_fail_on_unknown_line() {
+    thrown.expect(IndexOutOfBoundsException.class);
+    LineIndex.of("foo").getLineStart(2);
+  }
+
+  @Test
+  public void offset_after_end_of_text_belongs_to_last_line() {
+    assertThat(LineIndex.of("foo\nbar").getLineNumber(100)).isEqualTo(2);
+  }
+
+  @Test
+  public void should_fail_on_negative_offset() {
+    thrown.expect(IllegalArgumentException.class);
+    LineIndex.of("foo").getLineNumber(-1);
+  }
+
+}
@@ -0,0 +1,173 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeSkippingPolicy;
+import com.sonar.sslr.api.GenericTokenType;
+import org.junit.Test;
+import org.sonar.sslr.grammar.GrammarRuleKey;
+import org.sonar.sslr.grammar.LexerfulGrammarBuilder;
+import org.sonar.sslr.grammar.LexerlessGrammarBuilder;
+import org.sonar.sslr.internal.grammar.MutableParsingRule;
+import org.sonar.sslr.internal.matchers.ParseNode;
+import org.sonar.sslr.parser.ParsingResult;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CompiledGrammarSerializerTest {
+
+  private static enum Keys implements GrammarRuleKey {
+    ROOT, STATEMENT, KEYWORD, IDENTIFIER, NUMBER, SPACING, EOF
+  }
+
+  private static CompiledGrammar compile(GrammarRuleKey ruleKey) {
+    LexerlessGrammarBuilder b = LexerlessGrammarBuilder.create();
+    b.rule(Keys.ROOT).is(b.zeroOrMore(Keys.STATEMENT, b.cut()), Keys.EOF);
+    b.rule(Keys.STATEMENT).is(b.firstOf(
+        b.sequence(Keys.KEYWORD, Keys.IDENTIFIER, b.optional("=", Keys.NUMBER), ";"),
+        b.sequence(b.nextNot(Keys.KEYWORD), Keys.IDENTIFIER, b.oneOrMore(Keys.NUMBER), ";"),
+        b.sequence(b.next("x"), b.nothing())));
+    b.rule(Keys.KEYWORD).is(b.token(GenericTokenType.LITERAL, b.firstOf("var", "val", "let")), Keys.SPACING);
+    b.rule(Keys.IDENTIFIER).is(b.token(GenericTokenType.IDENTIFIER, b.regexp("[a-z]++")), Keys.SPACING).skipIfOneChild();
+    b.rule(Keys.NUMBER).is(b.regexp("[0-9]++"), Keys.SPACING);
+    b.rule(Keys.SPACING).is(b.zeroOrMore(b.firstOf(
+        b.skippedTrivia(b.regexp("\\s++")),
+        b.commentTrivia(b.regexp("//[^\\n]*+")))));
+    b.rule(Keys.SPACING).skip();
+    b.rule(Keys.EOF).is(b.token(GenericTokenType.EOF, b.endOfInput()));
+    return MutableGrammarCompiler.compile((CompilableGrammarRule) b.build().rule(ruleKey));
+  }
+
+  @Test
+  public void should_restore_instructions() throws Exception {
+    CompiledGrammar grammar = compile(Keys.ROOT);
+    CompiledGrammar restored = roundTrip(grammar);
+
+    assertThat(toString(restored.getInstructions())).isEqualTo(toString(grammar.getInstructions()));
+    assertThat(restored.getRootRuleKey()).isSameAs(Keys.ROOT);
+    assertThat(restored.getRootRuleOffset()).isEqualTo(grammar.getRootRuleOffset());
+    assertThat(restored.getRules().keySet()).isEqualTo(grammar.getRules().keySet());
+    assertThat(GrammarFingerprint.compute(restored)).isEqualTo(GrammarFingerprint.compute(grammar));
+  }
+
+  @Test
+  public void should_restore_rules() throws Exception {
+    CompiledGrammar restored = roundTrip(compile(Keys.ROOT));
+
+    MutableParsingRule rule = (MutableParsingRule) restored.getRules().get(Keys.SPACING);
+    assertThat(rule.getName()).isEqualTo("SPACING");
+    assertThat(rule.getRuleKey()).isSameAs(Keys.SPACING);
+    assertThat(rule.hasToBeSkippedFromAst(null)).isTrue();
+    assertThat(rule.shouldMemoize()).isTrue();
+    assertThat(restored.getMatcher(Keys.SPACING)).isSameAs(rule);
+  }
+
+  @Test
+  public void should_parse_same_as_original() throws Exception {
+    CompiledGrammar grammar = compile(Keys.ROOT);
+    CompiledGrammar restored = roundTrip(grammar);
+
+    for (String input : Arrays.asList("var foo = 42; bar 1 2 ; // comment\n", "let foo 42;", "x", "")) {
+      ParsingResult expected = Machine.parse(input.toCharArray(), grammar);
+      ParsingResult actual = Machine.parse(input.toCharArray(), restored);
+      assertThat(actual.isMatched()).as(input).isEqualTo(expected.isMatched());
+      if (expected.isMatched()) {
+        assertThat(print(actual.getParseTreeRoot())).as(input).isEqualTo(print(expected.getParseTreeRoot()));
+      } else {
+        assertThat(actual.getParseError().getErrorIndex()).isEqualTo(expected.getParseError().getErrorIndex());
+      }
+    }
+  }
+
+  @Test
+  public void should_restore_rules_created_by_name() throws Exception {
+    MutableParsingRule subRule = new MutableParsingRule("subRule");
+    subRule.is("foo");
+    subRule.disableMemoization();
+    MutableParsingRule rule = new MutableParsingRule("rule");
+    rule.is(subRule, subRule);
+    CompiledGrammar restored = roundTrip(MutableGrammarCompiler.compile(rule));
+
+    MutableParsingRule restoredRule = (MutableParsingRule) restored.getRules().get(restored.getRootRuleKey());
+    assertThat(restoredRule.getName()).isEqualTo("rule");
+    assertThat(restoredRule.shouldMemoize()).isTrue();
+    assertThat(Machine.parse("foofoo".toCharArray(), restored).isMatched()).isTrue();
+    for (CompilableGrammarRule restoredSubRule : restored.getRules().values()) {
+      if ("subRule".equals(restoredSubRule.getName())) {
+        assertThat(((MutableParsingRule) restoredSubRule).shouldMemoize()).isFalse();
+      }
+    }
+  }
+
+  @Test
+  public void should_not_serialize_custom_skipping_policy() {
+    MutableParsingRule rule = new MutableParsingRule("rule");
+    rule.is("foo");
+    rule.skipIf(new AstNodeSkippingPolicy() {
+      public boolean hasToBeSkippedFromAst(AstNode node) {
+        return false;
+      }
+    });
+    assertThat(CompiledGrammarSerializer.serialize(MutableGrammarCompiler.compile(rule))).isNull();
+  }
+
+  @Test
+  public void should_not_serialize_lexerful_grammar() {
+    LexerfulGrammarBuilder b = LexerfulGrammarBuilder.create();
+    b.rule(Keys.ROOT).is("foo");
+    CompilableGrammarRule rule = (CompilableGrammarRule) b.build().rule(Keys.ROOT);
+    assertThat(CompiledGrammarSerializer.serialize(MutableGrammarCompiler.compile(rule))).isNull();
+  }
+
+  @Test(expected = IOException.class)
+  public void should_fail_on_corrupted_data() throws Exception {
+    byte[] data = CompiledGrammarSerializer.serialize(compile(Keys.ROOT));
+    CompiledGrammarSerializer.deserialize(Arrays.copyOf(data, data.length / 2), getClass().getClassLoader());
+  }
+
+  @Test(expected = IOException.class)
+  public void should_fail_on_unknown_format() throws Exception {
+    CompiledGrammarSerializer.deserialize(new byte[] {0, 0, 0, 0, 0, 0, 0, 1}, getClass().getClassLoader());
+  }
+
+  private static CompiledGrammar roundTrip(CompiledGrammar grammar) throws IOException {
+    byte[] data = CompiledGrammarSerializer.serialize(grammar);
+    assertThat(data).isNotNull();
+    return CompiledGrammarSerializer.deserialize(data, CompiledGrammarSerializerTest.class.getClassLoader());
+  }
+
+  private static String toString(Instruction[] instructions) {
+    return Arrays.toString(instructions);
+  }
+
+  private static String print(ParseNode node) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(node.getMatcher()).append('[').append(node.getStartIndex()).append(',').append(node.getEndIndex());
+    for (ParseNode child : node.getChildren()) {
+      sb.append(' ').append(print(child));
+    }
+    return sb.append(']').toString();
+  }
+
+}
@@ -21,6 +21,9 @@ package org.sonar.sslr.internal.vm;
 
 import org.junit.Test;
 
+import java.util.BitSet;
+import java.util.List;
+
 import static org.fest.assertions.Assertions.assertThat;
 
 public class FirstOfExpressionTest {
@@ -47,4 +50,61 @@ public class FirstOfExpressionTest {
     });
   }
 
+  @Test
+  public void should_flatten_nested_and_use_trie_for_consecutive_strings() {
+    StringExpression a = new StringExpression("a");
+    StringExpression b = new StringExpression("b");
+    StringExpression c = new StringExpression("c");
+    StringExpression d = new StringExpression("d");
+    FirstOfExpression expression = new FirstOfExpression(
+        new FirstOfExpression(a, b),
+        c,
+        new SubExpression(1),
+        d);
+    Instruction[] instructions = expression.compile(new CompilationHandler());
+    assertThat(instructions).hasSize(7);
+    assertThat(instructions[0]).isEqualTo(Instruction.choice(3));
+    assertThat(instructions[1].toString()).isEqualTo("StringTrie[String a, String b, String c]");
+    assertThat(instructions[2]).isEqualTo(Instruction.commit(5));
+    assertThat(instructions[3]).isEqualTo(Instruction.choice(3));
+    assertThat(instructions[4]).isEqualTo(SubExpression.mockInstruction(1));
+    assertThat(instructions[5]).isEqualTo(Instruction.commit(2));
+    assertThat(instructions[6]).isSameAs(d);
+  }
+
+  @Test
+  public void should_compile_strings_into_single_instruction() {
+    StringExpression a = new StringExpression("a");
+    StringExpression b = new StringExpression("b");
+    Instruction[] instructions = new FirstOfExpression(a, b).compile(new CompilationHandler());
+    assertThat(instructions).hasSize(1);
+    assertThat(instructions[0]).isInstanceOf(StringTrieExpression.class);
+  }
+
+  @Test
+  public void should_compile_without_backtracking() {
+    FirstOfExpression expression = new FirstOfExpression(
+        new SubExpression(1, 2, 3),
+        new SubExpression(4, 5),
+        new SubExpression(6));
+    final CharacterSet[] sets = {new CharacterSet(new BitSet()), new CharacterSet(new BitSet()), new CharacterSet(new BitSet())};
+    CompilationHandler compiler = new CompilationHandler() {
+      @Override
+      public CharacterSet[] choiceLookahead(List<ParsingExpression> alternatives) {
+        assertThat(alternatives).hasSize(3);
+        return sets;
+      }
+    };
+    assertThat(expression.compile(compiler)).isEqualTo(new Instruction[] {
+      Instruction.switchOf(sets, new int[] {1, 5, 8}),
+      SubExpression.mockInstruction(1),
+      SubExpression.mockInstruction(2),
+      SubExpression.mockInstruction(3),
+      Instruction.jump(5),
+      SubExpression.mockInstruction(4),
+      SubExpression.mockInstruction(5),
+      Instruction.jump(2),
+      SubExpression.mockInstruction(6)
+    });
+  }
 }
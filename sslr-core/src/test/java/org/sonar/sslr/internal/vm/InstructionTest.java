@@ -38,10 +38,13 @@ import org.sonar.sslr.internal.vm.Instruction.IgnoreErrorsInstruction;
 import org.sonar.sslr.internal.vm.Instruction.JumpInstruction;
 import org.sonar.sslr.internal.vm.Instruction.PredicateChoiceInstruction;
 import org.sonar.sslr.internal.vm.Instruction.RetInstruction;
+import org.sonar.sslr.internal.vm.Instruction.SwitchInstruction;
+import org.sonar.sslr.internal.vm.Instruction.TestInstruction;
+
+import java.util.BitSet;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -132,12 +135,9 @@ public class InstructionTest {
     assertThat(instruction.equals(new Object())).isFalse();
     assertThat(instruction.hashCode()).isEqualTo(42);
 
-    MachineStack stack = new MachineStack().getOrCreateChild();
-    when(machine.peek()).thenReturn(stack);
     instruction.execute(machine);
     InOrder inOrder = Mockito.inOrder(machine);
-    inOrder.verify(machine, times(2)).peek();
-    inOrder.verify(machine).pop();
+    inOrder.verify(machine).commit();
     inOrder.verify(machine).jump(42);
     verifyNoMoreInteractions(machine);
   }
@@ -152,14 +152,15 @@ public class InstructionTest {
     assertThat(instruction.equals(new Object())).isFalse();
     assertThat(instruction.hashCode()).isEqualTo(42);
 
-    MachineStack stack = new MachineStack().getOrCreateChild();
+    MachineStack stack = mock(MachineStack.class);
+    when(stack.index()).thenReturn(42);
     when(machine.peek()).thenReturn(stack);
     when(machine.getIndex()).thenReturn(13);
     instruction.execute(machine);
     InOrder inOrder = Mockito.inOrder(machine);
     inOrder.verify(machine).getIndex();
-    inOrder.verify(machine, times(3)).peek();
-    inOrder.verify(machine).pop();
+    inOrder.verify(machine).peek();
+    inOrder.verify(machine).commit();
     inOrder.verify(machine).jump(42);
     verifyNoMoreInteractions(machine);
   }
@@ -167,8 +168,8 @@ public class InstructionTest {
   @Test
   public void commitVerify_should_throw_exception() {
     Instruction instruction = Instruction.commitVerify(42);
-    MachineStack stack = new MachineStack().getOrCreateChild();
-    stack.setIndex(13);
+    MachineStack stack = mock(MachineStack.class);
+    when(stack.index()).thenReturn(13);
     when(machine.peek()).thenReturn(stack);
     when(machine.getIndex()).thenReturn(13);
     thrown.expect(GrammarException.class);
@@ -187,6 +188,7 @@ public class InstructionTest {
     when(stack.address()).thenReturn(42);
     when(stack.isIgnoreErrors()).thenReturn(true);
     when(machine.peek()).thenReturn(stack);
+    when(machine.createNode()).thenReturn(true);
     instruction.execute(machine);
     InOrder inOrder = Mockito.inOrder(machine);
     inOrder.verify(machine).createNode();
@@ -197,6 +199,16 @@ public class InstructionTest {
     verifyNoMoreInteractions(machine);
   }
 
+  @Test
+  public void ret_should_repeat_left_recursive_rule() {
+    Instruction instruction = Instruction.ret();
+    when(machine.createNode()).thenReturn(false);
+    instruction.execute(machine);
+    InOrder inOrder = Mockito.inOrder(machine);
+    inOrder.verify(machine).createNode();
+    verifyNoMoreInteractions(machine);
+  }
+
   @Test
   public void backtrack() {
     Instruction instruction = Instruction.backtrack();
@@ -279,4 +291,61 @@ public class InstructionTest {
     verifyNoMoreInteractions(machine);
   }
 
+  @Test
+  public void switchOf() {
+    CharacterSet[] sets = {set('a', 'b'), set('c')};
+    Instruction instruction = Instruction.switchOf(sets, new int[] {1, 5});
+    assertThat(instruction).isInstanceOf(SwitchInstruction.class);
+    assertThat(instruction.toString()).isEqualTo("Switch [ab] 1 [c] 5");
+    assertThat(instruction.equals(Instruction.switchOf(new CharacterSet[] {set('a', 'b'), set('c')}, new int[] {1, 5}))).isTrue();
+    assertThat(instruction.equals(Instruction.switchOf(sets, new int[] {1, 3}))).isFalse();
+    assertThat(instruction.equals(new Object())).isFalse();
+
+    when(machine.length()).thenReturn(1);
+    when(machine.charAt(0)).thenReturn('c');
+    instruction.execute(machine);
+    verify(machine).jump(5);
+
+    when(machine.charAt(0)).thenReturn('d');
+    instruction.execute(machine);
+    verify(machine).backtrack();
+
+    when(machine.length()).thenReturn(0);
+    instruction.execute(machine);
+    verify(machine, Mockito.times(2)).backtrack();
+  }
+
+  @Test
+  public void test() {
+    Instruction instruction = Instruction.test(set('a'), 42);
+    assertThat(instruction).isInstanceOf(TestInstruction.class);
+    assertThat(instruction.toString()).isEqualTo("Test [a] 42");
+    assertThat(instruction.equals(Instruction.test(set('a'), 42))).isTrue();
+    assertThat(instruction.equals(Instruction.test(set('b'), 42))).isFalse();
+    assertThat(instruction.equals(Instruction.test(set('a'), 13))).isFalse();
+    assertThat(instruction.equals(new Object())).isFalse();
+    assertThat(instruction.hashCode()).isEqualTo(42);
+
+    when(machine.length()).thenReturn(1);
+    when(machine.charAt(0)).thenReturn('a');
+    instruction.execute(machine);
+    verify(machine).jump(1);
+
+    when(machine.charAt(0)).thenReturn('b');
+    instruction.execute(machine);
+    verify(machine).jump(42);
+
+    when(machine.length()).thenReturn(0);
+    instruction.execute(machine);
+    verify(machine, Mockito.times(2)).jump(42);
+  }
+
+  private static CharacterSet set(char... chars) {
+    BitSet bits = new BitSet();
+    for (char c : chars) {
+      bits.set(c);
+    }
+    return new CharacterSet(bits);
+  }
+
 }
@@ -0,0 +1,149 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import org.sonar.sslr.grammar.GrammarRuleKey;
+import org.sonar.sslr.grammar.LexerlessGrammarBuilder;
+import org.sonar.sslr.internal.matchers.ParseNode;
+import org.sonar.sslr.internal.vm.LazyCompiledGrammar.LazyCallInstruction;
+import org.sonar.sslr.parser.ParsingResult;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class LazyCompiledGrammarTest {
+
+  private static enum MyGrammar implements GrammarRuleKey {
+    ROOT, STATEMENT, EXPRESSION, TERM, NUMBER, STRING, UNUSED
+  }
+
+  private static CompilableGrammarRule rootRule() {
+    LexerlessGrammarBuilder b = LexerlessGrammarBuilder.create();
+    b.rule(MyGrammar.ROOT).is(b.zeroOrMore(MyGrammar.STATEMENT), b.endOfInput());
+    b.rule(MyGrammar.STATEMENT).is(b.firstOf(
+        b.sequence(MyGrammar.EXPRESSION, ";"),
+        b.sequence("unused", MyGrammar.UNUSED)));
+    b.rule(MyGrammar.EXPRESSION).is(b.firstOf(
+        b.sequence(MyGrammar.EXPRESSION, "+", MyGrammar.TERM),
+        MyGrammar.TERM));
+    b.rule(MyGrammar.TERM).is(b.firstOf(
+        MyGrammar.NUMBER,
+        MyGrammar.STRING,
+        b.sequence("(", MyGrammar.EXPRESSION, ")")));
+    b.rule(MyGrammar.NUMBER).is(b.regexp("[0-9]++"));
+    b.rule(MyGrammar.STRING).is(b.regexp("\"[^\"]*+\""));
+    b.rule(MyGrammar.UNUSED).is(";");
+    return (CompilableGrammarRule) b.build().rule(MyGrammar.ROOT);
+  }
+
+  @Test
+  public void should_compile_only_root_rule() {
+    LazyCompiledGrammar grammar = LazyCompiledGrammar.compile(rootRule());
+
+    assertThat(grammar.getRules().keySet()).containsOnly(MyGrammar.ROOT);
+    assertThat(grammar.getRootRuleOffset()).isEqualTo(0);
+    assertThat(grammar.getMatcher(MyGrammar.ROOT)).isNotNull();
+    int lazyCalls = 0;
+    for (Instruction instruction : grammar.getInstructions()) {
+      if (instruction instanceof LazyCallInstruction) {
+        assertThat(((LazyCallInstruction) instruction).getRule().getRuleKey()).isEqualTo(MyGrammar.STATEMENT);
+        lazyCalls++;
+      }
+    }
+    assertThat(lazyCalls).isEqualTo(1);
+  }
+
+  @Test
+  public void should_compile_rules_at_first_invocation() {
+    LazyCompiledGrammar grammar = LazyCompiledGrammar.compile(rootRule());
+
+    ParsingResult result = Machine.parse("1+(2+3);".toCharArray(), grammar);
+    assertThat(result.isMatched()).isTrue();
+    assertThat(grammar.getRules().keySet()).containsOnly(MyGrammar.ROOT, MyGrammar.STATEMENT, MyGrammar.EXPRESSION, MyGrammar.TERM, MyGrammar.NUMBER, MyGrammar.STRING);
+    int length = grammar.getInstructions().length;
+
+    result = Machine.parse("unused;".toCharArray(), grammar);
+    assertThat(result.isMatched()).isTrue();
+    assertThat(grammar.getRules().keySet()).contains(MyGrammar.UNUSED);
+    assertThat(grammar.getInstructions().length).isGreaterThan(length);
+  }
+
+  @Test
+  public void should_parse_same_as_eagerly_compiled_grammar() {
+    CompiledGrammar eager = MutableGrammarCompiler.compile(rootRule());
+    LazyCompiledGrammar lazy = LazyCompiledGrammar.compile(rootRule());
+
+    for (String input : new String[] {"1+2+(3+\"4\");5;", "1+;", "unused;(1);", "(((1)))"}) {
+      ParsingResult expected = Machine.parse(input.toCharArray(), eager);
+      ParsingResult actual = Machine.parse(input.toCharArray(), lazy);
+      assertThat(actual.isMatched()).as(input).isEqualTo(expected.isMatched());
+      if (expected.isMatched()) {
+        assertThat(print(actual.getParseTreeRoot())).as(input).isEqualTo(print(expected.getParseTreeRoot()));
+      } else {
+        assertThat(actual.getParseError().getErrorIndex()).as(input).isEqualTo(expected.getParseError().getErrorIndex());
+        assertThat(actual.getParseError().getMessage()).as(input).isEqualTo(expected.getParseError().getMessage());
+      }
+    }
+    assertThat(lazy.getRules().keySet()).isEqualTo(eager.getRules().keySet());
+  }
+
+  @Test
+  public void should_be_thread_safe() throws Exception {
+    final String input = "1+2+(3+\"4\");5;unused;";
+    final String expected = print(Machine.parse(input.toCharArray(), MutableGrammarCompiler.compile(rootRule())).getParseTreeRoot());
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      for (int attempt = 0; attempt < 20; attempt++) {
+        final LazyCompiledGrammar grammar = LazyCompiledGrammar.compile(rootRule());
+        List<Future<String>> results = Lists.newArrayList();
+        for (int i = 0; i < 8; i++) {
+          results.add(executor.submit(new Callable<String>() {
+            public String call() {
+              return print(Machine.parse(input.toCharArray(), grammar).getParseTreeRoot());
+            }
+          }));
+        }
+        for (Future<String> result : results) {
+          assertThat(result.get()).isEqualTo(expected);
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static String print(ParseNode node) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(node.getMatcher()).append('[').append(node.getStartIndex()).append(',').append(node.getEndIndex());
+    for (ParseNode child : node.getChildren()) {
+      sb.append(' ').append(print(child));
+    }
+    return sb.append(']').toString();
+  }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import org.junit.Test;
+import org.sonar.sslr.grammar.GrammarRuleKey;
+import org.sonar.sslr.grammar.LexerlessGrammarBuilder;
+import org.sonar.sslr.parser.LexerlessGrammar;
+
+import java.util.Arrays;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class LookaheadAnalysisTest {
+
+  private static enum MyGrammar implements GrammarRuleKey {
+    ROOT, STATEMENT, EXPRESSION, TERM, NUMBER, STRING, IDENTIFIER, SPACING
+  }
+
+  private final LexerlessGrammarBuilder b = LexerlessGrammarBuilder.create();
+  private final Object statements = b.zeroOrMore(MyGrammar.STATEMENT);
+  private final Object identifiers = b.zeroOrMore(",", MyGrammar.SPACING, MyGrammar.IDENTIFIER);
+  private final Object trailingComma = b.optional(",", MyGrammar.SPACING);
+  private final Object lookahead = b.optional(MyGrammar.NUMBER, MyGrammar.STRING);
+  private final Object grouping = b.optional("(", MyGrammar.SPACING, MyGrammar.EXPRESSION, ")", MyGrammar.SPACING);
+  private final LexerlessGrammar grammar = createGrammar();
+  private final LookaheadAnalysis analysis = new LookaheadAnalysis(rule(MyGrammar.ROOT));
+
+  private LexerlessGrammar createGrammar() {
+    b.rule(MyGrammar.ROOT).is(MyGrammar.SPACING, statements, b.endOfInput());
+    b.rule(MyGrammar.STATEMENT).is(b.firstOf(
+        b.sequence("print", MyGrammar.SPACING, grouping, MyGrammar.EXPRESSION),
+        b.sequence(MyGrammar.IDENTIFIER, identifiers, trailingComma, "=", MyGrammar.SPACING, MyGrammar.EXPRESSION),
+        b.sequence("?", b.next(lookahead), "!")));
+    b.rule(MyGrammar.EXPRESSION).is(b.firstOf(
+        b.sequence(MyGrammar.EXPRESSION, "+", MyGrammar.SPACING, MyGrammar.TERM),
+        MyGrammar.TERM));
+    b.rule(MyGrammar.TERM).is(b.firstOf(
+        MyGrammar.NUMBER,
+        MyGrammar.STRING,
+        b.sequence("(", MyGrammar.SPACING, MyGrammar.EXPRESSION, ")", MyGrammar.SPACING)));
+    b.rule(MyGrammar.NUMBER).is(b.regexp("[0-9]++"), MyGrammar.SPACING);
+    b.rule(MyGrammar.STRING).is(b.regexp("\"[^\"]*+\""), MyGrammar.SPACING);
+    b.rule(MyGrammar.IDENTIFIER).is(b.regexp("[a-z]++"), MyGrammar.SPACING);
+    b.rule(MyGrammar.SPACING).is(b.regexp("\\s*+"));
+    return b.build();
+  }
+
+  private CompilableGrammarRule rule(MyGrammar ruleKey) {
+    return (CompilableGrammarRule) grammar.rule(ruleKey);
+  }
+
+  @Test
+  public void should_decide_choice_between_disjoint_alternatives() {
+    CharacterSet[] sets = analysis.choiceLookahead(Arrays.<ParsingExpression> asList(rule(MyGrammar.NUMBER), rule(MyGrammar.STRING), new StringExpression("(")));
+    assertThat(sets).isNotNull();
+    assertThat(sets[0].toString()).isEqualTo("[0-9]");
+    assertThat(sets[1].toString()).isEqualTo("[\"]");
+    assertThat(sets[2].toString()).isEqualTo("[(]");
+  }
+
+  @Test
+  public void should_not_decide_choice_between_overlapping_alternatives() {
+    assertThat(analysis.choiceLookahead(Arrays.<ParsingExpression> asList(new StringExpression("print"), rule(MyGrammar.IDENTIFIER)))).isNull();
+  }
+
+  @Test
+  public void should_not_decide_choice_with_nullable_alternative() {
+    assertThat(analysis.choiceLookahead(Arrays.<ParsingExpression> asList(rule(MyGrammar.NUMBER), rule(MyGrammar.SPACING)))).isNull();
+    assertThat(analysis.choiceLookahead(Arrays.<ParsingExpression> asList(rule(MyGrammar.NUMBER), new NextExpression(new StringExpression("a"))))).isNull();
+  }
+
+  @Test
+  public void should_not_decide_choice_with_unknown_alternative() {
+    assertThat(analysis.choiceLookahead(Arrays.<ParsingExpression> asList(rule(MyGrammar.NUMBER), new SubExpression(1)))).isNull();
+    assertThat(analysis.choiceLookahead(Arrays.<ParsingExpression> asList(rule(MyGrammar.NUMBER), new PatternExpression("a{2}")))).isNull();
+  }
+
+  @Test
+  public void should_treat_left_recursive_rule_as_unknown() {
+    assertThat(analysis.choiceLookahead(Arrays.<ParsingExpression> asList(rule(MyGrammar.EXPRESSION), new StringExpression(";")))).isNull();
+    assertThat(successLookahead(rule(MyGrammar.EXPRESSION))).isNull();
+  }
+
+  @Test
+  public void should_decide_when_subexpression_succeeds_if_and_only_if_first_character_matches() {
+    assertThat(analysis.successLookahead((ParsingExpression) trailingComma).toString()).isEqualTo("[,]");
+    assertThat(successLookahead(rule(MyGrammar.NUMBER)).toString()).isEqualTo("[0-9]");
+    assertThat(successLookahead(rule(MyGrammar.TERM))).as("sequence in parenthesis might fail after first character").isNull();
+    assertThat(successLookahead(new StringExpression("a")).toString()).isEqualTo("[a]");
+    assertThat(successLookahead(new StringExpression("ab"))).isNull();
+    assertThat(successLookahead(new OneOrMoreExpression(new StringExpression("a"))).toString()).isEqualTo("[a]");
+    assertThat(successLookahead(new FirstOfExpression(new StringExpression("a"), new PatternExpression("[0-9]"))).toString()).isEqualTo("[0-9a]");
+    assertThat(successLookahead(new SequenceExpression(new StringExpression("a"), new OptionalExpression(new StringExpression("b")))).toString())
+        .isEqualTo("[a]");
+    assertThat(successLookahead(new SequenceExpression(new StringExpression("a"), new StringExpression("b")))).isNull();
+    assertThat(successLookahead(new SequenceExpression(new OptionalExpression(new StringExpression("b")), new StringExpression("a")))).isNull();
+    assertThat(successLookahead(new OptionalExpression(new StringExpression("a")))).isNull();
+    assertThat(successLookahead(NothingExpression.INSTANCE)).isNull();
+  }
+
+  private CharacterSet successLookahead(ParsingExpression subExpression) {
+    return analysis.successLookahead(new OptionalExpression(subExpression));
+  }
+
+  @Test
+  public void should_not_decide_when_subexpression_might_fail_after_first_character() {
+    // even if not followed by same characters, because failure of the rest of input might backtrack into enclosing choice
+    assertThat(analysis.successLookahead((ParsingExpression) statements)).isNull();
+    assertThat(analysis.successLookahead((ParsingExpression) identifiers)).isNull();
+    assertThat(analysis.successLookahead((ParsingExpression) grouping)).isNull();
+  }
+
+  @Test
+  public void should_not_decide_inside_of_predicate() {
+    assertThat(analysis.successLookahead((ParsingExpression) lookahead)).isNull();
+  }
+
+  @Test
+  public void should_compute_first_characters_through_nullable_prefix() {
+    CharacterSet[] sets = analysis.choiceLookahead(Arrays.<ParsingExpression> asList(
+        new SequenceExpression(new OptionalExpression(new StringExpression("-")), rule(MyGrammar.NUMBER)),
+        new StringTrieExpression(Arrays.asList(new StringExpression("a"), new StringExpression("bc")))));
+    assertThat(sets).isNotNull();
+    assertThat(sets[0].toString()).isEqualTo("[\\u002D0-9]");
+    assertThat(sets[1].toString()).isEqualTo("[ab]");
+  }
+
+  @Test
+  public void should_not_analyse_cut() {
+    assertThat(analysis.choiceLookahead(Arrays.<ParsingExpression> asList(
+        new SequenceExpression(CutExpression.INSTANCE, new StringExpression("a")),
+        new StringExpression("b")))).isNull();
+  }
+
+}
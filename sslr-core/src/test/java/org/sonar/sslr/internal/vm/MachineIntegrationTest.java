@@ -94,6 +94,33 @@ public class MachineIntegrationTest {
     assertThat(Machine.execute("bar", instructions)).isTrue();
   }
 
+  @Test
+  public void cut() {
+    Instruction[] instructions = new FirstOfExpression(
+        new SequenceExpression(new StringExpression("a"), CutExpression.INSTANCE, new StringExpression("b")),
+        new StringExpression("ac")).compile(new CompilationHandler());
+    assertThat(Machine.execute("ab", instructions)).isTrue();
+    assertThat(Machine.execute("ac", instructions)).isFalse();
+  }
+
+  @Test
+  public void cut_inside_of_next() {
+    Instruction[] instructions = new FirstOfExpression(
+        new SequenceExpression(new NextExpression(new SequenceExpression(new StringExpression("a"), CutExpression.INSTANCE)), new StringExpression("ab")),
+        new StringExpression("ac")).compile(new CompilationHandler());
+    assertThat(Machine.execute("ab", instructions)).isTrue();
+    assertThat(Machine.execute("ac", instructions)).isTrue();
+  }
+
+  @Test
+  public void cut_inside_of_nextNot() {
+    Instruction[] instructions = new FirstOfExpression(
+        new SequenceExpression(new NextNotExpression(new SequenceExpression(new StringExpression("a"), CutExpression.INSTANCE, new StringExpression("b"))), new StringExpression("ab")),
+        new StringExpression("ac")).compile(new CompilationHandler());
+    assertThat(Machine.execute("ab", instructions)).isFalse();
+    assertThat(Machine.execute("ac", instructions)).isTrue();
+  }
+
   @Test
   public void zeroOrMore() {
     Instruction[] instructions = new ZeroOrMoreExpression(new StringExpression("a")).compile(new CompilationHandler());
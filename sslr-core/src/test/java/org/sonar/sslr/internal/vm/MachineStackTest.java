@@ -0,0 +1,91 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import org.junit.Test;
+import org.sonar.sslr.internal.matchers.Matcher;
+import org.sonar.sslr.internal.matchers.ParseNode;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class MachineStackTest {
+
+  @Test
+  public void should_be_empty_initially() {
+    MachineStack stack = new MachineStack();
+    assertThat(stack.isEmpty()).isTrue();
+    assertThat(stack.depth()).isEqualTo(0);
+    assertThat(stack.index()).isEqualTo(-1);
+    assertThat(stack.subNodes()).isEmpty();
+  }
+
+  @Test
+  public void should_grow() {
+    MachineStack stack = new MachineStack();
+    Matcher matcher = mock(Matcher.class);
+    for (int i = 1; i <= 1000; i++) {
+      stack.push(i, i * 2, i % 2 == 0);
+      stack.setMatcher(matcher);
+      stack.addNode(new ParseNode(i, i, matcher));
+    }
+    for (int i = 1000; i >= 1; i--) {
+      assertThat(stack.depth()).isEqualTo(i);
+      assertThat(stack.address()).isEqualTo(i);
+      assertThat(stack.index()).isEqualTo(i * 2);
+      assertThat(stack.index(i)).isEqualTo(i * 2);
+      assertThat(stack.isIgnoreErrors()).isEqualTo(i % 2 == 0);
+      assertThat(stack.matcher(i)).isSameAs(matcher);
+      assertThat(stack.subNodes()).hasSize(1);
+      stack.pop();
+    }
+    assertThat(stack.isEmpty()).isTrue();
+    assertThat(stack.subNodes()).isEmpty();
+  }
+
+  @Test
+  public void nodes_should_be_shared_between_frames() {
+    MachineStack stack = new MachineStack();
+    Matcher matcher = mock(Matcher.class);
+    ParseNode first = new ParseNode(0, 1, matcher);
+    ParseNode second = new ParseNode(1, 2, matcher);
+    ParseNode third = new ParseNode(0, 2, matcher);
+
+    stack.addNode(first);
+    stack.push(0, 1, false);
+    assertThat(stack.isReturn()).isFalse();
+    assertThat(stack.subNodes()).isEmpty();
+    stack.addNode(second);
+    assertThat(stack.subNodes()).containsOnly(second);
+
+    stack.popKeepingNodes();
+    assertThat(stack.subNodes()).containsOnly(first, second);
+
+    stack.push(0, 0, false);
+    stack.setMatcher(matcher);
+    assertThat(stack.isReturn()).isTrue();
+    stack.addNode(second);
+    stack.replaceNodes(third);
+    assertThat(stack.subNodes()).containsOnly(third);
+    stack.popKeepingNodes();
+    assertThat(stack.subNodes()).containsOnly(first, second, third);
+  }
+
+}
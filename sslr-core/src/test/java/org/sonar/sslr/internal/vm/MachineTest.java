@@ -22,7 +22,6 @@ package org.sonar.sslr.internal.vm;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
-import org.sonar.sslr.grammar.GrammarException;
 import org.sonar.sslr.internal.matchers.Matcher;
 import org.sonar.sslr.internal.matchers.ParseNode;
 
@@ -85,18 +84,16 @@ public class MachineTest {
     Matcher matcher = mock(Matcher.class);
     machine.advanceIndex(1);
     machine.jump(1);
-    MachineStack previousStack = machine.peek();
     machine.pushReturn(2, matcher, 1);
     assertThat(machine.getAddress()).as("new address").isEqualTo(2);
-    assertThat(machine.peek()).isNotSameAs(previousStack);
-    assertThat(machine.peek().parent()).isSameAs(previousStack);
+    assertThat(machine.peek().depth()).isEqualTo(1);
     assertThat(machine.peek().index()).as("current index").isEqualTo(1);
     assertThat(machine.peek().address()).as("return address").isEqualTo(1 + 2);
     assertThat(machine.peek().matcher()).isSameAs(matcher);
   }
 
   @Test
-  public void should_detect_left_recursion() {
+  public void should_fail_first_left_recursive_invocation() {
     Machine machine = new Machine("foo", new Instruction[2]);
     Matcher matcher = mock(Matcher.class);
 
@@ -112,9 +109,10 @@ public class MachineTest {
     assertThat(machine.peek().leftRecursion()).isEqualTo(1);
 
     // same rule and index of input sequence
-    thrown.expect(GrammarException.class);
-    thrown.expectMessage("Left recursion has been detected, involved rule: " + matcher.toString());
+    machine.pushBacktrack(42);
     machine.pushReturn(0, matcher, 0);
+    assertThat(machine.getAddress()).as("backtrack address").isEqualTo(1 + 42);
+    assertThat(machine.peek().depth()).isEqualTo(2);
   }
 
   @Test
@@ -122,10 +120,8 @@ public class MachineTest {
     Machine machine = new Machine("foo", new Instruction[2]);
     machine.advanceIndex(1);
     machine.jump(42);
-    MachineStack previousStack = machine.peek();
     machine.pushBacktrack(13);
-    assertThat(machine.peek()).isNotSameAs(previousStack);
-    assertThat(machine.peek().parent()).isSameAs(previousStack);
+    assertThat(machine.peek().depth()).isEqualTo(1);
     assertThat(machine.peek().index()).as("current index").isEqualTo(1);
     assertThat(machine.peek().address()).as("backtrack address").isEqualTo(42 + 13);
     assertThat(machine.peek().matcher()).isNull();
@@ -134,11 +130,25 @@ public class MachineTest {
   @Test
   public void should_pop() {
     Machine machine = new Machine("", new Instruction[2]);
-    MachineStack previousStack = machine.peek();
     machine.pushBacktrack(13);
-    assertThat(machine.peek()).isNotSameAs(previousStack);
+    machine.createLeafNode(mock(Matcher.class), 0);
+    assertThat(machine.peek().depth()).isEqualTo(1);
     machine.pop();
-    assertThat(machine.peek()).isSameAs(previousStack);
+    assertThat(machine.peek().depth()).isEqualTo(0);
+    assertThat(machine.peek().subNodes()).isEmpty();
+  }
+
+  @Test
+  public void should_commit() {
+    Machine machine = new Machine("", new Instruction[2]);
+    Matcher matcher = mock(Matcher.class);
+    machine.createLeafNode(matcher, 0);
+    machine.pushBacktrack(13);
+    machine.createLeafNode(matcher, 0);
+    assertThat(machine.peek().subNodes()).hasSize(1);
+    machine.commit();
+    assertThat(machine.peek().depth()).isEqualTo(0);
+    assertThat(machine.peek().subNodes()).hasSize(2);
   }
 
   @Test
@@ -156,15 +166,63 @@ public class MachineTest {
   public void should_backtrack() {
     Machine machine = new Machine("", new Instruction[4]);
     Matcher matcher = mock(Matcher.class);
-    MachineStack previousStack = machine.peek();
     machine.pushBacktrack(42);
+    machine.createLeafNode(matcher, 0);
     machine.pushReturn(13, matcher, 0);
     machine.pushReturn(13, matcher, 1);
+    machine.createLeafNode(matcher, 0);
     machine.backtrack();
-    assertThat(machine.peek()).isSameAs(previousStack);
+    assertThat(machine.peek().depth()).isEqualTo(0);
+    assertThat(machine.peek().subNodes()).isEmpty();
     assertThat(machine.getAddress()).isEqualTo(42);
   }
 
+  @Test
+  public void should_cut() {
+    Machine machine = new Machine("", new Instruction[4]);
+    Matcher matcher = mock(Matcher.class);
+    machine.pushBacktrack(3);
+    machine.pushReturn(13, matcher, 1);
+    machine.pushBacktrack(2);
+    machine.cut();
+    assertThat(machine.peek().isCut()).isTrue();
+    machine.backtrack();
+    assertThat(machine.peek().isEmpty()).isTrue();
+    assertThat(machine.getAddress()).isEqualTo(-1);
+  }
+
+  @Test
+  public void should_not_cut_enclosing_predicate() {
+    Instruction[] instructions = new Instruction[] {null, null, Instruction.backtrack(), null};
+    Machine machine = new Machine("", instructions);
+    machine.pushBacktrack(3);
+    // choice of "next"
+    machine.pushBacktrack(2);
+    machine.pushBacktrack(1);
+    machine.cut();
+    machine.backtrack();
+    assertThat(machine.getAddress()).isEqualTo(2);
+    machine.backtrack();
+    assertThat(machine.getAddress()).isEqualTo(3);
+  }
+
+  @Test
+  public void should_release_memo_on_cut() {
+    Machine machine = new Machine("foo", new Instruction[3]);
+    MemoParsingExpression matcher = mock(MemoParsingExpression.class);
+    when(matcher.shouldMemoize()).thenReturn(true);
+    machine.pushReturn(1, matcher, 2);
+    machine.advanceIndex(3);
+    machine.createNode();
+    machine.popReturn();
+    machine.cut();
+    machine.setIndex(0);
+    machine.setAddress(0);
+    machine.pushReturn(2, matcher, 1);
+    assertThat(machine.getAddress()).isEqualTo(1);
+    assertThat(machine.getIndex()).isEqualTo(0);
+  }
+
   @Test
   public void should_createLeafNode() {
     Machine machine = new Machine("", new Instruction[2]);
@@ -189,7 +247,8 @@ public class MachineTest {
     machine.createLeafNode(subMatcher, 2);
     machine.createLeafNode(subMatcher, 3);
     machine.createNode();
-    ParseNode node = machine.peek().parent().subNodes().get(0);
+    machine.popReturn();
+    ParseNode node = machine.peek().subNodes().get(0);
     assertThat(node.getMatcher()).isSameAs(matcher);
     assertThat(node.getStartIndex()).isEqualTo(1);
     assertThat(node.getEndIndex()).isEqualTo(1 + 2 + 3);
@@ -205,7 +264,7 @@ public class MachineTest {
     machine.pushReturn(1, matcher, 2);
     machine.advanceIndex(3);
     machine.createNode();
-    ParseNode memo = machine.peek().parent().subNodes().get(0);
+    ParseNode memo = machine.peek().subNodes().get(0);
     machine.backtrack();
     machine.pushReturn(2, matcher, 1);
     assertThat(machine.getAddress()).isEqualTo(2);
@@ -0,0 +1,169 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class NativePatternTest {
+
+  private static final String[] INPUTS = {
+    "",
+    " ",
+    " \t\n\u000B\f\rx",
+    "abc",
+    "abc123 ",
+    "_a1$",
+    "123.45e+6",
+    "-1",
+    "// comment\nnext",
+    "/* comment */",
+    "\"string\" tail",
+    "a-b]c^d\\e",
+    "\u00E9t\u00E9",
+    "\u0085 x",
+    "\r\n",
+    "aaaa",
+    "foo",
+    "bar",
+    "fob",
+  };
+
+  @Test
+  public void should_match_like_regular_expression() {
+    String[] regexps = {
+      "",
+      "\\s*+",
+      "\\s++",
+      "\\s*",
+      "\\S++",
+      "[ \\t\\n\\r\\f]*+",
+      "[a-zA-Z_]++",
+      "[a-zA-Z_][a-zA-Z_0-9]*+",
+      "[a-z][a-z0-9]*+|[0-9]++",
+      "\\p{javaJavaIdentifierStart}\\p{javaJavaIdentifierPart}*+",
+      "\\p{javaJavaIdentifierStart}++\\p{javaJavaIdentifierPart}*+",
+      "//[^\\n\\r]*+",
+      "\"[^\"]*+\"",
+      "[0-9]++",
+      "\\d++\\.?+\\d*+",
+      "-?+\\d++",
+      "\\w++",
+      "\\W",
+      "\\D*+",
+      ".",
+      ".*+",
+      "a?+",
+      "a*+a",
+      "a+",
+      "[-a]++",
+      "[a-]++",
+      "[^a-c]++",
+      "[\\]\\-\\^\\\\a-c]++",
+      "[\\s\\d]++",
+      "[\\w$]++",
+      "[\\p{javaJavaIdentifierPart}]++",
+      "\\.\\*",
+      "foo|bar",
+      "fo|foo",
+      "a|",
+    };
+    for (String regex : regexps) {
+      NativePattern nativePattern = NativePattern.compile(regex);
+      assertThat(nativePattern).as(regex).isNotNull();
+      Matcher matcher = Pattern.compile(regex).matcher("");
+      for (String input : INPUTS) {
+        for (int start = 0; start <= input.length(); start++) {
+          matcher.reset(input.substring(start));
+          int expected = matcher.lookingAt() ? start + matcher.end() : -1;
+          assertThat(nativePattern.scan(input.toCharArray(), start)).as(regex + " on '" + input + "' from " + start).isEqualTo(expected);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void should_compute_first_characters() {
+    String[] regexps = {"\\s*+", "[a-zA-Z_][a-zA-Z_0-9]*+", "[a-z][a-z0-9]*+|[0-9]++", "\\p{javaJavaIdentifierStart}\\p{javaJavaIdentifierPart}*+",
+      "//[^\\n\\r]*+", "\\d++\\.?+\\d*+", "-?+\\d++", "[^a-c]++", "\\W", ".", "foo|bar", "a|"};
+    String[] inputs = new String[0x3000 + 1];
+    for (char c = 0; c < 0x3000; c++) {
+      inputs[c] = c + "/1";
+    }
+    inputs[0x3000] = "\uD835\uDC00";
+    for (String regex : regexps) {
+      NativePattern nativePattern = NativePattern.compile(regex);
+      BitSet first = new BitSet();
+      boolean nullable = nativePattern.addFirstCharacters(first);
+      boolean decided = nativePattern.isDecidedByFirstCharacter();
+      Matcher matcher = Pattern.compile(regex).matcher("");
+      assertThat(nullable).as(regex).isEqualTo(matcher.reset("").lookingAt());
+      for (String input : inputs) {
+        boolean matched = matcher.reset(input).lookingAt() && matcher.end() > 0;
+        if (matched || decided) {
+          assertThat(first.get(input.charAt(0))).as(regex + " on " + (int) input.charAt(0)).isEqualTo(matched);
+        }
+      }
+    }
+    assertThat(NativePattern.compile("[a-z][a-z0-9]*+|[0-9]++").isDecidedByFirstCharacter()).isTrue();
+    assertThat(NativePattern.compile("foo|bar").isDecidedByFirstCharacter()).isFalse();
+    assertThat(NativePattern.compile(".").isDecidedByFirstCharacter()).isFalse();
+  }
+
+  @Test
+  public void should_not_support() {
+    String[] regexps = {
+      "(foo|bar)",
+      "(?i)foo",
+      "a*b",
+      "a+?",
+      "a{2}",
+      "^a",
+      "a$",
+      "[a&&b]",
+      "[a[b]]",
+      "[]a]",
+      "[\\S]",
+      "[\\a-z]",
+      "[a-\\z]",
+      "\\b",
+      "\\1",
+      "\\p{Alpha}",
+      "\\Qa\\E",
+      "]",
+    };
+    for (String regex : regexps) {
+      assertThat(NativePattern.compile(regex)).as(regex).isNull();
+    }
+  }
+
+  @Test
+  public void should_not_support_surrogates() {
+    char[] input = "a\uD835\uDC00".toCharArray();
+    assertThat(NativePattern.compile("a").scan(input, 0)).isEqualTo(1);
+    assertThat(NativePattern.compile(".*+").scan(input, 0)).isEqualTo(NativePattern.UNSUPPORTED_INPUT);
+  }
+
+}
@@ -21,6 +21,8 @@ package org.sonar.sslr.internal.vm;
 
 import org.junit.Test;
 
+import java.util.BitSet;
+
 import static org.fest.assertions.Assertions.assertThat;
 
 public class OptionalExpressionTest {
@@ -38,4 +40,20 @@ public class OptionalExpressionTest {
     });
   }
 
+  @Test
+  public void should_compile_without_backtracking() {
+    OptionalExpression expression = new OptionalExpression(new SubExpression(1, 2));
+    final CharacterSet set = new CharacterSet(new BitSet());
+    CompilationHandler compiler = new CompilationHandler() {
+      @Override
+      public CharacterSet successLookahead(ParsingExpression expression) {
+        return set;
+      }
+    };
+    assertThat(expression.compile(compiler)).isEqualTo(new Instruction[] {
+      Instruction.test(set, 3),
+      SubExpression.mockInstruction(1),
+      SubExpression.mockInstruction(2)
+    });
+  }
 }
@@ -29,6 +29,7 @@ import org.sonar.sslr.grammar.GrammarException;
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
@@ -48,6 +49,32 @@ public class PatternExpressionTest {
 
   @Test
   public void should_match() {
+    when(machine.getInput()).thenReturn("foo".toCharArray());
+    when(machine.getIndex()).thenReturn(0);
+    expression.execute(machine);
+    InOrder inOrder = Mockito.inOrder(machine);
+    inOrder.verify(machine).getIndex();
+    inOrder.verify(machine).getInput();
+    inOrder.verify(machine).createLeafNode(expression, 3);
+    inOrder.verify(machine).jump(1);
+    verifyNoMoreInteractions(machine);
+  }
+
+  @Test
+  public void should_backtrack() {
+    when(machine.getInput()).thenReturn("_z".toCharArray());
+    when(machine.getIndex()).thenReturn(1);
+    expression.execute(machine);
+    InOrder inOrder = Mockito.inOrder(machine);
+    inOrder.verify(machine).getIndex();
+    inOrder.verify(machine).getInput();
+    inOrder.verify(machine).backtrack();
+    verifyNoMoreInteractions(machine);
+  }
+
+  @Test
+  public void should_match_by_regular_expression() {
+    PatternExpression expression = new PatternExpression("(foo|bar)");
     when(machine.length()).thenReturn(3);
     when(machine.charAt(0)).thenReturn('f');
     when(machine.charAt(1)).thenReturn('o');
@@ -64,7 +91,8 @@ public class PatternExpressionTest {
   }
 
   @Test
-  public void should_backtrack() {
+  public void should_backtrack_by_regular_expression() {
+    PatternExpression expression = new PatternExpression("(foo|bar)");
     when(machine.length()).thenReturn(1);
     when(machine.charAt(0)).thenReturn('z');
     expression.execute(machine);
@@ -75,12 +103,25 @@ public class PatternExpressionTest {
     verifyNoMoreInteractions(machine);
   }
 
+  @Test
+  public void should_use_regular_expression_for_surrogates() {
+    PatternExpression expression = new PatternExpression(".");
+    when(machine.getInput()).thenReturn("\uD835\uDC00".toCharArray());
+    when(machine.getIndex()).thenReturn(0);
+    when(machine.length()).thenReturn(2);
+    when(machine.charAt(0)).thenReturn('\uD835');
+    when(machine.charAt(1)).thenReturn('\uDC00');
+    expression.execute(machine);
+    verify(machine).createLeafNode(expression, 2);
+  }
+
   @Test
   public void should_catch_StackOverflowError() {
+    PatternExpression expression = new PatternExpression("(foo|bar)");
     when(machine.length()).thenReturn(1);
     when(machine.charAt(0)).thenThrow(StackOverflowError.class);
     thrown.expect(GrammarException.class);
-    thrown.expectMessage("The regular expression 'foo|bar' has led to a stack overflow error."
+    thrown.expectMessage("The regular expression '(foo|bar)' has led to a stack overflow error."
       + " This error is certainly due to an inefficient use of alternations. See http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=5050507");
     expression.execute(machine);
   }
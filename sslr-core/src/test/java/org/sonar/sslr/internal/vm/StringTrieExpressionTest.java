@@ -0,0 +1,121 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class StringTrieExpressionTest {
+
+  private StringExpression a = new StringExpression("a");
+  private StringExpression ab = new StringExpression("ab");
+  private StringExpression abc = new StringExpression("abc");
+  private StringExpression b = new StringExpression("b");
+
+  @Test
+  public void should_compile() {
+    StringTrieExpression expression = new StringTrieExpression(ImmutableList.of(a, b));
+    assertThat(expression.compile(new CompilationHandler())).containsOnly(expression);
+    assertThat(expression.toString()).isEqualTo("StringTrie[String a, String b]");
+  }
+
+  @Test
+  public void should_match_first_alternative_in_order() {
+    StringTrieExpression expression = new StringTrieExpression(ImmutableList.of(a, abc, ab));
+    Machine machine = machine("abc");
+    expression.execute(machine);
+    verify(machine).createLeafNode(a, 1);
+    verify(machine).jump(1);
+    verify(machine, never()).charAt(1);
+  }
+
+  @Test
+  public void should_match_longer_alternative_placed_first() {
+    StringTrieExpression expression = new StringTrieExpression(ImmutableList.of(abc, ab, a, b));
+
+    Machine machine = machine("abc");
+    expression.execute(machine);
+    verify(machine).createLeafNode(abc, 3);
+    verify(machine).jump(1);
+
+    machine = machine("abd");
+    expression.execute(machine);
+    verify(machine).createLeafNode(ab, 2);
+
+    machine = machine("ac");
+    expression.execute(machine);
+    verify(machine).createLeafNode(a, 1);
+
+    machine = machine("b");
+    expression.execute(machine);
+    verify(machine).createLeafNode(b, 1);
+  }
+
+  @Test
+  public void should_backtrack() {
+    StringTrieExpression expression = new StringTrieExpression(ImmutableList.of(ab, b));
+
+    Machine machine = machine("a");
+    expression.execute(machine);
+    verify(machine).backtrack();
+
+    machine = machine("c");
+    expression.execute(machine);
+    verify(machine).backtrack();
+
+    machine = machine("");
+    expression.execute(machine);
+    verify(machine).backtrack();
+  }
+
+  @Test
+  public void should_match_empty_string() {
+    StringExpression empty = new StringExpression("");
+    StringTrieExpression expression = new StringTrieExpression(ImmutableList.of(ab, empty, a));
+    Machine machine = machine("ac");
+    expression.execute(machine);
+    verify(machine).createLeafNode(empty, 0);
+  }
+
+  @Test
+  public void first_duplicate_should_win() {
+    StringExpression anotherA = new StringExpression("a");
+    StringTrieExpression expression = new StringTrieExpression(ImmutableList.of(a, anotherA));
+    Machine machine = machine("a");
+    expression.execute(machine);
+    verify(machine).createLeafNode(a, 1);
+  }
+
+  private static Machine machine(String input) {
+    Machine machine = mock(Machine.class);
+    when(machine.length()).thenReturn(input.length());
+    for (int i = 0; i < input.length(); i++) {
+      when(machine.charAt(i)).thenReturn(input.charAt(i));
+    }
+    return machine;
+  }
+
+}
@@ -21,6 +21,8 @@ package org.sonar.sslr.internal.vm;
 
 import org.junit.Test;
 
+import java.util.BitSet;
+
 import static org.fest.assertions.Assertions.assertThat;
 
 public class ZeroOrMoreExpressionTest {
@@ -37,4 +39,21 @@ public class ZeroOrMoreExpressionTest {
     });
   }
 
+  @Test
+  public void should_compile_without_backtracking() {
+    ZeroOrMoreExpression expression = new ZeroOrMoreExpression(new SubExpression(1, 2));
+    final CharacterSet set = new CharacterSet(new BitSet());
+    CompilationHandler compiler = new CompilationHandler() {
+      @Override
+      public CharacterSet successLookahead(ParsingExpression expression) {
+        return set;
+      }
+    };
+    assertThat(expression.compile(compiler)).isEqualTo(new Instruction[] {
+      Instruction.test(set, 4),
+      SubExpression.mockInstruction(1),
+      SubExpression.mockInstruction(2),
+      Instruction.jump(-3)
+    });
+  }
 }
@@ -0,0 +1,91 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm.lexerful;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.TokenType;
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class TokenDictionaryTest {
+
+  private final TokenDictionary dictionary = new TokenDictionary();
+
+  @Test
+  public void should_assign_identifiers_to_types() {
+    TokenType type = mock(TokenType.class);
+    int id = dictionary.typeId(type);
+    assertThat(id).isGreaterThan(0);
+    assertThat(dictionary.typeId(type)).isEqualTo(id);
+    assertThat(dictionary.typeId(mock(TokenType.class))).isNotEqualTo(id);
+  }
+
+  @Test
+  public void should_compare_types_by_equals() {
+    int id = dictionary.typeId(new EqualTokenType());
+    assertThat(dictionary.typeId(new EqualTokenType())).isEqualTo(id);
+  }
+
+  @Test
+  public void should_assign_identifiers_to_values() {
+    int id = dictionary.valueId("foo");
+    assertThat(id).isGreaterThan(0);
+    assertThat(dictionary.valueId("foo")).isEqualTo(id);
+    assertThat(dictionary.valueId(new String("foo"))).isEqualTo(id);
+    assertThat(dictionary.valueId("bar")).isNotEqualTo(id);
+  }
+
+  @Test
+  public void should_not_share_identifiers_between_dictionaries() {
+    dictionary.valueId("foo");
+    TokenDictionary otherDictionary = new TokenDictionary();
+    otherDictionary.valueId("bar");
+    assertThat(otherDictionary.valueId("foo")).isNotEqualTo(dictionary.valueId("foo"));
+  }
+
+  private static class EqualTokenType implements TokenType {
+
+    public String getName() {
+      return "EQUAL";
+    }
+
+    public String getValue() {
+      return "equal";
+    }
+
+    public boolean hasToBeSkippedFromAst(AstNode node) {
+      return false;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof EqualTokenType;
+    }
+
+    @Override
+    public int hashCode() {
+      return 0;
+    }
+
+  }
+
+}
@@ -20,8 +20,8 @@
 package org.sonar.sslr.internal.vm.lexerful;
 
 import com.google.common.collect.ImmutableSet;
-import com.sonar.sslr.api.Token;
 import com.sonar.sslr.api.TokenType;
+import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -32,6 +32,7 @@ import org.sonar.sslr.internal.vm.Machine;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
@@ -44,6 +45,12 @@ public class TokenTypesExpressionTest {
   private TokenType type2 = mock(TokenType.class);
   private TokenTypesExpression expression = new TokenTypesExpression(type1, type2);
   private Machine machine = mock(Machine.class);
+  private TokenDictionary dictionary = new TokenDictionary();
+
+  @Before
+  public void setUp() {
+    when(machine.getTokenDictionary()).thenReturn(dictionary);
+  }
 
   @Test
   public void should_compile() {
@@ -53,14 +60,13 @@ public class TokenTypesExpressionTest {
 
   @Test
   public void should_match() {
-    Token token = mock(Token.class);
-    when(token.getType()).thenReturn(type1);
     when(machine.length()).thenReturn(1);
-    when(machine.tokenAt(0)).thenReturn(token);
+    when(machine.tokenTypeIdAt(0)).thenReturn(dictionary.typeId(type1));
     expression.execute(machine);
     InOrder inOrder = Mockito.inOrder(machine);
     inOrder.verify(machine).length();
-    inOrder.verify(machine).tokenAt(0);
+    inOrder.verify(machine).getTokenDictionary();
+    inOrder.verify(machine).tokenTypeIdAt(0);
     inOrder.verify(machine).createLeafNode(expression, 1);
     inOrder.verify(machine).jump(1);
     verifyNoMoreInteractions(machine);
@@ -78,16 +84,23 @@ public class TokenTypesExpressionTest {
 
   @Test
   public void should_backtrack2() {
-    Token token = mock(Token.class);
-    when(token.getType()).thenReturn(mock(TokenType.class));
     when(machine.length()).thenReturn(1);
-    when(machine.tokenAt(0)).thenReturn(token);
+    when(machine.tokenTypeIdAt(0)).thenReturn(dictionary.typeId(mock(TokenType.class)));
     expression.execute(machine);
     InOrder inOrder = Mockito.inOrder(machine);
     inOrder.verify(machine).length();
-    inOrder.verify(machine).tokenAt(0);
+    inOrder.verify(machine).getTokenDictionary();
+    inOrder.verify(machine).tokenTypeIdAt(0);
     inOrder.verify(machine).backtrack();
     verifyNoMoreInteractions(machine);
   }
 
+  @Test
+  public void should_backtrack_on_identifier_out_of_range() {
+    when(machine.length()).thenReturn(1);
+    when(machine.tokenTypeIdAt(0)).thenReturn(100);
+    expression.execute(machine);
+    verify(machine).backtrack();
+  }
+
 }
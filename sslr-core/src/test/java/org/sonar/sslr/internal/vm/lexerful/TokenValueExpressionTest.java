@@ -19,7 +19,7 @@
  */
 package org.sonar.sslr.internal.vm.lexerful;
 
-import com.sonar.sslr.api.Token;
+import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -30,6 +30,7 @@ import org.sonar.sslr.internal.vm.Machine;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
@@ -40,6 +41,12 @@ public class TokenValueExpressionTest {
 
   private TokenValueExpression expression = new TokenValueExpression("foo");
   private Machine machine = mock(Machine.class);
+  private TokenDictionary dictionary = new TokenDictionary();
+
+  @Before
+  public void setUp() {
+    when(machine.getTokenDictionary()).thenReturn(dictionary);
+  }
 
   @Test
   public void should_compile() {
@@ -49,14 +56,13 @@ public class TokenValueExpressionTest {
 
   @Test
   public void should_match() {
-    Token token = mock(Token.class);
-    when(token.getValue()).thenReturn("foo");
     when(machine.length()).thenReturn(1);
-    when(machine.tokenAt(0)).thenReturn(token);
+    when(machine.tokenValueIdAt(0)).thenReturn(dictionary.valueId("foo"));
     expression.execute(machine);
     InOrder inOrder = Mockito.inOrder(machine);
     inOrder.verify(machine).length();
-    inOrder.verify(machine).tokenAt(0);
+    inOrder.verify(machine).tokenValueIdAt(0);
+    inOrder.verify(machine).getTokenDictionary();
     inOrder.verify(machine).createLeafNode(expression, 1);
     inOrder.verify(machine).jump(1);
     verifyNoMoreInteractions(machine);
@@ -74,30 +80,42 @@ public class TokenValueExpressionTest {
 
   @Test
   public void should_backtrack2() {
-    Token token = mock(Token.class);
-    when(token.getValue()).thenReturn("bar");
     when(machine.length()).thenReturn(1);
-    when(machine.tokenAt(0)).thenReturn(token);
+    when(machine.tokenValueIdAt(0)).thenReturn(dictionary.valueId("bar"));
     expression.execute(machine);
     InOrder inOrder = Mockito.inOrder(machine);
     inOrder.verify(machine).length();
-    inOrder.verify(machine).tokenAt(0);
+    inOrder.verify(machine).tokenValueIdAt(0);
+    inOrder.verify(machine).getTokenDictionary();
     inOrder.verify(machine).backtrack();
     verifyNoMoreInteractions(machine);
   }
 
   @Test
   public void should_backtrack3() {
-    Token token = mock(Token.class);
-    when(token.getValue()).thenReturn("h31"/* same hash code as for "foo" */);
     when(machine.length()).thenReturn(1);
-    when(machine.tokenAt(0)).thenReturn(token);
+    when(machine.tokenValueIdAt(0)).thenReturn(dictionary.valueId("h31"/* same hash code as for "foo" */));
     expression.execute(machine);
     InOrder inOrder = Mockito.inOrder(machine);
     inOrder.verify(machine).length();
-    inOrder.verify(machine).tokenAt(0);
+    inOrder.verify(machine).tokenValueIdAt(0);
+    inOrder.verify(machine).getTokenDictionary();
     inOrder.verify(machine).backtrack();
     verifyNoMoreInteractions(machine);
   }
 
+  @Test
+  public void should_match_with_another_dictionary() {
+    when(machine.length()).thenReturn(1);
+    when(machine.tokenValueIdAt(0)).thenReturn(dictionary.valueId("bar"));
+    expression.execute(machine);
+    verify(machine).backtrack();
+
+    TokenDictionary otherDictionary = new TokenDictionary();
+    when(machine.getTokenDictionary()).thenReturn(otherDictionary);
+    when(machine.tokenValueIdAt(0)).thenReturn(otherDictionary.valueId("foo"));
+    expression.execute(machine);
+    verify(machine).createLeafNode(expression, 1);
+  }
+
 }
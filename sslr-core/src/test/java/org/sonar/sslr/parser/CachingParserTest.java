@@ -0,0 +1,232 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.parser;
+
+import com.google.common.collect.Maps;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeSkippingPolicy;
+import com.sonar.sslr.api.RecognitionException;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.ast.AstXmlPrinter;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.sslr.grammar.GrammarRuleBuilder;
+import org.sonar.sslr.grammar.GrammarRuleKey;
+import org.sonar.sslr.grammar.LexerlessGrammarBuilder;
+import org.sonar.sslr.internal.grammar.MutableParsingRule;
+import org.sonar.sslr.internal.matchers.ExpressionGrammar;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.Map;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class CachingParserTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private ExpressionGrammar grammar;
+  private ParserAdapter<ExpressionGrammar> delegate;
+  private MapParseCache cache;
+  private CachingParser<ExpressionGrammar> parser;
+
+  @Before
+  public void setUp() {
+    grammar = new ExpressionGrammar();
+    delegate = spy(new ParserAdapter<ExpressionGrammar>(Charset.forName("UTF-8"), grammar));
+    cache = new MapParseCache();
+    parser = new CachingParser<ExpressionGrammar>(delegate, cache);
+  }
+
+  @Test
+  public void should_return_grammar() {
+    assertThat(parser.getGrammar()).isSameAs(grammar);
+  }
+
+  @Test
+  public void should_reuse_result_of_parsing_string() {
+    AstNode ast = parser.parse("1 + 2");
+    AstNode cachedAst = parser.parse("1 + 2");
+
+    verify(delegate, times(1)).parse("1 + 2");
+    assertThat(cachedAst).isNotSameAs(ast);
+    assertThat(AstXmlPrinter.print(cachedAst)).isEqualTo(AstXmlPrinter.print(ast));
+    assertThat(cache.entries.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void should_reuse_result_of_parsing_file() throws Exception {
+    File file = temporaryFolder.newFile();
+    FileUtils.writeStringToFile(file, "1+1");
+
+    AstNode ast = parser.parse(file);
+    AstNode cachedAst = parser.parse(file);
+
+    verify(delegate, times(1)).parse(file);
+    assertThat(AstXmlPrinter.print(cachedAst)).isEqualTo(AstXmlPrinter.print(ast));
+    assertThat(cachedAst.getToken().getURI()).isEqualTo(file.toURI());
+  }
+
+  @Test
+  public void should_reuse_result_of_parsing_file_with_same_content_at_another_location() throws Exception {
+    File file = new File(temporaryFolder.newFolder("checkout1"), "file.txt");
+    FileUtils.writeStringToFile(file, "1+1");
+    File otherFile = new File(temporaryFolder.newFolder("checkout2"), "file.txt");
+    FileUtils.writeStringToFile(otherFile, "1+1");
+
+    AstNode ast = parser.parse(file);
+    AstNode cachedAst = parser.parse(otherFile);
+
+    verify(delegate, times(1)).parse(file);
+    verify(delegate, times(0)).parse(otherFile);
+    assertThat(AstXmlPrinter.print(cachedAst)).isEqualTo(AstXmlPrinter.print(ast));
+    assertThat(ast.getToken().getURI()).isEqualTo(file.toURI());
+    for (Token token : cachedAst.getTokens()) {
+      // leaves of empty rules have no tokens
+      if (token != null) {
+        assertThat(token.getURI()).isEqualTo(otherFile.toURI());
+      }
+    }
+  }
+
+  @Test
+  public void should_parse_again_when_content_changed() throws Exception {
+    File file = temporaryFolder.newFile();
+    FileUtils.writeStringToFile(file, "1+1");
+    parser.parse(file);
+    FileUtils.writeStringToFile(file, "2+2");
+
+    AstNode ast = parser.parse(file);
+
+    verify(delegate, times(2)).parse(file);
+    assertThat(ast.getTokenValue()).isEqualTo("2");
+  }
+
+  @Test
+  public void should_not_share_entries_between_different_grammars() {
+    parser.parse("1");
+    LexerlessGrammarBuilder b = LexerlessGrammarBuilder.create();
+    b.rule(OtherGrammar.ROOT).is("1");
+    b.setRootRule(OtherGrammar.ROOT);
+    CachingParser<LexerlessGrammar> otherParser = new CachingParser<LexerlessGrammar>(
+        new ParserAdapter<LexerlessGrammar>(Charset.forName("UTF-8"), b.build()), cache);
+
+    otherParser.parse("1");
+
+    assertThat(cache.entries.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void should_not_share_entries_between_grammars_with_different_skipping_policies() {
+    AstNode ast = otherParser(OtherSkippingPolicy.NONE).parse("1");
+    AstNode skippedAst = otherParser(OtherSkippingPolicy.ALWAYS).parse("1");
+
+    assertThat(cache.entries.size()).isEqualTo(2);
+    assertThat(ast.getFirstChild().getType()).isSameAs(OtherGrammar.NUMBER);
+    assertThat(skippedAst.getFirstChild().getType()).isNotSameAs(OtherGrammar.NUMBER);
+  }
+
+  @Test
+  public void should_not_cache_when_custom_skipping_policy() {
+    CachingParser<LexerlessGrammar> otherParser = otherParser(OtherSkippingPolicy.CUSTOM);
+    otherParser.parse("1");
+    otherParser.parse("1");
+
+    assertThat(cache.entries).isEmpty();
+  }
+
+  private CachingParser<LexerlessGrammar> otherParser(OtherSkippingPolicy skippingPolicy) {
+    LexerlessGrammarBuilder b = LexerlessGrammarBuilder.create();
+    b.rule(OtherGrammar.ROOT).is(OtherGrammar.NUMBER);
+    GrammarRuleBuilder number = b.rule(OtherGrammar.NUMBER).is("1");
+    if (skippingPolicy == OtherSkippingPolicy.ALWAYS) {
+      number.skip();
+    }
+    b.setRootRule(OtherGrammar.ROOT);
+    LexerlessGrammar otherGrammar = b.build();
+    if (skippingPolicy == OtherSkippingPolicy.CUSTOM) {
+      ((MutableParsingRule) otherGrammar.rule(OtherGrammar.NUMBER)).skipIf(new AstNodeSkippingPolicy() {
+        public boolean hasToBeSkippedFromAst(AstNode node) {
+          return true;
+        }
+      });
+    }
+    return new CachingParser<LexerlessGrammar>(new ParserAdapter<LexerlessGrammar>(Charset.forName("UTF-8"), otherGrammar), cache);
+  }
+
+  private enum OtherSkippingPolicy {
+    NONE, ALWAYS, CUSTOM
+  }
+
+  @Test
+  public void should_ignore_corrupted_entry() {
+    parser.parse("1");
+    for (Map.Entry<String, byte[]> entry : cache.entries.entrySet()) {
+      entry.setValue(new byte[] {1, 2, 3});
+    }
+
+    AstNode ast = parser.parse("1");
+
+    verify(delegate, times(2)).parse("1");
+    assertThat(ast.getTokenValue()).isEqualTo("1");
+  }
+
+  @Test
+  public void should_not_cache_errors() {
+    try {
+      parser.parse("");
+    } catch (RecognitionException e) {
+      // expected
+    }
+    assertThat(cache.entries).isEmpty();
+
+    thrown.expect(RecognitionException.class);
+    parser.parse("");
+  }
+
+  private enum OtherGrammar implements GrammarRuleKey {
+    ROOT, NUMBER
+  }
+
+  private static class MapParseCache implements ParseCache {
+    private final Map<String, byte[]> entries = Maps.newHashMap();
+
+    public byte[] get(String key) {
+      return entries.get(key);
+    }
+
+    public void put(String key, byte[] value) {
+      entries.put(key, value);
+    }
+  }
+
+}
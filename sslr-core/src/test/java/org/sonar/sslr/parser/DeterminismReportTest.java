@@ -0,0 +1,105 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.parser;
+
+import com.sonar.sslr.api.Rule;
+import org.junit.Test;
+import org.sonar.sslr.grammar.GrammarRuleKey;
+import org.sonar.sslr.grammar.LexerlessGrammarBuilder;
+import org.sonar.sslr.internal.matchers.ParseNode;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class DeterminismReportTest {
+
+  private static enum MyGrammar implements GrammarRuleKey {
+    COMPILATION_UNIT, STATEMENT, BLOCK, CALL, ASSIGNMENT, ARGUMENTS, EXPRESSION, STRING, NUMBER, IDENTIFIER, SPACING
+  }
+
+  private final LexerlessGrammar grammar = createGrammar();
+
+  private static LexerlessGrammar createGrammar() {
+    LexerlessGrammarBuilder b = LexerlessGrammarBuilder.create();
+    b.rule(MyGrammar.COMPILATION_UNIT).is(MyGrammar.SPACING, b.zeroOrMore(MyGrammar.STATEMENT), b.endOfInput());
+    b.rule(MyGrammar.STATEMENT).is(b.firstOf(MyGrammar.BLOCK, MyGrammar.CALL, MyGrammar.ASSIGNMENT));
+    b.rule(MyGrammar.BLOCK).is("{", MyGrammar.SPACING, b.zeroOrMore(MyGrammar.STATEMENT), "}", MyGrammar.SPACING);
+    b.rule(MyGrammar.CALL).is(MyGrammar.IDENTIFIER, "(", MyGrammar.SPACING, b.optional(MyGrammar.ARGUMENTS), ")", MyGrammar.SPACING, ";", MyGrammar.SPACING);
+    b.rule(MyGrammar.ASSIGNMENT).is(MyGrammar.IDENTIFIER, "=", MyGrammar.SPACING, MyGrammar.EXPRESSION, ";", MyGrammar.SPACING);
+    b.rule(MyGrammar.ARGUMENTS).is(MyGrammar.EXPRESSION, b.zeroOrMore(",", MyGrammar.SPACING, MyGrammar.EXPRESSION));
+    b.rule(MyGrammar.EXPRESSION).is(b.firstOf(MyGrammar.STRING, MyGrammar.NUMBER, b.sequence(MyGrammar.IDENTIFIER, b.optional("(", ")"))));
+    b.rule(MyGrammar.STRING).is(b.regexp("\"[^\"]*+\""), MyGrammar.SPACING);
+    b.rule(MyGrammar.NUMBER).is(b.oneOrMore(b.regexp("[0-9]")), MyGrammar.SPACING);
+    b.rule(MyGrammar.IDENTIFIER).is(b.regexp("[a-z]++"), MyGrammar.SPACING);
+    b.rule(MyGrammar.SPACING).is(b.regexp("\\s*+"));
+    return b.build();
+  }
+
+  @Test
+  public void should_count_deterministic_choices() {
+    DeterminismReport report = DeterminismReport.create(grammar.rule(MyGrammar.COMPILATION_UNIT));
+    // firstOf in EXPRESSION and oneOrMore in NUMBER,
+    // but not firstOf in STATEMENT, where both CALL and ASSIGNMENT start with IDENTIFIER,
+    // and not repetitions and optionals, whose subexpressions might fail after first character
+    assertThat(report.getChoices()).isEqualTo(8);
+    assertThat(report.getDeterministicChoices()).isEqualTo(2);
+    assertThat(report.getRatio()).isEqualTo(2.0 / 8);
+    assertThat(report.toString()).isEqualTo("2 of 8 choices are deterministic (25.0%)");
+  }
+
+  @Test
+  public void should_parse_same_as_runner_with_backtracking() {
+    char[] input = "foo(1, \"bar\", baz(), qux); { f(); { x = y(); } g(12); }".toCharArray();
+    ParsingResult expected = new ParseRunner(grammar.rule(MyGrammar.COMPILATION_UNIT)).parse(input);
+    ParsingResult actual = ParseRunner.withDeterministicChoices(grammar.rule(MyGrammar.COMPILATION_UNIT)).parse(input);
+    assertThat(actual.isMatched()).isTrue();
+    assertThat(print(actual.getParseTreeRoot())).isEqualTo(print(expected.getParseTreeRoot()));
+    assertThat(actual.getStatistics().getInstructions()).isLessThan(expected.getStatistics().getInstructions());
+  }
+
+  @Test
+  public void should_report_error_same_as_runner_with_backtracking() {
+    char[] input = "foo(1, \"bar\", baz(), qux); { x = 1; f(1 2); }".toCharArray();
+    ParsingResult expected = new ParseRunner(grammar.rule(MyGrammar.COMPILATION_UNIT)).parse(input);
+    ParsingResult actual = ParseRunner.withDeterministicChoices(grammar.rule(MyGrammar.COMPILATION_UNIT)).parse(input);
+    assertThat(actual.isMatched()).isFalse();
+    assertThat(actual.getParseError().getErrorIndex()).isEqualTo(expected.getParseError().getErrorIndex());
+    assertThat(actual.getParseError().getMessage()).isEqualTo(expected.getParseError().getMessage());
+  }
+
+  @Test
+  public void should_not_backtrack_into_committed_choice() {
+    LexerlessGrammarBuilder b = LexerlessGrammarBuilder.create();
+    b.rule(MyGrammar.STATEMENT).is(b.firstOf(b.sequence("k", b.optional("a", "b")), b.sequence("k", "ac")), "x");
+    Rule rule = b.build().rule(MyGrammar.STATEMENT);
+    char[] input = "kacx".toCharArray();
+    assertThat(new ParseRunner(rule).parse(input).isMatched()).isFalse();
+    assertThat(ParseRunner.withDeterministicChoices(rule).parse(input).isMatched()).isFalse();
+  }
+
+  private static String print(ParseNode node) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(node.getMatcher()).append('[').append(node.getStartIndex()).append(',').append(node.getEndIndex());
+    for (ParseNode child : node.getChildren()) {
+      sb.append(' ').append(print(child));
+    }
+    return sb.append(']').toString();
+  }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.parser;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class DirectoryParseCacheTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File directory;
+
+  @Before
+  public void setUp() {
+    directory = new File(temporaryFolder.getRoot(), "cache");
+  }
+
+  @Test
+  public void should_store_entries() {
+    DirectoryParseCache cache = new DirectoryParseCache(directory, 100);
+    assertThat(cache.get("key")).isNull();
+
+    cache.put("key", new byte[] {1, 2, 3});
+    assertThat(cache.get("key")).isEqualTo(new byte[] {1, 2, 3});
+    assertThat(cache.getSizeInBytes()).isEqualTo(3);
+
+    cache.put("key", new byte[] {4});
+    assertThat(cache.get("key")).isEqualTo(new byte[] {4});
+    assertThat(cache.getSizeInBytes()).isEqualTo(1);
+  }
+
+  @Test
+  public void should_keep_entries_between_instances() {
+    new DirectoryParseCache(directory, 100).put("key", new byte[] {1, 2, 3});
+
+    DirectoryParseCache cache = new DirectoryParseCache(directory, 100);
+    assertThat(cache.getSizeInBytes()).isEqualTo(3);
+    assertThat(cache.get("key")).isEqualTo(new byte[] {1, 2, 3});
+  }
+
+  @Test
+  public void should_evict_least_recently_used_entries() {
+    DirectoryParseCache cache = new DirectoryParseCache(directory, 10);
+    cache.put("first", new byte[4]);
+    cache.put("second", new byte[4]);
+    new File(directory, "first.ast").setLastModified(1000);
+    new File(directory, "second.ast").setLastModified(2000);
+
+    cache.put("third", new byte[4]);
+
+    assertThat(cache.get("first")).isNull();
+    assertThat(cache.get("second")).isNotNull();
+    assertThat(cache.get("third")).isNotNull();
+    assertThat(cache.getSizeInBytes()).isEqualTo(8);
+  }
+
+  @Test
+  public void should_evict_on_creation() {
+    new DirectoryParseCache(directory, 100).put("key", new byte[10]);
+
+    DirectoryParseCache cache = new DirectoryParseCache(directory, 5);
+    assertThat(cache.getSizeInBytes()).isEqualTo(0);
+    assertThat(cache.get("key")).isNull();
+  }
+
+  @Test
+  public void should_not_store_too_big_entries() {
+    DirectoryParseCache cache = new DirectoryParseCache(directory, 2);
+    cache.put("key", new byte[3]);
+
+    assertThat(cache.get("key")).isNull();
+    assertThat(cache.getSizeInBytes()).isEqualTo(0);
+  }
+
+  @Test
+  public void should_not_accept_invalid_key() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Invalid key: ../key");
+    new DirectoryParseCache(directory, 100).get("../key");
+  }
+
+}
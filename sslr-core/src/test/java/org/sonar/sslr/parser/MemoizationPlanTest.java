@@ -0,0 +1,75 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.parser;
+
+import com.google.common.collect.ImmutableList;
+import com.sonar.sslr.api.Rule;
+import org.junit.Test;
+import org.sonar.sslr.internal.grammar.MutableParsingRule;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class MemoizationPlanTest {
+
+  @Test
+  public void should_select_rules_with_repeated_matches() {
+    MutableParsingRule a = new MutableParsingRule("a");
+    a.is("a");
+    MutableParsingRule b = new MutableParsingRule("b");
+    b.is("b");
+    MutableParsingRule rule = new MutableParsingRule("rule");
+    rule.is(GrammarOperators.firstOf(GrammarOperators.sequence(a, b, "x"), GrammarOperators.sequence(a, "y")));
+
+    ParseProfiler profiler = new ParseProfiler();
+    new ParseRunner(rule).parse("ay".toCharArray(), profiler);
+    MemoizationPlan plan = MemoizationPlan.create(profiler);
+
+    assertThat(plan.getMemoizedRules()).containsOnly("a");
+    assertThat(plan.toString()).isEqualTo("a");
+
+    plan.apply(rule);
+    assertThat(a.shouldMemoize()).isTrue();
+    assertThat(b.shouldMemoize()).isFalse();
+    assertThat(rule.shouldMemoize()).isFalse();
+    assertThat(new ParseRunner(rule).parse("ay".toCharArray()).isMatched()).isTrue();
+  }
+
+  @Test
+  public void should_respect_thresholds() {
+    MutableParsingRule a = new MutableParsingRule("a");
+    a.is("a");
+    Rule rule = new MutableParsingRule("rule").is(GrammarOperators.firstOf(GrammarOperators.sequence(a, "x"), GrammarOperators.sequence(a, "y")));
+
+    ParseProfiler profiler = new ParseProfiler();
+    new ParseRunner(rule).parse("ay".toCharArray(), profiler);
+
+    assertThat(MemoizationPlan.create(profiler, 2, 0).getMemoizedRules()).isEmpty();
+    assertThat(MemoizationPlan.create(profiler, 1, 0.6).getMemoizedRules()).isEmpty();
+    assertThat(MemoizationPlan.create(profiler, 1, 0.5).getMemoizedRules()).containsOnly("a");
+  }
+
+  @Test
+  public void should_restore_from_rule_names() {
+    MemoizationPlan plan = MemoizationPlan.of(ImmutableList.of("b", "a"));
+    assertThat(plan.getMemoizedRules()).containsOnly("a", "b");
+    assertThat(plan.toString()).isEqualTo("a\nb");
+  }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.parser;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.sslr.grammar.GrammarRuleKey;
+import org.sonar.sslr.grammar.LexerlessGrammarBuilder;
+import org.sonar.sslr.internal.matchers.ParseNode;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ParallelParseRunnerTest {
+
+  @org.junit.Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private static enum MyGrammar implements GrammarRuleKey {
+    COMPILATION_UNIT, DECLARATION, BLOCK, STRING, IDENTIFIER, SPACING
+  }
+
+  private final LexerlessGrammar grammar = createGrammar();
+  private final ExecutorService executor = Executors.newFixedThreadPool(3);
+
+  private static LexerlessGrammar createGrammar() {
+    LexerlessGrammarBuilder b = LexerlessGrammarBuilder.create();
+    b.rule(MyGrammar.COMPILATION_UNIT).is(MyGrammar.SPACING, b.zeroOrMore(MyGrammar.DECLARATION), b.endOfInput());
+    b.rule(MyGrammar.DECLARATION).is("def", MyGrammar.SPACING, MyGrammar.IDENTIFIER, MyGrammar.BLOCK);
+    b.rule(MyGrammar.BLOCK).is("{", MyGrammar.SPACING, b.zeroOrMore(b.firstOf(MyGrammar.BLOCK, MyGrammar.STRING, MyGrammar.IDENTIFIER)), "}", MyGrammar.SPACING);
+    b.rule(MyGrammar.STRING).is(b.regexp("\"[^\"]*+\""), MyGrammar.SPACING);
+    b.rule(MyGrammar.IDENTIFIER).is(b.regexp("[a-z]++"), MyGrammar.SPACING);
+    b.rule(MyGrammar.SPACING).is(b.regexp("\\s*+"));
+    return b.build();
+  }
+
+  @After
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  private ParallelParseRunner createRunner(int chunkSize) {
+    return new ParallelParseRunner(
+        grammar.rule(MyGrammar.COMPILATION_UNIT),
+        grammar.rule(MyGrammar.DECLARATION),
+        Pattern.compile("(?m)^(?=def)"),
+        chunkSize,
+        executor);
+  }
+
+  private static String input(int declarations) {
+    StringBuilder sb = new StringBuilder("\n");
+    for (int i = 0; i < declarations; i++) {
+      sb.append("def foo {\n")
+          .append("  bar { baz \"\ndef not { declaration }\" }\n")
+          .append("}\n");
+    }
+    return sb.toString();
+  }
+
+  @Test
+  public void should_parse_same_as_sequential() {
+    char[] input = input(100).toCharArray();
+    ParsingResult expected = new ParseRunner(grammar.rule(MyGrammar.COMPILATION_UNIT)).parse(input);
+    for (int chunkSize : new int[] {1, 7, 100, 1000}) {
+      ParsingResult actual = createRunner(chunkSize).parse(input);
+      assertThat(actual.isMatched()).isTrue();
+      assertThat(print(actual.getParseTreeRoot())).as("chunk size " + chunkSize).isEqualTo(print(expected.getParseTreeRoot()));
+    }
+  }
+
+  @Test
+  public void should_use_speculative_results() {
+    char[] input = input(100).toCharArray();
+    ParsingResult sequential = new ParseRunner(grammar.rule(MyGrammar.COMPILATION_UNIT)).parse(input);
+    ParsingResult parallel = createRunner(500).parse(input);
+    assertThat(parallel.getStatistics().getInstructions()).isLessThan(sequential.getStatistics().getInstructions() / 10);
+  }
+
+  @Test
+  public void should_report_error_as_sequential() {
+    char[] input = (input(50) + "def foo { \"unterminated }\n" + input(50)).toCharArray();
+    ParsingResult expected = new ParseRunner(grammar.rule(MyGrammar.COMPILATION_UNIT)).parse(input);
+    ParsingResult actual = createRunner(100).parse(input);
+    assertThat(actual.isMatched()).isFalse();
+    assertThat(actual.getParseError().getErrorIndex()).isEqualTo(expected.getParseError().getErrorIndex());
+    assertThat(actual.getParseError().getMessage()).isEqualTo(expected.getParseError().getMessage());
+  }
+
+  @Test
+  public void should_parse_small_input_sequentially() {
+    ParsingResult result = createRunner(1000).parse(input(1).toCharArray());
+    assertThat(result.isMatched()).isTrue();
+  }
+
+  @Test
+  public void should_not_accept_non_positive_chunk_size() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("chunkSize must be positive");
+    createRunner(0);
+  }
+
+  private static String print(ParseNode node) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(node.getMatcher()).append('[').append(node.getStartIndex()).append(',').append(node.getEndIndex());
+    for (ParseNode child : node.getChildren()) {
+      sb.append(' ').append(print(child));
+    }
+    return sb.append(']').toString();
+  }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.parser;
+
+import com.sonar.sslr.api.Rule;
+import org.junit.Test;
+import org.sonar.sslr.internal.grammar.MutableParsingRule;
+import org.sonar.sslr.parser.ParseProfiler.RuleProfile;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class ParseProfilerTest {
+
+  private final ParseProfiler profiler = new ParseProfiler();
+
+  @Test
+  public void should_profile_match() {
+    Rule a = new MutableParsingRule("a").is("a");
+    Rule rule = new MutableParsingRule("rule").is(GrammarOperators.firstOf(GrammarOperators.sequence(a, "x"), GrammarOperators.sequence(a, "y")));
+
+    assertThat(new ParseRunner(rule).parse("ay".toCharArray(), profiler).isMatched()).isTrue();
+
+    RuleProfile ruleProfile = profile("rule");
+    assertThat(ruleProfile.getInvocations()).isEqualTo(1);
+    assertThat(ruleProfile.getMatches()).isEqualTo(1);
+    assertThat(ruleProfile.getBacktracks()).isEqualTo(0);
+    assertThat(ruleProfile.getMemoMisses()).isEqualTo(1);
+    assertThat(ruleProfile.getConsumed()).isEqualTo(2);
+    assertThat(ruleProfile.getTotalTime()).isGreaterThanOrEqualTo(ruleProfile.getSelfTime());
+
+    RuleProfile aProfile = profile("a");
+    assertThat(aProfile.getInvocations()).isEqualTo(2);
+    assertThat(aProfile.getMatches()).isEqualTo(2);
+    assertThat(aProfile.getMemoHits()).isEqualTo(1);
+    assertThat(aProfile.getMemoMisses()).isEqualTo(1);
+    assertThat(aProfile.getConsumed()).isEqualTo(2);
+  }
+
+  @Test
+  public void should_count_repeated_matches_within_single_parse() {
+    MutableParsingRule a = new MutableParsingRule("a");
+    a.is("a");
+    a.disableMemoization();
+    Rule rule = new MutableParsingRule("rule").is(GrammarOperators.firstOf(GrammarOperators.sequence(a, "x"), GrammarOperators.sequence(a, "y")));
+    ParseRunner runner = new ParseRunner(rule);
+
+    runner.parse("ay".toCharArray(), profiler);
+    runner.parse("ax".toCharArray(), profiler);
+
+    RuleProfile aProfile = profile("a");
+    assertThat(aProfile.getInvocations()).isEqualTo(3);
+    assertThat(aProfile.getMemoHits()).isEqualTo(0);
+    assertThat(aProfile.getRepeatedMatches()).isEqualTo(1);
+    assertThat(profile("rule").getRepeatedMatches()).isEqualTo(0);
+  }
+
+  @Test
+  public void should_profile_mismatch() {
+    Rule a = new MutableParsingRule("a").is("a");
+    Rule rule = new MutableParsingRule("rule").is(GrammarOperators.firstOf(GrammarOperators.sequence(a, "x"), GrammarOperators.sequence(a, "y")));
+
+    assertThat(new ParseRunner(rule).parse("b".toCharArray(), profiler).isMatched()).isFalse();
+
+    RuleProfile ruleProfile = profile("rule");
+    assertThat(ruleProfile.getInvocations()).isEqualTo(1);
+    assertThat(ruleProfile.getMatches()).isEqualTo(0);
+    assertThat(ruleProfile.getBacktracks()).isEqualTo(1);
+
+    RuleProfile aProfile = profile("a");
+    assertThat(aProfile.getInvocations()).isEqualTo(2);
+    assertThat(aProfile.getBacktracks()).isEqualTo(2);
+    assertThat(aProfile.getMemoHits()).isEqualTo(0);
+  }
+
+  @Test
+  public void should_accumulate_and_account_recursion_once() {
+    Rule rule = new MutableParsingRule("rule");
+    ((MutableParsingRule) rule).is("(", GrammarOperators.optional(rule), ")");
+    ParseRunner runner = new ParseRunner(rule);
+
+    runner.parse("(())".toCharArray(), profiler);
+    runner.parse("()".toCharArray(), profiler);
+
+    RuleProfile ruleProfile = profile("rule");
+    assertThat(ruleProfile.getInvocations()).isEqualTo(5);
+    assertThat(ruleProfile.getMatches()).isEqualTo(3);
+    assertThat(ruleProfile.getBacktracks()).isEqualTo(2);
+    assertThat(ruleProfile.getConsumed()).isEqualTo(4 + 2 + 2);
+    assertThat(ruleProfile.getTotalTime()).isEqualTo(ruleProfile.getSelfTime());
+  }
+
+  @Test
+  public void should_start_new_parse_after_aborted() {
+    MutableParsingRule a = new MutableParsingRule("a");
+    a.is("a");
+    a.disableMemoization();
+    Rule rule = new MutableParsingRule("rule").is(GrammarOperators.firstOf(GrammarOperators.sequence(a, "x"), GrammarOperators.sequence(a, "y")));
+    ParseRunner runner = new ParseRunner(rule);
+
+    try {
+      runner.parse("ay".toCharArray(), profiler, ParsingLimits.builder().setMaxInstructions(4).build());
+      fail("expected ParsingAbortedException");
+    } catch (ParsingAbortedException e) {
+      // expected
+    }
+    runner.parse("ay".toCharArray(), profiler);
+
+    RuleProfile aProfile = profile("a");
+    assertThat(aProfile.getRepeatedMatches()).as("matches of aborted parse should not be taken into account").isEqualTo(1);
+    RuleProfile ruleProfile = profile("rule");
+    assertThat(ruleProfile.getMatches()).isEqualTo(1);
+    assertThat(ruleProfile.getTotalTime()).isGreaterThan(0);
+  }
+
+  @Test
+  public void should_format_table() {
+    Rule rule = new MutableParsingRule("someRule").is("foo");
+    new ParseRunner(rule).parse("foo".toCharArray(), profiler);
+
+    String table = profiler.formatTable();
+    assertThat(table).startsWith("Rule     ").contains("Invocations").contains("Total ms");
+    assertThat(table.split("\n")[1]).startsWith("someRule").contains("1");
+    assertThat(profiler.toString()).isEqualTo(table);
+  }
+
+  private RuleProfile profile(String ruleName) {
+    for (RuleProfile ruleProfile : profiler.getRuleProfiles()) {
+      if (ruleName.equals(ruleProfile.getRuleName())) {
+        return ruleProfile;
+      }
+    }
+    throw new AssertionError("No profile for " + ruleName);
+  }
+
+}
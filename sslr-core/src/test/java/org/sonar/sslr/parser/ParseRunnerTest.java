@@ -19,12 +19,15 @@
  */
 package org.sonar.sslr.parser;
 
+import com.google.common.base.Strings;
 import com.sonar.sslr.api.GenericTokenType;
 import com.sonar.sslr.api.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.sonar.sslr.internal.grammar.MutableParsingRule;
 
+import java.util.concurrent.TimeUnit;
+
 import static org.fest.assertions.Assertions.assertThat;
 
 public class ParseRunnerTest {
@@ -35,7 +38,16 @@ public class ParseRunnerTest {
   @Test
   public void should_not_accept_null() {
     thrown.expect(NullPointerException.class);
-    new ParseRunner(null);
+    new ParseRunner((Rule) null);
+  }
+
+  @Test
+  public void should_compile_lazily() {
+    Rule subRule = new MutableParsingRule("subRule").is("bar");
+    Rule rule = new MutableParsingRule("rule").is("foo", subRule);
+    ParseRunner runner = ParseRunner.withLazyCompilation(rule);
+    assertThat(runner.parse("foobar".toCharArray()).isMatched()).isTrue();
+    assertThat(runner.parse("foobaz".toCharArray()).getParseError().getMessage()).isEqualTo("failed to match: subRule");
   }
 
   @Test
@@ -149,4 +161,103 @@ public class ParseRunnerTest {
     assertThat(parseError.getFailedPaths()).hasSize(2);
   }
 
+  @Test
+  public void should_collect_statistics() {
+    Rule a = new MutableParsingRule("a").is("a");
+    Rule rule = new MutableParsingRule("rule").is(GrammarOperators.firstOf(GrammarOperators.sequence(a, "x"), GrammarOperators.sequence(a, "y")));
+    ParsingStatistics statistics = new ParseRunner(rule).parse("ay".toCharArray()).getStatistics();
+    assertThat(statistics.getInstructions()).isGreaterThan(0);
+    assertThat(statistics.getMaxStackDepth()).isEqualTo(3);
+    assertThat(statistics.getBacktracks()).isEqualTo(1);
+    assertThat(statistics.getMemoHits()).isEqualTo(1);
+    // rule, a, "a" and "y" - second invocation of a was taken from memoization table
+    assertThat(statistics.getNodes()).isEqualTo(4);
+    assertThat(statistics.toString()).contains("memoHits=1");
+  }
+
+  @Test
+  public void should_collect_statistics_of_both_runs_on_mismatch() {
+    Rule rule = new MutableParsingRule("rule").is("foo");
+    ParsingResult result = new ParseRunner(rule).parse("bar".toCharArray());
+    assertThat(result.getStatistics().getBacktracks()).isEqualTo(2);
+  }
+
+  @Test
+  public void should_parse_within_limits() {
+    Rule rule = new MutableParsingRule("rule").is(GrammarOperators.zeroOrMore("a"));
+    ParsingLimits limits = ParsingLimits.builder()
+        .setMaxInstructions(1000)
+        .setTimeout(1, TimeUnit.MINUTES)
+        .setCancellationToken(new CancellationToken())
+        .build();
+    assertThat(new ParseRunner(rule).parse(Strings.repeat("a", 10).toCharArray(), limits).isMatched()).isTrue();
+  }
+
+  @Test
+  public void should_abort_when_instructions_limit_exceeded() {
+    Rule rule = new MutableParsingRule("rule").is(GrammarOperators.zeroOrMore("a"));
+    try {
+      new ParseRunner(rule).parse(Strings.repeat("a", 1000).toCharArray(), ParsingLimits.builder().setMaxInstructions(100).build());
+      throw new AssertionError("expected exception");
+    } catch (ParsingAbortedException e) {
+      assertThat(e.getReason()).isEqualTo(ParsingAbortedException.Reason.INSTRUCTIONS_LIMIT_EXCEEDED);
+      assertThat(e.getInstructions()).isEqualTo(100);
+      assertThat(e.getMessage()).isEqualTo("Parsing aborted (INSTRUCTIONS_LIMIT_EXCEEDED) after execution of 100 instructions");
+    }
+  }
+
+  @Test
+  public void should_account_instructions_of_second_run() {
+    Rule rule = new MutableParsingRule("rule").is(GrammarOperators.zeroOrMore("a"), "b");
+    char[] input = Strings.repeat("a", 100).toCharArray();
+    long instructions = new ParseRunner(rule).parse(input).getStatistics().getInstructions();
+
+    thrown.expect(ParsingAbortedException.class);
+    new ParseRunner(rule).parse(input, ParsingLimits.builder().setMaxInstructions(instructions - 1).build());
+  }
+
+  @Test
+  public void should_account_instructions_of_all_runs_with_deterministic_choices() {
+    Rule rule = new MutableParsingRule("rule").is(GrammarOperators.zeroOrMore("a"), "b");
+    char[] input = Strings.repeat("a", 100).toCharArray();
+    long instructionsWithBacktracking = new ParseRunner(rule).parse(input).getStatistics().getInstructions();
+    long instructions = ParseRunner.withDeterministicChoices(rule).parse(input).getStatistics().getInstructions();
+    // failed run of optimized grammar, followed by two runs of grammar with backtracking
+    assertThat(instructions).isGreaterThan(instructionsWithBacktracking);
+
+    thrown.expect(ParsingAbortedException.class);
+    ParseRunner.withDeterministicChoices(rule).parse(input, ParsingLimits.builder().setMaxInstructions(instructions - 1).build());
+  }
+
+  @Test
+  public void should_abort_when_cancelled() {
+    Rule rule = new MutableParsingRule("rule").is(GrammarOperators.zeroOrMore("a"));
+    CancellationToken cancellationToken = new CancellationToken();
+    cancellationToken.cancel();
+    try {
+      new ParseRunner(rule).parse("a".toCharArray(), ParsingLimits.builder().setCancellationToken(cancellationToken).build());
+      throw new AssertionError("expected exception");
+    } catch (ParsingAbortedException e) {
+      assertThat(e.getReason()).isEqualTo(ParsingAbortedException.Reason.CANCELLED);
+    }
+  }
+
+  @Test
+  public void should_abort_on_timeout() {
+    Rule rule = new MutableParsingRule("rule").is(GrammarOperators.zeroOrMore("a"));
+    try {
+      new ParseRunner(rule).parse(Strings.repeat("a", 1000000).toCharArray(), ParsingLimits.builder().setTimeout(1, TimeUnit.NANOSECONDS).build());
+      throw new AssertionError("expected exception");
+    } catch (ParsingAbortedException e) {
+      assertThat(e.getReason()).isEqualTo(ParsingAbortedException.Reason.TIMEOUT);
+    }
+  }
+
+  @Test
+  public void should_not_accept_invalid_limits() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("maxInstructions must be positive");
+    ParsingLimits.builder().setMaxInstructions(0);
+  }
+
 }
@@ -36,6 +36,9 @@ import java.nio.charset.Charset;
 import java.util.List;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
 public class ParserAdapterTest {
 
@@ -103,4 +106,14 @@ public class ParserAdapterTest {
     parser.getRootRule();
   }
 
+  @Test
+  public void should_notify_statistics_listener() {
+    ParsingStatisticsListener listener = mock(ParsingStatisticsListener.class);
+    parser.setStatisticsListener(listener);
+    assertThat(parser.getStatisticsListener()).isSameAs(listener);
+
+    parser.parse("1+1");
+    verify(listener).onParsed(any(ParsingStatistics.class));
+  }
+
 }
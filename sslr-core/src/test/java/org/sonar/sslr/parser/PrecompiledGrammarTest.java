@@ -0,0 +1,99 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.parser;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeSkippingPolicy;
+import com.sonar.sslr.api.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.sslr.grammar.GrammarRuleKey;
+import org.sonar.sslr.grammar.LexerlessGrammarBuilder;
+import org.sonar.sslr.internal.grammar.MutableParsingRule;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class PrecompiledGrammarTest {
+
+  @org.junit.Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private static enum MyGrammar implements GrammarRuleKey {
+    ROOT, WORD, UNUSED
+  }
+
+  private static Rule rootRule() {
+    LexerlessGrammarBuilder b = LexerlessGrammarBuilder.create();
+    b.rule(MyGrammar.ROOT).is(b.oneOrMore(MyGrammar.WORD), b.endOfInput());
+    b.rule(MyGrammar.WORD).is(b.regexp("[a-z]++"), b.optional(" "));
+    b.rule(MyGrammar.UNUSED).is("unused");
+    return b.build().rule(MyGrammar.ROOT);
+  }
+
+  @Test
+  public void should_load_compiled_grammar() throws Exception {
+    byte[] data = PrecompiledGrammar.compile(rootRule());
+    PrecompiledGrammar grammar = PrecompiledGrammar.load(new ByteArrayInputStream(data), getClass().getClassLoader());
+
+    assertThat(grammar.getRootRule().toString()).isEqualTo("ROOT");
+    assertThat(grammar.rule(MyGrammar.WORD).toString()).isEqualTo("WORD");
+
+    ParsingResult result = grammar.createParseRunner().parse("foo bar".toCharArray());
+    assertThat(result.isMatched()).isTrue();
+    assertThat(result.getParseTreeRoot().getMatcher()).isSameAs(grammar.getRootRule());
+    assertThat(result.getParseTreeRoot().getChildren().get(1).getMatcher()).isSameAs(grammar.rule(MyGrammar.WORD));
+
+    result = grammar.createParseRunner().parse("foo 42".toCharArray());
+    assertThat(result.isMatched()).isFalse();
+    assertThat(result.getParseError().getErrorIndex()).isEqualTo(4);
+  }
+
+  @Test
+  public void should_fail_to_find_unreachable_rule() throws Exception {
+    PrecompiledGrammar grammar = PrecompiledGrammar.load(PrecompiledGrammar.compile(rootRule()), getClass().getClassLoader());
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Rule not found: UNUSED");
+    grammar.rule(MyGrammar.UNUSED);
+  }
+
+  @Test
+  public void should_fail_to_compile_unsupported_grammar() {
+    MutableParsingRule rule = new MutableParsingRule("rule");
+    rule.is("foo");
+    rule.skipIf(new AstNodeSkippingPolicy() {
+      public boolean hasToBeSkippedFromAst(AstNode node) {
+        return true;
+      }
+    });
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Grammar can't be precompiled: rule");
+    PrecompiledGrammar.compile(rule);
+  }
+
+  @Test
+  public void should_fail_on_corrupted_data() throws Exception {
+    thrown.expect(IOException.class);
+    PrecompiledGrammar.load(new byte[] {1, 2, 3}, getClass().getClassLoader());
+  }
+
+}
@@ -55,6 +55,8 @@ public enum JsonGrammar implements GrammarRuleKey {
     b.rule(NULL).is("null");
     b.rule(WHITESPACE).is(b.regexp("[ \n\r\t\f]*+"));
 
+    b.setRootRule(JSON);
+
     return b.build();
   }
 
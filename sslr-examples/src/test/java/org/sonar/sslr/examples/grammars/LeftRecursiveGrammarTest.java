@@ -20,25 +20,49 @@
 package org.sonar.sslr.examples.grammars;
 
 import com.sonar.sslr.api.Grammar;
-import org.junit.Rule;
 import org.junit.Test;
-import org.junit.rules.ExpectedException;
-import org.sonar.sslr.grammar.GrammarException;
+import org.sonar.sslr.internal.matchers.ParseNode;
 import org.sonar.sslr.parser.ParseRunner;
 
+import static org.fest.assertions.Assertions.assertThat;
 import static org.sonar.sslr.tests.Assertions.assertThat;
 
 public class LeftRecursiveGrammarTest {
 
-  @Rule
-  public ExpectedException thrown = ExpectedException.none();
+  @Test
+  public void immediate_left_recursion() {
+    Grammar grammar = LeftRecursiveGrammar.immediateLeftRecursion();
+    assertThat(grammar.rule(LeftRecursiveGrammar.A))
+      .matches("s1")
+      .matches("s2")
+      .matches("s1t1")
+      .matches("s1t2")
+      .matches("s1t1t2")
+      .matches("s1t2t1")
+      .matches("s2t1")
+      .matches("s2t2")
+      .matches("s2t1t2")
+      .matches("s2t2t1")
+      .notMatches("t1")
+      .notMatches("s1s2");
+  }
 
   @Test
-  public void should_detect_immediate_left_recursion() {
+  public void immediate_left_recursion_should_produce_left_associative_tree() {
     Grammar grammar = LeftRecursiveGrammar.immediateLeftRecursion();
-    thrown.expect(GrammarException.class);
-    thrown.expectMessage("Left recursion has been detected, involved rule: " + LeftRecursiveGrammar.A);
-    new ParseRunner(grammar.rule(LeftRecursiveGrammar.A)).parse("".toCharArray());
+    ParseNode root = new ParseRunner(grammar.rule(LeftRecursiveGrammar.A)).parse("s1t1t2".toCharArray()).getParseTreeRoot();
+    // A(A(A(S1) T1) T2)
+    assertThat(root.getEndIndex()).isEqualTo(6);
+    assertThat(root.getChildren()).hasSize(2);
+    assertThat(root.getChildren().get(1).getMatcher().toString()).isEqualTo("T2");
+    ParseNode node = root.getChildren().get(0);
+    assertThat(node.getMatcher().toString()).isEqualTo("A");
+    assertThat(node.getEndIndex()).isEqualTo(4);
+    assertThat(node.getChildren()).hasSize(2);
+    node = node.getChildren().get(0);
+    assertThat(node.getMatcher().toString()).isEqualTo("A");
+    assertThat(node.getEndIndex()).isEqualTo(2);
+    assertThat(node.getChildren()).hasSize(1);
   }
 
   @Test
@@ -58,11 +82,22 @@ public class LeftRecursiveGrammarTest {
   }
 
   @Test
-  public void should_detect_indirect_left_recursion() {
+  public void indirect_left_recursion() {
     Grammar grammar = LeftRecursiveGrammar.indirectLeftRecursion();
-    thrown.expect(GrammarException.class);
-    thrown.expectMessage("Left recursion has been detected, involved rule: " + LeftRecursiveGrammar.B);
-    new ParseRunner(grammar.rule(LeftRecursiveGrammar.A)).parse("".toCharArray());
+    assertThat(grammar.rule(LeftRecursiveGrammar.A))
+      .matches("s2t1")
+      .matches("s2t1t2t1")
+      .matches("s2t1t2t1t2t1")
+      .matches("s1")
+      .matches("s1t2t1")
+      .matches("s1t2t1t2t1")
+      .notMatches("s2")
+      .notMatches("s1t2");
+    assertThat(grammar.rule(LeftRecursiveGrammar.B))
+      .matches("s2")
+      .matches("s1t2")
+      .matches("s2t1t2")
+      .matches("s1t2t1t2");
   }
 
   @Test
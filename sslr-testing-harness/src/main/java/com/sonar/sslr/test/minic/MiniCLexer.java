@@ -119,14 +119,23 @@ public final class MiniCLexer {
   }
 
   public static Lexer create() {
+    return builder().build();
+  }
+
+  /**
+   * @since 1.20
+   */
+  public static Lexer.Builder builder() {
     return Lexer.builder()
         .withFailIfNoChannelToConsumeOneCharacter(true)
-        .withChannel(new IdentifierAndKeywordChannel("[a-zA-Z]([a-zA-Z0-9_]*[a-zA-Z0-9])?+", true, Keywords.values()))
-        .withChannel(regexp(Literals.INTEGER, "[0-9]+"))
-        .withChannel(commentRegexp("(?s)/\\*.*?\\*/"))
-        .withChannel(new PunctuatorChannel(Punctuators.values()))
-        .withChannel(new BlackHoleChannel("[ \t\r\n]+"))
-        .build();
+        // first characters of tokens recognized by these channels are disjoint, so order does not matter
+        .withUnorderedChannels(
+            new IdentifierAndKeywordChannel("[a-zA-Z]([a-zA-Z0-9_]*[a-zA-Z0-9])?+", true, Keywords.values()),
+            regexp(Literals.INTEGER, "[0-9]+"),
+            commentRegexp("(?s)/\\*.*?\\*/"),
+            new BlackHoleChannel("[ \t\r\n]+"))
+        // must be after comments, which also start with "/"
+        .withChannel(new PunctuatorChannel(Punctuators.values()));
   }
 
 }
@@ -302,6 +302,65 @@ public class AstNodeTest {
     assertThat(a1.getDescendants(a)).as("SSLR-249").isEmpty();
   }
 
+  @Test
+  public void test_indexTypes() {
+    NodeType a = new NodeType();
+    NodeType b = new NodeType();
+    NodeType c = new NodeType();
+    NodeType e = new NodeType();
+    AstNode a1 = new AstNode(a, "a1", null);
+    AstNode c1 = new AstNode(c, "c1", null);
+    AstNode b1 = new AstNode(b, "b1", null);
+    AstNode b2 = new AstNode(b, "b2", null);
+    a1.addChild(c1);
+    c1.addChild(b1);
+    a1.addChild(b2);
+    a1.indexTypes();
+
+    assertThat(a1.getDescendants(b, c)).containsExactly(c1, b1, b2);
+    assertThat(a1.getFirstDescendant(b)).isSameAs(b1);
+    assertThat(a1.hasDescendant(e)).isFalse();
+    assertThat(a1.select().descendants(b).size()).isEqualTo(2);
+
+    // index must be discarded after modification of tree
+    AstNode e1 = new AstNode(e, "e1", null);
+    b1.addChild(e1);
+    assertThat(a1.getFirstDescendant(e)).isSameAs(e1);
+    assertThat(a1.getDescendants(e)).containsExactly(e1);
+  }
+
+  @Test
+  public void test_indexTypes_skips_subtree_without_requested_type() {
+    NodeType a = new NodeType();
+    NodeType b = new NodeType();
+    AstNode a1 = new AstNode(a, "a1", null);
+    AstNode b1 = new AstNode(b, "b1", null);
+    // more types than bits in one word
+    AstNode expected = addChain(a1, 100);
+    AstNode skipped = new AstNode(a, "skipped", null) {
+      @Override
+      public boolean is(AstNodeType... types) {
+        throw new AssertionError("subtree without requested type must be skipped");
+      }
+    };
+    a1.addChild(skipped);
+    addChain(skipped, 100);
+    addChain(expected, 1).addChild(b1);
+    a1.indexTypes();
+
+    assertThat(a1.getDescendants(b)).containsExactly(b1);
+    assertThat(a1.getFirstDescendant(b)).isSameAs(b1);
+  }
+
+  private AstNode addChain(AstNode node, int length) {
+    for (int i = 0; i < length; i++) {
+      AstNode child = new AstNode(new NodeType(), "n" + i, null);
+      node.addChild(child);
+      node = child;
+    }
+    return node;
+  }
+
   private class NodeType implements AstNodeSkippingPolicy {
 
     private boolean skippedFromAst = false;
@@ -0,0 +1,99 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl;
+
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.LexerProfiler.ChannelProfile;
+import com.sonar.sslr.impl.channel.BlackHoleChannel;
+import org.junit.Test;
+
+import java.util.List;
+
+import static com.sonar.sslr.impl.channel.RegexpChannelBuilder.regexp;
+import static org.fest.assertions.Assertions.assertThat;
+
+public class LexerProfilerTest {
+
+  private final LexerProfiler profiler = new LexerProfiler();
+
+  @Test
+  public void should_profile_channels() {
+    Lexer lexer = builder().withProfiler(profiler).build();
+    lexer.lex("a 1 2");
+
+    List<ChannelProfile> profiles = profiler.getChannelProfiles();
+    assertThat(profiles).hasSize(3);
+    assertThat(profiles.get(0).getIndex()).isEqualTo(0);
+    assertThat(profiles.get(0).getChannelName()).isEqualTo("RegexpChannel");
+    assertThat(profiles.get(0).getAttempts()).isEqualTo(5);
+    assertThat(profiles.get(0).getHits()).isEqualTo(1);
+    assertThat(profiles.get(1).getAttempts()).isEqualTo(4);
+    assertThat(profiles.get(1).getHits()).isEqualTo(2);
+    assertThat(profiles.get(2).getChannelName()).isEqualTo("BlackHoleChannel");
+    assertThat(profiles.get(2).getAttempts()).isEqualTo(2);
+    assertThat(profiles.get(2).getHits()).isEqualTo(2);
+    assertThat(profiles.get(2).getTime()).isGreaterThanOrEqualTo(0);
+
+    String table = profiler.formatTable();
+    assertThat(table).contains("Channel").contains("Attempts").contains("Hit ratio");
+    assertThat(table.split("\n")[1]).contains("RegexpChannel");
+    assertThat(profiler.toString()).isEqualTo(table);
+  }
+
+  @Test
+  public void should_reorder_unordered_channels() {
+    builder().withProfiler(profiler).build().lex("a 1 2");
+
+    LexerProfiler reorderedProfiler = new LexerProfiler();
+    Lexer lexer = builder().withChannelOrderFrom(profiler).withProfiler(reorderedProfiler).build();
+    List<Token> tokens = lexer.lex("a 1 2");
+
+    assertThat(tokens).hasSize(4);
+    assertThat(tokens.get(1).getValue()).isEqualTo("1");
+    List<ChannelProfile> profiles = reorderedProfiler.getChannelProfiles();
+    // channels with equal number of hits keep their relative order
+    assertThat(profiles.get(1).getAttempts()).isEqualTo(5);
+    assertThat(profiles.get(2).getAttempts()).isEqualTo(3);
+    assertThat(profiles.get(0).getAttempts()).isEqualTo(1);
+  }
+
+  @Test
+  public void should_not_reorder_ordered_channels() {
+    Lexer.Builder builder = Lexer.builder()
+        .withChannel(regexp(GenericTokenType.IDENTIFIER, "[a-z]++"))
+        .withChannel(new BlackHoleChannel("\\s++"));
+    builder.withProfiler(profiler).build().lex("a   b");
+
+    LexerProfiler reorderedProfiler = new LexerProfiler();
+    builder.withChannelOrderFrom(profiler).withProfiler(reorderedProfiler).build().lex("a   b");
+
+    assertThat(reorderedProfiler.getChannelProfiles().get(0).getAttempts()).isEqualTo(3);
+  }
+
+  private static Lexer.Builder builder() {
+    return Lexer.builder()
+        .withUnorderedChannels(
+            regexp(GenericTokenType.IDENTIFIER, "[a-z]++"),
+            regexp(GenericTokenType.LITERAL, "[0-9]++"),
+            new BlackHoleChannel("\\s++"));
+  }
+
+}
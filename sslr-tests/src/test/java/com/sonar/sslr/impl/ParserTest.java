@@ -19,9 +19,20 @@
  */
 package com.sonar.sslr.impl;
 
+import com.google.common.collect.Lists;
 import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.api.RecognitionException;
+import com.sonar.sslr.test.minic.MiniCParser;
 import org.junit.Test;
+import org.sonar.sslr.parser.ParseProfiler;
+import org.sonar.sslr.parser.ParseProfiler.RuleProfile;
+import org.sonar.sslr.parser.ParsingAbortedException;
+import org.sonar.sslr.parser.ParsingLimits;
+import org.sonar.sslr.parser.ParsingStatistics;
+import org.sonar.sslr.parser.ParsingStatisticsListener;
+
+import java.util.List;
 
 import static com.sonar.sslr.api.GenericTokenType.EOF;
 import static com.sonar.sslr.test.minic.MiniCParser.parseFile;
@@ -57,4 +68,63 @@ public class ParserTest {
     assertThat(compilationUnit.getChild(0).is(EOF)).isTrue();
   }
 
+  @Test
+  public void profile() {
+    Parser<Grammar> parser = MiniCParser.create();
+    ParseProfiler profiler = new ParseProfiler();
+    parser.setProfiler(profiler);
+    assertThat(parser.getProfiler()).isSameAs(profiler);
+
+    parser.parse("int a; int b;");
+
+    RuleProfile compilationUnit = null;
+    for (RuleProfile ruleProfile : profiler.getRuleProfiles()) {
+      if ("COMPILATION_UNIT".equals(ruleProfile.getRuleName())) {
+        compilationUnit = ruleProfile;
+      }
+    }
+    assertThat(compilationUnit.getInvocations()).isEqualTo(1);
+    assertThat(compilationUnit.getMatches()).isEqualTo(1);
+    // 6 tokens + EOF
+    assertThat(compilationUnit.getConsumed()).isEqualTo(7);
+  }
+
+  @Test
+  public void statistics() {
+    Parser<Grammar> parser = MiniCParser.create();
+    final List<ParsingStatistics> statistics = Lists.newArrayList();
+    parser.setStatisticsListener(new ParsingStatisticsListener() {
+      public void onParsed(ParsingStatistics s) {
+        statistics.add(s);
+      }
+    });
+
+    parser.parse("int a;");
+    try {
+      parser.parse("int");
+      throw new AssertionError("This should be unreachable!");
+    } catch (RecognitionException e) {
+      // expected
+    }
+
+    assertThat(statistics).hasSize(2);
+    assertThat(statistics.get(0).getInstructions()).isGreaterThan(0);
+    assertThat(statistics.get(0).getNodes()).isGreaterThan(0);
+    assertThat(statistics.get(1).getBacktracks()).isGreaterThan(0);
+  }
+
+  @Test
+  public void limits() {
+    Parser<Grammar> parser = MiniCParser.create();
+    ParsingLimits limits = ParsingLimits.builder().setMaxInstructions(10).build();
+    parser.setLimits(limits);
+    assertThat(parser.getLimits()).isSameAs(limits);
+    try {
+      parser.parse("int a;");
+      throw new AssertionError("This should be unreachable!");
+    } catch (ParsingAbortedException e) {
+      assertThat(e.getReason()).isEqualTo(ParsingAbortedException.Reason.INSTRUCTIONS_LIMIT_EXCEEDED);
+    }
+  }
+
 }
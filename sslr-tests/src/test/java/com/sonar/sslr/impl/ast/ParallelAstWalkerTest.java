@@ -0,0 +1,123 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl.ast;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeType;
+import com.sonar.sslr.api.AstVisitor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.InOrder;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ParallelAstWalkerTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private final AstNodeType animal = new AstNodeType() {
+  };
+
+  private final AstNodeType dog = new AstNodeType() {
+  };
+
+  private final AstNodeType cat = new AstNodeType() {
+  };
+
+  private ExecutorService executor;
+  private AstNode ast1;
+  private AstNode ast11;
+  private AstNode ast12;
+
+  @Before
+  public void init() {
+    executor = Executors.newFixedThreadPool(2);
+    ast1 = new AstNode(animal, "1", null);
+    ast11 = new AstNode(dog, "11", null);
+    ast12 = new AstNode(cat, "12", null);
+    ast1.addChild(ast11);
+    ast1.addChild(ast12);
+  }
+
+  @After
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void should_visit_all_groups() {
+    AstVisitor dogVisitor = mock(AstVisitor.class);
+    when(dogVisitor.getAstNodeTypesToVisit()).thenReturn(Arrays.asList(dog));
+    AstVisitor catVisitor1 = mock(AstVisitor.class);
+    when(catVisitor1.getAstNodeTypesToVisit()).thenReturn(Arrays.asList(cat));
+    AstVisitor catVisitor2 = mock(AstVisitor.class);
+    when(catVisitor2.getAstNodeTypesToVisit()).thenReturn(Arrays.asList(cat));
+
+    ParallelAstWalker walker = new ParallelAstWalker(executor);
+    walker.addVisitorGroup(dogVisitor);
+    walker.addVisitorGroup(catVisitor1, catVisitor2);
+    walker.walkAndVisit(ast1);
+
+    InOrder dogOrder = inOrder(dogVisitor);
+    dogOrder.verify(dogVisitor).visitFile(ast1);
+    dogOrder.verify(dogVisitor).visitNode(ast11);
+    dogOrder.verify(dogVisitor).leaveNode(ast11);
+    dogOrder.verify(dogVisitor).leaveFile(ast1);
+    verify(dogVisitor, never()).visitNode(ast12);
+
+    InOrder catOrder = inOrder(catVisitor1, catVisitor2);
+    catOrder.verify(catVisitor1).visitFile(ast1);
+    catOrder.verify(catVisitor2).visitFile(ast1);
+    catOrder.verify(catVisitor1).visitNode(ast12);
+    catOrder.verify(catVisitor2).visitNode(ast12);
+    catOrder.verify(catVisitor2).leaveNode(ast12);
+    catOrder.verify(catVisitor1).leaveNode(ast12);
+    catOrder.verify(catVisitor2).leaveFile(ast1);
+    catOrder.verify(catVisitor1).leaveFile(ast1);
+  }
+
+  @Test
+  public void should_propagate_exception() {
+    AstVisitor visitor = mock(AstVisitor.class);
+    when(visitor.getAstNodeTypesToVisit()).thenReturn(Arrays.asList(dog));
+    doThrow(new IllegalArgumentException("foo")).when(visitor).visitNode(ast11);
+
+    ParallelAstWalker walker = new ParallelAstWalker(executor);
+    walker.addVisitorGroup(visitor);
+
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("foo");
+    walker.walkAndVisit(ast1);
+  }
+
+}
@@ -0,0 +1,204 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.benchmarks;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Closeables;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Lexer;
+import com.sonar.sslr.impl.ast.AstWalker;
+import com.sonar.sslr.test.minic.MiniCGrammar;
+import com.sonar.sslr.test.minic.MiniCLexer;
+import org.sonar.sslr.examples.grammars.JsonGrammar;
+import org.sonar.sslr.internal.matchers.AstCreator;
+import org.sonar.sslr.internal.matchers.LexerfulAstCreator;
+import org.sonar.sslr.internal.matchers.ParseNode;
+import org.sonar.sslr.internal.text.LocatedText;
+import org.sonar.sslr.internal.vm.CompilableGrammarRule;
+import org.sonar.sslr.internal.vm.CompiledGrammar;
+import org.sonar.sslr.internal.vm.Machine;
+import org.sonar.sslr.internal.vm.MutableGrammarCompiler;
+import org.sonar.sslr.parser.ParsingResult;
+import org.sonar.sslr.text.Text;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Measures number of bytes allocated per input character by each stage of parsing pipeline separately:
+ * lexing, parsing, construction of AST and walking over it for MiniC (lexerful),
+ * parsing and construction of AST for JSON (lexerless).
+ * Results are compared with baseline stored in resource {@link #BASELINE_RESOURCE},
+ * so that regressions by more than 25% (system property "allocation.threshold") are detected by {@code AllocationGateTest},
+ * which is executed as part of regular build of module sslr-tests.
+ *
+ * <p>Baseline depends on JVM, so after intended change or upgrade of JVM it should be regenerated from directory of module sslr-tests:</p>
+ * <pre>
+ * java -cp target/test-classes:... org.sonar.sslr.benchmarks.AllocationGate src/test/resources/org/sonar/sslr/benchmarks/allocation-baseline.properties
+ * </pre>
+ */
+public final class AllocationGate {
+
+  static final String BASELINE_RESOURCE = "allocation-baseline.properties";
+  static final int INPUT_SIZE = 64 * 1024;
+  private static final int WARMUP_ITERATIONS = 10;
+  private static final int MEASUREMENT_ITERATIONS = 5;
+
+  private final String miniCInput = Inputs.miniC(INPUT_SIZE);
+  private final Lexer miniCLexer = MiniCLexer.create();
+  private final CompiledGrammar miniCGrammar = MutableGrammarCompiler.compile((CompilableGrammarRule) MiniCGrammar.create().getRootRule());
+  private final AstWalker miniCWalker = new AstWalker(new NodeCountingVisitor(MiniCGrammar.values()));
+
+  private final char[] jsonInput = Inputs.json(INPUT_SIZE).toCharArray();
+  private final CompiledGrammar jsonGrammar = MutableGrammarCompiler.compile((CompilableGrammarRule) JsonGrammar.create().getRootRule());
+
+  /**
+   * Used to prevent elimination of results by JIT.
+   */
+  private int sink;
+
+  /**
+   * @return number of allocated bytes per input character for each stage ordered by execution
+   */
+  public Map<String, Double> measure() {
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      runOnce();
+    }
+    Map<String, Long> min = Maps.newLinkedHashMap();
+    for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+      // minimum is less sensitive to allocations by JIT-related activity in current thread
+      for (Map.Entry<String, Long> entry : runOnce().entrySet()) {
+        Long previous = min.get(entry.getKey());
+        min.put(entry.getKey(), previous == null ? entry.getValue() : Math.min(previous, entry.getValue()));
+      }
+    }
+    Map<String, Double> result = Maps.newLinkedHashMap();
+    for (Map.Entry<String, Long> entry : min.entrySet()) {
+      int length = entry.getKey().startsWith("minic.") ? miniCInput.length() : jsonInput.length;
+      result.put(entry.getKey(), (double) entry.getValue() / length);
+    }
+    return result;
+  }
+
+  private Map<String, Long> runOnce() {
+    Map<String, Long> result = Maps.newLinkedHashMap();
+
+    long start = AllocationMeter.allocatedBytes();
+    List<Token> tokens = miniCLexer.lex(miniCInput);
+    long end = AllocationMeter.allocatedBytes();
+    result.put("minic.lex", end - start);
+
+    start = AllocationMeter.allocatedBytes();
+    ParseNode parseNode = Machine.parse(tokens, miniCGrammar);
+    end = AllocationMeter.allocatedBytes();
+    result.put("minic.parse", end - start);
+
+    start = AllocationMeter.allocatedBytes();
+    AstNode astNode = LexerfulAstCreator.create(parseNode, tokens);
+    end = AllocationMeter.allocatedBytes();
+    result.put("minic.createAst", end - start);
+
+    start = AllocationMeter.allocatedBytes();
+    miniCWalker.walkAndVisit(astNode);
+    end = AllocationMeter.allocatedBytes();
+    result.put("minic.walk", end - start);
+
+    start = AllocationMeter.allocatedBytes();
+    ParsingResult parsingResult = Machine.parse(jsonInput, jsonGrammar);
+    end = AllocationMeter.allocatedBytes();
+    result.put("json.parse", end - start);
+
+    Text text = new LocatedText(null, jsonInput);
+    start = AllocationMeter.allocatedBytes();
+    AstNode jsonAstNode = AstCreator.create(parsingResult, text);
+    end = AllocationMeter.allocatedBytes();
+    result.put("json.createAst", end - start);
+
+    sink += astNode.getNumberOfChildren() + jsonAstNode.getNumberOfChildren();
+    return result;
+  }
+
+  /**
+   * @return descriptions of stages, for which measured value exceeds baseline by more than given fraction,
+   * stages without baseline are ignored
+   */
+  public static List<String> findRegressions(Map<String, Double> measured, Properties baseline, double threshold) {
+    List<String> result = Lists.newArrayList();
+    for (Map.Entry<String, Double> entry : measured.entrySet()) {
+      String expected = baseline.getProperty(entry.getKey());
+      if (expected == null) {
+        continue;
+      }
+      double limit = Double.parseDouble(expected) * (1 + threshold);
+      if (entry.getValue() > limit) {
+        result.add(String.format(Locale.ENGLISH, "%s: %.2f bytes per character, baseline %s, limit %.2f", entry.getKey(), entry.getValue(), expected, limit));
+      }
+    }
+    return result;
+  }
+
+  public static Properties loadBaseline() throws IOException {
+    Properties baseline = new Properties();
+    InputStream in = AllocationGate.class.getResourceAsStream(BASELINE_RESOURCE);
+    if (in == null) {
+      throw new IOException("Baseline not found: " + BASELINE_RESOURCE);
+    }
+    try {
+      baseline.load(in);
+    } finally {
+      Closeables.closeQuietly(in);
+    }
+    return baseline;
+  }
+
+  static String format(Map<String, Double> measured) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("# Bytes allocated per input character, see ").append(AllocationGate.class.getName()).append('\n');
+    for (Map.Entry<String, Double> entry : measured.entrySet()) {
+      sb.append(String.format(Locale.ENGLISH, "%s=%.2f\n", entry.getKey(), entry.getValue()));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Prints measurements and optionally stores them as a new baseline into file given as first argument.
+   */
+  public static void main(String[] args) throws IOException {
+    if (!AllocationMeter.isSupported()) {
+      throw new IllegalStateException("Measurement of allocated memory is not supported by this JVM");
+    }
+    Map<String, Double> measured = new AllocationGate().measure();
+    String result = format(measured);
+    System.out.print(result);
+    if (args.length > 0) {
+      Files.write(result, new File(args[0]), Charsets.ISO_8859_1);
+    }
+  }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.benchmarks;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Properties;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+public class AllocationGateTest {
+
+  /**
+   * Allowed growth of number of allocated bytes per character relatively to baseline,
+   * can be overridden via system property "allocation.threshold".
+   */
+  private static final double THRESHOLD = Double.parseDouble(System.getProperty("allocation.threshold", "0.25"));
+
+  @Test
+  public void should_not_regress() throws Exception {
+    assumeTrue(AllocationMeter.isSupported());
+
+    Properties baseline = AllocationGate.loadBaseline();
+    Map<String, Double> measured = new AllocationGate().measure();
+
+    assertThat(measured.keySet()).containsOnly(baseline.stringPropertyNames().toArray());
+    assertThat(AllocationGate.findRegressions(measured, baseline, THRESHOLD)).as(AllocationGate.format(measured)).isEmpty();
+  }
+
+  @Test
+  public void should_find_regressions() {
+    Properties baseline = new Properties();
+    baseline.setProperty("a", "10.00");
+    baseline.setProperty("b", "10.00");
+
+    Map<String, Double> measured = ImmutableMap.of("a", 12.4, "b", 12.6, "c", 100.0);
+
+    assertThat(AllocationGate.findRegressions(measured, baseline, 0.25))
+        .containsOnly("b: 12.60 bytes per character, baseline 10.00, limit 12.50");
+  }
+
+  @Test
+  public void should_format() {
+    assertThat(AllocationGate.format(ImmutableMap.of("a", 1.234, "b", 5.0)))
+        .isEqualTo("# Bytes allocated per input character, see org.sonar.sslr.benchmarks.AllocationGate\na=1.23\nb=5.00\n");
+  }
+
+}
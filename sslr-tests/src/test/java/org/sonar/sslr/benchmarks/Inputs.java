@@ -0,0 +1,90 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.benchmarks;
+
+/**
+ * Generators of syntactically valid inputs of a given size for end-to-end benchmarks.
+ * Generated inputs are deterministic, so that results of different runs can be compared.
+ */
+final class Inputs {
+
+  private Inputs() {
+  }
+
+  /**
+   * Size of input in bytes, can be specified via system property "size", default is 1 KB.
+   * Suffixes "k" and "m" can be used, e.g. "50m".
+   */
+  static int size() {
+    String size = System.getProperty("size", "1k").trim().toLowerCase();
+    if (size.endsWith("k")) {
+      return Integer.parseInt(size.substring(0, size.length() - 1)) * 1024;
+    } else if (size.endsWith("m")) {
+      return Integer.parseInt(size.substring(0, size.length() - 1)) * 1024 * 1024;
+    }
+    return Integer.parseInt(size);
+  }
+
+  static String miniC(int size) {
+    StringBuilder sb = new StringBuilder(size + 512);
+    for (int i = 0; sb.length() < size; i++) {
+      sb.append("/* function ").append(i).append(" */\n")
+          .append("int f").append(i).append("(int a, int b)\n")
+          .append("{\n")
+          .append("  int c = a + ").append(i).append(";\n")
+          .append("  while (c < b)\n")
+          .append("  {\n")
+          .append("    if (c == 3) c = c * 2; else c = (c - 1) / 2;\n")
+          .append("    c++;\n")
+          .append("  }\n")
+          .append("  return g(c, b - ").append(i % 10).append(");\n")
+          .append("}\n\n");
+    }
+    return sb.toString();
+  }
+
+  static String json(int size) {
+    StringBuilder sb = new StringBuilder(size + 512);
+    sb.append("[\n");
+    for (int i = 0; sb.length() < size; i++) {
+      if (i > 0) {
+        sb.append(",\n");
+      }
+      sb.append("  {\"id\": ").append(i)
+          .append(", \"name\": \"item \\\"").append(i).append("\\\"\"")
+          .append(", \"tags\": [\"a\", \"b\", \"c\"]")
+          .append(", \"nested\": {\"flag\": ").append(i % 2 == 0).append(", \"value\": null, \"ratio\": -").append(i).append(".5e3}}");
+    }
+    sb.append("\n]\n");
+    return sb.toString();
+  }
+
+  static String expression(int size) {
+    StringBuilder sb = new StringBuilder(size + 512);
+    for (int i = 0; sb.length() < size; i++) {
+      if (i > 0) {
+        sb.append(i % 2 == 0 ? " +\n" : " - ");
+      }
+      sb.append("(x").append(i).append(" + ").append(i).append(") * y / (z - ").append(i % 10).append(")");
+    }
+    return sb.toString();
+  }
+
+}
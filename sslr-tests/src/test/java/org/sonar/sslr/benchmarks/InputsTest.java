@@ -0,0 +1,52 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.benchmarks;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class InputsTest {
+
+  @After
+  public void tearDown() {
+    System.clearProperty("size");
+  }
+
+  @Test
+  public void size() {
+    assertThat(Inputs.size()).isEqualTo(1024);
+    System.setProperty("size", "42");
+    assertThat(Inputs.size()).isEqualTo(42);
+    System.setProperty("size", "2k");
+    assertThat(Inputs.size()).isEqualTo(2 * 1024);
+    System.setProperty("size", "50M");
+    assertThat(Inputs.size()).isEqualTo(50 * 1024 * 1024);
+  }
+
+  @Test
+  public void inputs_should_have_requested_size() {
+    assertThat(Inputs.miniC(1000).length()).isGreaterThanOrEqualTo(1000);
+    assertThat(Inputs.json(1000).length()).isGreaterThanOrEqualTo(1000);
+    assertThat(Inputs.expression(1000).length()).isGreaterThanOrEqualTo(1000);
+  }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.sonar.sslr.api.AstAndTokenVisitor;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeType;
+import com.sonar.sslr.api.Token;
+
+import java.util.List;
+
+/**
+ * Visitor, which subscribed to all given types and tokens, so that walking over AST has non-trivial cost.
+ */
+class NodeCountingVisitor implements AstAndTokenVisitor {
+
+  private final List<AstNodeType> types;
+  private int nodes;
+  private int tokens;
+
+  public NodeCountingVisitor(AstNodeType... types) {
+    this.types = ImmutableList.copyOf(types);
+  }
+
+  public List<AstNodeType> getAstNodeTypesToVisit() {
+    return types;
+  }
+
+  public void visitFile(AstNode ast) {
+    nodes = 0;
+    tokens = 0;
+  }
+
+  public void leaveFile(AstNode ast) {
+    // nop
+  }
+
+  public void visitNode(AstNode ast) {
+    nodes++;
+  }
+
+  public void leaveNode(AstNode ast) {
+    // nop
+  }
+
+  public void visitToken(Token token) {
+    tokens++;
+  }
+
+  public int getCount() {
+    return nodes + tokens;
+  }
+
+}
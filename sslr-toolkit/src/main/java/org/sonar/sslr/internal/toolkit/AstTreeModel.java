@@ -0,0 +1,123 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.toolkit;
+
+import com.google.common.collect.Lists;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Trivia;
+
+import javax.annotation.Nullable;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tree model, which uses {@link AstNode}s and {@link Trivia}s directly as tree nodes, so that no objects are created
+ * for subtrees, which were never expanded. Children of a node with token are trivia of this token,
+ * children of a trivia is AST of its preprocessing directive.
+ *
+ * <p>Model is immutable, so listeners are never notified.</p>
+ */
+class AstTreeModel implements TreeModel {
+
+  private final AstNode root;
+
+  public AstTreeModel(AstNode root) {
+    this.root = root;
+  }
+
+  public AstNode getRoot() {
+    return root;
+  }
+
+  public Object getChild(Object parent, int index) {
+    return getChildren(parent).get(index);
+  }
+
+  public int getChildCount(Object parent) {
+    return getChildren(parent).size();
+  }
+
+  public boolean isLeaf(Object node) {
+    return getChildren(node).isEmpty();
+  }
+
+  public int getIndexOfChild(Object parent, Object child) {
+    if (parent == null || child == null) {
+      return -1;
+    }
+    List<?> children = getChildren(parent);
+    for (int i = 0; i < children.size(); i++) {
+      if (children.get(i) == child) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static List<?> getChildren(Object node) {
+    if (node instanceof AstNode) {
+      AstNode astNode = (AstNode) node;
+      if (astNode.hasChildren()) {
+        return astNode.getChildren();
+      } else if (astNode.hasToken() && astNode.getToken().hasTrivia()) {
+        return astNode.getToken().getTrivia();
+      }
+    } else if (node instanceof Trivia) {
+      Trivia trivia = (Trivia) node;
+      if (trivia.hasPreprocessingDirective()) {
+        return Collections.singletonList(trivia.getPreprocessingDirective().getAst());
+      }
+    }
+    return Collections.emptyList();
+  }
+
+  /**
+   * @return path from root to given node or null, if node does not belong to the main tree
+   */
+  @Nullable
+  public TreePath getPath(AstNode astNode) {
+    List<Object> path = Lists.newArrayList();
+    for (AstNode node = astNode; node != null; node = node.getParent()) {
+      path.add(node);
+    }
+    if (path.get(path.size() - 1) != root) {
+      return null;
+    }
+    Collections.reverse(path);
+    return new TreePath(path.toArray());
+  }
+
+  public void valueForPathChanged(TreePath path, Object newValue) {
+    throw new UnsupportedOperationException();
+  }
+
+  public void addTreeModelListener(TreeModelListener l) {
+    // model is immutable
+  }
+
+  public void removeTreeModelListener(TreeModelListener l) {
+    // model is immutable
+  }
+
+}
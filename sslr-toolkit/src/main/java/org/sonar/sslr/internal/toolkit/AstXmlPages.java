@@ -0,0 +1,158 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.toolkit;
+
+import com.google.common.collect.Lists;
+import com.sonar.sslr.api.AstNode;
+
+import javax.annotation.Nullable;
+
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * XML representation of AST in the same format as {@link com.sonar.sslr.impl.ast.AstXmlPrinter}, which is split into pages
+ * of a given number of lines, so that huge AST can be displayed page by page.
+ * Only positions of first lines of pages are computed at construction, text of page is printed from AST on demand.
+ */
+class AstXmlPages {
+
+  public static final AstXmlPages EMPTY = new AstXmlPages(null, 1);
+
+  private final AstNode rootNode;
+  private final int linesPerPage;
+
+  /**
+   * Positions of first lines of pages.
+   */
+  private final List<Position> pageStarts = Lists.newArrayList();
+
+  public AstXmlPages(@Nullable AstNode rootNode, int linesPerPage) {
+    checkArgument(linesPerPage > 0, "linesPerPage must be positive");
+    this.rootNode = rootNode;
+    this.linesPerPage = linesPerPage;
+
+    if (rootNode != null) {
+      Position position = new Position(rootNode, 0, false);
+      int lines = 0;
+      do {
+        if (lines % linesPerPage == 0) {
+          pageStarts.add(position.copy());
+        }
+        lines++;
+      } while (position.next());
+    }
+  }
+
+  public int getLinesPerPage() {
+    return linesPerPage;
+  }
+
+  public int getNumberOfPages() {
+    return Math.max(1, pageStarts.size());
+  }
+
+  /**
+   * @param page zero-based index of page
+   */
+  public String getPage(int page) {
+    checkArgument(page >= 0 && page < getNumberOfPages(), "page must be between 0 and %s", getNumberOfPages() - 1);
+    if (pageStarts.isEmpty()) {
+      return "";
+    }
+    StringBuilder sb = new StringBuilder();
+    Position position = pageStarts.get(page).copy();
+    for (int i = 0; i < linesPerPage; i++) {
+      position.appendLine(sb);
+      if (!position.next()) {
+        return sb.toString();
+      }
+      sb.append('\n');
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Line of XML: opening tag (or empty-element tag for node without children) or closing tag of a node.
+   */
+  private final class Position {
+
+    private AstNode node;
+    private int level;
+    private boolean closing;
+
+    public Position(AstNode node, int level, boolean closing) {
+      this.node = node;
+      this.level = level;
+      this.closing = closing;
+    }
+
+    public Position copy() {
+      return new Position(node, level, closing);
+    }
+
+    /**
+     * Moves to the next line.
+     *
+     * @return false if there is no next line
+     */
+    public boolean next() {
+      if (!closing && node.hasChildren()) {
+        node = node.getFirstChild();
+        level++;
+        return true;
+      }
+      if (node == rootNode) {
+        return false;
+      }
+      AstNode sibling = node.getNextSibling();
+      if (sibling != null) {
+        node = sibling;
+        closing = false;
+      } else {
+        node = node.getParent();
+        level--;
+        closing = true;
+      }
+      return true;
+    }
+
+    public void appendLine(StringBuilder sb) {
+      for (int i = 0; i < level; i++) {
+        sb.append("  ");
+      }
+      if (closing) {
+        sb.append("</").append(node.getName()).append(">");
+        return;
+      }
+      sb.append("<").append(node.getName());
+      if (node.getTokenValue() != null && !node.getName().equals(node.getTokenValue())) {
+        sb.append(" tokenValue=\"").append(node.getTokenValue()).append("\"");
+      }
+      if (node.hasToken()) {
+        sb.append(" tokenLine=\"").append(node.getTokenLine()).append("\" tokenColumn=\"").append(node.getToken().getColumn()).append("\"");
+      }
+      sb.append(node.hasChildren() ? ">" : "/>");
+    }
+
+  }
+
+}
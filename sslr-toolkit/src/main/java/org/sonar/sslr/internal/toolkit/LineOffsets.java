@@ -19,30 +19,21 @@
  */
 package org.sonar.sslr.internal.toolkit;
 
-import com.google.common.collect.Maps;
 import com.sonar.sslr.api.Token;
-
-import java.util.Map;
+import org.sonar.sslr.internal.text.LineIndex;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
+/**
+ * Offsets in text, where each line terminator (including {@code "\r\n"}) counts as a single character,
+ * as in {@link javax.swing.text.Document}.
+ */
 public class LineOffsets {
 
-  private static final String NEWLINE_REGEX = "(\r)?\n|\r";
-
-  private final Map<Integer, Integer> lineOffsets = Maps.newHashMap();
-  private final int endOffset;
+  private final LineIndex lineIndex;
 
   public LineOffsets(String code) {
-    int currentOffset = 0;
-
-    String[] lines = code.split(NEWLINE_REGEX, -1);
-    for (int line = 1; line <= lines.length; line++) {
-      lineOffsets.put(line, currentOffset);
-      currentOffset += lines[line - 1].length() + 1;
-    }
-
-    endOffset = currentOffset - 1;
+    lineIndex = LineIndex.of(code.indexOf("\r\n") == -1 ? code : code.replace("\r\n", "\n"));
   }
 
   public int getStartOffset(Token token) {
@@ -50,22 +41,29 @@ public class LineOffsets {
   }
 
   public int getEndOffset(Token token) {
-    String[] tokenLines = token.getOriginalValue().split(NEWLINE_REGEX, -1);
-
-    int tokenLastLine = token.getLine() + tokenLines.length - 1;
-    int tokenLastLineColumn = (tokenLines.length > 1 ? 0 : token.getColumn()) + tokenLines[tokenLines.length - 1].length();
-
-    return getOffset(tokenLastLine, tokenLastLineColumn);
+    String value = token.getOriginalValue();
+    int line = token.getLine();
+    int column = token.getColumn();
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '\n' || c == '\r' && (i + 1 == value.length() || value.charAt(i + 1) != '\n')) {
+        line++;
+        column = 0;
+      } else if (c != '\r') {
+        column++;
+      }
+    }
+    return getOffset(line, column);
   }
 
   public int getOffset(int line, int column) {
     checkArgument(line >= 1);
     checkArgument(column >= 0);
 
-    if (lineOffsets.containsKey(line)) {
-      return Math.min(lineOffsets.get(line) + column, endOffset);
+    if (line <= lineIndex.getLineCount()) {
+      return Math.min(lineIndex.getLineStart(line) + column, lineIndex.length());
     } else {
-      return endOffset;
+      return lineIndex.length();
     }
   }
 
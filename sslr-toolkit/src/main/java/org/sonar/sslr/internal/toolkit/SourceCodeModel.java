@@ -25,22 +25,35 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.io.Files;
 import com.sonar.sslr.api.AstNode;
-import com.sonar.sslr.impl.ast.AstXmlPrinter;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.impl.Parser;
 import org.sonar.colorizer.HtmlOptions;
 import org.sonar.colorizer.HtmlRenderer;
+import org.sonar.sslr.parser.CancellationToken;
+import org.sonar.sslr.parser.ParsingLimits;
+
+import javax.annotation.Nullable;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
 import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Methods {@code setSourceCode} can be invoked from a background thread, while parsing in progress can be aborted
+ * from any other thread by {@link #cancel()}.
+ */
 public class SourceCodeModel {
 
+  private static final int XML_LINES_PER_PAGE = 5000;
+
   private final ConfigurationModel configurationModel;
   private final HtmlRenderer htmlRenderer = new HtmlRenderer(new HtmlOptions(false, null, false));
 
-  private String sourceCode;
-  private AstNode astNode;
+  private volatile String sourceCode;
+  private volatile AstNode astNode;
+  private volatile CancellationToken cancellationToken = new CancellationToken();
 
   public SourceCodeModel(ConfigurationModel configurationModel) {
     Preconditions.checkNotNull(configurationModel);
@@ -49,7 +62,14 @@ public class SourceCodeModel {
   }
 
   public void setSourceCode(File source, Charset charset) {
-    this.astNode = configurationModel.getParser().parse(source);
+    Parser<? extends Grammar> parser = configurationModel.getParser();
+    ParsingLimits limits = parser.getLimits();
+    parser.setLimits(withNewCancellationToken(limits));
+    try {
+      this.astNode = parser.parse(source);
+    } finally {
+      parser.setLimits(limits);
+    }
 
     try {
       this.sourceCode = Files.toString(source, charset);
@@ -59,16 +79,48 @@ public class SourceCodeModel {
   }
 
   public void setSourceCode(String sourceCode) {
-    this.astNode = configurationModel.getParser().parse(sourceCode);
+    Parser<? extends Grammar> parser = configurationModel.getParser();
+    ParsingLimits limits = parser.getLimits();
+    parser.setLimits(withNewCancellationToken(limits));
+    try {
+      this.astNode = parser.parse(sourceCode);
+    } finally {
+      parser.setLimits(limits);
+    }
     this.sourceCode = sourceCode;
   }
 
+  /**
+   * @return limits, which preserve given ones, but also allow to abort parsing by {@link #cancel()}
+   */
+  private ParsingLimits withNewCancellationToken(@Nullable ParsingLimits limits) {
+    cancellationToken = new CancellationToken();
+    ParsingLimits.Builder builder = ParsingLimits.builder().setCancellationToken(cancellationToken);
+    if (limits != null && limits.getMaxInstructions() != Long.MAX_VALUE) {
+      builder.setMaxInstructions(limits.getMaxInstructions());
+    }
+    if (limits != null && limits.getTimeoutNanos() != Long.MAX_VALUE) {
+      builder.setTimeout(limits.getTimeoutNanos(), TimeUnit.NANOSECONDS);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Aborts parsing in progress, if any, with {@link org.sonar.sslr.parser.ParsingAbortedException}.
+   */
+  public void cancel() {
+    cancellationToken.cancel();
+  }
+
   public String getHighlightedSourceCode() {
     return htmlRenderer.render(new StringReader(sourceCode), configurationModel.getTokenizers());
   }
 
-  public String getXml() {
-    return AstXmlPrinter.print(astNode);
+  /**
+   * @return XML representation of AST, which is printed page by page on demand
+   */
+  public AstXmlPages getXml() {
+    return new AstXmlPages(astNode, XML_LINES_PER_PAGE);
   }
 
   public AstNode getAstNode() {
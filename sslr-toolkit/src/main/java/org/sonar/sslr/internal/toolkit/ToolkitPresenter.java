@@ -23,11 +23,15 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.io.Files;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.xpath.api.AstNodeXPathQuery;
+import org.sonar.sslr.parser.ParsingAbortedException;
 import org.sonar.sslr.toolkit.ConfigurationModel;
 import org.sonar.sslr.toolkit.ConfigurationProperty;
 
+import javax.swing.SwingUtilities;
+
 import java.awt.Point;
 import java.io.File;
 import java.io.IOException;
@@ -35,6 +39,8 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
@@ -43,11 +49,35 @@ public class ToolkitPresenter {
 
   private final ConfigurationModel configurationModel;
   private final SourceCodeModel model;
+  private final Executor backgroundExecutor;
+  private final Executor uiExecutor;
   private ToolkitView view = null;
 
+  /**
+   * Identifier of the latest parse request - results of all previous requests are stale.
+   */
+  private volatile int currentParseRequest = 0;
+
   public ToolkitPresenter(ConfigurationModel configurationModel, SourceCodeModel model) {
+    this(configurationModel, model,
+        Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("sslr-toolkit-parser").setDaemon(true).build()),
+        new Executor() {
+          public void execute(Runnable command) {
+            SwingUtilities.invokeLater(command);
+          }
+        });
+  }
+
+  /**
+   * @param backgroundExecutor executor for parsing, highlighting and printing of XML
+   * @param uiExecutor executor for updates of view
+   */
+  @VisibleForTesting
+  ToolkitPresenter(ConfigurationModel configurationModel, SourceCodeModel model, Executor backgroundExecutor, Executor uiExecutor) {
     this.configurationModel = configurationModel;
     this.model = model;
+    this.backgroundExecutor = backgroundExecutor;
+    this.uiExecutor = uiExecutor;
   }
 
   public void setView(ToolkitView view) {
@@ -64,16 +94,20 @@ public class ToolkitPresenter {
   void initUncaughtExceptionsHandler() {
     Thread.currentThread().setUncaughtExceptionHandler(new UncaughtExceptionHandler() {
       public void uncaughtException(Thread t, Throwable e) {
-        Writer result = new StringWriter();
-        PrintWriter printWriter = new PrintWriter(result);
-        e.printStackTrace(printWriter);
-
-        view.appendToConsole(result.toString());
-        view.setFocusOnConsoleView();
+        displayException(e);
       }
     });
   }
 
+  private void displayException(Throwable e) {
+    Writer result = new StringWriter();
+    PrintWriter printWriter = new PrintWriter(result);
+    e.printStackTrace(printWriter);
+
+    view.appendToConsole(result.toString());
+    view.setFocusOnConsoleView();
+  }
+
   @VisibleForTesting
   void initConfigurationTab() {
     for (ConfigurationProperty configurationProperty : configurationModel.getProperties()) {
@@ -90,7 +124,7 @@ public class ToolkitPresenter {
     view.setTitle(title);
     view.displayHighlightedSourceCode("");
     view.displayAst(null);
-    view.displayXml("");
+    view.displayXml(AstXmlPages.EMPTY);
     view.disableXPathEvaluateButton();
 
     initConfigurationTab();
@@ -99,7 +133,7 @@ public class ToolkitPresenter {
   }
 
   public void onSourceCodeOpenButtonClick() {
-    File fileToParse = view.pickFileToParse();
+    final File fileToParse = view.pickFileToParse();
     if (fileToParse != null) {
       view.clearConsole();
       try {
@@ -107,27 +141,88 @@ public class ToolkitPresenter {
       } catch (IOException e) {
         Throwables.propagate(e);
       }
-      model.setSourceCode(fileToParse, configurationModel.getCharset());
-      view.displayHighlightedSourceCode(model.getHighlightedSourceCode());
-      view.displayAst(model.getAstNode());
-      view.displayXml(model.getXml());
-      view.scrollSourceCodeTo(new Point(0, 0));
-      view.setFocusOnAbstractSyntaxTreeView();
-      view.enableXPathEvaluateButton();
+      parseInBackground(new Runnable() {
+        public void run() {
+          model.setSourceCode(fileToParse, configurationModel.getCharset());
+        }
+      }, new Point(0, 0));
     }
   }
 
   public void onSourceCodeParseButtonClick() {
     view.clearConsole();
-    String sourceCode = view.getSourceCode();
-    model.setSourceCode(sourceCode);
-    Point sourceCodeScrollbarPosition = view.getSourceCodeScrollbarPosition();
-    view.displayHighlightedSourceCode(model.getHighlightedSourceCode());
-    view.displayAst(model.getAstNode());
-    view.displayXml(model.getXml());
-    view.scrollSourceCodeTo(sourceCodeScrollbarPosition);
-    view.setFocusOnAbstractSyntaxTreeView();
-    view.enableXPathEvaluateButton();
+    final String sourceCode = view.getSourceCode();
+    parseInBackground(new Runnable() {
+      public void run() {
+        model.setSourceCode(sourceCode);
+      }
+    }, view.getSourceCodeScrollbarPosition());
+  }
+
+  /**
+   * Aborts previous request, if any, and performs parsing, highlighting and printing of XML in background.
+   * Results are published to the view as soon as they become available, unless they are stale.
+   */
+  private void parseInBackground(final Runnable parse, final Point sourceCodeScrollbarPosition) {
+    final int request = ++currentParseRequest;
+    model.cancel();
+    view.disableXPathEvaluateButton();
+    view.displayProgress("Parsing...");
+
+    backgroundExecutor.execute(new Runnable() {
+      public void run() {
+        if (request != currentParseRequest) {
+          return;
+        }
+        try {
+          parse.run();
+          final String highlightedSourceCode = model.getHighlightedSourceCode();
+          final AstNode astNode = model.getAstNode();
+          publish(request, new Runnable() {
+            public void run() {
+              view.displayHighlightedSourceCode(highlightedSourceCode);
+              view.displayAst(astNode);
+              view.scrollSourceCodeTo(sourceCodeScrollbarPosition);
+              view.setFocusOnAbstractSyntaxTreeView();
+              view.enableXPathEvaluateButton();
+              view.displayProgress("Printing XML...");
+            }
+          });
+
+          if (request != currentParseRequest) {
+            return;
+          }
+          final AstXmlPages xml = model.getXml();
+          publish(request, new Runnable() {
+            public void run() {
+              view.displayXml(xml);
+              view.clearProgress();
+            }
+          });
+        } catch (final RuntimeException e) {
+          if (e instanceof ParsingAbortedException && request != currentParseRequest) {
+            // aborted by a newer request
+            return;
+          }
+          publish(request, new Runnable() {
+            public void run() {
+              view.clearProgress();
+              displayException(e);
+            }
+          });
+        }
+      }
+    });
+  }
+
+  private void publish(final int request, final Runnable update) {
+    uiExecutor.execute(new Runnable() {
+      public void run() {
+        if (request == currentParseRequest) {
+          update.run();
+        }
+      }
+    });
   }
 
   public void onXPathEvaluateButtonClick() {
@@ -159,8 +254,14 @@ public class ToolkitPresenter {
   }
 
   public void onSourceCodeKeyTyped() {
+    if (currentParseRequest > 0) {
+      // results of parse in progress would not match modified source code
+      currentParseRequest++;
+      model.cancel();
+      view.clearProgress();
+    }
     view.displayAst(null);
-    view.displayXml("");
+    view.displayXml(AstXmlPages.EMPTY);
     view.clearSourceCodeHighlights();
     view.disableXPathEvaluateButton();
   }
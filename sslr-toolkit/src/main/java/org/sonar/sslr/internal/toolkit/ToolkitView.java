@@ -71,11 +71,23 @@ public interface ToolkitView {
   void displayAst(@Nullable AstNode astNode);
 
   /**
-   * Display the given string in the XML view.
+   * Display the given XML in the XML view.
    *
-   * @param xml The string to display
+   * @param xml The XML to display, page by page
    */
-  void displayXml(String xml);
+  void displayXml(AstXmlPages xml);
+
+  /**
+   * Display indicator of background work in progress.
+   *
+   * @param message The description of work
+   */
+  void displayProgress(String message);
+
+  /**
+   * Hide indicator of background work in progress.
+   */
+  void clearProgress();
 
   /**
    * Get the current source code editor scrollbars' position point.
@@ -24,7 +24,6 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Token;
-import com.sonar.sslr.api.Trivia;
 
 import javax.annotation.Nullable;
 import javax.swing.Box;
@@ -34,6 +33,7 @@ import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.JSplitPane;
 import javax.swing.JTabbedPane;
@@ -51,10 +51,8 @@ import javax.swing.text.DefaultCaret;
 import javax.swing.text.DefaultHighlighter;
 import javax.swing.text.Element;
 import javax.swing.text.html.HTMLDocument;
-import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreeModel;
-import javax.swing.tree.TreeNode;
 import javax.swing.tree.TreePath;
 import javax.swing.tree.TreeSelectionModel;
 
@@ -69,7 +67,8 @@ import java.awt.event.ActionListener;
 import java.awt.event.FocusAdapter;
 import java.awt.event.FocusEvent;
 import java.io.File;
-import java.util.Enumeration;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 
@@ -89,6 +88,13 @@ public class ToolkitViewImpl extends JFrame implements ToolkitView {
 
   private final JTextArea xmlTextArea = new JTextArea();
   private final JScrollPane xmlScrollPane = new JScrollPane(xmlTextArea);
+  private final JButton xmlPreviousPageButton = new JButton();
+  private final JButton xmlNextPageButton = new JButton();
+  private final JLabel xmlPageLabel = new JLabel();
+  private final JPanel xmlPagePanel = new JPanel();
+  private final JPanel xmlPanel = new JPanel(new BorderLayout());
+  private transient AstXmlPages xmlPages = AstXmlPages.EMPTY;
+  private int xmlPage = 0;
 
   private final JTextArea consoleTextArea = new JTextArea();
   private final JScrollPane consoleScrollPane = new JScrollPane(consoleTextArea);
@@ -103,6 +109,7 @@ public class ToolkitViewImpl extends JFrame implements ToolkitView {
   private final JScrollPane sourceCodeEditorScrollPane = new JScrollPane(sourceCodeEditorPane);
   private final JButton sourceCodeOpenButton = new JButton();
   private final JButton sourceCodeParseButton = new JButton();
+  private final JProgressBar progressBar = new JProgressBar();
   private final JPanel sourceCodeButtonsPanel = new JPanel();
   private final JPanel sourceCodePanel = new JPanel(new BorderLayout(0, 2));
 
@@ -150,9 +157,27 @@ public class ToolkitViewImpl extends JFrame implements ToolkitView {
     consoleTextArea.setEditable(false);
     consoleTextArea.setFont(Font.decode("Monospaced"));
 
+    xmlPreviousPageButton.setText("Previous Page");
+    xmlPreviousPageButton.addActionListener(new ActionListener() {
+      public void actionPerformed(ActionEvent e) {
+        displayXmlPage(xmlPage - 1);
+      }
+    });
+    xmlNextPageButton.setText("Next Page");
+    xmlNextPageButton.addActionListener(new ActionListener() {
+      public void actionPerformed(ActionEvent e) {
+        displayXmlPage(xmlPage + 1);
+      }
+    });
+    xmlPagePanel.add(xmlPreviousPageButton);
+    xmlPagePanel.add(xmlPageLabel);
+    xmlPagePanel.add(xmlNextPageButton);
+    xmlPanel.add(xmlScrollPane, BorderLayout.CENTER);
+    xmlPanel.add(xmlPagePanel, BorderLayout.SOUTH);
+
     tabbedPane.setTabPlacement(JTabbedPane.TOP);
     tabbedPane.add("Abstract Syntax Tree", astTreeScrollPane);
-    tabbedPane.add("XML", xmlScrollPane);
+    tabbedPane.add("XML", xmlPanel);
     tabbedPane.add("Console", consoleScrollPane);
     tabbedPane.add("Configuration", configurationScrollPane);
 
@@ -200,6 +225,11 @@ public class ToolkitViewImpl extends JFrame implements ToolkitView {
     sourceCodeButtonsPanel.add(sourceCodeOpenButton);
     sourceCodeButtonsPanel.add(sourceCodeParseButton);
 
+    progressBar.setIndeterminate(true);
+    progressBar.setStringPainted(true);
+    progressBar.setVisible(false);
+    sourceCodeButtonsPanel.add(progressBar);
+
     sourceCodePanel.add(sourceCodeLabel, BorderLayout.NORTH);
     sourceCodePanel.add(sourceCodeEditorScrollPane, BorderLayout.CENTER);
     sourceCodePanel.add(sourceCodeButtonsPanel, BorderLayout.SOUTH);
@@ -265,37 +295,37 @@ public class ToolkitViewImpl extends JFrame implements ToolkitView {
     if (astNode == null) {
       astTree.setModel(EMPTY_TREE_MODEL);
     } else {
-      TreeNode treeNode = getTreeNode(astNode);
-      astTree.setModel(new DefaultTreeModel(treeNode));
+      astTree.setModel(new AstTreeModel(astNode));
     }
   }
 
-  private DefaultMutableTreeNode getTreeNode(AstNode astNode) {
-    DefaultMutableTreeNode treeNode = new DefaultMutableTreeNode(astNode);
-
-    if (astNode.hasChildren()) {
-      for (AstNode childAstNode : astNode.getChildren()) {
-        treeNode.add(getTreeNode(childAstNode));
-      }
-    } else if (astNode.hasToken() && astNode.getToken().hasTrivia()) {
-      for (Trivia trivia : astNode.getToken().getTrivia()) {
-        DefaultMutableTreeNode childTreeNode = new DefaultMutableTreeNode(trivia);
+  public void displayProgress(String message) {
+    progressBar.setString(message);
+    progressBar.setVisible(true);
+  }
 
-        if (trivia.hasPreprocessingDirective()) {
-          childTreeNode.add(getTreeNode(trivia.getPreprocessingDirective().getAst()));
-        }
+  public void clearProgress() {
+    progressBar.setVisible(false);
+  }
 
-        treeNode.add(childTreeNode);
-      }
-    }
+  public void displayXml(AstXmlPages xml) {
+    checkNotNull(xml);
 
-    return treeNode;
+    // huge XML is displayed page by page, because JTextArea can't handle it efficiently
+    xmlPages = xml;
+    displayXmlPage(0);
   }
 
-  public void displayXml(String xml) {
-    checkNotNull(xml);
+  private void displayXmlPage(int page) {
+    xmlPage = page;
+    xmlTextArea.setText(xmlPages.getPage(page));
+    xmlTextArea.setCaretPosition(0);
 
-    xmlTextArea.setText(xml);
+    int pages = xmlPages.getNumberOfPages();
+    xmlPagePanel.setVisible(pages > 1);
+    xmlPageLabel.setText("Page " + (page + 1) + " of " + pages);
+    xmlPreviousPageButton.setEnabled(page > 0);
+    xmlNextPageButton.setEnabled(page + 1 < pages);
   }
 
   public Point getSourceCodeScrollbarPosition() {
@@ -348,27 +378,20 @@ public class ToolkitViewImpl extends JFrame implements ToolkitView {
     if (astNode != null) {
       try {
         astSelectionEventDisabled = true;
-        DefaultMutableTreeNode treeNode = getAstTreeNodeWithGivenUserObject((DefaultMutableTreeNode) astTree.getModel().getRoot(), astNode);
-        astTree.getSelectionModel().addSelectionPath(new TreePath(treeNode.getPath()));
+        TreePath treePath = getAstTreePath(astNode);
+        if (treePath != null) {
+          astTree.getSelectionModel().addSelectionPath(treePath);
+        }
       } finally {
         astSelectionEventDisabled = false;
       }
     }
   }
 
-  private DefaultMutableTreeNode getAstTreeNodeWithGivenUserObject(DefaultMutableTreeNode treeNode, Object userObject) {
-    if (treeNode.getUserObject().equals(userObject)) {
-      return treeNode;
-    } else {
-      for (int i = 0; i < treeNode.getChildCount(); i++) {
-        DefaultMutableTreeNode treeNodeWithUserObject = getAstTreeNodeWithGivenUserObject((DefaultMutableTreeNode) treeNode.getChildAt(i), userObject);
-        if (treeNodeWithUserObject != null) {
-          return treeNodeWithUserObject;
-        }
-      }
-
-      return null;
-    }
+  @Nullable
+  private TreePath getAstTreePath(AstNode astNode) {
+    TreeModel model = astTree.getModel();
+    return model instanceof AstTreeModel ? ((AstTreeModel) model).getPath(astNode) : null;
   }
 
   public void highlightSourceCode(AstNode astNode) {
@@ -406,8 +429,10 @@ public class ToolkitViewImpl extends JFrame implements ToolkitView {
 
   public void scrollAstTo(@Nullable AstNode astNode) {
     if (astNode != null) {
-      DefaultMutableTreeNode treeNode = getAstTreeNodeWithGivenUserObject((DefaultMutableTreeNode) astTree.getModel().getRoot(), astNode);
-      astTree.scrollPathToVisible(new TreePath(treeNode.getPath()));
+      TreePath treePath = getAstTreePath(astNode);
+      if (treePath != null) {
+        astTree.scrollPathToVisible(treePath);
+      }
     }
   }
 
@@ -441,20 +466,21 @@ public class ToolkitViewImpl extends JFrame implements ToolkitView {
   public AstNode getAstNodeFollowingCurrentSourceCodeTextCursorPosition() {
     int currentOffset = sourceCodeEditorPane.getCaretPosition() - getCodeElementStartOffset();
 
-    return getFollowingAstNode((DefaultMutableTreeNode) astTree.getModel().getRoot(), currentOffset);
+    return getFollowingAstNode(astTree.getModel(), currentOffset);
   }
 
-  private AstNode getFollowingAstNode(DefaultMutableTreeNode treeNode, int offset) {
+  private AstNode getFollowingAstNode(TreeModel model, int offset) {
     AstNode followingAstNode = null;
 
-    if (treeNode != null) {
-      Enumeration<DefaultMutableTreeNode> enumeration = ((DefaultMutableTreeNode) astTree.getModel().getRoot()).breadthFirstEnumeration();
+    if (model.getRoot() != null) {
+      Deque<Object> queue = new ArrayDeque<Object>();
+      queue.add(model.getRoot());
 
       int nearestOffsetSoFar = Integer.MAX_VALUE;
-      while (enumeration.hasMoreElements()) {
-        DefaultMutableTreeNode childTreeNode = enumeration.nextElement();
-        if (childTreeNode.getUserObject() instanceof AstNode) {
-          AstNode astNode = (AstNode) childTreeNode.getUserObject();
+      while (!queue.isEmpty()) {
+        Object node = queue.poll();
+        if (node instanceof AstNode) {
+          AstNode astNode = (AstNode) node;
 
           if (astNode.hasToken()) {
             Token token = astNode.getToken();
@@ -466,6 +492,9 @@ public class ToolkitViewImpl extends JFrame implements ToolkitView {
             }
           }
         }
+        for (int i = 0; i < model.getChildCount(node); i++) {
+          queue.add(model.getChild(node, i));
+        }
       }
     }
 
@@ -478,12 +507,9 @@ public class ToolkitViewImpl extends JFrame implements ToolkitView {
     TreePath[] selectedPaths = astTree.getSelectionPaths();
     if (selectedPaths != null) {
       for (TreePath selectedPath : selectedPaths) {
-        DefaultMutableTreeNode treeNode = (DefaultMutableTreeNode) selectedPath.getLastPathComponent();
-
-        Object userObject = treeNode.getUserObject();
-        if (userObject instanceof AstNode) {
-          AstNode astNode = (AstNode) userObject;
-          acc.add(astNode);
+        Object treeNode = selectedPath.getLastPathComponent();
+        if (treeNode instanceof AstNode) {
+          acc.add((AstNode) treeNode);
         }
       }
     }
@@ -0,0 +1,88 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.toolkit;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
+import org.junit.Test;
+
+import javax.swing.tree.TreePath;
+
+import java.net.URI;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class AstTreeModelTest {
+
+  @Test
+  public void should_use_ast_nodes_and_trivia_as_tree_nodes() throws Exception {
+    AstNode directive = new AstNode(GenericTokenType.LITERAL, "directive", null);
+    Trivia trivia = Trivia.createPreprocessingDirective(directive, mock(Grammar.class));
+    Trivia comment = Trivia.createComment(token(GenericTokenType.COMMENT, "// comment").build());
+    AstNode leaf = new AstNode(token(GenericTokenType.IDENTIFIER, "x").addTrivia(trivia).addTrivia(comment).build());
+    AstNode other = new AstNode(token(GenericTokenType.IDENTIFIER, "y").build());
+    AstNode root = new AstNode(GenericTokenType.LITERAL, "root", null);
+    root.addChild(leaf);
+    root.addChild(other);
+
+    AstTreeModel model = new AstTreeModel(root);
+
+    assertThat(model.getRoot()).isSameAs(root);
+    assertThat(model.getChildCount(root)).isEqualTo(2);
+    assertThat(model.getChild(root, 1)).isSameAs(other);
+    assertThat(model.getIndexOfChild(root, other)).isEqualTo(1);
+    assertThat(model.getIndexOfChild(root, trivia)).isEqualTo(-1);
+    assertThat(model.getIndexOfChild(null, other)).isEqualTo(-1);
+    assertThat(model.isLeaf(root)).isFalse();
+    assertThat(model.isLeaf(other)).isTrue();
+
+    assertThat(model.getChildCount(leaf)).isEqualTo(2);
+    assertThat(model.getChild(leaf, 0)).isSameAs(trivia);
+    assertThat(model.getChild(trivia, 0)).isSameAs(directive);
+    assertThat(model.isLeaf(comment)).isTrue();
+  }
+
+  @Test
+  public void should_compute_path() throws Exception {
+    AstNode leaf = new AstNode(token(GenericTokenType.IDENTIFIER, "x").build());
+    AstNode root = new AstNode(GenericTokenType.LITERAL, "root", null);
+    root.addChild(leaf);
+
+    AstTreeModel model = new AstTreeModel(root);
+
+    assertThat(model.getPath(leaf)).isEqualTo(new TreePath(new Object[] {root, leaf}));
+    assertThat(model.getPath(root)).isEqualTo(new TreePath(root));
+    assertThat(model.getPath(new AstNode(GenericTokenType.LITERAL, "other", null))).isNull();
+  }
+
+  private static Token.Builder token(GenericTokenType type, String value) throws Exception {
+    return Token.builder()
+        .setType(type)
+        .setValueAndOriginalValue(value)
+        .setURI(new URI("tests://unittest"))
+        .setLine(1)
+        .setColumn(0);
+  }
+
+}
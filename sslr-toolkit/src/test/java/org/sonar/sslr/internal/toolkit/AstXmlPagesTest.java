@@ -0,0 +1,114 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.toolkit;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.ast.AstXmlPrinter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.net.URI;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class AstXmlPagesTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void should_split_into_pages() throws Exception {
+    AstNode root = new AstNode(GenericTokenType.LITERAL, "root", null);
+    AstNode child = new AstNode(GenericTokenType.LITERAL, "child", null);
+    child.addChild(new AstNode(token("x", 1, 2)));
+    root.addChild(child);
+    root.addChild(new AstNode(token("y", 3, 4)));
+    AstXmlPages pages = new AstXmlPages(root, 2);
+
+    assertThat(pages.getLinesPerPage()).isEqualTo(2);
+    assertThat(pages.getNumberOfPages()).isEqualTo(3);
+    assertThat(pages.getPage(0)).isEqualTo("<root>\n  <child>\n");
+    assertThat(pages.getPage(1)).isEqualTo("    <IDENTIFIER tokenValue=\"x\" tokenLine=\"1\" tokenColumn=\"2\"/>\n  </child>\n");
+    assertThat(pages.getPage(2)).isEqualTo("  <IDENTIFIER tokenValue=\"y\" tokenLine=\"3\" tokenColumn=\"4\"/>\n</root>");
+  }
+
+  @Test
+  public void should_not_create_empty_last_page() {
+    AstNode root = new AstNode(GenericTokenType.LITERAL, "root", null);
+    root.addChild(new AstNode(GenericTokenType.LITERAL, "child", null));
+    AstXmlPages pages = new AstXmlPages(root, 3);
+
+    assertThat(pages.getNumberOfPages()).isEqualTo(1);
+    assertThat(pages.getPage(0)).isEqualTo("<root>\n  <child/>\n</root>");
+  }
+
+  @Test
+  public void should_print_same_text_as_AstXmlPrinter() throws Exception {
+    AstNode root = new AstNode(GenericTokenType.LITERAL, "root", null);
+    for (int i = 0; i < 10; i++) {
+      AstNode child = new AstNode(GenericTokenType.LITERAL, "child", null);
+      for (int j = 0; j < i; j++) {
+        child.addChild(new AstNode(token("v" + j, i, j)));
+      }
+      root.addChild(child);
+    }
+    // subtree is printed without its siblings and parent
+    AstNode subtree = root.getChildren().get(5);
+
+    for (AstNode node : new AstNode[] {root, subtree}) {
+      String expected = AstXmlPrinter.print(node);
+      for (int linesPerPage = 1; linesPerPage < 10; linesPerPage++) {
+        AstXmlPages pages = new AstXmlPages(node, linesPerPage);
+        StringBuilder actual = new StringBuilder();
+        for (int page = 0; page < pages.getNumberOfPages(); page++) {
+          actual.append(pages.getPage(page));
+        }
+        assertThat(actual.toString()).isEqualTo(expected);
+      }
+    }
+  }
+
+  @Test
+  public void empty() {
+    assertThat(AstXmlPages.EMPTY.getNumberOfPages()).isEqualTo(1);
+    assertThat(AstXmlPages.EMPTY.getPage(0)).isEqualTo("");
+  }
+
+  @Test
+  public void should_fail_on_unknown_page() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("page must be between 0 and 0");
+    AstXmlPages.EMPTY.getPage(1);
+  }
+
+  private static Token token(String value, int line, int column) throws Exception {
+    return Token.builder()
+        .setType(GenericTokenType.IDENTIFIER)
+        .setValueAndOriginalValue(value)
+        .setURI(new URI("tests://unittest"))
+        .setLine(line)
+        .setColumn(column)
+        .build();
+  }
+
+}
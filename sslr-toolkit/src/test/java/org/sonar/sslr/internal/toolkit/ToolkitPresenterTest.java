@@ -22,6 +22,7 @@ package org.sonar.sslr.internal.toolkit;
 import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.GenericTokenType;
 import com.sonar.sslr.api.Token;
@@ -38,6 +39,8 @@ import java.io.PrintWriter;
 import java.lang.Thread.UncaughtExceptionHandler;
 import java.net.URI;
 import java.nio.charset.Charset;
+import java.util.Queue;
+import java.util.concurrent.Executor;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Matchers.any;
@@ -49,6 +52,10 @@ import static org.mockito.Mockito.when;
 
 public class ToolkitPresenterTest {
 
+  private static final Executor SAME_THREAD = MoreExecutors.sameThreadExecutor();
+
+  private final AstXmlPages xml = mock(AstXmlPages.class);
+
   @Rule
   public ExpectedException thrown = ExpectedException.none();
 
@@ -134,7 +141,7 @@ public class ToolkitPresenterTest {
     verify(view).setTitle("my_mocked_title");
     verify(view).displayHighlightedSourceCode("");
     verify(view).displayAst(null);
-    verify(view).displayXml("");
+    verify(view).displayXml(AstXmlPages.EMPTY);
     verify(view).disableXPathEvaluateButton();
     verify(view).run();
   }
@@ -171,9 +178,10 @@ public class ToolkitPresenterTest {
     AstNode astNode = mock(AstNode.class);
     when(model.getHighlightedSourceCode()).thenReturn("my_mocked_highlighted_source_code");
     when(model.getAstNode()).thenReturn(astNode);
-    when(model.getXml()).thenReturn("my_mocked_xml");
+    when(model.getXml()).thenReturn(xml);
 
-    ToolkitPresenter presenter = new ToolkitPresenter((ConfigurationModel) when(mock(ConfigurationModel.class).getCharset()).thenReturn(Charsets.UTF_8).getMock(), model);
+    ToolkitPresenter presenter = new ToolkitPresenter((ConfigurationModel) when(mock(ConfigurationModel.class).getCharset()).thenReturn(Charsets.UTF_8).getMock(), model,
+        SAME_THREAD, SAME_THREAD);
     presenter.setView(view);
 
     presenter.onSourceCodeOpenButtonClick();
@@ -184,7 +192,7 @@ public class ToolkitPresenterTest {
     verify(view).displayHighlightedSourceCode("my_mocked_highlighted_source_code");
     verify(model).setSourceCode(file, Charsets.UTF_8);
     verify(view).displayAst(astNode);
-    verify(view).displayXml("my_mocked_xml");
+    verify(view).displayXml(xml);
     verify(view).scrollSourceCodeTo(new Point(0, 0));
     verify(view).setFocusOnAbstractSyntaxTreeView();
     verify(view).enableXPathEvaluateButton();
@@ -198,16 +206,18 @@ public class ToolkitPresenterTest {
     SourceCodeModel model = mock(SourceCodeModel.class);
     Mockito.doThrow(new RuntimeException("Parse error")).when(model).setSourceCode(Mockito.any(File.class), Mockito.any(Charset.class));
 
-    ToolkitPresenter presenter = new ToolkitPresenter((ConfigurationModel) when(mock(ConfigurationModel.class).getCharset()).thenReturn(Charsets.UTF_8).getMock(), model);
+    ToolkitPresenter presenter = new ToolkitPresenter((ConfigurationModel) when(mock(ConfigurationModel.class).getCharset()).thenReturn(Charsets.UTF_8).getMock(), model,
+        SAME_THREAD, SAME_THREAD);
     presenter.setView(view);
 
-    try {
-      presenter.onSourceCodeOpenButtonClick();
-      throw new AssertionError("Expected an exception");
-    } catch (RuntimeException e) {
-      verify(view).clearConsole();
-      verify(view).displayHighlightedSourceCode("parse_error.txt");
-    }
+    presenter.onSourceCodeOpenButtonClick();
+
+    verify(view).clearConsole();
+    verify(view).displayHighlightedSourceCode("parse_error.txt");
+    verify(view).appendToConsole(Mockito.contains("Parse error"));
+    verify(view).setFocusOnConsoleView();
+    verify(view).clearProgress();
+    verify(view, never()).enableXPathEvaluateButton();
   }
 
   @Test
@@ -228,7 +238,7 @@ public class ToolkitPresenterTest {
     verify(model, never()).setSourceCode(any(File.class), any(Charset.class));
     verify(view, never()).displayHighlightedSourceCode(anyString());
     verify(view, never()).displayAst(any(AstNode.class));
-    verify(view, never()).displayXml(anyString());
+    verify(view, never()).displayXml(any(AstXmlPages.class));
     verify(view, never()).scrollSourceCodeTo(any(Point.class));
     verify(view, never()).enableXPathEvaluateButton();
   }
@@ -243,9 +253,9 @@ public class ToolkitPresenterTest {
     when(model.getHighlightedSourceCode()).thenReturn("my_mocked_highlighted_source_code");
     AstNode astNode = mock(AstNode.class);
     when(model.getAstNode()).thenReturn(astNode);
-    when(model.getXml()).thenReturn("my_mocked_xml");
+    when(model.getXml()).thenReturn(xml);
 
-    ToolkitPresenter presenter = new ToolkitPresenter(mock(ConfigurationModel.class), model);
+    ToolkitPresenter presenter = new ToolkitPresenter(mock(ConfigurationModel.class), model, SAME_THREAD, SAME_THREAD);
     presenter.setView(view);
 
     presenter.onSourceCodeParseButtonClick();
@@ -255,10 +265,63 @@ public class ToolkitPresenterTest {
     verify(model).setSourceCode("my_mocked_source");
     verify(view).displayHighlightedSourceCode("my_mocked_highlighted_source_code");
     view.displayAst(astNode);
-    view.displayXml("my_mocked_xml");
+    view.displayXml(xml);
     view.scrollSourceCodeTo(point);
     verify(view).setFocusOnAbstractSyntaxTreeView();
     verify(view).enableXPathEvaluateButton();
+    verify(view).displayProgress("Parsing...");
+    verify(view).clearProgress();
+  }
+
+  @Test
+  public void onSourceCodeParseButtonClick_should_parse_in_background_and_skip_stale_requests() {
+    ToolkitView view = mock(ToolkitView.class);
+    when(view.getSourceCode()).thenReturn("first", "second");
+    SourceCodeModel model = mock(SourceCodeModel.class);
+    when(model.getXml()).thenReturn(xml);
+    QueueExecutor background = new QueueExecutor();
+    QueueExecutor ui = new QueueExecutor();
+
+    ToolkitPresenter presenter = new ToolkitPresenter(mock(ConfigurationModel.class), model, background, ui);
+    presenter.setView(view);
+
+    presenter.onSourceCodeParseButtonClick();
+    verify(model).cancel();
+    verify(view).disableXPathEvaluateButton();
+    verify(model, never()).setSourceCode(anyString());
+
+    presenter.onSourceCodeParseButtonClick();
+    verify(model, Mockito.times(2)).cancel();
+
+    background.runAll();
+    verify(model, never()).setSourceCode("first");
+    verify(model).setSourceCode("second");
+    verify(view, never()).displayXml(any(AstXmlPages.class));
+
+    ui.runAll();
+    verify(view).displayXml(xml);
+    verify(view).enableXPathEvaluateButton();
+  }
+
+  @Test
+  public void onSourceCodeKeyTyped_should_discard_results_of_parse_in_progress() {
+    ToolkitView view = mock(ToolkitView.class);
+    when(view.getSourceCode()).thenReturn("source");
+    SourceCodeModel model = mock(SourceCodeModel.class);
+    when(model.getXml()).thenReturn(xml);
+    QueueExecutor ui = new QueueExecutor();
+
+    ToolkitPresenter presenter = new ToolkitPresenter(mock(ConfigurationModel.class), model, SAME_THREAD, ui);
+    presenter.setView(view);
+
+    presenter.onSourceCodeParseButtonClick();
+    presenter.onSourceCodeKeyTyped();
+    ui.runAll();
+
+    verify(model).setSourceCode("source");
+    verify(model, Mockito.times(2)).cancel();
+    verify(view, never()).displayXml(xml);
+    verify(view, never()).enableXPathEvaluateButton();
   }
 
   @Test
@@ -348,7 +411,7 @@ public class ToolkitPresenterTest {
     presenter.onSourceCodeKeyTyped();
 
     verify(view).displayAst(null);
-    verify(view).displayXml("");
+    verify(view).displayXml(AstXmlPages.EMPTY);
     verify(view).clearSourceCodeHighlights();
     verify(view).disableXPathEvaluateButton();
   }
@@ -452,4 +515,20 @@ public class ToolkitPresenterTest {
     presenter.onConfigurationPropertyFocusLost("name");
   }
 
+  private static class QueueExecutor implements Executor {
+
+    private final Queue<Runnable> queue = Lists.newLinkedList();
+
+    public void execute(Runnable command) {
+      queue.add(command);
+    }
+
+    public void runAll() {
+      while (!queue.isEmpty()) {
+        queue.poll().run();
+      }
+    }
+
+  }
+
 }
@@ -0,0 +1,443 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl.xpath;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.sonar.sslr.api.AstNode;
+
+import javax.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Location path from a subset of XPath, which is evaluated directly on {@link AstNode}s.
+ * Semantic is the same as for evaluation by Jaxen with {@link AstNodeNavigator}:
+ * results are in document order without duplicates, and evaluation of absolute path wraps the root of the tree
+ * into an artificial document node, which upward axes reach afterwards.
+ *
+ * @see NativeXPathParser
+ * @since 1.20
+ */
+public final class NativeXPath {
+
+  public enum Axis {
+    CHILD(false, false),
+    DESCENDANT(true, false),
+    DESCENDANT_OR_SELF(true, false),
+    SELF(false, false),
+    PARENT(true, true),
+    ANCESTOR(true, true),
+    ANCESTOR_OR_SELF(true, true);
+
+    private final boolean mayProduceNestedNodes;
+    private final boolean upward;
+
+    private Axis(boolean mayProduceNestedNodes, boolean upward) {
+      this.mayProduceNestedNodes = mayProduceNestedNodes;
+      this.upward = upward;
+    }
+  }
+
+  public interface Predicate {
+    /**
+     * @param candidates nodes selected by axis and node test in order of axis
+     * @return nodes, which satisfy this predicate, in the same order
+     */
+    List<AstNode> filter(List<AstNode> candidates);
+  }
+
+  /**
+   * Predicate {@code [n]}.
+   */
+  public static final class PositionPredicate implements Predicate {
+    private final int position;
+
+    public PositionPredicate(int position) {
+      this.position = position;
+    }
+
+    public List<AstNode> filter(List<AstNode> candidates) {
+      if (position < 1 || position > candidates.size()) {
+        return Collections.emptyList();
+      }
+      return Collections.singletonList(candidates.get(position - 1));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return (obj instanceof PositionPredicate) && (this.position == ((PositionPredicate) obj).position);
+    }
+
+    @Override
+    public int hashCode() {
+      return position;
+    }
+  }
+
+  public enum TokenAttribute {
+    TOKEN_LINE("tokenLine"),
+    TOKEN_COLUMN("tokenColumn"),
+    TOKEN_VALUE("tokenValue");
+
+    private final String name;
+
+    private TokenAttribute(String name) {
+      this.name = name;
+    }
+
+    @Nullable
+    public static TokenAttribute forName(String name) {
+      for (TokenAttribute attribute : values()) {
+        if (attribute.name.equals(name)) {
+          return attribute;
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Predicate {@code [@attribute]}, {@code [@attribute = value]} or {@code [@attribute != value]}.
+   * As in XPath comparison of absent attribute is always false.
+   */
+  public static final class TokenAttributePredicate implements Predicate {
+    private final TokenAttribute attribute;
+    private final boolean equal;
+    private final String expectedValue;
+    private final long expectedNumber;
+
+    /**
+     * Predicate, which checks only presence of attribute.
+     */
+    public TokenAttributePredicate(TokenAttribute attribute) {
+      this(attribute, true, null);
+    }
+
+    /**
+     * @param equal true for operator {@code =}, false for operator {@code !=}
+     */
+    public TokenAttributePredicate(TokenAttribute attribute, boolean equal, @Nullable String expectedValue) {
+      this.attribute = attribute;
+      this.equal = equal;
+      this.expectedValue = expectedValue;
+      this.expectedNumber = toNumber(expectedValue);
+    }
+
+    /**
+     * Line and column are compared as integers. Their string values never contain leading zeros or plus sign,
+     * so value, which is not in canonical form, can't be equal to them.
+     */
+    private static long toNumber(@Nullable String value) {
+      if (value != null) {
+        try {
+          int number = Integer.parseInt(value);
+          if (Integer.toString(number).equals(value)) {
+            return number;
+          }
+        } catch (NumberFormatException e) {
+          // not a number
+        }
+      }
+      return Long.MIN_VALUE;
+    }
+
+    public List<AstNode> filter(List<AstNode> candidates) {
+      List<AstNode> result = Lists.newArrayList();
+      for (AstNode candidate : candidates) {
+        if (test(candidate)) {
+          result.add(candidate);
+        }
+      }
+      return result;
+    }
+
+    boolean test(AstNode node) {
+      if (!node.hasToken()) {
+        return false;
+      }
+      if (expectedValue == null) {
+        return true;
+      }
+      final boolean result;
+      switch (attribute) {
+        case TOKEN_LINE:
+          result = node.getToken().getLine() == expectedNumber;
+          break;
+        case TOKEN_COLUMN:
+          result = node.getToken().getColumn() == expectedNumber;
+          break;
+        case TOKEN_VALUE:
+          result = expectedValue.equals(node.getToken().getOriginalValue());
+          break;
+        default:
+          throw new IllegalStateException("Unexpected attribute: " + attribute);
+      }
+      return result == equal;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj instanceof TokenAttributePredicate) {
+        TokenAttributePredicate other = (TokenAttributePredicate) obj;
+        return this.attribute == other.attribute
+          && this.equal == other.equal
+          && Objects.equal(this.expectedValue, other.expectedValue);
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(attribute, equal, expectedValue);
+    }
+  }
+
+  public static final class Step {
+    private final Axis axis;
+    private final String name;
+    private final Predicate[] predicates;
+
+    /**
+     * @param name name of nodes to select, or null to select nodes with any name
+     */
+    public Step(Axis axis, @Nullable String name, Predicate... predicates) {
+      this.axis = axis;
+      this.name = name;
+      this.predicates = predicates;
+    }
+
+    public Axis getAxis() {
+      return axis;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public Predicate[] getPredicates() {
+      return predicates;
+    }
+
+    boolean matches(AstNode node) {
+      return name == null || name.equals(node.getName());
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj instanceof Step) {
+        Step other = (Step) obj;
+        return this.axis == other.axis
+          && Objects.equal(this.name, other.name)
+          && Arrays.equals(this.predicates, other.predicates);
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(axis, name, Arrays.hashCode(predicates));
+    }
+
+    void select(AstNode context, List<AstNode> result) {
+      if (predicates.length == 0) {
+        collect(context, result);
+      } else {
+        List<AstNode> candidates = Lists.newArrayList();
+        collect(context, candidates);
+        for (Predicate predicate : predicates) {
+          candidates = predicate.filter(candidates);
+        }
+        result.addAll(candidates);
+      }
+    }
+
+    private void collect(AstNode context, List<AstNode> result) {
+      switch (axis) {
+        case CHILD:
+          for (AstNode child : context.getChildren()) {
+            if (matches(child)) {
+              result.add(child);
+            }
+          }
+          break;
+        case DESCENDANT_OR_SELF:
+          if (matches(context)) {
+            result.add(context);
+          }
+          collectDescendants(context, result);
+          break;
+        case DESCENDANT:
+          collectDescendants(context, result);
+          break;
+        case SELF:
+          if (matches(context)) {
+            result.add(context);
+          }
+          break;
+        case PARENT:
+          if (context.getParent() != null && matches(context.getParent())) {
+            result.add(context.getParent());
+          }
+          break;
+        case ANCESTOR_OR_SELF:
+          if (matches(context)) {
+            result.add(context);
+          }
+          collectAncestors(context, result);
+          break;
+        case ANCESTOR:
+          collectAncestors(context, result);
+          break;
+        default:
+          throw new IllegalStateException("Unexpected axis: " + axis);
+      }
+    }
+
+    private void collectDescendants(AstNode node, List<AstNode> result) {
+      for (AstNode child : node.getChildren()) {
+        if (matches(child)) {
+          result.add(child);
+        }
+        collectDescendants(child, result);
+      }
+    }
+
+    private void collectAncestors(AstNode node, List<AstNode> result) {
+      AstNode ancestor = node.getParent();
+      while (ancestor != null) {
+        if (matches(ancestor)) {
+          result.add(ancestor);
+        }
+        ancestor = ancestor.getParent();
+      }
+    }
+  }
+
+  private final boolean absolute;
+  private final Step[] steps;
+
+  public NativeXPath(boolean absolute, List<Step> steps) {
+    this.absolute = absolute;
+    this.steps = steps.toArray(new Step[steps.size()]);
+  }
+
+  public boolean isAbsolute() {
+    return absolute;
+  }
+
+  public Step[] getSteps() {
+    return steps;
+  }
+
+  public List<AstNode> selectNodes(AstNode contextNode) {
+    return selectNodesFrom(absolute ? createDocumentNode(contextNode) : contextNode);
+  }
+
+  /**
+   * @param start context node for relative path, or document node for absolute path
+   */
+  List<AstNode> selectNodesFrom(AstNode start) {
+    List<AstNode> contexts = Collections.singletonList(start);
+    boolean nested = false;
+    for (Step step : steps) {
+      List<AstNode> result = Lists.newArrayList();
+      for (AstNode context : contexts) {
+        step.select(context, result);
+      }
+      if (step.axis.upward || (contexts.size() > 1 && (nested || step.axis.mayProduceNestedNodes))) {
+        result = toDocumentOrder(result);
+      }
+      nested |= step.axis.mayProduceNestedNodes;
+      contexts = result;
+      if (contexts.isEmpty()) {
+        break;
+      }
+    }
+    return contexts;
+  }
+
+  /**
+   * Same as {@link AstNodeNavigator#getDocumentNode(Object)}.
+   */
+  static AstNode createDocumentNode(AstNode node) {
+    AstNode root = node;
+    while (root.getParent() != null) {
+      root = root.getParent();
+    }
+    AstNode documentNode = new AstNode(null, "[root]", null);
+    documentNode.addChild(root);
+    return documentNode;
+  }
+
+  private static List<AstNode> toDocumentOrder(List<AstNode> nodes) {
+    Set<AstNode> unique = Sets.newSetFromMap(new IdentityHashMap<AstNode, Boolean>());
+    List<AstNode> result = Lists.newArrayListWithCapacity(nodes.size());
+    for (AstNode node : nodes) {
+      if (unique.add(node)) {
+        result.add(node);
+      }
+    }
+    final Map<AstNode, int[]> positions = Maps.newIdentityHashMap();
+    for (AstNode node : result) {
+      positions.put(node, positionOf(node));
+    }
+    Collections.sort(result, new Comparator<AstNode>() {
+      public int compare(AstNode o1, AstNode o2) {
+        return comparePositions(positions.get(o1), positions.get(o2));
+      }
+    });
+    return result;
+  }
+
+  private static int[] positionOf(AstNode node) {
+    int depth = 0;
+    for (AstNode n = node; n.getParent() != null; n = n.getParent()) {
+      depth++;
+    }
+    int[] result = new int[depth];
+    AstNode n = node;
+    for (int i = depth - 1; i >= 0; i--) {
+      AstNode parent = n.getParent();
+      result[i] = parent.getChildren().indexOf(n);
+      n = parent;
+    }
+    return result;
+  }
+
+  private static int comparePositions(int[] p1, int[] p2) {
+    int length = Math.min(p1.length, p2.length);
+    for (int i = 0; i < length; i++) {
+      if (p1[i] != p2[i]) {
+        return p1[i] < p2[i] ? -1 : 1;
+      }
+    }
+    return p1.length - p2.length;
+  }
+
+}
@@ -0,0 +1,260 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl.xpath;
+
+import com.google.common.collect.Lists;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.impl.xpath.NativeXPath.Axis;
+import com.sonar.sslr.impl.xpath.NativeXPath.Predicate;
+import com.sonar.sslr.impl.xpath.NativeXPath.Step;
+import com.sonar.sslr.impl.xpath.NativeXPath.TokenAttributePredicate;
+
+import java.util.List;
+
+/**
+ * Evaluates many {@link NativeXPath}s in a single traversal of tree.
+ * <p>
+ * Paths are merged into a trie of steps, so that common prefixes are evaluated only once.
+ * During pre-order traversal each node is tested against steps, which are pending for it,
+ * and each match schedules next steps either for children or for all descendants of matched node.
+ * Thus results are produced in document order without duplicates, exactly as by {@link NativeXPath#selectNodes(AstNode)}.
+ * </p>
+ * <p>
+ * Only paths with downward axes and without positional predicates are evaluated this way,
+ * others are evaluated one by one.
+ * </p>
+ *
+ * @since 1.20
+ */
+public final class NativeXPathBatch {
+
+  private static final class TrieNode {
+    private final Step step;
+    private final List<TrieNode> children = Lists.newArrayList();
+    private final List<Integer> paths = Lists.newArrayList();
+
+    public TrieNode(Step step) {
+      this.step = step;
+    }
+
+    public TrieNode getOrCreateChild(Step childStep) {
+      for (TrieNode child : children) {
+        if (child.step.equals(childStep)) {
+          return child;
+        }
+      }
+      TrieNode child = new TrieNode(childStep);
+      children.add(child);
+      return child;
+    }
+
+    public boolean matches(AstNode node) {
+      if (!step.matches(node)) {
+        return false;
+      }
+      for (Predicate predicate : step.getPredicates()) {
+        if (!((TokenAttributePredicate) predicate).test(node)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private final NativeXPath[] paths;
+  private final boolean[] streamed;
+  private final TrieNode relativeRoot = new TrieNode(null);
+  private final TrieNode absoluteRoot = new TrieNode(null);
+
+  public NativeXPathBatch(List<NativeXPath> paths) {
+    this.paths = paths.toArray(new NativeXPath[paths.size()]);
+    this.streamed = new boolean[this.paths.length];
+    for (int i = 0; i < this.paths.length; i++) {
+      NativeXPath path = this.paths[i];
+      if (isStreamable(path)) {
+        streamed[i] = true;
+        TrieNode trieNode = path.isAbsolute() ? absoluteRoot : relativeRoot;
+        for (Step step : path.getSteps()) {
+          trieNode = trieNode.getOrCreateChild(step);
+        }
+        trieNode.paths.add(i);
+      }
+    }
+  }
+
+  private static boolean isStreamable(NativeXPath path) {
+    Step[] steps = path.getSteps();
+    if (path.isAbsolute() && steps[0].getAxis() != Axis.CHILD && steps[0].getAxis() != Axis.DESCENDANT) {
+      // would select document node
+      return false;
+    }
+    for (Step step : steps) {
+      if (step.getAxis() != Axis.CHILD && step.getAxis() != Axis.DESCENDANT && step.getAxis() != Axis.DESCENDANT_OR_SELF && step.getAxis() != Axis.SELF) {
+        return false;
+      }
+      for (Predicate predicate : step.getPredicates()) {
+        if (!(predicate instanceof TokenAttributePredicate)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * All absolute paths share one document node, which is created in the same way as by evaluation of one of them.
+   *
+   * @return results for each path, in the order in which paths were given
+   */
+  public List<List<AstNode>> selectNodes(AstNode contextNode) {
+    List<List<AstNode>> results = Lists.newArrayListWithCapacity(paths.length);
+    boolean hasAbsolute = false;
+    for (int i = 0; i < paths.length; i++) {
+      results.add(Lists.<AstNode>newArrayList());
+      if (paths[i].isAbsolute()) {
+        hasAbsolute = true;
+      } else if (!streamed[i]) {
+        // evaluated before creation of document node, which can be reached by upward axes
+        results.set(i, paths[i].selectNodes(contextNode));
+      }
+    }
+    AstNode documentNode = null;
+    AstNode root = null;
+    if (hasAbsolute) {
+      documentNode = NativeXPath.createDocumentNode(contextNode);
+      root = documentNode.getFirstChild();
+    }
+
+    NodeState state = new NodeState(results, Lists.<TrieNode>newArrayList());
+    if (root == contextNode) {
+      matchAbsolute(state, root);
+    }
+    state.expand(relativeRoot, contextNode);
+    visitChildren(contextNode, state);
+    if (root != null && root != contextNode) {
+      NodeState absoluteState = new NodeState(results, Lists.<TrieNode>newArrayList());
+      matchAbsolute(absoluteState, root);
+      visitChildren(root, absoluteState);
+    }
+
+    for (int i = 0; i < paths.length; i++) {
+      if (!streamed[i] && paths[i].isAbsolute()) {
+        results.set(i, paths[i].selectNodesFrom(documentNode));
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Child of document node is candidate for first steps of absolute paths.
+   */
+  private void matchAbsolute(NodeState state, AstNode root) {
+    for (TrieNode trieNode : absoluteRoot.children) {
+      if (trieNode.step.getAxis() == Axis.DESCENDANT) {
+        state.addDescendantPending(trieNode);
+      }
+      state.tryMatch(trieNode, root);
+    }
+  }
+
+  private static void visit(AstNode node, List<TrieNode> candidates, NodeState parentState) {
+    NodeState state = new NodeState(parentState.results, parentState.descendantPending);
+    for (TrieNode candidate : candidates) {
+      state.tryMatch(candidate, node);
+    }
+    visitChildren(node, state);
+  }
+
+  private static void visitChildren(AstNode node, NodeState state) {
+    if (!node.hasChildren() || (state.childPending.isEmpty() && state.descendantPending.isEmpty())) {
+      return;
+    }
+    List<TrieNode> candidates;
+    if (state.childPending.isEmpty()) {
+      candidates = state.descendantPending;
+    } else {
+      candidates = Lists.newArrayList(state.childPending);
+      candidates.addAll(state.descendantPending);
+    }
+    for (AstNode child : node.getChildren()) {
+      visit(child, candidates, state);
+    }
+  }
+
+  private static final class NodeState {
+    private final List<List<AstNode>> results;
+    private final List<TrieNode> matched = Lists.newArrayList();
+    private final List<TrieNode> childPending = Lists.newArrayList();
+    private List<TrieNode> descendantPending;
+    private boolean descendantPendingShared = true;
+
+    public NodeState(List<List<AstNode>> results, List<TrieNode> inheritedDescendantPending) {
+      this.results = results;
+      this.descendantPending = inheritedDescendantPending;
+    }
+
+    public void tryMatch(TrieNode trieNode, AstNode node) {
+      if (matched.contains(trieNode) || !trieNode.matches(node)) {
+        return;
+      }
+      matched.add(trieNode);
+      for (int path : trieNode.paths) {
+        results.get(path).add(node);
+      }
+      expand(trieNode, node);
+    }
+
+    public void expand(TrieNode trieNode, AstNode node) {
+      for (TrieNode next : trieNode.children) {
+        switch (next.step.getAxis()) {
+          case CHILD:
+            if (!childPending.contains(next)) {
+              childPending.add(next);
+            }
+            break;
+          case DESCENDANT:
+            addDescendantPending(next);
+            break;
+          case DESCENDANT_OR_SELF:
+            addDescendantPending(next);
+            tryMatch(next, node);
+            break;
+          case SELF:
+            tryMatch(next, node);
+            break;
+          default:
+            throw new IllegalStateException("Unexpected axis: " + next.step.getAxis());
+        }
+      }
+    }
+
+    public void addDescendantPending(TrieNode trieNode) {
+      if (descendantPending.contains(trieNode)) {
+        return;
+      }
+      if (descendantPendingShared) {
+        descendantPending = Lists.newArrayList(descendantPending);
+        descendantPendingShared = false;
+      }
+      descendantPending.add(trieNode);
+    }
+  }
+
+}
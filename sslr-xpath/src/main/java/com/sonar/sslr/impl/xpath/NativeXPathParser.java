@@ -0,0 +1,296 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl.xpath;
+
+import com.google.common.collect.Lists;
+import com.sonar.sslr.impl.xpath.NativeXPath.Axis;
+import com.sonar.sslr.impl.xpath.NativeXPath.PositionPredicate;
+import com.sonar.sslr.impl.xpath.NativeXPath.Predicate;
+import com.sonar.sslr.impl.xpath.NativeXPath.Step;
+import com.sonar.sslr.impl.xpath.NativeXPath.TokenAttribute;
+import com.sonar.sslr.impl.xpath.NativeXPath.TokenAttributePredicate;
+
+import javax.annotation.Nullable;
+
+import java.util.List;
+
+/**
+ * Compiles location paths from the subset of XPath, which is supported by {@link NativeXPath}:
+ * <ul>
+ * <li>relative and absolute paths with abbreviated descendant steps {@code //}</li>
+ * <li>axes {@code child}, {@code descendant}, {@code descendant-or-self}, {@code self}, {@code parent}, {@code ancestor},
+ * {@code ancestor-or-self} and abbreviations {@code .} and {@code ..}</li>
+ * <li>name tests, {@code *} and {@code node()}</li>
+ * <li>predicates {@code [n]}, {@code [@attribute]} and {@code [@attribute = value]}, {@code [@attribute != value]}
+ * for attributes {@code tokenLine}, {@code tokenColumn} and {@code tokenValue}</li>
+ * </ul>
+ *
+ * @since 1.20
+ */
+public final class NativeXPathParser {
+
+  private final String xpath;
+  private int index;
+
+  private NativeXPathParser(String xpath) {
+    this.xpath = xpath;
+  }
+
+  /**
+   * @return compiled path, or null if given expression is not supported
+   */
+  @Nullable
+  public static NativeXPath parse(String xpath) {
+    try {
+      return new NativeXPathParser(xpath).parsePath();
+    } catch (UnsupportedExpressionException e) {
+      return null;
+    }
+  }
+
+  private NativeXPath parsePath() {
+    List<Step> steps = Lists.newArrayList();
+    skipWhitespaces();
+    boolean absolute = false;
+    if (consume("//")) {
+      absolute = true;
+      steps.add(new Step(Axis.DESCENDANT_OR_SELF, null));
+    } else if (consume("/")) {
+      absolute = true;
+    }
+    addStep(steps, parseStep());
+    while (true) {
+      if (consume("//")) {
+        steps.add(new Step(Axis.DESCENDANT_OR_SELF, null));
+      } else if (!consume("/")) {
+        break;
+      }
+      addStep(steps, parseStep());
+    }
+    if (index != xpath.length()) {
+      throw new UnsupportedExpressionException();
+    }
+    return new NativeXPath(absolute, steps);
+  }
+
+  /**
+   * Abbreviation {@code //name} means {@code /descendant-or-self::node()/child::name}, which is equivalent to {@code /descendant::name}
+   * in absence of positional predicates. Latter form avoids creation of list of all nodes.
+   */
+  private static void addStep(List<Step> steps, Step step) {
+    if (step.getAxis() == Axis.CHILD && !steps.isEmpty() && !hasPositionPredicate(step)) {
+      Step previous = steps.get(steps.size() - 1);
+      if (previous.getAxis() == Axis.DESCENDANT_OR_SELF && previous.getName() == null && previous.getPredicates().length == 0) {
+        steps.set(steps.size() - 1, new Step(Axis.DESCENDANT, step.getName(), step.getPredicates()));
+        return;
+      }
+    }
+    steps.add(step);
+  }
+
+  private static boolean hasPositionPredicate(Step step) {
+    for (Predicate predicate : step.getPredicates()) {
+      if (predicate instanceof PositionPredicate) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private Step parseStep() {
+    if (consume("..")) {
+      return new Step(Axis.PARENT, null);
+    } else if (consume(".")) {
+      return new Step(Axis.SELF, null);
+    }
+    Axis axis = Axis.CHILD;
+    String name = parseNameTest();
+    if (consume("::")) {
+      axis = toAxis(name);
+      name = parseNameTest();
+    }
+    if ("node".equals(name) && consume("(")) {
+      expect(")");
+      name = null;
+    } else if ("*".equals(name)) {
+      name = null;
+    }
+    List<Predicate> predicates = Lists.newArrayList();
+    while (consume("[")) {
+      predicates.add(parsePredicate());
+      expect("]");
+    }
+    return new Step(axis, name, predicates.toArray(new Predicate[predicates.size()]));
+  }
+
+  private static Axis toAxis(String name) {
+    if ("child".equals(name)) {
+      return Axis.CHILD;
+    } else if ("descendant".equals(name)) {
+      return Axis.DESCENDANT;
+    } else if ("descendant-or-self".equals(name)) {
+      return Axis.DESCENDANT_OR_SELF;
+    } else if ("self".equals(name)) {
+      return Axis.SELF;
+    } else if ("parent".equals(name)) {
+      return Axis.PARENT;
+    } else if ("ancestor".equals(name)) {
+      return Axis.ANCESTOR;
+    } else if ("ancestor-or-self".equals(name)) {
+      return Axis.ANCESTOR_OR_SELF;
+    }
+    throw new UnsupportedExpressionException();
+  }
+
+  private Predicate parsePredicate() {
+    String number = parseNumber();
+    if (number != null) {
+      return new PositionPredicate(toInt(number));
+    }
+    expect("@");
+    TokenAttribute attribute = TokenAttribute.forName(parseName());
+    if (attribute == null) {
+      throw new UnsupportedExpressionException();
+    }
+    boolean equal;
+    if (consume("=")) {
+      equal = true;
+    } else if (consume("!=")) {
+      equal = false;
+    } else {
+      return new TokenAttributePredicate(attribute);
+    }
+    String value = parseLiteral();
+    if (value == null) {
+      number = parseNumber();
+      if (number == null || attribute == TokenAttribute.TOKEN_VALUE) {
+        // comparison of token value with number requires conversion of value to number
+        throw new UnsupportedExpressionException();
+      }
+      value = Integer.toString(toInt(number));
+    }
+    return new TokenAttributePredicate(attribute, equal, value);
+  }
+
+  private static int toInt(String number) {
+    try {
+      return Integer.parseInt(number);
+    } catch (NumberFormatException e) {
+      throw new UnsupportedExpressionException();
+    }
+  }
+
+  private String parseNameTest() {
+    if (consume("*")) {
+      return "*";
+    }
+    return parseName();
+  }
+
+  private String parseName() {
+    int start = index;
+    if (index < xpath.length() && isNameStart(xpath.charAt(index))) {
+      index++;
+      while (index < xpath.length() && isNamePart(xpath.charAt(index))) {
+        index++;
+      }
+    }
+    if (start == index) {
+      throw new UnsupportedExpressionException();
+    }
+    String name = xpath.substring(start, index);
+    skipWhitespaces();
+    if (index < xpath.length() && xpath.charAt(index) == '(' && !"node".equals(name)) {
+      // function call
+      throw new UnsupportedExpressionException();
+    }
+    return name;
+  }
+
+  private static boolean isNameStart(char c) {
+    return Character.isLetter(c) || c == '_';
+  }
+
+  private static boolean isNamePart(char c) {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.';
+  }
+
+  @Nullable
+  private String parseNumber() {
+    int start = index;
+    while (index < xpath.length() && xpath.charAt(index) >= '0' && xpath.charAt(index) <= '9') {
+      index++;
+    }
+    if (start == index) {
+      return null;
+    }
+    if (index < xpath.length() && xpath.charAt(index) == '.') {
+      throw new UnsupportedExpressionException();
+    }
+    String number = xpath.substring(start, index);
+    skipWhitespaces();
+    return number;
+  }
+
+  @Nullable
+  private String parseLiteral() {
+    if (index >= xpath.length()) {
+      return null;
+    }
+    char quote = xpath.charAt(index);
+    if (quote != '"' && quote != '\'') {
+      return null;
+    }
+    int end = xpath.indexOf(quote, index + 1);
+    if (end == -1) {
+      throw new UnsupportedExpressionException();
+    }
+    String literal = xpath.substring(index + 1, end);
+    index = end + 1;
+    skipWhitespaces();
+    return literal;
+  }
+
+  private void expect(String s) {
+    if (!consume(s)) {
+      throw new UnsupportedExpressionException();
+    }
+  }
+
+  private boolean consume(String s) {
+    if (xpath.startsWith(s, index)) {
+      index += s.length();
+      skipWhitespaces();
+      return true;
+    }
+    return false;
+  }
+
+  private void skipWhitespaces() {
+    while (index < xpath.length() && Character.isWhitespace(xpath.charAt(index))) {
+      index++;
+    }
+  }
+
+  private static class UnsupportedExpressionException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+  }
+
+}
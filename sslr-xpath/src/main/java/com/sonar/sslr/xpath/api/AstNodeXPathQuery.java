@@ -22,6 +22,8 @@ package com.sonar.sslr.xpath.api;
 import com.google.common.base.Throwables;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.impl.xpath.AstNodeNavigator;
+import com.sonar.sslr.impl.xpath.NativeXPath;
+import com.sonar.sslr.impl.xpath.NativeXPathParser;
 import org.jaxen.BaseXPath;
 import org.jaxen.JaxenException;
 
@@ -32,7 +34,17 @@ public final class AstNodeXPathQuery<T> {
   private final AstNodeNavigator astNodeNavigator = new AstNodeNavigator();
   private final BaseXPath expression;
 
+  /**
+   * Not null, when query can be evaluated without Jaxen.
+   */
+  private final NativeXPath nativeExpression;
+
   private AstNodeXPathQuery(String xpath) {
+    nativeExpression = NativeXPathParser.parse(xpath);
+    if (nativeExpression != null) {
+      expression = null;
+      return;
+    }
     try {
       expression = new BaseXPath(xpath, astNodeNavigator);
     } catch (JaxenException e) {
@@ -58,6 +70,10 @@ public final class AstNodeXPathQuery<T> {
    * @return The first result or null if there was no result.
    */
   public T selectSingleNode(AstNode astNode) {
+    if (nativeExpression != null) {
+      List<AstNode> result = nativeExpression.selectNodes(astNode);
+      return result.isEmpty() ? null : (T) result.get(0);
+    }
     try {
       astNodeNavigator.reset();
       return (T) expression.selectSingleNode(astNode);
@@ -84,6 +100,9 @@ public final class AstNodeXPathQuery<T> {
    * @return The list of resulting elements, empty when no result available.
    */
   public List<T> selectNodes(AstNode astNode) {
+    if (nativeExpression != null) {
+      return (List<T>) nativeExpression.selectNodes(astNode);
+    }
     try {
       astNodeNavigator.reset();
       return expression.selectNodes(astNode);
@@ -92,6 +111,13 @@ public final class AstNodeXPathQuery<T> {
     }
   }
 
+  /**
+   * @return compiled expression, or null if this query is evaluated by Jaxen
+   */
+  NativeXPath getNativeExpression() {
+    return nativeExpression;
+  }
+
   /**
    * Creates a compiled XPath query, which can be evaluated multiple times on different AstNode.
    *
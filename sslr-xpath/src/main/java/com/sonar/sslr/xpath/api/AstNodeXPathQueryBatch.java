@@ -0,0 +1,112 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.xpath.api;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.impl.xpath.NativeXPath;
+import com.sonar.sslr.impl.xpath.NativeXPathBatch;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates many XPath queries on the same AstNode, so that cost of evaluation depends on the size of tree rather than on
+ * the size of tree multiplied by the number of queries.
+ * <p>
+ * Queries, which consist of downward steps, are answered in a single traversal of tree, which is shared between them,
+ * others are evaluated one by one. Results are exactly the same as from {@link AstNodeXPathQuery#selectNodes(AstNode)}.
+ * </p>
+ *
+ * @since 1.20
+ */
+public final class AstNodeXPathQueryBatch {
+
+  private final List<AstNodeXPathQuery<?>> queries;
+  private final int[] nativeIndexes;
+  private final NativeXPathBatch nativeBatch;
+
+  private AstNodeXPathQueryBatch(List<? extends AstNodeXPathQuery<?>> queries) {
+    this.queries = ImmutableList.copyOf(queries);
+    this.nativeIndexes = new int[this.queries.size()];
+    List<NativeXPath> nativeExpressions = Lists.newArrayList();
+    for (int i = 0; i < this.queries.size(); i++) {
+      NativeXPath nativeExpression = this.queries.get(i).getNativeExpression();
+      if (nativeExpression == null) {
+        nativeIndexes[i] = -1;
+      } else {
+        nativeIndexes[i] = nativeExpressions.size();
+        nativeExpressions.add(nativeExpression);
+      }
+    }
+    this.nativeBatch = new NativeXPathBatch(nativeExpressions);
+  }
+
+  /**
+   * Evaluates all queries of this batch on the given AstNode.
+   *
+   * @param astNode
+   *          The AstNode on which to evaluate the queries against to.
+   * @return results of all queries
+   */
+  public Results selectNodes(AstNode astNode) {
+    List<List<AstNode>> nativeResults = nativeBatch.selectNodes(astNode);
+    Map<AstNodeXPathQuery<?>, List<?>> results = Maps.newIdentityHashMap();
+    for (int i = 0; i < queries.size(); i++) {
+      AstNodeXPathQuery<?> query = queries.get(i);
+      results.put(query, nativeIndexes[i] == -1 ? query.selectNodes(astNode) : nativeResults.get(nativeIndexes[i]));
+    }
+    return new Results(results);
+  }
+
+  public static AstNodeXPathQueryBatch create(AstNodeXPathQuery<?>... queries) {
+    return create(Arrays.asList(queries));
+  }
+
+  public static AstNodeXPathQueryBatch create(List<? extends AstNodeXPathQuery<?>> queries) {
+    return new AstNodeXPathQueryBatch(queries);
+  }
+
+  public static final class Results {
+
+    private final Map<AstNodeXPathQuery<?>, List<?>> results;
+
+    private Results(Map<AstNodeXPathQuery<?>, List<?>> results) {
+      this.results = results;
+    }
+
+    /**
+     * @return The list of resulting elements for the given query, empty when no result available.
+     * @throws IllegalArgumentException if the query is not part of the batch
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> get(AstNodeXPathQuery<T> query) {
+      List<?> result = results.get(query);
+      Preconditions.checkArgument(result != null, "The query is not part of the batch");
+      return (List<T>) result;
+    }
+
+  }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl.xpath;
+
+import com.google.common.collect.Lists;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeType;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Token;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class NativeXPathBatchTest {
+
+  private AstNode root;
+  private AstNode inner;
+
+  /**
+   * <pre>
+   * a
+   *  |__ b 1
+   *  |    |__ a 2
+   *  |         |__ b 3
+   *  |         |__ c 4
+   *  |__ c 5
+   *       |__ b 6
+   * </pre>
+   */
+  private void init(boolean wrapped) {
+    root = node("a", null);
+    AstNode b1 = node("b", 1);
+    inner = node("a", 2);
+    inner.addChild(node("b", 3));
+    inner.addChild(node("c", 4));
+    b1.addChild(inner);
+    AstNode c5 = node("c", 5);
+    c5.addChild(node("b", 6));
+    root.addChild(b1);
+    root.addChild(c5);
+    if (wrapped) {
+      // wraps tree into document node
+      NativeXPathParser.parse("/a").selectNodes(root);
+    }
+  }
+
+  @Test
+  public void should_evaluate_as_individual_paths() {
+    assertSameAsIndividualPaths(false);
+  }
+
+  @Test
+  public void should_evaluate_as_individual_paths_after_evaluation_of_absolute_path() {
+    assertSameAsIndividualPaths(true);
+  }
+
+  private void assertSameAsIndividualPaths(boolean wrapped) {
+    String[] expressions = {
+      "a",
+      "b",
+      "/a",
+      "/a/b",
+      "/b",
+      "//a",
+      "//b",
+      "//a//b",
+      "//a/b",
+      "//b//b",
+      "//*[@tokenLine]",
+      "//b[@tokenLine != 3]",
+      "//a/c[@tokenLine = 4]",
+      ".",
+      "./b",
+      ".//b",
+      "self::a/b",
+      "descendant-or-self::a",
+      "descendant-or-self::node()/b",
+      "b/descendant-or-self::*",
+      "//b[2]",
+      "//b/..",
+      "//.",
+      "/descendant::c/b"
+    };
+    List<NativeXPath> paths = Lists.newArrayList();
+    for (String expression : expressions) {
+      NativeXPath path = NativeXPathParser.parse(expression);
+      assertThat(path).as(expression).isNotNull();
+      paths.add(path);
+    }
+    NativeXPathBatch batch = new NativeXPathBatch(paths);
+    for (boolean deep : new boolean[] {false, true}) {
+      // evaluation of absolute path modifies tree, so that each evaluation is performed on its own tree
+      init(wrapped);
+      List<List<AstNode>> results = batch.selectNodes(deep ? inner : root);
+      for (int i = 0; i < expressions.length; i++) {
+        init(wrapped);
+        List<AstNode> expected = paths.get(i).selectNodes(deep ? inner : root);
+        assertThat(describe(results.get(i))).as(expressions[i]).isEqualTo(describe(expected));
+      }
+    }
+  }
+
+  private static List<String> describe(List<AstNode> nodes) {
+    List<String> result = Lists.newArrayList();
+    for (AstNode node : nodes) {
+      Token token = node.getToken();
+      result.add(token == null ? node.getName() : node.getName() + " " + token.getLine());
+    }
+    return result;
+  }
+
+  private static AstNode node(String name, Integer line) {
+    Token token = null;
+    if (line != null) {
+      token = Token.builder()
+          .setType(GenericTokenType.IDENTIFIER)
+          .setValueAndOriginalValue(name)
+          .setURI(URI.create("tests://unittest"))
+          .setLine(line)
+          .setColumn(0)
+          .build();
+    }
+    return new AstNode(new NodeType(), name, token);
+  }
+
+  private static class NodeType implements AstNodeType {
+  }
+
+}
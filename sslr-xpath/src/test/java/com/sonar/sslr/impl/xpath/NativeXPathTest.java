@@ -0,0 +1,195 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl.xpath;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeType;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Token;
+import org.jaxen.BaseXPath;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class NativeXPathTest {
+
+  private AstNode compilationUnit;
+  private AstNode deepIdentifier;
+
+  /**
+   * <pre>
+   * compilationUnit
+   *  |__ definition
+   *  |    |__ identifier a
+   *  |__ definition
+   *  |    |__ identifier f
+   *  |    |__ block
+   *  |         |__ definition
+   *  |              |__ identifier b
+   *  |              |__ block
+   *  |                   |__ identifier c
+   *  |__ eof
+   * </pre>
+   */
+  @Before
+  public void init() {
+    compilationUnit = node("compilationUnit", "int", 1, 0);
+    AstNode definition1 = node("definition", "int", 1, 0);
+    definition1.addChild(node("identifier", "a", 1, 4));
+    AstNode definition2 = node("definition", "void", 2, 0);
+    definition2.addChild(node("identifier", "f", 2, 5));
+    AstNode block1 = node("block", "{", 2, 9);
+    AstNode definition3 = node("definition", "int", 3, 2);
+    definition3.addChild(node("identifier", "b", 3, 6));
+    AstNode block2 = node("block", "{", 4, 2);
+    deepIdentifier = node("identifier", "c", 5, 4);
+    block2.addChild(deepIdentifier);
+    definition3.addChild(block2);
+    block1.addChild(definition3);
+    definition2.addChild(block1);
+    compilationUnit.addChild(definition1);
+    compilationUnit.addChild(definition2);
+    compilationUnit.addChild(new AstNode(new NodeType(), "eof", null));
+  }
+
+  @Test
+  public void should_evaluate_as_jaxen() throws Exception {
+    String[] expressions = {
+      "compilationUnit",
+      "definition",
+      "/compilationUnit",
+      "/definition",
+      "//compilationUnit",
+      "//identifier",
+      "//definition/identifier",
+      "//definition//identifier",
+      "//block//definition",
+      "//block//*",
+      "definition[2]",
+      "definition[3]",
+      "//identifier[1]",
+      "//definition[1]/identifier",
+      "//*[@tokenLine=2]",
+      "//*[@tokenLine='2']",
+      "//*[@tokenLine='02']",
+      "//*[@tokenColumn = 4]",
+      "//identifier[@tokenValue='b']",
+      "//identifier[@tokenValue != 'b']",
+      "//*[@tokenLine != 1][1]",
+      "//definition[@tokenLine=3]/identifier",
+      "//*[@tokenValue]",
+      "//eof[@tokenLine]",
+      "..",
+      "../..",
+      ".",
+      "./definition",
+      ".//identifier",
+      "ancestor::*",
+      "ancestor::definition",
+      "ancestor::*[1]",
+      "ancestor-or-self::block",
+      "parent::block",
+      "self::identifier",
+      "//identifier/..",
+      "//identifier/ancestor::definition",
+      "//block/descendant::identifier[2]",
+      "descendant-or-self::node()",
+      "child::*[2]/child::*[1]",
+      "//node()",
+      "/descendant::block/child::identifier"
+    };
+    List<String> emptyExpressions = Arrays.asList("/definition", "//*[@tokenLine='02']", "//eof[@tokenLine]");
+    for (String expression : expressions) {
+      NativeXPath nativeXPath = NativeXPathParser.parse(expression);
+      assertThat(nativeXPath).as(expression).isNotNull();
+      BaseXPath jaxenXPath = new BaseXPath(expression, new AstNodeNavigator());
+      for (boolean deep : new boolean[] {false, true}) {
+        // both engines wrap tree into new document node on each evaluation, so that repeated evaluation of absolute path
+        // on the same tree selects nothing, hence each evaluation is performed on its own tree
+        init();
+        List<AstNode> actual = nativeXPath.selectNodes(deep ? deepIdentifier : compilationUnit);
+        init();
+        List<?> expected = jaxenXPath.selectNodes(deep ? deepIdentifier : compilationUnit);
+        assertSameNodes(expression, actual, expected);
+        if (expression.startsWith("/") && !emptyExpressions.contains(expression)) {
+          assertThat(actual).as(expression).isNotEmpty();
+        }
+      }
+    }
+  }
+
+  private static void assertSameNodes(String expression, List<AstNode> actual, List<?> expected) {
+    assertThat(actual.size()).as(expression).isEqualTo(expected.size());
+    for (int i = 0; i < actual.size(); i++) {
+      assertThat(describe(actual.get(i))).as(expression).isEqualTo(describe((AstNode) expected.get(i)));
+    }
+  }
+
+  /**
+   * @return description, which is unique within tree created by {@link #init()}
+   */
+  private static String describe(AstNode node) {
+    Token token = node.getToken();
+    return token == null ? node.getName() : node.getName() + "@" + token.getLine() + ":" + token.getColumn();
+  }
+
+  @Test
+  public void should_not_support() {
+    String[] expressions = {
+      "",
+      "/",
+      "string(/compilationUnit/@tokenValue)",
+      "definition | block",
+      "count(*)",
+      ".[name() = 'tree']",
+      "//identifier[@tokenValue = 4]",
+      "//identifier[@tokenLine > 4]",
+      "//identifier[@foo]",
+      "following-sibling::definition",
+      "text()",
+      "ns:identifier",
+      "definition[1.5]",
+      "..[1]"
+    };
+    for (String expression : expressions) {
+      assertThat(NativeXPathParser.parse(expression)).as(expression).isNull();
+    }
+  }
+
+  private static AstNode node(String name, String value, int line, int column) {
+    Token token = Token.builder()
+        .setType(GenericTokenType.IDENTIFIER)
+        .setValueAndOriginalValue(value)
+        .setURI(URI.create("tests://unittest"))
+        .setLine(line)
+        .setColumn(column)
+        .build();
+    return new AstNode(new NodeType(), name, token);
+  }
+
+  private static class NodeType implements AstNodeType {
+  }
+
+}
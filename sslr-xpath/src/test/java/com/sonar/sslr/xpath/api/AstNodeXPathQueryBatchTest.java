@@ -0,0 +1,65 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.xpath.api;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class AstNodeXPathQueryBatchTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void selectNodesTest() {
+    AstNodeXPathQuery<AstNode> leafs = AstNodeXPathQuery.create("//leaf");
+    AstNodeXPathQuery<AstNode> branches = AstNodeXPathQuery.create("branch");
+    AstNodeXPathQuery<Object> count = AstNodeXPathQuery.create("count(//leaf)");
+    AstNode tree = new AstNode(new NodeType(), "tree", null);
+    AstNode branch = new AstNode(new NodeType(), "branch", null);
+    AstNode leaf1 = new AstNode(new NodeType(), "leaf", null);
+    AstNode leaf2 = new AstNode(new NodeType(), "leaf", null);
+    tree.addChild(branch);
+    branch.addChild(leaf1);
+    branch.addChild(leaf2);
+
+    AstNodeXPathQueryBatch.Results results = AstNodeXPathQueryBatch.create(leafs, branches, count).selectNodes(tree);
+    assertThat(results.get(leafs)).containsExactly(leaf1, leaf2);
+    assertThat(results.get(branches)).containsExactly(branch);
+    assertThat(results.get(count)).containsExactly(2.0);
+  }
+
+  @Test
+  public void should_fail_for_unknown_query() {
+    AstNodeXPathQueryBatch.Results results = AstNodeXPathQueryBatch.create().selectNodes(new AstNode(new NodeType(), "tree", null));
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("The query is not part of the batch");
+    results.get(AstNodeXPathQuery.create("tree"));
+  }
+
+  static class NodeType implements AstNodeType {
+  }
+
+}